@@ -333,6 +333,8 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         public static final int frame_menu=0x7f090019;
         public static final int frame_preference=0x7f090068;
         public static final int fullscreen=0x7f090003;
+        public static final int global_search_item_name=0x7f090091;
+        public static final int global_search_result=0x7f090090;
         public static final int keyboard_switcher=0x7f090053;
         public static final int left=0x7f090000;
         public static final int list_item_section=0x7f09003f;
@@ -389,8 +391,11 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         public static final int song_count_of_playlist=0x7f09003d;
         public static final int song_info=0x7f090043;
         public static final int sort_by_album=0x7f090081;
+        public static final int sort_by_album_name=0x7f090092;
         public static final int sort_by_artist=0x7f090082;
         public static final int sort_by_artist_name=0x7f090086;
+        public static final int sort_by_date_added=0x7f090095;
+        public static final int sort_by_duration=0x7f090093;
         public static final int sort_by_folder_music_count=0x7f090083;
         public static final int sort_by_folder_name=0x7f090084;
         public static final int sort_by_music_count=0x7f090080;
@@ -399,6 +404,7 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         public static final int sort_by_playlist_modified_time=0x7f09008d;
         public static final int sort_by_playlist_music_count=0x7f09008a;
         public static final int sort_by_playlist_name=0x7f09008b;
+        public static final int sort_by_size=0x7f090094;
         public static final int submit_feedback=0x7f09000b;
         public static final int switch_to_player=0x7f090076;
         public static final int t9_delete=0x7f09006c;
@@ -449,6 +455,7 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         public static final int list_item_artist=0x7f03000b;
         public static final int list_item_folder=0x7f03000c;
         public static final int list_item_folder_choose=0x7f03000d;
+        public static final int list_item_global_search=0x7f03001e;
         public static final int list_item_menu=0x7f03000e;
         public static final int list_item_playlist=0x7f03000f;
         public static final int list_item_section=0x7f030010;
@@ -523,7 +530,14 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         public static final int filter_by_size_summary=0x7f060019;
         /**  Replace placeholder ID with your tracking ID 
          */
+        public static final int fuzzy_search=0x7f060063;
+        public static final int fuzzy_search_summary=0x7f060064;
         public static final int ga_trackingId=0x7f060000;
+        public static final int global_search_album=0x7f060067;
+        public static final int global_search_artist=0x7f060066;
+        public static final int global_search_folder=0x7f060068;
+        public static final int global_search_lyric=0x7f06006a;
+        public static final int global_search_playlist=0x7f060069;
         /**  多选界面界面 
          */
         public static final int has_selected=0x7f060059;
@@ -570,6 +584,9 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         /**  歌曲列表的搜索框 
          */
         public static final int search=0x7f060056;
+        public static final int search_completion=0x7f06006b;
+        public static final int search_completion_artist=0x7f06006c;
+        public static final int search_setting=0x7f060065;
         public static final int select_all=0x7f06005b;
         public static final int select_email_app=0x7f06000c;
         public static final int song_duration=0x7f060052;
@@ -580,6 +597,8 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         public static final int song_name=0x7f06004c;
         public static final int sort_by_album=0x7f06002a;
         public static final int sort_by_artist=0x7f060029;
+        public static final int sort_by_date_added=0x7f06006f;
+        public static final int sort_by_duration=0x7f06006d;
         public static final int sort_by_folder_name=0x7f060032;
         public static final int sort_by_last_modify_time=0x7f060033;
         public static final int sort_by_music_count=0x7f06002b;
@@ -589,6 +608,7 @@ or to a theme attribute in the form "<code>?[<i>package</i>:][<i>type</i>:]<i>na
         public static final int sort_by_playlist_created_time=0x7f060030;
         public static final int sort_by_playlist_modified_time=0x7f060031;
         public static final int sort_by_playlist_name=0x7f06002f;
+        public static final int sort_by_size=0x7f06006e;
         public static final int sumbit=0x7f06000a;
         public static final int support_developer=0x7f060021;
         /**  系统设置 
@@ -35,6 +35,7 @@ import com.lq.dao.PlaylistDAO;
 import com.lq.entity.TrackInfo;
 import com.lq.fragment.PromptDialogFragment;
 import com.lq.fragment.SelectPlaylistDialogFragment;
+import com.lq.loader.MediaLibrary;
 import com.lq.service.MusicService;
 import com.lq.service.MusicService.MusicPlaybackLocalBinder;
 import com.lq.util.Constant;
@@ -336,6 +337,7 @@ public class MutipleEditActivity extends FragmentActivity implements
 				isDeleted = PlaylistDAO.removeTrackFromPlaylist(
 						getContentResolver(), mPlaylistId,
 						mAdapter.getSelectedAudioIds());
+				MediaLibrary.getInstance().notifyPlaylistChanged();
 				if (isDeleted) {
 					// 提示移除成功
 					Toast.makeText(MutipleEditActivity.this,
@@ -348,6 +350,7 @@ public class MutipleEditActivity extends FragmentActivity implements
 				// 删除指定的歌曲,在存储器上的文件和数据库里的记录都要删除
 				PlaylistDAO.removeTrackFromDatabase(getContentResolver(),
 						mAdapter.getSelectedAudioIds());
+				MediaLibrary.getInstance().requestSync();
 				isDeleted = PlaylistDAO.deleteFiles(mAdapter
 						.getSelectedAudioPaths());
 				if (isDeleted) {
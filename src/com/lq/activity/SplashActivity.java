@@ -2,6 +2,7 @@ package com.lq.activity;
 
 import java.lang.ref.WeakReference;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
@@ -9,6 +10,7 @@ import android.os.Message;
 import android.support.v4.app.FragmentActivity;
 
 import com.google.analytics.tracking.android.EasyTracker;
+import com.lq.loader.MediaLibrary;
 import com.lq.xpressmusic.R;
 import com.umeng.analytics.MobclickAgent;
 
@@ -27,6 +29,15 @@ public class SplashActivity extends FragmentActivity {
 		mHandler.sendEmptyMessageDelayed(0, mDelayMillis);
 
 		initUmengSDK();
+
+		// 在欢迎界面显示期间读回媒体库的快照，进入主界面时歌曲列表可以立即显示
+		final Context context = getApplicationContext();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				MediaLibrary.getInstance().preload(context);
+			}
+		}).start();
 	}
 
 	@Override
@@ -13,19 +13,33 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
 import com.lq.xpressmusic.R;
 import com.lq.entity.AlbumInfo;
+import com.lq.util.ListUpdateHelper;
+import com.lq.util.AlphabetSectionIndex;
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
-public class AlbumAdapter extends BaseAdapter {
+public class AlbumAdapter extends BaseAdapter implements SectionIndexer {
+	/** 与新数据比较时按ID区分专辑 */
+	public static final ListUpdateHelper.KeyGetter<AlbumInfo> KEY_GETTER = new ListUpdateHelper.KeyGetter<AlbumInfo>() {
+		@Override
+		public Object getKey(AlbumInfo item) {
+			return item.getAlbumId();
+		}
+	};
+
 	private static final String TAG = AlbumAdapter.class.getSimpleName();
 
 	private List<AlbumInfo> mData = null;
 	private Context mContext = null;
 
+	/** 按名称排序时的首字母分节索引 */
+	private AlphabetSectionIndex mSections = AlphabetSectionIndex.EMPTY;
+
 	/** 默认初始化构造一个长度为0的数据列表 */
 	public AlbumAdapter(Context context) {
 		mContext = context;
@@ -33,10 +47,29 @@ public class AlbumAdapter extends BaseAdapter {
 	}
 
 	public void setData(List<AlbumInfo> data) {
+		setData(data, false);
+	}
+
+	/**
+	 * 设置数据
+	 *
+	 * @param sortedByName
+	 *            数据是否已按名称的排序键排好序，是的话按首字母分节
+	 */
+	public void setData(List<AlbumInfo> data, boolean sortedByName) {
 		mData.clear();
 		if (data != null) {
 			mData.addAll(data);
 		}
+		if (sortedByName) {
+			byte[][] keys = new byte[mData.size()][];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = mData.get(i).getSortKey();
+			}
+			mSections = AlphabetSectionIndex.build(keys, null);
+		} else {
+			mSections = AlphabetSectionIndex.EMPTY;
+		}
 		notifyDataSetChanged();
 	}
 
@@ -77,10 +110,20 @@ public class AlbumAdapter extends BaseAdapter {
 					.findViewById(R.id.num_of_tracks_in_album);
 			holder.album_picture = (ImageView) convertView
 					.findViewById(R.id.album_picture);
+			holder.section = convertView.findViewById(R.id.list_item_section);
+			holder.section_text = (TextView) convertView
+					.findViewById(R.id.list_item_section_text);
 			convertView.setTag(holder);
 		} else {
 			holder = (ViewHolder) convertView.getTag();
 		}
+		if (mSections.isSectionStart(position)) {
+			holder.section.setVisibility(View.VISIBLE);
+			holder.section_text.setText(mSections.getSections()[mSections
+					.getSectionForPosition(position)]);
+		} else {
+			holder.section.setVisibility(View.GONE);
+		}
 		holder.album_name.setText(getItem(position).getAlbumName());
 		holder.num_of_tracks.setText("" + getItem(position).getNumberOfSongs());
 
@@ -99,7 +142,24 @@ public class AlbumAdapter extends BaseAdapter {
 		return convertView;
 	}
 
+	@Override
+	public Object[] getSections() {
+		return mSections.getSections();
+	}
+
+	@Override
+	public int getPositionForSection(int section) {
+		return mSections.getPositionForSection(section);
+	}
+
+	@Override
+	public int getSectionForPosition(int position) {
+		return mSections.getSectionForPosition(position);
+	}
+
 	static class ViewHolder {
+		View section;
+		TextView section_text;
 		TextView album_name;
 		TextView num_of_tracks;
 		ImageView album_picture;
@@ -8,17 +8,31 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
 import com.lq.xpressmusic.R;
 import com.lq.entity.ArtistInfo;
+import com.lq.util.ListUpdateHelper;
+import com.lq.util.AlphabetSectionIndex;
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
-public class ArtistAdapter extends BaseAdapter {
+public class ArtistAdapter extends BaseAdapter implements SectionIndexer {
+	/** 与新数据比较时按名称区分艺术家 */
+	public static final ListUpdateHelper.KeyGetter<ArtistInfo> KEY_GETTER = new ListUpdateHelper.KeyGetter<ArtistInfo>() {
+		@Override
+		public Object getKey(ArtistInfo item) {
+			return item.getArtistName();
+		}
+	};
+
 	private List<ArtistInfo> mData = null;
 	private Context mContext = null;
 
+	/** 按名称排序时的首字母分节索引 */
+	private AlphabetSectionIndex mSections = AlphabetSectionIndex.EMPTY;
+
 	/** 默认初始化构造一个长度为0的数据列表 */
 	public ArtistAdapter(Context context) {
 		mContext = context;
@@ -26,10 +40,29 @@ public class ArtistAdapter extends BaseAdapter {
 	}
 
 	public void setData(List<ArtistInfo> data) {
+		setData(data, false);
+	}
+
+	/**
+	 * 设置数据
+	 *
+	 * @param sortedByName
+	 *            数据是否已按名称的排序键排好序，是的话按首字母分节
+	 */
+	public void setData(List<ArtistInfo> data, boolean sortedByName) {
 		mData.clear();
 		if (data != null) {
 			mData.addAll(data);
 		}
+		if (sortedByName) {
+			byte[][] keys = new byte[mData.size()][];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = mData.get(i).getSortKey();
+			}
+			mSections = AlphabetSectionIndex.build(keys, null);
+		} else {
+			mSections = AlphabetSectionIndex.EMPTY;
+		}
 		notifyDataSetChanged();
 	}
 
@@ -68,10 +101,20 @@ public class ArtistAdapter extends BaseAdapter {
 					.findViewById(R.id.artist_name);
 			holder.num_of_tracks = (TextView) convertView
 					.findViewById(R.id.num_of_tracks);
+			holder.section = convertView.findViewById(R.id.list_item_section);
+			holder.section_text = (TextView) convertView
+					.findViewById(R.id.list_item_section_text);
 			convertView.setTag(holder);
 		} else {
 			holder = (ViewHolder) convertView.getTag();
 		}
+		if (mSections.isSectionStart(position)) {
+			holder.section.setVisibility(View.VISIBLE);
+			holder.section_text.setText(mSections.getSections()[mSections
+					.getSectionForPosition(position)]);
+		} else {
+			holder.section.setVisibility(View.GONE);
+		}
 
 		if (getItem(position).getArtistName().equals("<unknown>")) {
 			holder.artist_name.setText(mContext.getResources().getString(
@@ -85,7 +128,24 @@ public class ArtistAdapter extends BaseAdapter {
 		return convertView;
 	}
 
+	@Override
+	public Object[] getSections() {
+		return mSections.getSections();
+	}
+
+	@Override
+	public int getPositionForSection(int section) {
+		return mSections.getPositionForSection(section);
+	}
+
+	@Override
+	public int getSectionForPosition(int position) {
+		return mSections.getSectionForPosition(position);
+	}
+
 	static class ViewHolder {
+		View section;
+		TextView section_text;
 		TextView artist_name;
 		TextView num_of_tracks;
 	}
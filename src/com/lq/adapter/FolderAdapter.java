@@ -12,10 +12,19 @@ import android.widget.TextView;
 
 import com.lq.xpressmusic.R;
 import com.lq.entity.FolderInfo;
+import com.lq.util.ListUpdateHelper;
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
 public class FolderAdapter extends BaseAdapter {
+	/** 与新数据比较时按路径区分文件夹 */
+	public static final ListUpdateHelper.KeyGetter<FolderInfo> KEY_GETTER = new ListUpdateHelper.KeyGetter<FolderInfo>() {
+		@Override
+		public Object getKey(FolderInfo item) {
+			return item.getFolderPath();
+		}
+	};
+
 	private List<FolderInfo> mData = null;
 	private Context mContext = null;
 
@@ -13,10 +13,19 @@ import android.widget.TextView;
 
 import com.lq.xpressmusic.R;
 import com.lq.entity.PlaylistInfo;
+import com.lq.util.ListUpdateHelper;
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
 public class PlaylistAdapter extends BaseAdapter implements OnClickListener {
+	/** 与新数据比较时按ID区分播放列表 */
+	public static final ListUpdateHelper.KeyGetter<PlaylistInfo> KEY_GETTER = new ListUpdateHelper.KeyGetter<PlaylistInfo>() {
+		@Override
+		public Object getKey(PlaylistInfo item) {
+			return item.getId();
+		}
+	};
+
 	private List<PlaylistInfo> mData = null;
 	private Context mContext = null;
 	private boolean mMenuVisible = true;
@@ -1,6 +1,7 @@
 package com.lq.adapter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import android.content.Context;
@@ -10,17 +11,30 @@ import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ImageButton;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
 import com.lq.xpressmusic.R;
 import com.lq.entity.TrackInfo;
+import com.lq.entity.TrackStore;
+import com.lq.util.AlphabetSectionIndex;
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
-public class TrackAdapter extends BaseAdapter implements OnClickListener {
+public class TrackAdapter extends BaseAdapter implements OnClickListener,
+		SectionIndexer {
 	private Context mContext = null;
-	/** 数据源 */
-	private ArrayList<TrackInfo> mData = null;
+	/** 数据源，是TrackStore的列表视图时直接引用，否则是一份副本 */
+	private List<TrackInfo> mData = null;
+
+	/** 显示的顺序，第i个条目为mData.get(mOrder[i])；为null时按mData的顺序显示 */
+	private int[] mOrder = null;
+
+	/** 按显示顺序排列的数据，调用getData()时才生成 */
+	private ArrayList<TrackInfo> mOrderedData = null;
+
+	/** 当前显示顺序的分节索引 */
+	private AlphabetSectionIndex mSections = AlphabetSectionIndex.EMPTY;
 
 	/** 播放时为相应播放条目显示一个播放标记 */
 	private int mActivateItemPos = -1;
@@ -31,16 +45,113 @@ public class TrackAdapter extends BaseAdapter implements OnClickListener {
 	}
 
 	public void setData(List<TrackInfo> data) {
-		mData.clear();
-		if (data != null) {
-			mData.addAll(data);
+		setData(data, null, null);
+	}
+
+	/**
+	 * 设置数据源及其显示顺序
+	 *
+	 * @param order
+	 *            显示的顺序，长度须与data相同；为null时按data的顺序显示
+	 * @param sections
+	 *            该顺序的分节索引，为null时不分节
+	 */
+	public void setData(List<TrackInfo> data, int[] order,
+			AlphabetSectionIndex sections) {
+		if (data instanceof TrackStore.TrackList) {
+			// 列表视图不会被修改，不必复制
+			mData = data;
+		} else {
+			mData = new ArrayList<TrackInfo>();
+			if (data != null) {
+				mData.addAll(data);
+			}
 		}
+		setOrder(order, sections);
+	}
+
+	/** 只更换显示顺序及其分节索引，数据源不变 */
+	public void setOrder(int[] order, AlphabetSectionIndex sections) {
+		mOrder = order;
+		mOrderedData = null;
+		mSections = sections == null || sections.size() != mData.size() ? AlphabetSectionIndex.EMPTY
+				: sections;
 		mActivateItemPos = -1;
 		notifyDataSetChanged();
 	}
 
+	/** 按显示顺序排列的全部数据 */
 	public ArrayList<TrackInfo> getData() {
-		return mData;
+		if (mOrder == null && mData instanceof ArrayList) {
+			return (ArrayList<TrackInfo>) mData;
+		}
+		if (mOrderedData == null) {
+			mOrderedData = new ArrayList<TrackInfo>(mData.size());
+			for (int i = 0; i < mData.size(); i++) {
+				mOrderedData.add(mData.get(mOrder == null ? i : mOrder[i]));
+			}
+		}
+		return mOrderedData;
+	}
+
+	/** 正在显示的各首歌曲的ID，按显示顺序，用来与新数据比较 */
+	public Object[] getKeys() {
+		return getKeys(mData, mOrder);
+	}
+
+	/**
+	 * 按显示顺序排列的各首歌曲的ID，是TrackStore的列表视图时直接读表，不必创建TrackInfo
+	 *
+	 * @param order
+	 *            显示的顺序，为null时按data的顺序
+	 */
+	public static Object[] getKeys(List<TrackInfo> data, int[] order) {
+		Object[] keys = new Object[data == null ? 0 : data.size()];
+		TrackStore.TrackList list = data instanceof TrackStore.TrackList ? (TrackStore.TrackList) data
+				: null;
+		for (int i = 0; i < keys.length; i++) {
+			int index = order == null ? i : order[i];
+			keys[i] = list != null ? list.getStore().getId(list.getRow(index))
+					: data.get(index).getId();
+		}
+		return keys;
+	}
+
+	/**
+	 * 指定ID的歌曲在显示顺序中的位置，是TrackStore的列表视图时直接读表中的ID列，不必创建TrackInfo
+	 *
+	 * @return 位置；没有显示这首歌曲时返回-1
+	 */
+	public int getPositionById(long id) {
+		TrackStore.TrackList list = mData instanceof TrackStore.TrackList ? (TrackStore.TrackList) mData
+				: null;
+		for (int i = 0; i < mData.size(); i++) {
+			int index = mOrder == null ? i : mOrder[i];
+			long itemId = list != null ? list.getStore().getId(
+					list.getRow(index)) : mData.get(index).getId();
+			if (itemId == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** 是否正按order的顺序显示data中的同一批歌曲 */
+	public boolean isShowing(List<TrackInfo> data, int[] order) {
+		if (!Arrays.equals(mOrder, order)) {
+			return false;
+		}
+		if (mData == data) {
+			return true;
+		}
+		if (mData instanceof TrackStore.TrackList
+				&& data instanceof TrackStore.TrackList) {
+			TrackStore.TrackList lhs = (TrackStore.TrackList) mData;
+			TrackStore.TrackList rhs = (TrackStore.TrackList) data;
+			return lhs.getStore() == rhs.getStore()
+					&& Arrays.equals(lhs.getRows(), rhs.getRows());
+		}
+		return false;
 	}
 
 	/** 让指定位置的条目显示一个正在播放标记（活动状态标记） */
@@ -61,7 +172,8 @@ public class TrackAdapter extends BaseAdapter implements OnClickListener {
 
 	@Override
 	public TrackInfo getItem(int position) {
-		return mData.get((int) getItemId(position));
+		int index = (int) getItemId(position);
+		return mData.get(mOrder == null ? index : mOrder[index]);
 	}
 
 	@Override
@@ -76,6 +188,9 @@ public class TrackAdapter extends BaseAdapter implements OnClickListener {
 			convertView = LayoutInflater.from(mContext).inflate(
 					R.layout.list_item_track, parent, false);
 			holder = new ViewHolder();
+			holder.section = convertView.findViewById(R.id.list_item_section);
+			holder.section_text = (TextView) convertView
+					.findViewById(R.id.list_item_section_text);
 			holder.indicator = convertView.findViewById(R.id.play_indicator);
 			holder.title = (TextView) convertView
 					.findViewById(R.id.textview_music_title);
@@ -87,24 +202,60 @@ public class TrackAdapter extends BaseAdapter implements OnClickListener {
 		} else {
 			holder = (ViewHolder) convertView.getTag();
 		}
+		if (mSections.isSectionStart(position)) {
+			holder.section.setVisibility(View.VISIBLE);
+			holder.section_text.setText(mSections.getSections()[mSections
+					.getSectionForPosition(position)]);
+		} else {
+			holder.section.setVisibility(View.GONE);
+		}
 		if (mActivateItemPos == position) {
 			holder.indicator.setVisibility(View.VISIBLE);
 		} else {
 			holder.indicator.setVisibility(View.INVISIBLE);
 		}
-		holder.title.setText(getItem(position).getTitle());
+		String title;
+		String artist;
+		if (mData instanceof TrackStore.TrackList) {
+			// 直接读取表中的列，滚动时不必创建TrackInfo
+			TrackStore.TrackList list = (TrackStore.TrackList) mData;
+			int row = list.getRow(mOrder == null ? position : mOrder[position]);
+			title = list.getStore().getTitle(row);
+			artist = list.getStore().getArtist(row);
+		} else {
+			title = getItem(position).getTitle();
+			artist = getItem(position).getArtist();
+		}
+		holder.title.setText(title);
 
-		if (getItem(position).getArtist().equals("<unknown>")) {
+		if (artist.equals("<unknown>")) {
 			holder.artist.setText(mContext.getResources().getString(
 					R.string.unknown_artist));
 		} else {
-			holder.artist.setText(getItem(position).getArtist());
+			holder.artist.setText(artist);
 		}
 		holder.popup_menu.setOnClickListener(TrackAdapter.this);
 		return convertView;
 	}
 
+	@Override
+	public Object[] getSections() {
+		return mSections.getSections();
+	}
+
+	@Override
+	public int getPositionForSection(int section) {
+		return mSections.getPositionForSection(section);
+	}
+
+	@Override
+	public int getSectionForPosition(int position) {
+		return mSections.getSectionForPosition(position);
+	}
+
 	public static class ViewHolder {
+		View section;
+		TextView section_text;
 		TextView title;
 		TextView artist;
 		View indicator;
@@ -1,10 +1,12 @@
 package com.lq.dao;
 
 import java.io.File;
+import java.util.HashMap;
 
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.provider.MediaStore.Audio.Media;
 import android.provider.MediaStore.Audio.Playlists;
@@ -18,6 +20,45 @@ import android.util.Log;
 public class PlaylistDAO {
 	public static final String TAG = PlaylistDAO.class.getSimpleName();
 
+	/** 播放列表的歌曲数目和总时长 */
+	public static class PlaylistSummary {
+		private final int mMemberCount;
+		private final long mTotalDuration;
+
+		public PlaylistSummary(int memberCount, long totalDuration) {
+			mMemberCount = memberCount;
+			mTotalDuration = totalDuration;
+		}
+
+		public int getMemberCount() {
+			return mMemberCount;
+		}
+
+		/** 所有歌曲的总时长，单位为毫秒 */
+		public long getTotalDuration() {
+			return mTotalDuration;
+		}
+	}
+
+	/**
+	 * 统计每个播放列表的歌曲数目和总时长的列，作为播放列表表的查询列，一次查询就能得到所有列表的统计值。
+	 * 与Members表的查询一样只计入仍存在的歌曲
+	 */
+	private static final String[] SUMMARY_PROJECTION = new String[] {
+			Playlists._ID,
+			"(SELECT COUNT(audio._id) FROM audio_playlists_map, audio"
+					+ " WHERE audio_playlists_map.playlist_id = audio_playlists._id"
+					+ " AND audio._id = audio_playlists_map.audio_id)",
+			"(SELECT SUM(audio.duration) FROM audio_playlists_map, audio"
+					+ " WHERE audio_playlists_map.playlist_id = audio_playlists._id"
+					+ " AND audio._id = audio_playlists_map.audio_id)" };
+
+	/** 各播放列表的统计值，通过本类修改某个播放列表时移除它的，MediaLibrary监听到歌曲或播放列表的变化时全部移除 */
+	private static final HashMap<Integer, PlaylistSummary> sSummaryCache = new HashMap<Integer, PlaylistSummary>();
+
+	/** 每次移除统计值时加1，统计期间有变化时结果可能已过时，不放进缓存。只在持有sSummaryCache时访问 */
+	private static int sSummaryGeneration = 0;
+
 	/**
 	 * 新建无重名的播放列表
 	 * 
@@ -54,6 +95,7 @@ public class PlaylistDAO {
 		Log.i(TAG, "new create playlist uri:" + newPlaylistUri);
 		int newPlaylistId = Integer
 				.valueOf(newPlaylistUri.getLastPathSegment());
+		invalidateSummary(newPlaylistId);
 		return newPlaylistId;
 	}
 
@@ -112,6 +154,7 @@ public class PlaylistDAO {
 		deleteRow = resolver.delete(Playlists.EXTERNAL_CONTENT_URI,
 				Playlists._ID + " = " + playlistId, null);
 		Log.i(TAG, "deleted row count in Playlists:" + deleteRow);
+		invalidateSummary(playlistId);
 	}
 
 	/**
@@ -189,6 +232,8 @@ public class PlaylistDAO {
 				Log.i(TAG, "The new uri added to Members:" + newInsertUri);
 			}
 		}
+		// 写完后再移除统计值，以免写入期间又统计并缓存了旧的成员
+		invalidateSummary((int) playlistId);
 		return false;
 	}
 
@@ -235,6 +280,7 @@ public class PlaylistDAO {
 				+ " in " + toDeletIds, null);
 		if (deleteRowCount > 0) {
 			isRemoved = true;
+			invalidateSummary((int) playlistId);
 		}
 		Log.i(TAG, "deleted row count in Members:" + deleteRowCount);
 		return isRemoved;
@@ -250,15 +296,156 @@ public class PlaylistDAO {
 	 */
 	public static int getPlaylistMemberCount(ContentResolver resolver,
 			int playlistId) {
-		int result = 0;
+		return getPlaylistSummaries(resolver, new int[] { playlistId }).get(
+				playlistId).getMemberCount();
+	}
+
+	/**
+	 * 获取多个播放列表的歌曲数目和总时长。缓存中没有的列表用一次查询统计，而不是每个列表查询一次
+	 * 
+	 * @param resolver
+	 *            Context的ContentResolver实例
+	 * @param playlistIds
+	 *            播放列表的ID
+	 * @return 播放列表的ID到统计值的映射，包含playlistIds中的每个ID
+	 */
+	public static HashMap<Integer, PlaylistSummary> getPlaylistSummaries(
+			ContentResolver resolver, int[] playlistIds) {
+		HashMap<Integer, PlaylistSummary> result = new HashMap<Integer, PlaylistSummary>();
+		StringBuilder missingIds = new StringBuilder();
+		int generation;
+		synchronized (sSummaryCache) {
+			generation = sSummaryGeneration;
+			for (int id : playlistIds) {
+				PlaylistSummary summary = sSummaryCache.get(id);
+				if (summary != null) {
+					result.put(id, summary);
+				} else {
+					missingIds.append(missingIds.length() == 0 ? "(" : ",")
+							.append(id);
+				}
+			}
+		}
+		if (missingIds.length() == 0) {
+			return result;
+		}
+		missingIds.append(')');
+
+		HashMap<Integer, PlaylistSummary> queried = querySummaries(resolver,
+				Playlists._ID + " in " + missingIds);
+		if (queried == null) {
+			queried = querySummariesOneByOne(resolver, playlistIds, result);
+		}
+		for (int id : playlistIds) {
+			if (!result.containsKey(id) && !queried.containsKey(id)) {
+				// 播放列表已不存在
+				queried.put(id, new PlaylistSummary(0, 0));
+			}
+		}
+		synchronized (sSummaryCache) {
+			if (generation == sSummaryGeneration) {
+				sSummaryCache.putAll(queried);
+			}
+		}
+		result.putAll(queried);
+		Log.i(TAG, "summaries of " + playlistIds.length + " playlists, "
+				+ queried.size() + " queried");
+		return result;
+	}
+
+	/**
+	 * 用一次查询统计符合条件的播放列表
+	 * 
+	 * @return 播放列表的ID到统计值的映射；媒体库不支持这种查询时返回null
+	 */
+	private static HashMap<Integer, PlaylistSummary> querySummaries(
+			ContentResolver resolver, String selection) {
+		Cursor cursor;
+		try {
+			cursor = resolver.query(Playlists.EXTERNAL_CONTENT_URI,
+					SUMMARY_PROJECTION, selection, null, null);
+		} catch (SQLiteException e) {
+			Log.w(TAG, "grouped playlist summary query failed", e);
+			return null;
+		} catch (IllegalArgumentException e) {
+			Log.w(TAG, "grouped playlist summary query failed", e);
+			return null;
+		}
+		if (cursor == null) {
+			return null;
+		}
+		HashMap<Integer, PlaylistSummary> result = new HashMap<Integer, PlaylistSummary>();
+		while (cursor.moveToNext()) {
+			result.put(cursor.getInt(0), new PlaylistSummary(
+					cursor.getInt(1), cursor.getLong(2)));
+		}
+		cursor.close();
+		return result;
+	}
+
+	/** 媒体库不支持一次统计时，逐个查询缓存中没有的播放列表，只取出时长一列 */
+	private static HashMap<Integer, PlaylistSummary> querySummariesOneByOne(
+			ContentResolver resolver, int[] playlistIds,
+			HashMap<Integer, PlaylistSummary> cached) {
+		HashMap<Integer, PlaylistSummary> result = new HashMap<Integer, PlaylistSummary>();
+		for (int id : playlistIds) {
+			if (cached.containsKey(id)) {
+				continue;
+			}
+			Uri uri = Playlists.Members.getContentUri("external", id);
+			Cursor cursor = resolver.query(uri,
+					new String[] { Media.DURATION }, null, null, null);
+			if (cursor != null) {
+				long duration = 0;
+				while (cursor.moveToNext()) {
+					duration += cursor.getLong(0);
+				}
+				result.put(id, new PlaylistSummary(cursor.getCount(), duration));
+				cursor.close();
+			}
+		}
+		return result;
+	}
+
+	/** 指定播放列表的成员有变化，移除它的统计值 */
+	private static void invalidateSummary(int playlistId) {
+		synchronized (sSummaryCache) {
+			sSummaryCache.remove(playlistId);
+			sSummaryGeneration++;
+		}
+	}
+
+	/** 移除所有播放列表的统计值，媒体库中的歌曲或播放列表在PlaylistDAO之外有变化时调用 */
+	public static void invalidateAllSummaries() {
+		synchronized (sSummaryCache) {
+			sSummaryCache.clear();
+			sSummaryGeneration++;
+		}
+	}
+
+	/**
+	 * 获取播放列表里所有歌曲的ID
+	 * 
+	 * @param resolver
+	 *            Context的ContentResolver实例
+	 * @param playlistId
+	 *            播放列表的ID
+	 * @return 按播放顺序排列的歌曲ID
+	 */
+	public static long[] getPlaylistMemberIds(ContentResolver resolver,
+			int playlistId) {
+		long[] result = new long[0];
 		Uri uri = Playlists.Members.getContentUri("external", playlistId);
-		Cursor cursor = resolver.query(uri, null, null, null, null);
+		Cursor cursor = resolver.query(uri,
+				new String[] { Playlists.Members.AUDIO_ID }, null, null,
+				Playlists.Members.PLAY_ORDER);
 		if (cursor != null) {
-			result = cursor.getCount();
+			result = new long[cursor.getCount()];
+			for (int i = 0; cursor.moveToNext() && i < result.length; i++) {
+				result[i] = cursor.getLong(0);
+			}
 			cursor.close();
 		}
-		Log.i(TAG, "members count of the playlist(" + playlistId + "):"
-				+ result);
 		return result;
 	}
 
@@ -321,6 +508,8 @@ public class PlaylistDAO {
 				Media._ID + " in " + toRemoveIds, null);
 		if (deleteRowCount > 0) {
 			isRemoved = true;
+			// 不知道歌曲属于哪些播放列表，所有的统计值都作废
+			invalidateAllSummaries();
 		}
 		Log.i(TAG, "count of removed track from database :" + deleteRowCount);
 		return isRemoved;
@@ -4,6 +4,9 @@ import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.lq.util.SortKeyHelper;
+import com.lq.util.StringHelper;
+
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
@@ -20,6 +23,9 @@ public class AlbumInfo implements Parcelable {
 	/** 专辑封面图片路径 */
 	private String art_work;
 
+	/** 专辑名称的排序键，见SortKeyHelper，不写入Parcel，需要时才生成 */
+	private byte[] sort_key;
+
 	public String getArtWork() {
 		return art_work;
 	}
@@ -38,6 +44,15 @@ public class AlbumInfo implements Parcelable {
 
 	public void setAlbumName(String album_name) {
 		this.album_name = album_name;
+		this.sort_key = null;
+	}
+
+	public byte[] getSortKey() {
+		if (sort_key == null) {
+			sort_key = SortKeyHelper.getSortKey(StringHelper
+					.getPingYin(album_name));
+		}
+		return sort_key;
 	}
 
 	public int getAlbumId() {
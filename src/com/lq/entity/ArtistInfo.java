@@ -4,6 +4,9 @@ import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.lq.util.SortKeyHelper;
+import com.lq.util.StringHelper;
+
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
@@ -12,6 +15,9 @@ public class ArtistInfo implements Parcelable {
 	private int number_of_tracks;
 	private int number_of_albums;
 
+	/** 艺术家名称的排序键，见SortKeyHelper，不写入Parcel，需要时才生成 */
+	private byte[] sort_key;
+
 	public ArtistInfo() {
 
 	}
@@ -38,6 +44,17 @@ public class ArtistInfo implements Parcelable {
 
 	public void setArtistName(String artist_name) {
 		this.artist_name = artist_name;
+		this.sort_key = null;
+	}
+
+	/** 艺术家名称的排序键，未知艺术家排在最前面 */
+	public byte[] getSortKey() {
+		if (sort_key == null) {
+			sort_key = SortKeyHelper.getSortKey("<unknown>"
+					.equals(artist_name) ? null : StringHelper
+					.getPingYin(artist_name));
+		}
+		return sort_key;
 	}
 
 	@Override
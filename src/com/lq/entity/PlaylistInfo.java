@@ -13,6 +13,7 @@ public class PlaylistInfo implements Parcelable {
 	private long date_added;
 	private long date_modified;
 	private int num_of_members;
+	private long total_duration;
 
 	public PlaylistInfo() {
 
@@ -34,6 +35,15 @@ public class PlaylistInfo implements Parcelable {
 		this.num_of_members = num_of_members;
 	}
 
+	/** 所有歌曲的总时长，单位为毫秒 */
+	public long getTotalDuration() {
+		return total_duration;
+	}
+
+	public void setTotalDuration(long total_duration) {
+		this.total_duration = total_duration;
+	}
+
 	public String getPlaylistName() {
 		return playlist_name;
 	}
@@ -72,6 +82,7 @@ public class PlaylistInfo implements Parcelable {
 		bundle.putLong("date_added", date_added);
 		bundle.putLong("date_modified", date_modified);
 		bundle.putInt("num_of_members", num_of_members);
+		bundle.putLong("total_duration", total_duration);
 		dest.writeBundle(bundle);
 
 	}
@@ -95,5 +106,6 @@ public class PlaylistInfo implements Parcelable {
 		date_added = bundle.getLong("date_added");
 		date_modified = bundle.getLong("date_modified");
 		num_of_members = bundle.getInt("num_of_members");
+		total_duration = bundle.getLong("total_duration");
 	}
 }
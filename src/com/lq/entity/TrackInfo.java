@@ -1,5 +1,6 @@
 package com.lq.entity;
 
+import com.lq.util.SortKeyHelper;
 import com.lq.util.StringHelper;
 
 import android.os.Bundle;
@@ -23,6 +24,9 @@ public class TrackInfo implements Parcelable {
 	/** 专辑名，一般为文件夹名 */
 	private String album;
 
+	/** 专辑在MediaStore中的ID */
+	private int album_id;
+
 	/** 艺术家 */
 	private String artist;
 
@@ -35,24 +39,78 @@ public class TrackInfo implements Parcelable {
 	/** 时长 */
 	private long duration;
 
-	/** 歌曲标题索引，用来搜索、排序用 */
+	/** 歌曲标题索引，用来搜索、排序用，第一次取用时才转换拼音 */
 	private String title_key;
 
-	/** 艺术家名称索引，用来搜索、排序用 */
+	/** 艺术家名称索引，用来搜索、排序用，第一次取用时才转换拼音 */
 	private String artist_key;
 
+	/** 文件在MediaStore中记录的修改时间，单位为秒 */
+	private long date_modified;
+
+	/** 文件添加到MediaStore的时间，单位为秒 */
+	private long date_added;
+
+	/** 标题的排序键，见SortKeyHelper，不写入Parcel，需要时重新生成 */
+	private byte[] title_sort_key;
+
+	/** 艺术家名称的排序键 */
+	private byte[] artist_sort_key;
+
+	/** 专辑名的排序键，第一次按专辑排序时才生成 */
+	private byte[] album_sort_key;
+
 	public TrackInfo() {
 
 	}
 
 	public String getArtistKey() {
+		if (artist_key == null && artist != null) {
+			artist_key = StringHelper.getPingYin(artist);
+		}
 		return artist_key;
 	}
 
 	public String getTitleKey() {
+		if (title_key == null && title != null) {
+			title_key = StringHelper.getPingYin(title);
+		}
 		return title_key;
 	}
 
+	public byte[] getTitleSortKey() {
+		if (title_sort_key == null) {
+			title_sort_key = SortKeyHelper.getSortKey(getTitleKey());
+		}
+		return title_sort_key;
+	}
+
+	public byte[] getArtistSortKey() {
+		if (artist_sort_key == null) {
+			artist_sort_key = SortKeyHelper.getSortKey(getArtistKey());
+		}
+		return artist_sort_key;
+	}
+
+	public byte[] getAlbumSortKey() {
+		if (album_sort_key == null) {
+			album_sort_key = SortKeyHelper.getSortKey(StringHelper
+					.getPingYin(album));
+		}
+		return album_sort_key;
+	}
+
+	/** 由TrackStore创建时使用，直接引用表中共享的字符串和排序键，不再重新计算 */
+	void setFromStore(String title, String titleKey, byte[] titleSortKey,
+			String artist, String artistKey, byte[] artistSortKey) {
+		this.title = title;
+		this.title_key = titleKey;
+		this.title_sort_key = titleSortKey;
+		this.artist = artist;
+		this.artist_key = artistKey;
+		this.artist_sort_key = artistSortKey;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o instanceof TrackInfo) {
@@ -88,9 +146,18 @@ public class TrackInfo implements Parcelable {
 		return title;
 	}
 
+	/** 设置标题，标题索引到第一次取用时才转换 */
 	public void setTitle(String title) {
 		this.title = title;
-		this.title_key = StringHelper.getPingYin(title);
+		this.title_key = null;
+		this.title_sort_key = null;
+	}
+
+	/** 设置标题，使用已经计算好的标题索引（如从快照中读出的），不再重新转换拼音 */
+	public void setTitle(String title, String titleKey) {
+		this.title = title;
+		this.title_key = titleKey;
+		this.title_sort_key = null;
 	}
 
 	public String getAlbum() {
@@ -99,6 +166,15 @@ public class TrackInfo implements Parcelable {
 
 	public void setAlbum(String album) {
 		this.album = album;
+		this.album_sort_key = null;
+	}
+
+	public int getAlbumId() {
+		return album_id;
+	}
+
+	public void setAlbumId(int album_id) {
+		this.album_id = album_id;
 	}
 
 	public String getData() {
@@ -121,9 +197,34 @@ public class TrackInfo implements Parcelable {
 		return artist;
 	}
 
+	/** 设置艺术家，艺术家名称索引到第一次取用时才转换 */
 	public void setArtist(String artist) {
 		this.artist = artist;
-		this.artist_key = StringHelper.getPingYin(artist);
+		this.artist_key = null;
+		this.artist_sort_key = null;
+	}
+
+	/** 设置艺术家，使用已经计算好的艺术家名称索引，不再重新转换拼音 */
+	public void setArtist(String artist, String artistKey) {
+		this.artist = artist;
+		this.artist_key = artistKey;
+		this.artist_sort_key = null;
+	}
+
+	public long getDateModified() {
+		return date_modified;
+	}
+
+	public void setDateModified(long date_modified) {
+		this.date_modified = date_modified;
+	}
+
+	public long getDateAdded() {
+		return date_added;
+	}
+
+	public void setDateAdded(long date_added) {
+		this.date_added = date_added;
 	}
 
 	public String getDisplayName() {
@@ -147,10 +248,15 @@ public class TrackInfo implements Parcelable {
 		bundle.putString("title", title);
 		bundle.putString("display_name", display_name);
 		bundle.putString("album", album);
+		bundle.putInt("album_id", album_id);
 		bundle.putString("artist", artist);
 		bundle.putString("data", data);
 		bundle.putLong("size", size);
 		bundle.putLong("duration", duration);
+		bundle.putString("title_key", getTitleKey());
+		bundle.putString("artist_key", getArtistKey());
+		bundle.putLong("date_modified", date_modified);
+		bundle.putLong("date_added", date_added);
 		dest.writeBundle(bundle);
 	}
 
@@ -172,10 +278,15 @@ public class TrackInfo implements Parcelable {
 		title = bundle.getString("title");
 		display_name = bundle.getString("display_name");
 		album = bundle.getString("album");
+		album_id = bundle.getInt("album_id");
 		artist = bundle.getString("artist");
 		data = bundle.getString("data");
 		size = bundle.getLong("size");
 		duration = bundle.getLong("duration");
+		title_key = bundle.getString("title_key");
+		artist_key = bundle.getString("artist_key");
+		date_modified = bundle.getLong("date_modified");
+		date_added = bundle.getLong("date_added");
 	}
 
 }
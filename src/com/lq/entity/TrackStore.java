@@ -0,0 +1,693 @@
+package com.lq.entity;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.lq.util.ColumnIO;
+import com.lq.util.SortKeyHelper;
+import com.lq.util.StringHelper;
+import com.lq.util.StringPool;
+
+/**
+ * 按列保存的歌曲表，供整个音乐库使用。
+ * <p>
+ * 数值保存在基本类型数组中；艺术家、专辑名、文件夹路径在很多歌曲间重复，按字典（StringPool）编码：每个不同的字符串只保存一次，
+ * 歌曲只记录它在字典中的位置，艺术家的拼音索引和排序键也按字典只算一次。文件路径拆成文件夹和文件名保存，
+ * 用到时再拼起来。这样每首歌曲只剩标题、拼音索引、排序键、文件名几个对象，不再有TrackInfo和重复的字符串。
+ * <p>
+ * 需要TrackInfo时用asList()取得按行号排列的列表视图，其中的TrackInfo第一次取用时才创建，
+ * 直接引用表中共享的字符串。表建好后不再修改，可以在多个线程间共享。
+ * <p>
+ * 建表时没有现成拼音索引的标题和艺术家先不转换拼音，读取游标的线程只管添加。用到某一行的拼音索引或排序键时当场转换这一行，
+ * 其余的由computeKeys()分给与CPU核数相同的线程并行转换（API 14上没有ForkJoinPool）。发布前要调用computeKeys()，
+ * 之后所有拼音索引都已确定，不会再被修改。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class TrackStore {
+	private int mSize = 0;
+
+	// 每首歌曲一个元素的列
+	private long[] mIds;
+	private int[] mDurations;
+	private long[] mSizes;
+	private int[] mDatesModified;
+	private int[] mDatesAdded;
+	private int[] mAlbumIds;
+	private int[] mArtistRefs;
+	private int[] mAlbumRefs;
+	private int[] mFolderRefs;
+	private String[] mTitles;
+	private String[] mTitleKeys;
+	private byte[][] mTitleSortKeys;
+	private String[] mFileNames;
+
+	/** 文件名以外的显示名，与文件名相同的为null */
+	private String[] mDisplayNames;
+
+	// 字典，及按艺术家、专辑名保存的索引
+	private final StringPool mArtists = new StringPool();
+	private final StringPool mAlbums = new StringPool();
+	private final StringPool mFolders = new StringPool();
+	private String[] mArtistKeys = new String[16];
+	private byte[][] mArtistSortKeys = new byte[16][];
+
+	/** 专辑名的排序键，第一次按专辑排序时才生成 */
+	private byte[][] mAlbumSortKeys = null;
+
+	/** 少于这么多个要转换的拼音索引时不值得分给多个线程 */
+	private static final int MIN_PARALLEL_KEYS = 256;
+
+	/** 转换拼音索引的线程池，所有表共用，第一次需要并行转换时创建 */
+	private static ExecutorService sKeyExecutor = null;
+
+	/** 这之前的行和艺术家的拼音索引都已转换，之后的可能还没有 */
+	private int mKeyedRows = 0;
+	private int mKeyedArtists = 0;
+
+	public TrackStore(int capacity) {
+		capacity = Math.max(capacity, 16);
+		mIds = new long[capacity];
+		mDurations = new int[capacity];
+		mSizes = new long[capacity];
+		mDatesModified = new int[capacity];
+		mDatesAdded = new int[capacity];
+		mAlbumIds = new int[capacity];
+		mArtistRefs = new int[capacity];
+		mAlbumRefs = new int[capacity];
+		mFolderRefs = new int[capacity];
+		mTitles = new String[capacity];
+		mTitleKeys = new String[capacity];
+		mTitleSortKeys = new byte[capacity][];
+		mFileNames = new String[capacity];
+		mDisplayNames = new String[capacity];
+	}
+
+	/**
+	 * 添加一首歌曲，只在建表时调用
+	 *
+	 * @param titleKey
+	 *            标题的拼音索引，为null时稍后转换拼音
+	 * @param artistKey
+	 *            艺术家名称的拼音索引，为null时稍后转换拼音；同一艺术家只使用第一次传入的
+	 * @return 新歌曲的行号
+	 */
+	public int add(long id, String title, String titleKey, String artist,
+			String artistKey, String album, int albumId, String data,
+			String displayName, long duration, long size, long dateModified,
+			long dateAdded) {
+		int row = allocate();
+		mIds[row] = id;
+		mTitles[row] = title;
+		if (titleKey != null) {
+			mTitleKeys[row] = titleKey;
+			mTitleSortKeys[row] = SortKeyHelper.getSortKey(titleKey);
+		}
+		mArtistRefs[row] = internArtist(artist, artistKey);
+		mAlbumRefs[row] = mAlbums.intern(album);
+		mAlbumIds[row] = albumId;
+		int separator = data.lastIndexOf(File.separatorChar);
+		mFolderRefs[row] = mFolders.intern(data.substring(0,
+				Math.max(0, separator)));
+		mFileNames[row] = data.substring(separator + 1);
+		mDisplayNames[row] = mFileNames[row].equals(displayName) ? null
+				: displayName;
+		mDurations[row] = (int) duration;
+		mSizes[row] = size;
+		mDatesModified[row] = (int) dateModified;
+		mDatesAdded[row] = (int) dateAdded;
+		return row;
+	}
+
+	/** 从另一张表复制一首歌曲，拼音索引和排序键都不再重新计算，只在建表时调用 */
+	public int add(TrackStore other, int otherRow) {
+		int row = allocate();
+		mIds[row] = other.mIds[otherRow];
+		mTitles[row] = other.mTitles[otherRow];
+		mTitleKeys[row] = other.getTitleKey(otherRow);
+		mTitleSortKeys[row] = other.getTitleSortKey(otherRow);
+		int artistRef = other.mArtistRefs[otherRow];
+		mArtistRefs[row] = internArtist(other.mArtists.get(artistRef),
+				other.getArtistNameKey(artistRef));
+		mAlbumRefs[row] = mAlbums.intern(other.getAlbum(otherRow));
+		mAlbumIds[row] = other.mAlbumIds[otherRow];
+		mFolderRefs[row] = mFolders.intern(other.getFolder(otherRow));
+		mFileNames[row] = other.mFileNames[otherRow];
+		mDisplayNames[row] = other.mDisplayNames[otherRow];
+		mDurations[row] = other.mDurations[otherRow];
+		mSizes[row] = other.mSizes[otherRow];
+		mDatesModified[row] = other.mDatesModified[otherRow];
+		mDatesAdded[row] = other.mDatesAdded[otherRow];
+		return row;
+	}
+
+	private int allocate() {
+		if (mSize == mIds.length) {
+			int capacity = mSize * 2;
+			mIds = copyOf(mIds, capacity);
+			mDurations = copyOf(mDurations, capacity);
+			mSizes = copyOf(mSizes, capacity);
+			mDatesModified = copyOf(mDatesModified, capacity);
+			mDatesAdded = copyOf(mDatesAdded, capacity);
+			mAlbumIds = copyOf(mAlbumIds, capacity);
+			mArtistRefs = copyOf(mArtistRefs, capacity);
+			mAlbumRefs = copyOf(mAlbumRefs, capacity);
+			mFolderRefs = copyOf(mFolderRefs, capacity);
+			mTitles = copyOf(mTitles, new String[capacity]);
+			mTitleKeys = copyOf(mTitleKeys, new String[capacity]);
+			mTitleSortKeys = copyOf(mTitleSortKeys, new byte[capacity][]);
+			mFileNames = copyOf(mFileNames, new String[capacity]);
+			mDisplayNames = copyOf(mDisplayNames, new String[capacity]);
+		}
+		return mSize++;
+	}
+
+	private int internArtist(String artist, String artistKey) {
+		int ref = mArtists.intern(artist);
+		if (ref == mArtistKeys.length) {
+			mArtistKeys = copyOf(mArtistKeys, new String[ref * 2]);
+			mArtistSortKeys = copyOf(mArtistSortKeys, new byte[ref * 2][]);
+		}
+		if (mArtistKeys[ref] == null && artistKey != null) {
+			mArtistKeys[ref] = artistKey;
+			mArtistSortKeys[ref] = SortKeyHelper.getSortKey(artistKey);
+		}
+		return ref;
+	}
+
+	/**
+	 * 并行地转换所有还没有拼音索引的标题和艺术家，返回时全部完成。线程被中断时先让线程池中的任务停下并等它们结束，
+	 * 剩下的再在当前线程中转换，返回时保持中断状态
+	 */
+	public void computeKeys() {
+		final int rowFrom = mKeyedRows;
+		final int rowTo = mSize;
+		final int artistFrom = mKeyedArtists;
+		final int artistTo = mArtists.size();
+		int count = rowTo - rowFrom + artistTo - artistFrom;
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(),
+				count / MIN_PARALLEL_KEYS);
+		if (threads > 1) {
+			ExecutorService executor = getKeyExecutor();
+			final AtomicBoolean stopped = new AtomicBoolean(false);
+			final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+			final CountDownLatch done = new CountDownLatch(threads);
+			for (int k = 0; k < threads; k++) {
+				final int from = rowFrom + (rowTo - rowFrom) * k / threads;
+				final int to = rowFrom + (rowTo - rowFrom) * (k + 1) / threads;
+				final int artistStart = artistFrom + (artistTo - artistFrom)
+						* k / threads;
+				final int artistEnd = artistFrom + (artistTo - artistFrom)
+						* (k + 1) / threads;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							fillKeys(from, to, artistStart, artistEnd, stopped);
+						} catch (RuntimeException e) {
+							failure.compareAndSet(null, e);
+						} finally {
+							done.countDown();
+						}
+					}
+				});
+			}
+			// 被中断时也要等所有任务结束，否则它们会与下面的转换同时写同一行
+			boolean interrupted = false;
+			while (true) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+					stopped.set(true);
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure.get() != null) {
+				throw failure.get();
+			}
+		}
+		// 只有一个线程或被中断时在这里转换，已转换的会被跳过
+		fillKeys(rowFrom, rowTo, artistFrom, artistTo, null);
+		mKeyedRows = rowTo;
+		mKeyedArtists = artistTo;
+	}
+
+	/**
+	 * 转换[rowFrom,rowTo)行的标题和[artistFrom,artistTo)的艺术家中还没有拼音索引的
+	 *
+	 * @param stopped
+	 *            为true时不再继续转换，为null时全部转换完才返回
+	 */
+	private void fillKeys(int rowFrom, int rowTo, int artistFrom,
+			int artistTo, AtomicBoolean stopped) {
+		for (int row = rowFrom; row < rowTo; row++) {
+			if (stopped != null && stopped.get()) {
+				return;
+			}
+			getTitleSortKey(row);
+		}
+		for (int ref = artistFrom; ref < artistTo; ref++) {
+			if (stopped != null && stopped.get()) {
+				return;
+			}
+			getArtistSortKeyByRef(ref);
+		}
+	}
+
+	private static synchronized ExecutorService getKeyExecutor() {
+		if (sKeyExecutor == null) {
+			sKeyExecutor = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "TrackStore-keys");
+					// 空闲的线程不阻止进程退出
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sKeyExecutor;
+	}
+
+	private static long[] copyOf(long[] array, int length) {
+		long[] result = new long[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static <T> T[] copyOf(T[] array, T[] result) {
+		System.arraycopy(array, 0, result, 0,
+				Math.min(array.length, result.length));
+		return result;
+	}
+
+	/** 歌曲数目 */
+	public int size() {
+		return mSize;
+	}
+
+	public long getId(int row) {
+		return mIds[row];
+	}
+
+	public String getTitle(int row) {
+		return mTitles[row];
+	}
+
+	/** 标题的拼音索引，还没有转换时当场转换 */
+	public String getTitleKey(int row) {
+		String key = mTitleKeys[row];
+		if (key == null) {
+			key = StringHelper.getPingYin(mTitles[row]);
+			mTitleKeys[row] = key;
+		}
+		return key;
+	}
+
+	public byte[] getTitleSortKey(int row) {
+		byte[] key = mTitleSortKeys[row];
+		if (key == null) {
+			key = SortKeyHelper.getSortKey(getTitleKey(row));
+			mTitleSortKeys[row] = key;
+		}
+		return key;
+	}
+
+	public String getArtist(int row) {
+		return mArtists.get(mArtistRefs[row]);
+	}
+
+	public String getArtistKey(int row) {
+		return getArtistNameKey(mArtistRefs[row]);
+	}
+
+	public byte[] getArtistSortKey(int row) {
+		return getArtistSortKeyByRef(mArtistRefs[row]);
+	}
+
+	private byte[] getArtistSortKeyByRef(int ref) {
+		byte[] key = mArtistSortKeys[ref];
+		if (key == null) {
+			key = SortKeyHelper.getSortKey(getArtistNameKey(ref));
+			mArtistSortKeys[ref] = key;
+		}
+		return key;
+	}
+
+	public String getAlbum(int row) {
+		return mAlbums.get(mAlbumRefs[row]);
+	}
+
+	/** 专辑名的排序键，不同过滤设置的快照可能同时在计算排列，因此要同步 */
+	public synchronized byte[] getAlbumSortKey(int row) {
+		byte[][] keys = mAlbumSortKeys;
+		if (keys == null) {
+			keys = new byte[mAlbums.size()][];
+			mAlbumSortKeys = keys;
+		}
+		int ref = mAlbumRefs[row];
+		if (keys[ref] == null) {
+			keys[ref] = SortKeyHelper.getSortKey(StringHelper
+					.getPingYin(mAlbums.get(ref)));
+		}
+		return keys[ref];
+	}
+
+	public int getAlbumId(int row) {
+		return mAlbumIds[row];
+	}
+
+	/** 文件所属文件夹的路径，如/storage/sdcard0/MIUI/music */
+	public String getFolder(int row) {
+		return mFolders.get(mFolderRefs[row]);
+	}
+
+	/** 文件的绝对路径，每次调用都重新拼接 */
+	public String getData(int row) {
+		return getFolder(row) + File.separator + mFileNames[row];
+	}
+
+	public String getDisplayName(int row) {
+		return mDisplayNames[row] != null ? mDisplayNames[row]
+				: mFileNames[row];
+	}
+
+	public long getDuration(int row) {
+		return mDurations[row];
+	}
+
+	public long getSize(int row) {
+		return mSizes[row];
+	}
+
+	public long getDateModified(int row) {
+		return mDatesModified[row];
+	}
+
+	public long getDateAdded(int row) {
+		return mDatesAdded[row];
+	}
+
+	/** 艺术家在字典中的位置，同一艺术家的歌曲相同 */
+	public int getArtistRef(int row) {
+		return mArtistRefs[row];
+	}
+
+	/** 文件夹在字典中的位置，同一文件夹下的歌曲相同 */
+	public int getFolderRef(int row) {
+		return mFolderRefs[row];
+	}
+
+	/** 不同的艺术家的数目 */
+	public int getArtistCount() {
+		return mArtists.size();
+	}
+
+	/** 字典中第ref个艺术家的名称 */
+	public String getArtistName(int ref) {
+		return mArtists.get(ref);
+	}
+
+	/** 字典中第ref个艺术家的拼音索引，还没有转换时当场转换 */
+	public String getArtistNameKey(int ref) {
+		String key = mArtistKeys[ref];
+		if (key == null) {
+			key = StringHelper.getPingYin(mArtists.get(ref));
+			mArtistKeys[ref] = key;
+		}
+		return key;
+	}
+
+	/** 指定艺术家在字典中的位置，表中没有这个艺术家时返回-1 */
+	public int findArtist(String artist) {
+		return mArtists.find(artist);
+	}
+
+	/** 不同的文件夹的数目 */
+	public int getFolderCount() {
+		return mFolders.size();
+	}
+
+	/** 字典中第ref个文件夹的路径 */
+	public String getFolderPath(int ref) {
+		return mFolders.get(ref);
+	}
+
+	/** 指定文件夹在字典中的位置，表中没有这个文件夹时返回-1 */
+	public int findFolder(String folderPath) {
+		return mFolders.find(folderPath);
+	}
+
+	/** 建表时加入字典的艺术家、专辑名、文件夹路径的总数，即不去重时要保存的字符串数目 */
+	public int getInternRequestCount() {
+		return mArtists.getRequestCount() + mAlbums.getRequestCount()
+				+ mFolders.getRequestCount();
+	}
+
+	/** 字典中不同的字符串的总数 */
+	public int getInternedCount() {
+		return mArtists.size() + mAlbums.size() + mFolders.size();
+	}
+
+	/** 字典去重节省的字节数，估算值 */
+	public long getInternSavedBytes() {
+		return mArtists.getSavedBytes() + mAlbums.getSavedBytes()
+				+ mFolders.getSavedBytes();
+	}
+
+	/**
+	 * 按列写出整张表，包括字典以及艺术家和标题的拼音索引、排序键，可以由readFrom()原样读回。
+	 * 专辑名的排序键用到时才生成，不写出。还没有转换的拼音索引先在当前线程中转换
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		fillKeys(mKeyedRows, mSize, mKeyedArtists, mArtists.size(), null);
+		out.writeInt(mSize);
+		out.writeInt(mArtists.size());
+		String[] artists = new String[mArtists.size()];
+		for (int ref = 0; ref < artists.length; ref++) {
+			artists[ref] = mArtists.get(ref);
+		}
+		ColumnIO.writeStrings(out, artists, artists.length);
+		ColumnIO.writeStrings(out, mArtistKeys, artists.length);
+		ColumnIO.writeBytes(out, mArtistSortKeys, artists.length);
+		writePool(out, mAlbums);
+		writePool(out, mFolders);
+
+		ColumnIO.writeLongs(out, mIds, mSize);
+		ColumnIO.writeInts(out, mDurations, mSize);
+		ColumnIO.writeLongs(out, mSizes, mSize);
+		ColumnIO.writeInts(out, mDatesModified, mSize);
+		ColumnIO.writeInts(out, mDatesAdded, mSize);
+		ColumnIO.writeInts(out, mAlbumIds, mSize);
+		ColumnIO.writeInts(out, mArtistRefs, mSize);
+		ColumnIO.writeInts(out, mAlbumRefs, mSize);
+		ColumnIO.writeInts(out, mFolderRefs, mSize);
+		ColumnIO.writeStrings(out, mTitles, mSize);
+		ColumnIO.writeStrings(out, mTitleKeys, mSize);
+		ColumnIO.writeBytes(out, mTitleSortKeys, mSize);
+		ColumnIO.writeStrings(out, mFileNames, mSize);
+		ColumnIO.writeStrings(out, mDisplayNames, mSize);
+	}
+
+	private static void writePool(DataOutputStream out, StringPool pool)
+			throws IOException {
+		String[] values = new String[pool.size()];
+		for (int ref = 0; ref < values.length; ref++) {
+			values[ref] = pool.get(ref);
+		}
+		out.writeInt(values.length);
+		ColumnIO.writeStrings(out, values, values.length);
+	}
+
+	/**
+	 * 读回writeTo()写出的表，不再转换拼音、生成排序键
+	 *
+	 * @param in
+	 *            从表的数据开始的缓冲区，读完后位于表的数据之后
+	 * @throws IOException
+	 *             数据已损坏
+	 */
+	public static TrackStore readFrom(ByteBuffer in) throws IOException {
+		int size = readCount(in, 8);
+		TrackStore store = new TrackStore(size);
+
+		int artistCount = readCount(in, 4);
+		String[] artists = new String[artistCount];
+		ColumnIO.readStrings(in, artists, artistCount);
+		store.mArtistKeys = new String[Math.max(artistCount, 16)];
+		store.mArtistSortKeys = new byte[store.mArtistKeys.length][];
+		ColumnIO.readStrings(in, store.mArtistKeys, artistCount);
+		ColumnIO.readBytes(in, store.mArtistSortKeys, artistCount);
+		for (int ref = 0; ref < artistCount; ref++) {
+			if (store.mArtists.intern(artists[ref]) != ref
+					|| store.mArtistKeys[ref] == null
+					|| store.mArtistSortKeys[ref] == null) {
+				throw new IOException("artist dictionary is corrupt");
+			}
+		}
+		readPool(in, store.mAlbums);
+		readPool(in, store.mFolders);
+
+		ColumnIO.readLongs(in, store.mIds, size);
+		ColumnIO.readInts(in, store.mDurations, size);
+		ColumnIO.readLongs(in, store.mSizes, size);
+		ColumnIO.readInts(in, store.mDatesModified, size);
+		ColumnIO.readInts(in, store.mDatesAdded, size);
+		ColumnIO.readInts(in, store.mAlbumIds, size);
+		ColumnIO.readInts(in, store.mArtistRefs, size);
+		ColumnIO.readInts(in, store.mAlbumRefs, size);
+		ColumnIO.readInts(in, store.mFolderRefs, size);
+		ColumnIO.readStrings(in, store.mTitles, size);
+		ColumnIO.readStrings(in, store.mTitleKeys, size);
+		ColumnIO.readBytes(in, store.mTitleSortKeys, size);
+		ColumnIO.readStrings(in, store.mFileNames, size);
+		ColumnIO.readStrings(in, store.mDisplayNames, size);
+		for (int row = 0; row < size; row++) {
+			if (!isRef(store.mArtistRefs[row], artistCount)
+					|| !isRef(store.mAlbumRefs[row], store.mAlbums.size())
+					|| !isRef(store.mFolderRefs[row], store.mFolders.size())
+					|| store.mTitleKeys[row] == null
+					|| store.mTitleSortKeys[row] == null
+					|| store.mFileNames[row] == null) {
+				throw new IOException("row " + row + " is corrupt");
+			}
+		}
+		store.mSize = size;
+		store.mKeyedRows = size;
+		store.mKeyedArtists = artistCount;
+		return store;
+	}
+
+	private static void readPool(ByteBuffer in, StringPool pool)
+			throws IOException {
+		int count = readCount(in, 4);
+		String[] values = new String[count];
+		ColumnIO.readStrings(in, values, count);
+		for (int ref = 0; ref < count; ref++) {
+			if (pool.intern(values[ref]) != ref) {
+				throw new IOException("dictionary is corrupt");
+			}
+		}
+	}
+
+	/** 读取一个数目，每个元素至少占minBytes字节，超出缓冲区剩余的长度说明数据已损坏 */
+	private static int readCount(ByteBuffer in, int minBytes)
+			throws IOException {
+		int count = in.getInt();
+		if (count < 0 || (long) count * minBytes > in.remaining()) {
+			throw new IOException("count " + count + " is corrupt");
+		}
+		return count;
+	}
+
+	private static boolean isRef(int ref, int size) {
+		return ref >= 0 && ref < size;
+	}
+
+	/** 为指定的行创建一个TrackInfo，字符串和排序键都与表共享 */
+	public TrackInfo createTrack(int row) {
+		TrackInfo item = new TrackInfo();
+		item.setId(mIds[row]);
+		item.setFromStore(mTitles[row], getTitleKey(row),
+				getTitleSortKey(row), getArtist(row), getArtistKey(row),
+				getArtistSortKey(row));
+		item.setAlbum(getAlbum(row));
+		item.setAlbumId(mAlbumIds[row]);
+		item.setData(getData(row));
+		item.setDisplayName(getDisplayName(row));
+		item.setDuration(mDurations[row]);
+		item.setSize(mSizes[row]);
+		item.setDateModified(mDatesModified[row]);
+		item.setDateAdded(mDatesAdded[row]);
+		return item;
+	}
+
+	/**
+	 * 取得由指定的行组成的列表视图
+	 *
+	 * @param rows
+	 *            各条目的行号，为null时为全部歌曲
+	 */
+	public TrackList asList(int[] rows) {
+		if (rows == null) {
+			rows = new int[mSize];
+			for (int i = 0; i < mSize; i++) {
+				rows[i] = i;
+			}
+		}
+		return new TrackList(this, rows);
+	}
+
+	/**
+	 * TrackStore中若干行组成的只读列表。TrackInfo在第一次get()时才创建并缓存，
+	 * 只需要显示、比较的地方可以通过getStore()和getRow()直接读取各列，不必创建TrackInfo。
+	 * <p>
+	 * 主线程和搜索线程会读取同一个列表。缓存的TrackInfo通过AtomicReferenceArray发布，其他线程取到的总是已设置好各字段的对象；
+	 * 多个线程同时第一次取同一个条目时只有先放入缓存的一个被采用，之后都返回同一个TrackInfo。
+	 */
+	public static class TrackList extends AbstractList<TrackInfo> implements
+			RandomAccess {
+		private final TrackStore mStore;
+		private final int[] mRows;
+		private final AtomicReferenceArray<TrackInfo> mItems;
+
+		private TrackList(TrackStore store, int[] rows) {
+			mStore = store;
+			mRows = rows;
+			mItems = new AtomicReferenceArray<TrackInfo>(rows.length);
+		}
+
+		@Override
+		public TrackInfo get(int location) {
+			TrackInfo item = mItems.get(location);
+			if (item == null) {
+				item = mStore.createTrack(mRows[location]);
+				if (!mItems.compareAndSet(location, null, item)) {
+					item = mItems.get(location);
+				}
+			}
+			return item;
+		}
+
+		@Override
+		public int size() {
+			return mRows.length;
+		}
+
+		public TrackStore getStore() {
+			return mStore;
+		}
+
+		/** 第location个条目在表中的行号 */
+		public int getRow(int location) {
+			return mRows[location];
+		}
+
+		/** 所有条目的行号，调用者不能修改 */
+		public int[] getRows() {
+			return mRows;
+		}
+	}
+}
@@ -7,12 +7,9 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.provider.MediaStore;
-import android.provider.MediaStore.Audio.Albums;
 import android.provider.MediaStore.Audio.Media;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
@@ -39,7 +36,9 @@ import com.lq.xpressmusic.R;
 import com.lq.adapter.AlbumAdapter;
 import com.lq.entity.AlbumInfo;
 import com.lq.loader.AlbumInfoRetrieveLoader;
+import com.lq.loader.MediaLibrary;
 import com.lq.util.Constant;
+import com.lq.util.ListUpdateHelper;
 
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
@@ -235,35 +234,8 @@ public class AlbumBrowserFragment extends Fragment implements
 	public Loader<List<AlbumInfo>> onCreateLoader(int id, Bundle args) {
 		Log.i(TAG, "onCreateLoader");
 
-		StringBuilder where = new StringBuilder(Albums._ID
-				+ " in (select distinct " + Media.ALBUM_ID
-				+ " from audio_meta where (1=1 ");
-		// String where = Albums._ID + " in (select " + Media.ALBUM_ID
-		// + " from audio_meta where ((" + FileColumns.DATA
-		// + " like'%.mp3' or " + Media.DATA + " like'%.wma') and "
-		// + Media.DURATION + " > " + 1000 * 60 * 1 + " and "
-		// + FileColumns.SIZE + " > " + 1024 + " )) ";
-
-		SharedPreferences sp = PreferenceManager
-				.getDefaultSharedPreferences(getActivity());
-		boolean filterBySize = sp.getBoolean(
-				SettingFragment.KEY_FILTER_BY_SIZE, true);
-		boolean filterByDuration = sp.getBoolean(
-
-		SettingFragment.KEY_FILTER_BY_DURATION, true);
-		if (filterBySize) {
-			where.append(" and " + Media.SIZE + " > " + Constant.FILTER_SIZE);
-		}
-		if (filterByDuration) {
-			where.append(" and " + Media.DURATION + " > "
-					+ Constant.FILTER_DURATION);
-		}
-
-		where.append("))");
-
 		// 创建并返回一个Loader
-		return new AlbumInfoRetrieveLoader(getActivity(), where.toString(),
-				null, mSortOrder);
+		return new AlbumInfoRetrieveLoader(getActivity(), mSortOrder);
 	}
 
 	@Override
@@ -272,7 +244,18 @@ public class AlbumBrowserFragment extends Fragment implements
 		Log.i(TAG, "onLoadFinished");
 
 		// 载入完成，更新列表数据
-		mAdapter.setData(data);
+		// 与正在显示的专辑比较，没有变化时不重新绑定，有变化时保持滚动位置
+		final List<AlbumInfo> newData = data;
+		ListUpdateHelper.update(mView_ListView, ListUpdateHelper.getKeys(
+				mAdapter.getData(), AlbumAdapter.KEY_GETTER), ListUpdateHelper
+				.getKeys(data, AlbumAdapter.KEY_GETTER), ListUpdateHelper
+				.isSameItems(mAdapter.getData(), data), new Runnable() {
+			@Override
+			public void run() {
+				mAdapter.setData(newData, Media.ALBUM_KEY.equals(mSortOrder));
+			}
+		});
+		refreshFastScroller();
 
 		// 在标题栏上显示艺术家数目
 		if (data != null && data.size() != 0) {
@@ -327,10 +310,15 @@ public class AlbumBrowserFragment extends Fragment implements
 			} else if (intent.getAction().equals(Intent.ACTION_MEDIA_MOUNTED)) {
 				// TODO SD卡正常挂载,重新加载数据
 				mView_MoreFunctions.setClickable(true);
-				getLoaderManager().restartLoader(ALBUM_RETRIEVE_LOADER, null,
-						AlbumBrowserFragment.this);
+				MediaLibrary.getInstance().requestSync();
 			}
 
 		}
 	};
+
+	/** 分节改变后让快速滚动条重新读取分节 */
+	private void refreshFastScroller() {
+		mView_ListView.setFastScrollEnabled(false);
+		mView_ListView.setFastScrollEnabled(true);
+	}
 }
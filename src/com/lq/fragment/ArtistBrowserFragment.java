@@ -36,7 +36,9 @@ import com.lq.xpressmusic.R;
 import com.lq.adapter.ArtistAdapter;
 import com.lq.entity.ArtistInfo;
 import com.lq.loader.ArtistInfoRetrieveLoader;
+import com.lq.loader.MediaLibrary;
 import com.lq.util.Constant;
+import com.lq.util.ListUpdateHelper;
 
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
@@ -235,8 +237,7 @@ public class ArtistBrowserFragment extends Fragment implements
 		Log.i(TAG, "onCreateLoader");
 
 		// 创建并返回一个Loader
-		return new ArtistInfoRetrieveLoader(getActivity(), null, null,
-				mSortOrder);
+		return new ArtistInfoRetrieveLoader(getActivity(), mSortOrder);
 	}
 
 	@Override
@@ -247,7 +248,18 @@ public class ArtistBrowserFragment extends Fragment implements
 		// TODO SD卡拔出时，没有处理
 
 		// 载入完成，更新列表数据
-		mAdapter.setData(data);
+		// 与正在显示的艺术家比较，没有变化时不重新绑定，有变化时保持滚动位置
+		final List<ArtistInfo> newData = data;
+		ListUpdateHelper.update(mView_ListView, ListUpdateHelper.getKeys(
+				mAdapter.getData(), ArtistAdapter.KEY_GETTER), ListUpdateHelper
+				.getKeys(data, ArtistAdapter.KEY_GETTER), ListUpdateHelper
+				.isSameItems(mAdapter.getData(), data), new Runnable() {
+			@Override
+			public void run() {
+				mAdapter.setData(newData, Media.ARTIST_KEY.equals(mSortOrder));
+			}
+		});
+		refreshFastScroller();
 
 		// 在标题栏上显示艺术家数目
 		if (data != null && data.size() != 0) {
@@ -302,10 +314,15 @@ public class ArtistBrowserFragment extends Fragment implements
 			} else if (intent.getAction().equals(Intent.ACTION_MEDIA_MOUNTED)) {
 				// SD卡正常挂载,重新加载数据
 				mView_MoreFunctions.setClickable(true);
-				getLoaderManager().restartLoader(ARTIST_RETRIEVE_LOADER, null,
-						ArtistBrowserFragment.this);
+				MediaLibrary.getInstance().requestSync();
 			}
 
 		}
 	};
+
+	/** 分节改变后让快速滚动条重新读取分节 */
+	private void refreshFastScroller() {
+		mView_ListView.setFastScrollEnabled(false);
+		mView_ListView.setFastScrollEnabled(true);
+	}
 }
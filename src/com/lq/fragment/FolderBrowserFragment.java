@@ -36,8 +36,10 @@ import com.lq.xpressmusic.R;
 import com.lq.adapter.FolderAdapter;
 import com.lq.entity.FolderInfo;
 import com.lq.loader.FolderInfoRetreiveLoader;
+import com.lq.loader.MediaLibrary;
 import com.lq.util.StringHelper;
 import com.lq.util.Constant;
+import com.lq.util.ListUpdateHelper;
 
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
@@ -60,7 +62,6 @@ public class FolderBrowserFragment extends Fragment implements
 
 	private FolderAdapter mAdapter = null;
 	private MainContentActivity mActivity = null;
-	private String mSortOrder = null;
 
 	@Override
 	public void onAttach(Activity activity) {
@@ -233,7 +234,7 @@ public class FolderBrowserFragment extends Fragment implements
 		Log.i(TAG, "onCreateLoader");
 
 		// 创建并返回一个Loader
-		return new FolderInfoRetreiveLoader(getActivity(), mSortOrder);
+		return new FolderInfoRetreiveLoader(getActivity());
 	}
 
 	@Override
@@ -245,7 +246,17 @@ public class FolderBrowserFragment extends Fragment implements
 
 		// 载入完成，更新列表数据
 		Collections.sort(data, mFolderSongCountComparator);
-		mAdapter.setData(data);
+		// 与正在显示的文件夹比较，没有变化时不重新绑定，有变化时保持滚动位置
+		final List<FolderInfo> newData = data;
+		ListUpdateHelper.update(mView_ListView, ListUpdateHelper.getKeys(
+				mAdapter.getData(), FolderAdapter.KEY_GETTER), ListUpdateHelper
+				.getKeys(data, FolderAdapter.KEY_GETTER), ListUpdateHelper
+				.isSameItems(mAdapter.getData(), data), new Runnable() {
+			@Override
+			public void run() {
+				mAdapter.setData(newData);
+			}
+		});
 
 		// 在标题栏上显示艺术家数目
 		if (data != null && data.size() != 0) {
@@ -300,8 +311,7 @@ public class FolderBrowserFragment extends Fragment implements
 			} else if (intent.getAction().equals(Intent.ACTION_MEDIA_MOUNTED)) {
 				// TODO SD卡正常挂载,重新加载数据
 				mView_MoreFunctions.setClickable(true);
-				getLoaderManager().restartLoader(FOLDER_RETRIEVE_LOADER, null,
-						FolderBrowserFragment.this);
+				MediaLibrary.getInstance().requestSync();
 			}
 
 		}
@@ -16,7 +16,6 @@ import android.content.res.Resources;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.IBinder;
-import android.provider.MediaStore.Audio.Media;
 import android.provider.MediaStore.Audio.Playlists;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
@@ -51,11 +50,12 @@ import com.lq.dao.PlaylistDAO;
 import com.lq.entity.PlaylistInfo;
 import com.lq.entity.TrackInfo;
 import com.lq.fragment.EditTextDialogFragment.OnMyDialogInputListener;
-import com.lq.loader.MusicRetrieveLoader;
 import com.lq.loader.PlaylistInfoRetrieveLoader;
+import com.lq.loader.PlaylistMemberRetrieveLoader;
 import com.lq.service.MusicService;
 import com.lq.service.MusicService.MusicPlaybackLocalBinder;
 import com.lq.util.Constant;
+import com.lq.util.ListUpdateHelper;
 import com.lq.util.StringHelper;
 
 /**
@@ -411,7 +411,17 @@ public class PlaylistBrowserFragment extends Fragment implements
 		Log.i(TAG, "onLoadFinished");
 
 		// 载入完成，更新列表数据
-		mAdapter.setData(data);
+		// 与正在显示的播放列表比较，没有变化时不重新绑定，有变化时保持滚动位置
+		final List<PlaylistInfo> newData = data;
+		ListUpdateHelper.update(mView_ListView, ListUpdateHelper.getKeys(
+				mAdapter.getData(), PlaylistAdapter.KEY_GETTER), ListUpdateHelper
+				.getKeys(data, PlaylistAdapter.KEY_GETTER), ListUpdateHelper
+				.isSameItems(mAdapter.getData(), data), new Runnable() {
+			@Override
+			public void run() {
+				mAdapter.setData(newData);
+			}
+		});
 
 		// 在标题栏上显示艺术家数目
 		if (data != null && data.size() != 0) {
@@ -546,22 +556,9 @@ public class PlaylistBrowserFragment extends Fragment implements
 		public Loader<List<TrackInfo>> onCreateLoader(int id, Bundle args) {
 			Log.i(TAG, "onCreateLoader");
 
-			String sortOrder = Media.TITLE_KEY;
-
-			// 查询语句：检索出.mp3为后缀名，时长大于1分钟，文件大小大于1MB的媒体文件
-			StringBuffer where = new StringBuffer("(" + Media.DATA
-					+ " like'%.mp3' or " + Media.DATA + " like'%.wma') and "
-					+ Media.DURATION + " > " + 1000 * 60 * 1 + " and "
-					+ Media.SIZE + " > " + 1024);
-
-			where.append(" and " + Media._ID + " in (select "
-					+ Playlists.Members.AUDIO_ID
-					+ " from audio_playlists_map where "
-					+ Playlists.Members.PLAYLIST_ID + "=" + mSelectedPlaylistId
-					+ ")");
-
-			return new MusicRetrieveLoader(getActivity(), where.toString(),
-					null, sortOrder);
+			// 按播放顺序取出播放列表中的歌曲
+			return new PlaylistMemberRetrieveLoader(getActivity(),
+					mSelectedPlaylistId);
 		}
 
 		@Override
@@ -26,6 +26,7 @@ public class SettingFragment extends PreferenceFragment implements
 	public static final String KEY_RESET_TO_DEFAULT = "key_reset_to_default";
 	public static final String KEY_FILTER_BY_SIZE = "key_filter_by_size";
 	public static final String KEY_FILTER_BY_DURATION = "key_filter_by_duration";
+	public static final String KEY_FUZZY_SEARCH = "key_fuzzy_search";
 
 	private static final String TAG = SettingFragment.class.getSimpleName();
 	private Preference mLyricSavePathPreference = null;
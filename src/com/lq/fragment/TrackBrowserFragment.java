@@ -1,12 +1,7 @@
 package com.lq.fragment;
 
-import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import android.app.Activity;
 import android.content.BroadcastReceiver;
@@ -23,8 +18,6 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.os.IBinder;
 import android.preference.PreferenceManager;
-import android.provider.MediaStore.Audio.Media;
-import android.provider.MediaStore.Audio.Playlists;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
@@ -63,6 +56,8 @@ import android.widget.PopupWindow;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.google.analytics.tracking.android.EasyTracker;
+import com.google.analytics.tracking.android.MapBuilder;
 import com.lq.activity.MainContentActivity;
 import com.lq.activity.MainContentActivity.OnBackKeyPressedListener;
 import com.lq.activity.MutipleEditActivity;
@@ -75,11 +70,24 @@ import com.lq.entity.FolderInfo;
 import com.lq.entity.PlaylistInfo;
 import com.lq.entity.TrackInfo;
 import com.lq.listener.OnPlaybackStateChangeListener;
+import com.lq.loader.GlobalSearchIndexLoader;
+import com.lq.loader.MediaLibrary;
 import com.lq.loader.MusicRetrieveLoader;
+import com.lq.search.CompletionIndex;
+import com.lq.search.GlobalSearchIndex;
+import com.lq.search.IncrementalSearcher;
+import com.lq.search.LyricSearchIndex;
+import com.lq.search.SearchExecutor;
+import com.lq.search.TrackSearchIndex;
 import com.lq.service.MusicService;
 import com.lq.service.MusicService.MusicPlaybackLocalBinder;
+import com.lq.util.AlphabetSectionIndex;
 import com.lq.util.Constant;
+import com.lq.util.ListUpdateHelper;
+import com.lq.util.LyricLoadHelper;
 import com.lq.util.StringHelper;
+import com.lq.util.TimeHelper;
+import com.lq.util.TrackSortOrders;
 
 /**
  * 读取并显示设备外存上的音乐文件
@@ -93,6 +101,22 @@ public class TrackBrowserFragment extends Fragment implements
 	private final String TAG = this.getClass().getSimpleName();
 
 	private static final int MUSIC_RETRIEVE_LOADER = 0;
+	private static final int GLOBAL_SEARCH_INDEX_LOADER = 1;
+
+	/** 全局搜索每种类型最多显示的条目数目 */
+	private static final int GLOBAL_SEARCH_LIMIT = 3;
+
+	/** 歌词搜索最多显示的句子数目 */
+	private static final int LYRIC_SEARCH_LIMIT = 5;
+
+	/** 搜索补全最多显示的条目数目 */
+	private static final int COMPLETION_LIMIT = 3;
+
+	/** 全局搜索查询的类型，歌曲不在全局索引中，直接在列表中搜索 */
+	private static final int GLOBAL_SEARCH_TYPES = (1 << GlobalSearchIndex.TYPE_ARTIST)
+			| (1 << GlobalSearchIndex.TYPE_ALBUM)
+			| (1 << GlobalSearchIndex.TYPE_FOLDER)
+			| (1 << GlobalSearchIndex.TYPE_PLAYLIST);
 	private final int CONTEXT_MENU_ADD_TO_PLAYLIST = 1;
 	private final int CONTEXT_MENU_CHECK_DETAIL = 2;
 	private final int CONTEXT_MENU_DELETE = 3;
@@ -100,7 +124,11 @@ public class TrackBrowserFragment extends Fragment implements
 	/** 手势检测 */
 	private GestureDetector mDetector = null;
 
-	private String mSortOrder = Media.TITLE_KEY;
+	/** 当前的排序方式，TrackSortOrders.ORDER_XXX */
+	private int mSortOrder = TrackSortOrders.ORDER_TITLE;
+
+	/** 已加载的歌曲的各种排列顺序，与mOriginalData对应 */
+	private TrackSortOrders mSortOrders = null;
 
 	private Bundle mCurrentPlayInfo = null;
 
@@ -126,6 +154,12 @@ public class TrackBrowserFragment extends Fragment implements
 	private View mView_SearchCancel = null;
 	private View mView_TrackOperations = null;
 	private ImageView mView_KeyboardSwitcher = null;
+	private ViewGroup mView_GlobalSearchResult = null;
+
+	/** 最后一次输入的搜索补全、全局搜索结果和歌词搜索结果，显示在搜索条下方 */
+	private List<CompletionIndex.Completion> mCompletions = null;
+	private GlobalSearchIndex.Result mGlobalSearchResult = null;
+	private List<LyricSearchIndex.Hit> mLyricSearchHits = null;
 
 	/** 弹出的搜索软键盘是否是自定义的T9键盘 */
 	private boolean mIsT9Keyboard = true;
@@ -139,6 +173,9 @@ public class TrackBrowserFragment extends Fragment implements
 	private List<TrackInfo> mOriginalData = new ArrayList<TrackInfo>();
 	private List<TrackInfo> mShowData = new ArrayList<TrackInfo>();
 
+	/** 在后台线程中搜索mOriginalData，只有最后一次输入的结果会显示出来 */
+	private SearchExecutor mSearchExecutor = new SearchExecutor();
+
 	private ArtistInfo mArtistInfo = null;
 	private FolderInfo mFolderInfo = null;
 	private PlaylistInfo mPlaylistInfo = null;
@@ -167,11 +204,15 @@ public class TrackBrowserFragment extends Fragment implements
 		}
 	};
 
-	/** 文件过滤设置改变的话重新加载显示数据 */
+	/** 文件过滤设置改变的话重新加载显示数据，模糊搜索设置改变的话建立或丢弃模糊搜索索引 */
 	private OnSharedPreferenceChangeListener mFilterPreferenceChangedListener = new OnSharedPreferenceChangeListener() {
 		@Override
 		public void onSharedPreferenceChanged(
 				SharedPreferences sharedPreferences, String key) {
+			if (key.equals(SettingFragment.KEY_FUZZY_SEARCH)) {
+				mSearchExecutor.setFuzzySearchEnabled(isFuzzySearch());
+				return;
+			}
 			if (key.equals(SettingFragment.KEY_FILTER_BY_SIZE)
 					|| key.equals(SettingFragment.KEY_FILTER_BY_DURATION)) {
 				// 歌曲过滤设置改变了
@@ -242,6 +283,8 @@ public class TrackBrowserFragment extends Fragment implements
 		mView_SearchCancel = (View) rootView.findViewById(R.id.cancel_search);
 		mView_TrackOperations = (View) rootView
 				.findViewById(R.id.track_operations);
+		mView_GlobalSearchResult = (ViewGroup) rootView
+				.findViewById(R.id.global_search_result);
 		mOverflowPopupMenu = new PopupMenu(getActivity(), mView_MoreFunctions);
 		Bundle args = getArguments();
 		if (args != null) {
@@ -272,6 +315,12 @@ public class TrackBrowserFragment extends Fragment implements
 
 		// 初始化一个装载器，根据第一个参数，要么连接一个已存在的装载器，要么以此ID创建一个新的装载器
 		getLoaderManager().initLoader(MUSIC_RETRIEVE_LOADER, null, this);
+
+		if (isLocalMusic()) {
+			// 本地音乐页面的搜索同时查询歌手、专辑、文件夹、播放列表
+			getLoaderManager().initLoader(GLOBAL_SEARCH_INDEX_LOADER, null,
+					mGlobalSearchIndexLoaderCallbacks);
+		}
 	}
 
 	@Override
@@ -334,9 +383,9 @@ public class TrackBrowserFragment extends Fragment implements
 		mFolderInfo = null;
 		mAlbumInfo = null;
 		mCurrentPlayInfo = null;
+		mSearchExecutor.shutdown();
 		mShowData.clear();
 		mShowData = null;
-		mOriginalData.clear();
 		mOriginalData = null;
 	}
 
@@ -413,16 +462,22 @@ public class TrackBrowserFragment extends Fragment implements
 					public boolean onMenuItemClick(MenuItem item) {
 						switch (item.getItemId()) {
 						case R.id.sort_by_music_name:
-							mSortOrder = Media.TITLE_KEY;
-							getLoaderManager().restartLoader(
-									MUSIC_RETRIEVE_LOADER, null,
-									TrackBrowserFragment.this);
+							applySortOrder(TrackSortOrders.ORDER_TITLE);
 							break;
 						case R.id.sort_by_artist_name:
-							mSortOrder = Media.ARTIST_KEY;
-							getLoaderManager().restartLoader(
-									MUSIC_RETRIEVE_LOADER, null,
-									TrackBrowserFragment.this);
+							applySortOrder(TrackSortOrders.ORDER_ARTIST);
+							break;
+						case R.id.sort_by_album_name:
+							applySortOrder(TrackSortOrders.ORDER_ALBUM);
+							break;
+						case R.id.sort_by_duration:
+							applySortOrder(TrackSortOrders.ORDER_DURATION);
+							break;
+						case R.id.sort_by_size:
+							applySortOrder(TrackSortOrders.ORDER_SIZE);
+							break;
+						case R.id.sort_by_date_added:
+							applySortOrder(TrackSortOrders.ORDER_DATE_ADDED);
 							break;
 						case R.id.classify_by_artist:
 							if (null != getParentFragment()
@@ -578,6 +633,7 @@ public class TrackBrowserFragment extends Fragment implements
 					mView_SearchInput.requestFocus();
 					break;
 				case R.id.cancel_search:
+					reportSearchLatency();
 					mView_SearchBar.setVisibility(View.GONE);
 					mView_TrackOperations.setVisibility(View.VISIBLE);
 					mView_SearchInput.setText("");
@@ -697,13 +753,17 @@ public class TrackBrowserFragment extends Fragment implements
 					int count) {
 				// 输入框文字改变时过滤歌曲列表
 				if (TextUtils.isEmpty(s)) {
-					mAdapter.setData(mOriginalData);
-				} else if (mIsT9Keyboard) {
-					// T9键盘开启，进行简拼全拼搜索
-					pinyinSearch(s.toString());
+					// 输入已清空，还未完成的搜索结果都不需要了
+					mSearchExecutor.cancel();
+					mAdapter.setData(mOriginalData, getCurrentOrder(),
+							getCurrentSections());
+					refreshFastScroller();
+					mCompletions = null;
+					mGlobalSearchResult = null;
+					mLyricSearchHits = null;
+					showGlobalSearchResult();
 				} else {
-					// 普通的模糊搜索
-					pinyinSearch(StringHelper.getPingYin(s.toString()));
+					searchInput(s.toString());
 				}
 			}
 
@@ -715,13 +775,7 @@ public class TrackBrowserFragment extends Fragment implements
 
 			@Override
 			public void afterTextChanged(Editable s) {
-				if (mPlayingTrack != null) {
-					mAdapter.setSpecifiedIndicator(MusicService
-							.seekPosInListById(mAdapter.getData(),
-									mPlayingTrack.getId()));
-				} else {
-					mAdapter.setSpecifiedIndicator(-1);
-				}
+				updatePlayingIndicator();
 			}
 		});
 
@@ -859,47 +913,19 @@ public class TrackBrowserFragment extends Fragment implements
 	public Loader<List<TrackInfo>> onCreateLoader(int id, Bundle args) {
 		Log.i(TAG, "onCreateLoader");
 
-		// 数据库查询条件子句
-		// StringBuffer select = new StringBuffer("(" + Media.DATA
-		// + " like'%.mp3' or " + Media.DATA + " like'%.wma')");
-		StringBuffer select = new StringBuffer(" 1=1 ");
-
-		// 检查系统设置，是否需要按文件大小过滤
-		if (mSystemPreferences.getBoolean(SettingFragment.KEY_FILTER_BY_SIZE,
-				true)) {
-			// 查询语句：检索出.mp3为后缀名，时长大于1分钟，文件大小大于1MB的媒体文件
-			select.append(" and " + Media.SIZE + " > " + Constant.FILTER_SIZE);
-		}
-
-		// 检查系统设置，是否需要按歌曲时长过滤
-		if (mSystemPreferences.getBoolean(
-				SettingFragment.KEY_FILTER_BY_DURATION, true)) {
-			select.append(" and " + Media.DURATION + " > "
-					+ Constant.FILTER_DURATION);
-		}
-
+		// 歌曲过滤设置由媒体库处理，这里只需设置要显示哪些歌曲
+		MusicRetrieveLoader loader = new MusicRetrieveLoader(getActivity());
+		loader.setBuildSortOrders(true);
+		// 歌曲很多时先显示第一屏，其余的分批显示
+		loader.setProgressive(true);
 		if (mArtistInfo != null) {
-			select.append(" and " + Media.ARTIST + " = '"
-					+ mArtistInfo.getArtistName() + "'");
+			loader.setArtistFilter(mArtistInfo.getArtistName());
 		} else if (mFolderInfo != null) {
-			select.append(" and " + Media.DATA + " like '"
-					+ mFolderInfo.getFolderPath() + File.separator + "%'");
+			loader.setFolderFilter(mFolderInfo.getFolderPath());
 		} else if (mPlaylistInfo != null) {
-			select.append(" and " + Media._ID + " in (select "
-					+ Playlists.Members.AUDIO_ID
-					+ " from audio_playlists_map where "
-					+ Playlists.Members.PLAYLIST_ID + "="
-					+ mPlaylistInfo.getId() + ")");
+			loader.setPlaylistFilter(mPlaylistInfo.getId());
 		} else if (mAlbumInfo != null) {
-			select.append(" and " + Media.ALBUM_ID + " = "
-					+ mAlbumInfo.getAlbumId());
-		}
-
-		MusicRetrieveLoader loader = new MusicRetrieveLoader(getActivity(),
-				select.toString(), null, mSortOrder);
-
-		if (mFolderInfo != null) {
-			loader.setFolderFilterPattern(mFolderInfo.getFolderPath());
+			loader.setAlbumFilter(mAlbumInfo.getAlbumId());
 		}
 
 		// 创建并返回一个Loader
@@ -912,15 +938,28 @@ public class TrackBrowserFragment extends Fragment implements
 		Log.i(TAG, "onLoadFinished");
 		mHasNewData = true;
 
-		mOriginalData.clear();
-		mOriginalData.addAll(data);
-		mShowData.clear();
-		mShowData.addAll(data);
+		// 部分结果之后还会收到更完整的结果
+		boolean partial = ((MusicRetrieveLoader) loader).isPartialResult(data);
+
+		// 加载结果是不可变的，直接引用，不必复制
+		mOriginalData = data;
+		// 增量搜索始终针对已显示的歌曲，其他索引等完整的结果到达后再更新
+		mSearchExecutor.setSearcher(new IncrementalSearcher(TrackSearchIndex
+				.build(mOriginalData)));
+		if (!partial) {
+			mSearchExecutor.updateFuzzyIndex(mOriginalData, isFuzzySearch());
+			mSearchExecutor.updateCompletionIndex(getActivity()
+					.getApplicationContext(), mOriginalData);
+			if (isLocalMusic()) {
+				mSearchExecutor.updateLyricIndex(LyricLoadHelper
+						.getLyricSaveFolder(getActivity()), mOriginalData);
+			}
+		}
 
-		if (mSortOrder.equals(Media.TITLE_KEY)) {
-			Collections.sort(data, mTrackNameComparator);
-		} else if (mSortOrder.equals(Media.ARTIST_KEY)) {
-			Collections.sort(data, mArtistNameComparator);
+		// 各种排列顺序已在加载线程中算好
+		mSortOrders = ((MusicRetrieveLoader) loader).getSortOrders(data);
+		if (mSortOrders == null) {
+			mSortOrders = TrackSortOrders.build(data);
 		}
 
 		mView_ListView.setEmptyView(mView_EmptyNoSong);
@@ -931,31 +970,53 @@ public class TrackBrowserFragment extends Fragment implements
 			mView_TrackOperations.setVisibility(View.VISIBLE);
 			mView_MoreFunctions.setClickable(true);
 		}
-		mAdapter.setData(data);
+		String input = mView_SearchInput.getText().toString();
+		if (!TextUtils.isEmpty(input)) {
+			// 正在搜索（如分批加载期间已输入了文字）时保留显示的搜索结果，在新的数据中重新搜索当前的输入，
+			// 结果到达时再替换
+			searchInput(input);
+		} else {
+			// 适配器直接使用加载结果，不复制到mShowData，复制会为每首歌曲创建TrackInfo
+			mShowData.clear();
+			// 与正在显示的歌曲比较，没有变化时不重新绑定，有变化时保持滚动位置
+			final int[] order = getCurrentOrder();
+			final AlphabetSectionIndex sections = getCurrentSections();
+			ListUpdateHelper.update(mView_ListView, mAdapter.getKeys(),
+					TrackAdapter.getKeys(mOriginalData, order),
+					mAdapter.isShowing(mOriginalData, order), new Runnable() {
+						@Override
+						public void run() {
+							mAdapter.setData(mOriginalData, order, sections);
+						}
+					});
+			refreshFastScroller();
+		}
 
-		// 每次加载新的数据设置一下标题中的歌曲数目
+		// 每次加载新的数据设置一下标题中的歌曲数目，部分结果的数目后面加“+”
+		String count = partial ? data.size() + "+" : String.valueOf(data
+				.size());
 		if (getArguments() != null) {
 			switch (getArguments().getInt(Constant.PARENT)) {
 			case Constant.START_FROM_LOCAL_MUSIC:
 				mView_Title.setText(getResources().getString(
 						R.string.local_music)
-						+ "(" + data.size() + ")");
+						+ "(" + count + ")");
 				break;
 			case Constant.START_FROM_ARTIST:
 				mView_Title.setText(mArtistInfo.getArtistName() + "("
-						+ data.size() + ")");
+						+ count + ")");
 				break;
 			case Constant.START_FROM_FOLER:
 				mView_Title.setText(mFolderInfo.getFolderName() + "("
-						+ data.size() + ")");
+						+ count + ")");
 				break;
 			case Constant.START_FROM_PLAYLIST:
 				mView_Title.setText(mPlaylistInfo.getPlaylistName() + "("
-						+ data.size() + ")");
+						+ count + ")");
 				break;
 			case Constant.START_FROM_ALBUM:
 				mView_Title.setText(mAlbumInfo.getAlbumName() + "("
-						+ data.size() + ")");
+						+ count + ")");
 				break;
 			default:
 				break;
@@ -981,8 +1042,8 @@ public class TrackBrowserFragment extends Fragment implements
 		mPlayingTrack = bundle.getParcelable(Constant.PLAYING_MUSIC_ITEM);
 
 		if (mPlayingTrack != null) {
-			mAdapter.setSpecifiedIndicator(MusicService.seekPosInListById(
-					mAdapter.getData(), mPlayingTrack.getId()));
+			mAdapter.setSpecifiedIndicator(mAdapter.getPositionById(mPlayingTrack
+					.getId()));
 		} else {
 			mAdapter.setSpecifiedIndicator(-1);
 		}
@@ -1063,10 +1124,6 @@ public class TrackBrowserFragment extends Fragment implements
 
 	// 处理搜索的相关函数------------------------------------------------------------------
 
-	/** T9键盘各数字键对应的正则表达式 */
-	private static String T9KEYS[] = { "", "", "[abc]", "[def]", "[ghi]",
-			"[jkl]", "[mno]", "[pqrs]", "[tuv]", "[wxyz]" };
-
 	/** 在搜索输入框末尾追加T9键的输入 */
 	private void appendImageSpan(int drawableResId, int keynum) {
 		Drawable drawable = getResources().getDrawable(drawableResId);
@@ -1099,73 +1156,401 @@ public class TrackBrowserFragment extends Fragment implements
 	}
 
 	/**
-	 * T9键盘简拼、全拼搜索
+	 * 按输入框中的文字搜索，普通键盘输入时在本地音乐页面还搜索歌词
+	 * 
+	 * @param input
+	 *            输入框中的文字，不为空
+	 */
+	private void searchInput(String input) {
+		if (mIsT9Keyboard) {
+			// T9键盘开启，进行简拼全拼搜索
+			mLyricSearchHits = null;
+			pinyinSearch(input);
+		} else {
+			// 普通的模糊搜索
+			pinyinSearch(StringHelper.getPingYin(input));
+			if (isLocalMusic()) {
+				// 按原文或拼音搜索歌词
+				mSearchExecutor.lyricSearch(input, LYRIC_SEARCH_LIMIT,
+						mOnLyricSearchResultListener);
+			}
+		}
+	}
+
+	/**
+	 * T9键盘简拼、全拼搜索，在后台线程中进行，结果由mOnSearchResultListener显示
 	 * 
 	 * @param str
-	 *            输入的字符串，均为2~9的数字
+	 *            输入的字符串，T9键盘时均为2~9的数字
 	 */
 	private void pinyinSearch(String input) {
-		mShowData.clear();
-		StringBuffer sb = new StringBuffer();
+		if (isFuzzySearch()) {
+			// 容错搜索，结果按匹配程度排列
+			mSearchExecutor.fuzzySearch(input, mIsT9Keyboard,
+					mOnFuzzySearchResultListener);
+		} else {
+			mSearchExecutor.search(input, mIsT9Keyboard,
+					mOnSearchResultListener);
+		}
+		mSearchExecutor.complete(input, mIsT9Keyboard, COMPLETION_LIMIT,
+				mOnCompletionResultListener);
+		if (isLocalMusic()) {
+			mSearchExecutor.globalSearch(input, mIsT9Keyboard,
+					GLOBAL_SEARCH_TYPES, GLOBAL_SEARCH_LIMIT,
+					mOnGlobalSearchResultListener);
+		}
+	}
 
-		// XXX 对特殊非字母、非数字、非汉字的字符支持不理想，有待改进
+	/** 显示最后一次输入的搜索结果 */
+	private SearchExecutor.OnSearchResultListener mOnSearchResultListener = new SearchExecutor.OnSearchResultListener() {
 
-		// 获取每一个数字对应的字母列表并以'-'隔开
-		for (int i = 0; i < input.length(); i++) {
-			if (mIsT9Keyboard && input.charAt(i) <= '9'
-					&& input.charAt(i) >= '0') {
-				sb.append(T9KEYS[input.charAt(i) - '0']);
-			} else {
-				sb.append(input.charAt(i));
+		@Override
+		public void onSearchResult(String input, int[] result) {
+			if (mAdapter == null) {
+				return;
+			}
+			// 搜索结果按列表的顺序给出，显示时换成当前的排序方式
+			if (mSortOrders != null) {
+				result = mSortOrders.arrange(mSortOrder, result);
+			}
+			mShowData.clear();
+			for (int i = 0; i < result.length; i++) {
+				mShowData.add(mOriginalData.get(result[i]));
+			}
+			mAdapter.setData(mShowData);
+			updatePlayingIndicator();
+		}
+	};
+
+	/** 显示最后一次输入的模糊搜索结果 */
+	private SearchExecutor.OnFuzzySearchResultListener mOnFuzzySearchResultListener = new SearchExecutor.OnFuzzySearchResultListener() {
+
+		@Override
+		public void onFuzzySearchResult(String input, List<TrackInfo> result) {
+			if (mAdapter == null) {
+				return;
+			}
+			mShowData.clear();
+			mShowData.addAll(result);
+			mAdapter.setData(mShowData);
+			updatePlayingIndicator();
+		}
+	};
+
+	/** 在搜索条下方显示以输入为前缀的标题和歌手 */
+	private SearchExecutor.OnCompletionResultListener mOnCompletionResultListener = new SearchExecutor.OnCompletionResultListener() {
+
+		@Override
+		public void onCompletionResult(String input,
+				List<CompletionIndex.Completion> result) {
+			if (mAdapter == null) {
+				return;
+			}
+			mCompletions = result;
+			showGlobalSearchResult();
+		}
+	};
+
+	/** 在搜索条下方按类型分组显示匹配的歌手、专辑、文件夹、播放列表 */
+	private SearchExecutor.OnGlobalSearchResultListener mOnGlobalSearchResultListener = new SearchExecutor.OnGlobalSearchResultListener() {
+
+		@Override
+		public void onGlobalSearchResult(String input,
+				GlobalSearchIndex.Result result) {
+			if (mAdapter == null) {
+				return;
+			}
+			mGlobalSearchResult = result;
+			showGlobalSearchResult();
+		}
+	};
+
+	/** 在全局搜索结果之后显示匹配的歌词句子 */
+	private SearchExecutor.OnLyricSearchResultListener mOnLyricSearchResultListener = new SearchExecutor.OnLyricSearchResultListener() {
+
+		@Override
+		public void onLyricSearchResult(String input,
+				List<LyricSearchIndex.Hit> result) {
+			if (mAdapter == null) {
+				return;
+			}
+			mLyricSearchHits = result;
+			showGlobalSearchResult();
+		}
+	};
+
+	/** 全局搜索索引的装载器，只需填充一次，之后由各页面的装载器增量更新 */
+	private LoaderManager.LoaderCallbacks<GlobalSearchIndex> mGlobalSearchIndexLoaderCallbacks = new LoaderManager.LoaderCallbacks<GlobalSearchIndex>() {
+
+		@Override
+		public Loader<GlobalSearchIndex> onCreateLoader(int id, Bundle args) {
+			return new GlobalSearchIndexLoader(getActivity());
+		}
+
+		@Override
+		public void onLoadFinished(Loader<GlobalSearchIndex> loader,
+				GlobalSearchIndex data) {
+			Log.i(TAG, "global search index: "
+					+ data.size(GlobalSearchIndex.TYPE_ARTIST) + " artists, "
+					+ data.size(GlobalSearchIndex.TYPE_ALBUM) + " albums");
+		}
+
+		@Override
+		public void onLoaderReset(Loader<GlobalSearchIndex> loader) {
+		}
+	};
+
+	/** 显示搜索补全、全局搜索的分组结果和歌词搜索结果，都没有时隐藏 */
+	private void showGlobalSearchResult() {
+		mView_GlobalSearchResult.removeAllViews();
+		if (mCompletions != null) {
+			addCompletionGroup(mCompletions);
+		}
+		if (mGlobalSearchResult != null) {
+			addGlobalSearchGroup(mGlobalSearchResult,
+					GlobalSearchIndex.TYPE_ARTIST,
+					R.string.global_search_artist);
+			addGlobalSearchGroup(mGlobalSearchResult,
+					GlobalSearchIndex.TYPE_ALBUM, R.string.global_search_album);
+			addGlobalSearchGroup(mGlobalSearchResult,
+					GlobalSearchIndex.TYPE_FOLDER,
+					R.string.global_search_folder);
+			addGlobalSearchGroup(mGlobalSearchResult,
+					GlobalSearchIndex.TYPE_PLAYLIST,
+					R.string.global_search_playlist);
+		}
+		if (mLyricSearchHits != null) {
+			addLyricSearchGroup(mLyricSearchHits);
+		}
+		mView_GlobalSearchResult
+				.setVisibility(mView_GlobalSearchResult.getChildCount() > 0 ? View.VISIBLE
+						: View.GONE);
+	}
+
+	private void addGlobalSearchGroup(GlobalSearchIndex.Result result,
+			int type, int titleResId) {
+		int count = result.getCount(type);
+		if (count == 0) {
+			return;
+		}
+		LayoutInflater inflater = LayoutInflater.from(getActivity());
+		View section = inflater.inflate(R.layout.list_item_section,
+				mView_GlobalSearchResult, false);
+		((TextView) section.findViewById(R.id.list_item_section_text))
+				.setText(getString(titleResId, count));
+		mView_GlobalSearchResult.addView(section);
+
+		for (final Object item : result.getItems(type)) {
+			TextView itemView = (TextView) inflater.inflate(
+					R.layout.list_item_global_search, mView_GlobalSearchResult,
+					false);
+			Bundle data = new Bundle();
+			switch (type) {
+			case GlobalSearchIndex.TYPE_ARTIST:
+				itemView.setText(((ArtistInfo) item).getArtistName());
+				data.putParcelable(ArtistInfo.class.getSimpleName(),
+						(ArtistInfo) item);
+				data.putInt(Constant.PARENT, Constant.START_FROM_ARTIST);
+				break;
+			case GlobalSearchIndex.TYPE_ALBUM:
+				itemView.setText(((AlbumInfo) item).getAlbumName());
+				data.putParcelable(AlbumInfo.class.getSimpleName(),
+						(AlbumInfo) item);
+				data.putInt(Constant.PARENT, Constant.START_FROM_ALBUM);
+				break;
+			case GlobalSearchIndex.TYPE_FOLDER:
+				itemView.setText(((FolderInfo) item).getFolderName());
+				data.putParcelable(FolderInfo.class.getSimpleName(),
+						(FolderInfo) item);
+				data.putInt(Constant.PARENT, Constant.START_FROM_FOLER);
+				break;
+			case GlobalSearchIndex.TYPE_PLAYLIST:
+				itemView.setText(((PlaylistInfo) item).getPlaylistName());
+				data.putParcelable(PlaylistInfo.class.getSimpleName(),
+						(PlaylistInfo) item);
+				data.putInt(Constant.PARENT, Constant.START_FROM_PLAYLIST);
+				break;
+			default:
+				break;
 			}
-			if (i != input.length() - 1) {
-				sb.append("-");
+			final Bundle args = data;
+			itemView.setOnClickListener(new OnClickListener() {
+
+				@Override
+				public void onClick(View v) {
+					// 关闭搜索，进入对应的歌曲列表
+					mView_SearchCancel.performClick();
+					getFragmentManager()
+							.beginTransaction()
+							.replace(
+									R.id.frame_for_nested_fragment,
+									Fragment.instantiate(getActivity(),
+											TrackBrowserFragment.class
+													.getName(), args))
+							.addToBackStack(null).commit();
+				}
+			});
+			mView_GlobalSearchResult.addView(itemView);
+		}
+	}
+
+	private void addCompletionGroup(List<CompletionIndex.Completion> completions) {
+		if (completions.isEmpty()) {
+			return;
+		}
+		LayoutInflater inflater = LayoutInflater.from(getActivity());
+		View section = inflater.inflate(R.layout.list_item_section,
+				mView_GlobalSearchResult, false);
+		((TextView) section.findViewById(R.id.list_item_section_text))
+				.setText(R.string.search_completion);
+		mView_GlobalSearchResult.addView(section);
+
+		for (final CompletionIndex.Completion completion : completions) {
+			TextView itemView = (TextView) inflater.inflate(
+					R.layout.list_item_global_search, mView_GlobalSearchResult,
+					false);
+			if (completion.getType() == CompletionIndex.TYPE_ARTIST) {
+				itemView.setText(getString(R.string.search_completion_artist,
+						completion.getText()));
+			} else {
+				itemView.setText(completion.getText());
 			}
+			itemView.setOnClickListener(new OnClickListener() {
+
+				@Override
+				public void onClick(View v) {
+					showCompletedTracks(completion);
+				}
+			});
+			mView_GlobalSearchResult.addView(itemView);
 		}
+	}
 
-		// 遍历原始数据集合，寻找匹配的条目
-		for (TrackInfo item : mOriginalData) {
-			if (contains(sb.toString(), item.getTitleKey(), input)) {
-				mShowData.add(item);
-			} else if (contains(sb.toString(), item.getArtistKey(), input)) {
-				mShowData.add(item);
+	/** 列表中只显示标题或歌手与补全条目完全相同的歌曲 */
+	private void showCompletedTracks(CompletionIndex.Completion completion) {
+		// 还未送达的搜索结果不能再覆盖列表
+		mSearchExecutor.cancel();
+		mShowData.clear();
+		for (TrackInfo track : mOriginalData) {
+			String text = completion.getType() == CompletionIndex.TYPE_ARTIST ? track
+					.getArtist() : track.getTitle();
+			if (completion.getText().equals(text)) {
+				mShowData.add(track);
 			}
 		}
 		mAdapter.setData(mShowData);
+		updatePlayingIndicator();
+		mCompletions = null;
+		showGlobalSearchResult();
 	}
 
-	/**
-	 * 检查所给的搜索索引值是否匹配给定正则表达式
-	 * 
-	 * @param regexp
-	 *            正则表达式
-	 * @param key
-	 *            索引值
-	 * @param input
-	 *            搜索条件是否大于6个字符
-	 * @return
-	 */
-	private boolean contains(String regexp, String key, String input) {
-		if (TextUtils.isEmpty(key)) {
-			return false;
+	private void addLyricSearchGroup(List<LyricSearchIndex.Hit> hits) {
+		if (hits.isEmpty()) {
+			return;
 		}
-		// 搜索条件大于6个字符将不按拼音首字母查询
-		if (input.length() < 6) {
-			// 根据首字母进行模糊查询
-			Pattern pattern = Pattern.compile(regexp.toUpperCase().replace("-",
-					"[*+a-z]*"));
-			Matcher matcher = pattern.matcher(key);
-
-			if (matcher.find()) {
-				return true;
+		LayoutInflater inflater = LayoutInflater.from(getActivity());
+		View section = inflater.inflate(R.layout.list_item_section,
+				mView_GlobalSearchResult, false);
+		((TextView) section.findViewById(R.id.list_item_section_text))
+				.setText(getString(R.string.global_search_lyric, hits.size()));
+		mView_GlobalSearchResult.addView(section);
+
+		for (final LyricSearchIndex.Hit hit : hits) {
+			if (hit.getTrack() == null) {
+				continue;
 			}
+			TextView itemView = (TextView) inflater.inflate(
+					R.layout.list_item_global_search, mView_GlobalSearchResult,
+					false);
+			itemView.setText(TimeHelper.milliSecondsToFormatTimeString(hit
+					.getSentence().getStartTime())
+					+ " "
+					+ hit.getSentence().getContentText()
+					+ " - "
+					+ hit.getTrack().getTitle());
+			itemView.setOnClickListener(new OnClickListener() {
+
+				@Override
+				public void onClick(View v) {
+					// 从匹配的句子开始播放这首歌曲
+					if (mMusicServiceBinder != null) {
+						mMusicServiceBinder.setCurrentPlayList(mOriginalData);
+						mHasNewData = true;
+					}
+					Intent intent = new Intent(MusicService.ACTION_PLAY);
+					intent.putExtra(Constant.REQUEST_PLAY_ID, hit.getTrack()
+							.getId());
+					intent.putExtra(Constant.CLICK_ITEM_IN_LIST, true);
+					intent.putExtra(Constant.REQUEST_SEEK_POSITION, (int) hit
+							.getSentence().getStartTime());
+					mActivity.startService(intent);
+					mActivity.switchToPlayer();
+				}
+			});
+			mView_GlobalSearchResult.addView(itemView);
 		}
+	}
+
+	/** 当前排序方式的排列，没有时为null */
+	private int[] getCurrentOrder() {
+		return mSortOrders == null ? null : mSortOrders.get(mSortOrder);
+	}
+
+	/** 当前排序方式的分节索引，没有时为null */
+	private AlphabetSectionIndex getCurrentSections() {
+		return mSortOrders == null ? null : mSortOrders.getSections(mSortOrder);
+	}
+
+	/** 切换排序方式，直接换用已算好的排列，不再重新查询和排序 */
+	private void applySortOrder(int order) {
+		mSortOrder = order;
+		if (TextUtils.isEmpty(mView_SearchInput.getText())) {
+			mAdapter.setOrder(getCurrentOrder(), getCurrentSections());
+			refreshFastScroller();
+			updatePlayingIndicator();
+		} else {
+			// 重新搜索当前的输入，结果按新的顺序显示
+			searchInput(mView_SearchInput.getText().toString());
+		}
+	}
+
+	/** 快速滚动条只在启用时读取一次分节，分节变化后要重新启用 */
+	private void refreshFastScroller() {
+		mView_ListView.setFastScrollEnabled(false);
+		mView_ListView.setFastScrollEnabled(true);
+	}
+
+	/** 是否开启了模糊搜索 */
+	private boolean isFuzzySearch() {
+		return mSystemPreferences.getBoolean(SettingFragment.KEY_FUZZY_SEARCH,
+				false);
+	}
+
+	/** 是否是本地音乐页面，只有本地音乐页面有全局搜索 */
+	private boolean isLocalMusic() {
+		return getArguments() != null
+				&& getArguments().getInt(Constant.PARENT) == Constant.START_FROM_LOCAL_MUSIC;
+	}
 
-		// 根据全拼查询
-		Pattern pattern = Pattern.compile(regexp.replace("-", ""),
-				Pattern.CASE_INSENSITIVE);
-		Matcher matcher = pattern.matcher(key);
-		return matcher.find();
+	/** 关闭搜索条时上报本次搜索的平均耗时 */
+	private void reportSearchLatency() {
+		if (mSearchExecutor.getQueryCount() > 0) {
+			EasyTracker.getInstance(getActivity()).send(
+					MapBuilder.createTiming("search",
+							mSearchExecutor.getAverageLatency(),
+							"pinyin_search", null).build());
+			mSearchExecutor.resetLatencyStatistics();
+		}
+	}
+
+	/** 在当前显示的列表中为正在播放的歌曲显示播放标记 */
+	private void updatePlayingIndicator() {
+		if (mPlayingTrack != null) {
+			mAdapter.setSpecifiedIndicator(mAdapter.getPositionById(mPlayingTrack
+					.getId()));
+		} else {
+			mAdapter.setSpecifiedIndicator(-1);
+		}
 	}
 
 	private void startWatchingExternalStorage() {
@@ -1199,8 +1584,7 @@ public class TrackBrowserFragment extends Fragment implements
 			} else if (intent.getAction().equals(Intent.ACTION_MEDIA_MOUNTED)) {
 				// SD卡正常挂载,重新加载数据
 				mView_ListView.setEmptyView(mView_EmptyLoading);
-				TrackBrowserFragment.this.getLoaderManager().restartLoader(
-						MUSIC_RETRIEVE_LOADER, null, TrackBrowserFragment.this);
+				MediaLibrary.getInstance().requestSync();
 			}
 
 		}
@@ -1259,10 +1643,11 @@ public class TrackBrowserFragment extends Fragment implements
 				Toast.makeText(getActivity(),
 						getResources().getString(R.string.delete_failed),
 						Toast.LENGTH_SHORT).show();
+			} else if (getArguments().getInt(Constant.PARENT) == Constant.START_FROM_PLAYLIST) {
+				// 由媒体库通知装载器重新加载，更新列表显示
+				MediaLibrary.getInstance().notifyPlaylistChanged();
 			} else {
-				// 重新读取数据库，更新列表显示
-				getLoaderManager().restartLoader(MUSIC_RETRIEVE_LOADER, null,
-						TrackBrowserFragment.this);
+				MediaLibrary.getInstance().requestSync();
 			}
 		}
 	};
@@ -1287,8 +1672,8 @@ public class TrackBrowserFragment extends Fragment implements
 		@Override
 		public void onPlayNewSong(TrackInfo playingSong) {
 			mPlayingTrack = playingSong;
-			mAdapter.setSpecifiedIndicator(MusicService.seekPosInListById(
-					mAdapter.getData(), playingSong.getId()));
+			mAdapter.setSpecifiedIndicator(mAdapter.getPositionById(playingSong
+					.getId()));
 		}
 
 		@Override
@@ -1303,51 +1688,4 @@ public class TrackBrowserFragment extends Fragment implements
 
 	};
 
-	// 按歌曲名称顺序排序
-	private Comparator<TrackInfo> mTrackNameComparator = new Comparator<TrackInfo>() {
-		char first_l, first_r;
-
-		@Override
-		public int compare(TrackInfo lhs, TrackInfo rhs) {
-			first_l = lhs.getTitleKey().charAt(0);
-			first_r = rhs.getTitleKey().charAt(0);
-			if (StringHelper.checkType(first_l) == StringHelper.CharType.CHINESE) {
-				first_l = StringHelper.getPinyinFirstLetter(first_l);
-			}
-			if (StringHelper.checkType(first_r) == StringHelper.CharType.CHINESE) {
-				first_r = StringHelper.getPinyinFirstLetter(first_r);
-			}
-			if (first_l > first_r) {
-				return 1;
-			} else if (first_l < first_r) {
-				return -1;
-			} else {
-				return 0;
-			}
-		}
-	};
-	// 按歌曲名称顺序排序
-	private Comparator<TrackInfo> mArtistNameComparator = new Comparator<TrackInfo>() {
-		char first_l, first_r;
-
-		@Override
-		public int compare(TrackInfo lhs, TrackInfo rhs) {
-			first_l = lhs.getArtistKey().charAt(0);
-			first_r = rhs.getArtistKey().charAt(0);
-			if (StringHelper.checkType(first_l) == StringHelper.CharType.CHINESE) {
-				first_l = StringHelper.getPinyinFirstLetter(first_l);
-			}
-			if (StringHelper.checkType(first_r) == StringHelper.CharType.CHINESE) {
-				first_r = StringHelper.getPinyinFirstLetter(first_r);
-			}
-			if (first_l > first_r) {
-				return 1;
-			} else if (first_l < first_r) {
-				return -1;
-			} else {
-				return 0;
-			}
-		}
-	};
-
 }
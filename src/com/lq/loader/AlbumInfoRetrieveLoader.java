@@ -1,163 +1,48 @@
 package com.lq.loader;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
-import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
-import android.provider.MediaStore;
 import android.provider.MediaStore.Audio.Albums;
-import android.support.v4.content.AsyncTaskLoader;
-import android.util.Log;
 
 import com.lq.entity.AlbumInfo;
+import com.lq.search.GlobalSearchIndex;
 
 /**
+ * 从媒体库的快照中取出含有符合歌曲过滤设置的歌曲的专辑
+ *
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
-public class AlbumInfoRetrieveLoader extends AsyncTaskLoader<List<AlbumInfo>> {
-	private final String TAG = AlbumInfoRetrieveLoader.class.getSimpleName();
+public class AlbumInfoRetrieveLoader extends MediaLibraryLoader<List<AlbumInfo>> {
 
-	/** 要从MediaStore检索的列 */
-	private final String[] mProjection = new String[] { Albums.ALBUM,
-			Albums.NUMBER_OF_SONGS, Albums._ID, Albums.ALBUM_ART };
-
-	// 数据库查询相关参数
-	private String mSelection = null;
-	private String[] mSelectionArgs = null;
+	/** 排序方式，沿用MediaStore的写法，为null时按专辑名称排序 */
 	private String mSortOrder = null;
 
-	private ContentResolver mContentResolver = null;
-
-	private List<AlbumInfo> mArtistInfoList = null;
-
-	public AlbumInfoRetrieveLoader(Context context, String selection,
-			String[] selectionArgs, String sortOrder) {
+	public AlbumInfoRetrieveLoader(Context context, String sortOrder) {
 		super(context);
-		this.mSelection = selection;
-		this.mSelectionArgs = selectionArgs;
-		if (sortOrder == null) {
-			// 默认按歌曲数目倒序排序
-			this.mSortOrder = MediaStore.Audio.Artists.NUMBER_OF_TRACKS
-					+ " desc";
-		}
 		this.mSortOrder = sortOrder;
-		mContentResolver = context.getContentResolver();
 	}
 
 	@Override
-	public List<AlbumInfo> loadInBackground() {
-		Log.i(TAG, "loadInBackground");
-		Cursor cursor = mContentResolver.query(Albums.EXTERNAL_CONTENT_URI,
-				mProjection, mSelection, mSelectionArgs, mSortOrder);
-
-		List<AlbumInfo> itemsList = new ArrayList<AlbumInfo>();
-
-		// 将数据库查询结果保存到一个List集合中(存放在RAM)
-		if (cursor != null) {
-			int index_album_name = cursor.getColumnIndex(Albums.ALBUM);
-			int index_album_id = cursor.getColumnIndex(Albums._ID);
-			int index_num_of_songs = cursor
-					.getColumnIndex(Albums.NUMBER_OF_SONGS);
-			int index_art_work = cursor.getColumnIndex(Albums.ALBUM_ART);
-
-			while (cursor.moveToNext()) {
-				AlbumInfo item = new AlbumInfo();
-				item.setAlbumId(cursor.getInt(index_album_id));
-				item.setAlbumName(cursor.getString(index_album_name));
-				item.setNumberOfSongs(cursor.getInt(index_num_of_songs));
-				item.setArtWork(cursor.getString(index_art_work));
-				itemsList.add(item);
-			}
-			cursor.close();
+	protected List<AlbumInfo> loadFromSnapshot(MediaLibrary.Snapshot snapshot) {
+		// 快照中的专辑已按名称的排序键排列
+		List<AlbumInfo> itemsList = new ArrayList<AlbumInfo>(
+				snapshot.getAlbums());
+		if (mSortOrder != null
+				&& mSortOrder.startsWith(Albums.NUMBER_OF_SONGS)) {
+			// 按歌曲数目倒序排序，数目相同的仍按名称排列
+			Collections.sort(itemsList, new Comparator<AlbumInfo>() {
+				@Override
+				public int compare(AlbumInfo lhs, AlbumInfo rhs) {
+					return rhs.getNumberOfSongs() - lhs.getNumberOfSongs();
+				}
+			});
 		}
-		// 如果没有扫描到媒体文件，itemsList的size为0，因为上面new过了
+		GlobalSearchIndex.getInstance().update(GlobalSearchIndex.TYPE_ALBUM,
+				itemsList);
 		return itemsList;
 	}
-
-	@Override
-	public void deliverResult(List<AlbumInfo> data) {
-		Log.i(TAG, "deliverResult");
-		if (isReset()) {
-			// An async query came in while the loader is stopped. We
-			// don't need the result.
-			if (data != null) {
-				onReleaseResources(data);
-			}
-		}
-		List<AlbumInfo> oldList = data;
-		mArtistInfoList = data;
-
-		if (isStarted()) {
-			// If the Loader is currently started, we can immediately
-			// deliver its results.
-			super.deliverResult(data);
-		}
-
-		// At this point we can release the resources associated with
-		// 'oldApps' if needed; now that the new result is delivered we
-		// know that it is no longer in use.
-		if (oldList != null) {
-			onReleaseResources(oldList);
-		}
-	}
-
-	protected void onReleaseResources(List<AlbumInfo> data) {
-		Log.i(TAG, "onReleaseResources");
-		// For a simple List<> there is nothing to do. For something
-		// like a Cursor, we would close it here.
-	}
-
-	@Override
-	protected void onStartLoading() {
-		Log.i(TAG, "onStartLoading");
-		if (mArtistInfoList != null) {
-			// If we currently have a result available, deliver it
-			// immediately.
-			deliverResult(mArtistInfoList);
-		}
-		// If the data has changed since the last time it was loaded
-		// or is not currently available, start a load.
-		forceLoad();
-	}
-
-	@Override
-	protected void onStopLoading() {
-		Log.i(TAG, "onStartLoading");
-		super.onStopLoading();
-		// Attempt to cancel the current load task if possible.
-		cancelLoad();
-	}
-
-	@Override
-	public void onCanceled(List<AlbumInfo> data) {
-		super.onCanceled(data);
-		Log.i(TAG, "onCanceled");
-		// At this point we can release the resources associated with 'data'
-		// if needed.
-		onReleaseResources(data);
-	}
-
-	@Override
-	protected void onReset() {
-		super.onReset();
-		Log.i(TAG, "onReset");
-		// Ensure the loader is stopped
-		onStopLoading();
-
-		// At this point we can release the resources associated with 'data'
-		// if needed.
-		if (mArtistInfoList != null) {
-			onReleaseResources(mArtistInfoList);
-			mArtistInfoList = null;
-		}
-	}
-
-	@Override
-	protected void onForceLoad() {
-		// TODO Auto-generated method stub
-		super.onForceLoad();
-	}
-
 }
@@ -0,0 +1,343 @@
+package com.lq.loader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lq.entity.TrackStore;
+
+/**
+ * 文件夹索引，由媒体库快照中的歌曲建立的路径前缀树。
+ * <p>
+ * 每个节点是路径中的一级文件夹，记录直接位于其中的歌曲（在TrackStore中的行号，按标题排列）、
+ * 子文件夹，以及直接位于其中的和包括子文件夹在内的歌曲数目、总大小、总时长。打开一个文件夹只需沿路径逐级查找子节点，
+ * 不必再扫描所有歌曲；由子节点可以逐级浏览嵌套的文件夹。MediaStore中所有的音频文件都会计入，不限于某几种格式。
+ * <p>
+ * build()扫描一遍歌曲建立整个索引。增量同步后用update()由上一个索引得到新的索引：未变化的歌曲只需换成新表中的行号，
+ * 各文件夹的统计值减去删除的、加上新增的歌曲，只有新增的歌曲需要按路径查找文件夹，没有歌曲的文件夹被剪掉。
+ * 建好后不再修改，可以在多个线程间共享。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class FolderIndex {
+	/** 路径中的一级文件夹 */
+	public static class Node {
+		private final String mName;
+		private final String mPath;
+		private final Node mParent;
+		private final HashMap<String, Node> mChildMap = new HashMap<String, Node>();
+
+		/** 子文件夹，按名称排列 */
+		private List<Node> mChildren = Collections.emptyList();
+
+		/** 直接位于此文件夹中的歌曲的行号，按标题排列 */
+		private int[] mRows = EMPTY_ROWS;
+
+		/** 直接位于此文件夹中的歌曲的总大小和总时长 */
+		private long mSize = 0;
+		private long mDuration = 0;
+
+		/** 包括子文件夹在内的歌曲总数、总大小和总时长 */
+		private int mTotalTrackCount = 0;
+		private long mTotalSize = 0;
+		private long mTotalDuration = 0;
+
+		private Node(String name, String path, Node parent) {
+			mName = name;
+			mPath = path;
+			mParent = parent;
+		}
+
+		/** 文件夹名称，如music；根节点为空字符串 */
+		public String getName() {
+			return mName;
+		}
+
+		/** 文件夹的路径，如/storage/sdcard0/MIUI/music；根节点为空字符串 */
+		public String getPath() {
+			return mPath;
+		}
+
+		/** 上一级文件夹，根节点为null */
+		public Node getParent() {
+			return mParent;
+		}
+
+		/** 含有歌曲的子文件夹，按名称排列 */
+		public List<Node> getChildren() {
+			return mChildren;
+		}
+
+		/** 名称为name的子文件夹，没有时返回null */
+		public Node getChild(String name) {
+			return mChildMap.get(name);
+		}
+
+		/** 直接位于此文件夹中的歌曲在TrackStore中的行号，按标题排列，调用者不能修改 */
+		public int[] getRows() {
+			return mRows;
+		}
+
+		/** 直接位于此文件夹中的歌曲数目 */
+		public int getTrackCount() {
+			return mRows.length;
+		}
+
+		/** 直接位于此文件夹中的歌曲的总大小，单位为字节 */
+		public long getSize() {
+			return mSize;
+		}
+
+		/** 直接位于此文件夹中的歌曲的总时长，单位为毫秒 */
+		public long getDuration() {
+			return mDuration;
+		}
+
+		/** 包括子文件夹在内的歌曲总数 */
+		public int getTotalTrackCount() {
+			return mTotalTrackCount;
+		}
+
+		/** 包括子文件夹在内的歌曲的总大小，单位为字节 */
+		public long getTotalSize() {
+			return mTotalSize;
+		}
+
+		/** 包括子文件夹在内的歌曲的总时长，单位为毫秒 */
+		public long getTotalDuration() {
+			return mTotalDuration;
+		}
+	}
+
+	private static final int[] EMPTY_ROWS = new int[0];
+
+	private static final Comparator<Node> NAME_COMPARATOR = new Comparator<Node>() {
+		@Override
+		public int compare(Node lhs, Node rhs) {
+			return lhs.mName.compareTo(rhs.mName);
+		}
+	};
+
+	private final Node mRoot = new Node("", "", null);
+
+	private FolderIndex() {
+	}
+
+	/**
+	 * 由快照中的歌曲建立索引
+	 *
+	 * @param rows
+	 *            歌曲在store中的行号，按标题排列
+	 */
+	public static FolderIndex build(TrackStore store, int[] rows) {
+		FolderIndex index = new FolderIndex();
+
+		// 统计每个文件夹直接含有的歌曲数目，只为含有歌曲的文件夹插入路径
+		int[] counts = new int[store.getFolderCount()];
+		for (int row : rows) {
+			counts[store.getFolderRef(row)]++;
+		}
+		Node[] nodes = new Node[counts.length];
+		for (int ref = 0; ref < counts.length; ref++) {
+			if (counts[ref] > 0) {
+				nodes[ref] = index.insert(store.getFolderPath(ref));
+				nodes[ref].mRows = new int[counts[ref]];
+				counts[ref] = 0;
+			}
+		}
+
+		// 按原来的顺序填入行号，因此各文件夹中的歌曲仍按标题排列
+		for (int row : rows) {
+			Node node = nodes[store.getFolderRef(row)];
+			node.mRows[counts[store.getFolderRef(row)]++] = row;
+			node.mSize += store.getSize(row);
+			node.mDuration += store.getDuration(row);
+		}
+		finish(index.mRoot);
+		return index;
+	}
+
+	/**
+	 * 由上一个索引和增量同步的结果得到新的索引，上一个索引不变
+	 *
+	 * @param oldStore
+	 *            上一个索引所用的歌曲表
+	 * @param oldToNew
+	 *            oldStore中每一行在新表中的行号，已删除或修改过的为-1。未变化的歌曲的先后顺序不变
+	 * @param added
+	 *            新增或修改过的、符合过滤设置的歌曲在新表中的行号，从小到大排列
+	 */
+	public static FolderIndex update(FolderIndex previous,
+			TrackStore oldStore, int[] oldToNew, TrackStore store, int[] added) {
+		FolderIndex index = new FolderIndex();
+		copy(previous.mRoot, index.mRoot, oldStore, oldToNew);
+
+		// 新增的歌曲按文件夹分组，行号是从小到大的，分组后仍然如此
+		HashMap<Node, int[]> addedRows = new HashMap<Node, int[]>();
+		HashMap<Node, Integer> addedCounts = new HashMap<Node, Integer>();
+		for (int row : added) {
+			Node node = index.insert(store.getFolder(row));
+			int[] rows = addedRows.get(node);
+			int count = rows == null ? 0 : addedCounts.get(node);
+			if (rows == null || count == rows.length) {
+				rows = Arrays.copyOf(rows == null ? EMPTY_ROWS : rows,
+						Math.max(4, count * 2));
+				addedRows.put(node, rows);
+			}
+			rows[count] = row;
+			addedCounts.put(node, count + 1);
+			node.mSize += store.getSize(row);
+			node.mDuration += store.getDuration(row);
+		}
+		for (Map.Entry<Node, int[]> entry : addedRows.entrySet()) {
+			Node node = entry.getKey();
+			node.mRows = merge(node.mRows, entry.getValue(),
+					addedCounts.get(node));
+		}
+		finish(index.mRoot);
+		return index;
+	}
+
+	/** 复制from的子树到to，行号换成新表中的，统计值减去已删除的歌曲 */
+	private static void copy(Node from, Node to, TrackStore oldStore,
+			int[] oldToNew) {
+		int[] rows = new int[from.mRows.length];
+		int count = 0;
+		to.mSize = from.mSize;
+		to.mDuration = from.mDuration;
+		for (int row : from.mRows) {
+			if (oldToNew[row] >= 0) {
+				rows[count++] = oldToNew[row];
+			} else {
+				to.mSize -= oldStore.getSize(row);
+				to.mDuration -= oldStore.getDuration(row);
+			}
+		}
+		to.mRows = count == 0 ? EMPTY_ROWS : (count == rows.length ? rows
+				: Arrays.copyOf(rows, count));
+		for (Node child : from.mChildren) {
+			Node copy = new Node(child.mName, child.mPath, to);
+			to.mChildMap.put(child.mName, copy);
+			copy(child, copy, oldStore, oldToNew);
+		}
+	}
+
+	/** 归并两组从小到大排列的行号 */
+	private static int[] merge(int[] a, int[] b, int bCount) {
+		int[] result = new int[a.length + bCount];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < a.length && j < bCount) {
+			result[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+		}
+		while (i < a.length) {
+			result[k++] = a[i++];
+		}
+		while (j < bCount) {
+			result[k++] = b[j++];
+		}
+		return result;
+	}
+
+	/** 插入一个文件夹的路径，返回它的节点 */
+	private Node insert(String path) {
+		Node node = mRoot;
+		int start = 0;
+		while (start < path.length()) {
+			int end = path.indexOf(File.separatorChar, start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (end > start) {
+				String name = path.substring(start, end);
+				Node child = node.mChildMap.get(name);
+				if (child == null) {
+					child = new Node(name, path.substring(0, end), node);
+					node.mChildMap.put(name, child);
+				}
+				node = child;
+			}
+			start = end + 1;
+		}
+		return node;
+	}
+
+	/** 累计各文件夹的统计值，剪掉没有歌曲的文件夹，并排列子文件夹 */
+	private static void finish(Node node) {
+		node.mTotalTrackCount = node.mRows.length;
+		node.mTotalSize = node.mSize;
+		node.mTotalDuration = node.mDuration;
+		if (node.mChildMap.isEmpty()) {
+			node.mChildren = Collections.emptyList();
+			return;
+		}
+		List<Node> children = new ArrayList<Node>(node.mChildMap.size());
+		for (Node child : node.mChildMap.values()) {
+			finish(child);
+			if (child.mTotalTrackCount > 0) {
+				children.add(child);
+				node.mTotalTrackCount += child.mTotalTrackCount;
+				node.mTotalSize += child.mTotalSize;
+				node.mTotalDuration += child.mTotalDuration;
+			}
+		}
+		if (children.size() < node.mChildMap.size()) {
+			node.mChildMap.clear();
+			for (Node child : children) {
+				node.mChildMap.put(child.mName, child);
+			}
+		}
+		Collections.sort(children, NAME_COMPARATOR);
+		node.mChildren = Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * 直接含有歌曲的文件夹，按路径排列
+	 */
+	public List<Node> getFoldersWithTracks() {
+		List<Node> folders = new ArrayList<Node>();
+		collect(mRoot, folders);
+		return folders;
+	}
+
+	private static void collect(Node node, List<Node> folders) {
+		if (node.mRows.length > 0) {
+			folders.add(node);
+		}
+		for (Node child : node.mChildren) {
+			collect(child, folders);
+		}
+	}
+
+	/** 根节点，即所有文件夹的最上一级 */
+	public Node getRoot() {
+		return mRoot;
+	}
+
+	/**
+	 * 查找指定路径的文件夹，只需逐级查找路径中的各级文件夹
+	 *
+	 * @return 文件夹的节点；其中及其子文件夹中都没有歌曲时返回null
+	 */
+	public Node find(String path) {
+		Node node = mRoot;
+		int start = 0;
+		while (node != null && start < path.length()) {
+			int end = path.indexOf(File.separatorChar, start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (end > start) {
+				node = node.mChildMap.get(path.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return node;
+	}
+}
@@ -0,0 +1,73 @@
+package com.lq.loader;
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+import android.util.Log;
+
+import com.lq.search.GlobalSearchIndex;
+
+/**
+ * 为全局搜索加载歌手、专辑、文件夹、播放列表，填充到{@link GlobalSearchIndex}中。
+ * <p>
+ * 直接复用各自的装载器在当前线程中从媒体库取数据，与各浏览页面共享同一个快照；之后各页面重新加载数据时也会更新索引。
+ * 歌曲不在全局索引中，直接在歌曲列表中搜索。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class GlobalSearchIndexLoader extends AsyncTaskLoader<GlobalSearchIndex> {
+	private final String TAG = GlobalSearchIndexLoader.class.getSimpleName();
+
+	private GlobalSearchIndex mIndex = null;
+
+	public GlobalSearchIndexLoader(Context context) {
+		super(context);
+	}
+
+	@Override
+	public GlobalSearchIndex loadInBackground() {
+		Log.i(TAG, "loadInBackground");
+		Context context = getContext();
+		// 各装载器的loadInBackground()会把结果更新到全局搜索索引中
+		new ArtistInfoRetrieveLoader(context, null).loadInBackground();
+		new AlbumInfoRetrieveLoader(context, null).loadInBackground();
+		new FolderInfoRetreiveLoader(context).loadInBackground();
+		new PlaylistInfoRetrieveLoader(context, null, null, null)
+				.loadInBackground();
+		return GlobalSearchIndex.getInstance();
+	}
+
+	@Override
+	public void deliverResult(GlobalSearchIndex data) {
+		Log.i(TAG, "deliverResult");
+		mIndex = data;
+		if (isStarted()) {
+			super.deliverResult(data);
+		}
+	}
+
+	@Override
+	protected void onStartLoading() {
+		Log.i(TAG, "onStartLoading");
+		if (mIndex != null) {
+			// 索引已经填充过了，之后由各页面的装载器增量更新
+			deliverResult(mIndex);
+		} else {
+			forceLoad();
+		}
+	}
+
+	@Override
+	protected void onStopLoading() {
+		Log.i(TAG, "onStopLoading");
+		super.onStopLoading();
+		cancelLoad();
+	}
+
+	@Override
+	protected void onReset() {
+		super.onReset();
+		Log.i(TAG, "onReset");
+		onStopLoading();
+		mIndex = null;
+	}
+}
@@ -0,0 +1,271 @@
+package com.lq.loader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.lq.entity.TrackStore;
+import com.lq.util.ColumnIO;
+
+/**
+ * 媒体库的二进制快照，保存在应用的files目录中。下次启动时直接内存映射读回上次的歌曲表，不必查询MediaStore、
+ * 转换拼音，列表可以立即显示，之后再在后台与MediaStore增量同步。
+ * <p>
+ * 文件格式（大端字节序）：
+ *
+ * <pre>
+ * int    魔数"XMLS"
+ * int    版本号
+ * UTF    MediaStore的版本（见MediaStore.getVersion()），媒体数据库重建后快照作废
+ * long   水位线：已读取的歌曲中最大的ID
+ * long   水位线：已读取的歌曲中最大的修改时间
+ * int    专辑封面数目A
+ * int[A] 专辑ID
+ * 字符串列[A] 专辑封面的路径
+ * 歌曲表，见TrackStore.writeTo()：字典，以及按列保存的ID、时长、大小、日期、字典位置、标题、拼音索引、排序键、文件名
+ * int    魔数，说明文件是完整的
+ * </pre>
+ *
+ * 艺术家、专辑、文件夹的分组由歌曲表中的字典位置在内存中重新统计，开销很小，所以不保存。
+ * 文件不存在、已损坏、版本不符、应用更新过或者MediaStore的版本变化时都当作没有快照，照常查询。
+ * MediaStore的版本变化时快照中的歌曲表仍可由{@link #loadStore(Context)}读出，查询时ID、修改时间、
+ * 标题和艺术家都没有变化的歌曲直接使用其中的拼音索引，不必重新转换。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class LibrarySnapshot {
+	private static final String TAG = LibrarySnapshot.class.getSimpleName();
+
+	public static final int MAGIC = 0x584d4c53;
+	public static final int VERSION = 1;
+
+	private static final String FILE_NAME = "library.dat";
+
+	/** 保证同时只有一个线程在写文件 */
+	private static final Object sSaveLock = new Object();
+
+	private final TrackStore mStore;
+	private final HashMap<Integer, String> mAlbumArts;
+	private final long mMaxId;
+	private final long mMaxDateModified;
+
+	private LibrarySnapshot(TrackStore store,
+			HashMap<Integer, String> albumArts, long maxId,
+			long maxDateModified) {
+		mStore = store;
+		mAlbumArts = albumArts;
+		mMaxId = maxId;
+		mMaxDateModified = maxDateModified;
+	}
+
+	/**
+	 * 读取快照
+	 *
+	 * @return 快照；没有有效的快照时返回null
+	 */
+	public static LibrarySnapshot load(Context context) {
+		String mediaStoreVersion = MediaStore.getVersion(context);
+		if (mediaStoreVersion == null) {
+			return null;
+		}
+		return load(context, mediaStoreVersion);
+	}
+
+	/**
+	 * 读取快照中的歌曲表，不检查MediaStore的版本，只用来取得仍然有效的拼音索引
+	 *
+	 * @return 歌曲表；文件不存在、已损坏、版本不符或者应用更新过时返回null
+	 */
+	public static TrackStore loadStore(Context context) {
+		LibrarySnapshot snapshot = load(context, null);
+		return snapshot == null ? null : snapshot.mStore;
+	}
+
+	/**
+	 * @param mediaStoreVersion
+	 *            当前MediaStore的版本，与快照中的不同时当作没有快照；为null时不检查
+	 */
+	private static LibrarySnapshot load(Context context,
+			String mediaStoreVersion) {
+		long start = System.nanoTime();
+		File file = new File(context.getFilesDir(), FILE_NAME);
+		try {
+			long updateTime = context.getPackageManager().getPackageInfo(
+					context.getPackageName(), 0).lastUpdateTime;
+			if (!file.exists() || file.lastModified() < updateTime) {
+				return null;
+			}
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			ByteBuffer buffer;
+			try {
+				FileChannel channel = raf.getChannel();
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+			} finally {
+				raf.close();
+			}
+			LibrarySnapshot snapshot = read(buffer, mediaStoreVersion);
+			if (snapshot == null) {
+				// 快照本身完好，保留下来供查询时取拼音索引，查询后会被新的快照替换
+				Log.i(TAG, "media store version changed");
+				return null;
+			}
+			Log.i(TAG, "loaded " + snapshot.mStore.size() + " tracks, "
+					+ (System.nanoTime() - start) / 1000000 + "ms");
+			return snapshot;
+		} catch (IOException e) {
+			Log.e(TAG, "load library snapshot failed", e);
+			file.delete();
+		} catch (BufferUnderflowException e) {
+			Log.e(TAG, "library snapshot is truncated", e);
+			file.delete();
+		} catch (NameNotFoundException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * @return 快照；MediaStore的版本与mediaStoreVersion不同时返回null
+	 * @throws IOException
+	 *             文件已损坏或者版本不符
+	 */
+	static LibrarySnapshot read(ByteBuffer in, String mediaStoreVersion)
+			throws IOException {
+		if (in.capacity() < 8 || in.getInt() != MAGIC
+				|| in.getInt() != VERSION) {
+			throw new IOException("not a library snapshot of version "
+					+ VERSION);
+		}
+		String version = readUTF(in);
+		if (mediaStoreVersion != null && !version.equals(mediaStoreVersion)) {
+			return null;
+		}
+		long maxId = in.getLong();
+		long maxDateModified = in.getLong();
+		int albumCount = in.getInt();
+		if (albumCount < 0 || albumCount * 4L > in.remaining()) {
+			throw new IOException("album count " + albumCount + " is corrupt");
+		}
+		int[] albumIds = new int[albumCount];
+		String[] albumArtPaths = new String[albumCount];
+		ColumnIO.readInts(in, albumIds, albumCount);
+		ColumnIO.readStrings(in, albumArtPaths, albumCount);
+		HashMap<Integer, String> albumArts = new HashMap<Integer, String>();
+		for (int i = 0; i < albumCount; i++) {
+			albumArts.put(albumIds[i], albumArtPaths[i]);
+		}
+		TrackStore store = TrackStore.readFrom(in);
+		if (in.remaining() != 4 || in.getInt() != MAGIC) {
+			throw new IOException("library snapshot is truncated");
+		}
+		return new LibrarySnapshot(store, albumArts, maxId, maxDateModified);
+	}
+
+	/** 读取DataOutputStream.writeUTF()写出的字符串，只还原ASCII字符，其他字符不会与原来的相等 */
+	private static String readUTF(ByteBuffer in) throws IOException {
+		int length = in.getShort() & 0xffff;
+		if (length > in.remaining()) {
+			throw new IOException("string length " + length + " is corrupt");
+		}
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (in.get() & 0x7f);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * 写出快照，先写到临时文件再改名，写出失败时删除原来的快照。可以在任何线程中调用
+	 *
+	 * @param store
+	 *            按标题排列的全部歌曲，不会被修改
+	 */
+	public static void save(Context context, TrackStore store,
+			HashMap<Integer, String> albumArts, long maxId,
+			long maxDateModified) {
+		long start = System.nanoTime();
+		String mediaStoreVersion = MediaStore.getVersion(context);
+		if (mediaStoreVersion == null) {
+			return;
+		}
+		File file = new File(context.getFilesDir(), FILE_NAME);
+		synchronized (sSaveLock) {
+			File temp = new File(file.getPath() + ".tmp");
+			try {
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(temp),
+								8192));
+				try {
+					write(out, mediaStoreVersion, store, albumArts, maxId,
+							maxDateModified);
+				} finally {
+					out.close();
+				}
+				if (!temp.renameTo(file)) {
+					throw new IOException("rename " + temp + " failed");
+				}
+				Log.i(TAG, "saved " + store.size() + " tracks, "
+						+ file.length() / 1024 + "KB, "
+						+ (System.nanoTime() - start) / 1000000 + "ms");
+			} catch (IOException e) {
+				Log.e(TAG, "save library snapshot failed", e);
+				temp.delete();
+				file.delete();
+			}
+		}
+	}
+
+	/** 按文件格式写出快照的全部内容，见read() */
+	static void write(DataOutputStream out, String mediaStoreVersion,
+			TrackStore store, HashMap<Integer, String> albumArts, long maxId,
+			long maxDateModified) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(mediaStoreVersion);
+		out.writeLong(maxId);
+		out.writeLong(maxDateModified);
+		int[] albumIds = new int[albumArts.size()];
+		String[] albumArtPaths = new String[albumArts.size()];
+		int i = 0;
+		for (Map.Entry<Integer, String> entry : albumArts.entrySet()) {
+			albumIds[i] = entry.getKey();
+			albumArtPaths[i] = entry.getValue();
+			i++;
+		}
+		out.writeInt(albumIds.length);
+		ColumnIO.writeInts(out, albumIds, albumIds.length);
+		ColumnIO.writeStrings(out, albumArtPaths, albumArtPaths.length);
+		store.writeTo(out);
+		out.writeInt(MAGIC);
+	}
+
+	public TrackStore getStore() {
+		return mStore;
+	}
+
+	public HashMap<Integer, String> getAlbumArts() {
+		return mAlbumArts;
+	}
+
+	public long getMaxId() {
+		return mMaxId;
+	}
+
+	public long getMaxDateModified() {
+		return mMaxDateModified;
+	}
+}
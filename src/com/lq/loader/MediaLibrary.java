@@ -0,0 +1,934 @@
+package com.lq.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.provider.MediaStore.Audio.Albums;
+import android.provider.MediaStore.Audio.Media;
+import android.provider.MediaStore.Audio.Playlists;
+import android.util.Log;
+
+import com.lq.dao.PlaylistDAO;
+import com.lq.entity.AlbumInfo;
+import com.lq.entity.ArtistInfo;
+import com.lq.entity.FolderInfo;
+import com.lq.entity.TrackInfo;
+import com.lq.entity.TrackStore;
+import com.lq.fragment.SettingFragment;
+import com.lq.util.Constant;
+import com.lq.util.SortKeyHelper;
+import com.lq.util.StringHelper;
+import com.lq.util.TrackSortOrders;
+
+/**
+ * 进程内共享的媒体库。第一次使用时用一次查询读出所有歌曲，在内存中按艺术家、专辑、文件夹分组，
+ * 各浏览页面的装载器都只是从这里取数据的视图（见MediaLibraryLoader），切换页面时不必再查询数据库。
+ * 歌曲按列保存在TrackStore中，分组和过滤都直接读取各列，TrackInfo只在使用时才创建。
+ * <p>
+ * 数据以不可变的快照（Snapshot）发布，所有装载器共享同一个快照。歌曲过滤设置只影响由全部歌曲筛选出的快照，
+ * 设置改变时不必重新查询。
+ * <p>
+ * 之后媒体库的变化由ContentObserver监听，增量地同步：只查询ID或修改时间超过水位线的行（新增或修改的歌曲），
+ * 与所有歌曲的ID比较找出已删除的歌曲，再把这些变化合并到内存中的歌曲列表。媒体扫描时会连续收到很多通知，
+ * 最后一次通知后等待SYNC_DELAY才同步，但最多等待MAX_SYNC_DELAY。同步在下一次取快照时进行，
+ * 因此没有页面在显示时不会查询。
+ * <p>
+ * 每次查询或同步后，歌曲表都在后台写成二进制快照（见LibrarySnapshot）。启动时优先读回快照，立即发布，
+ * SYNC_DELAY后再与MediaStore增量同步；快照无效时照常查询。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class MediaLibrary {
+	private static final String TAG = MediaLibrary.class.getSimpleName();
+
+	/** 要从MediaStore检索的列 */
+	private static final String[] PROJECTION = new String[] { Media._ID,
+			Media.TITLE, Media.ALBUM, Media.ALBUM_ID, Media.ARTIST,
+			Media.DATA, Media.SIZE, Media.DURATION, Media.DISPLAY_NAME,
+			Media.DATE_MODIFIED, Media.DATE_ADDED };
+
+	/** 收到最后一次变化通知后等待多久再同步，单位为毫秒 */
+	private static final long SYNC_DELAY = 1000;
+
+	/** 从收到第一次变化通知算起，最多等待多久就要同步，避免媒体扫描期间一直不更新 */
+	private static final long MAX_SYNC_DELAY = 5000;
+
+	/** 第一次查询时，读到这么多首歌曲就发布第一个部分快照，大约是一屏的条目数 */
+	private static final int FIRST_BATCH_SIZE = 32;
+
+	/** 媒体库发生变化时的监听器，在主线程中回调 */
+	public interface OnLibraryChangeListener {
+		public void onLibraryChanged();
+	}
+
+	/**
+	 * 第一次查询时的进度监听器，每读完一批歌曲就收到一个由已读取的歌曲组成的部分快照。
+	 * 在查询线程中回调，并且持有媒体库的锁，因此不能在回调中再取快照
+	 */
+	public interface OnPartialSnapshotListener {
+		public void onPartialSnapshot(Snapshot snapshot);
+	}
+
+	/** 一次增量同步前后歌曲表的对应关系 */
+	private static class SyncDelta {
+		/** 同步前的歌曲表 */
+		final TrackStore mOldStore;
+
+		/** mOldStore中每一行在新表中的行号，已删除或修改过的为-1 */
+		final int[] mOldToNew;
+
+		/** 新增或修改过的歌曲在新表中的行号，从小到大排列 */
+		final int[] mAddedRows;
+
+		SyncDelta(TrackStore oldStore, int[] oldToNew, int[] addedRows) {
+			mOldStore = oldStore;
+			mOldToNew = oldToNew;
+			mAddedRows = addedRows;
+		}
+	}
+
+	/** 上次保存的歌曲表中的拼音索引，查询时按ID取出仍然有效的 */
+	private static class SavedKeys {
+		private final TrackStore mStore;
+		private final HashMap<Long, Integer> mRowById;
+
+		SavedKeys(TrackStore store) {
+			mStore = store;
+			mRowById = new HashMap<Long, Integer>(store.size() * 2);
+			for (int row = 0; row < store.size(); row++) {
+				mRowById.put(store.getId(row), row);
+			}
+		}
+
+		/**
+		 * 查找可以直接使用的行
+		 *
+		 * @return 上次的歌曲表中的行号；没有该歌曲或者ID、修改时间、标题、艺术家有变化时返回-1
+		 */
+		int find(long id, long dateModified, String title, String artist) {
+			Integer row = mRowById.get(id);
+			if (row == null || mStore.getDateModified(row) != dateModified
+					|| !equals(mStore.getTitle(row), title)
+					|| !equals(mStore.getArtist(row), artist)) {
+				return -1;
+			}
+			return row;
+		}
+
+		String getTitleKey(int row) {
+			return mStore.getTitleKey(row);
+		}
+
+		String getArtistKey(int row) {
+			return mStore.getArtistKey(row);
+		}
+
+		private static boolean equals(String lhs, String rhs) {
+			return lhs == null ? rhs == null : lhs.equals(rhs);
+		}
+	}
+
+	private static MediaLibrary sInstance = null;
+
+	/** 歌曲有变化，下一次取快照时要增量同步 */
+	private final AtomicBoolean mSyncPending = new AtomicBoolean();
+
+	/** 保证同时只有一个线程在查询，其他线程等待并共享查询结果 */
+	private final Object mLoadLock = new Object();
+
+	// 以下成员只在持有mLoadLock时访问
+	/** 全部歌曲，按标题的排序键排列 */
+	private TrackStore mStore = null;
+	private HashMap<Integer, String> mAlbumArts = null;
+
+	/** 每次mStore变化时加1，快照记录生成时的值，两者不同说明快照已过时 */
+	private int mTracksVersion = 0;
+
+	/** 水位线：已读取的歌曲中最大的ID和修改时间，超过它们的行是新增或修改过的 */
+	private long mMaxId = -1;
+	private long mMaxDateModified = -1;
+
+	/** 最后一次增量同步的变化，用来由上一个快照的文件夹索引得到新的，用过一次或mStore另有变化时置为null */
+	private SyncDelta mLastDelta = null;
+
+	/** 最后发布的快照 */
+	private volatile Snapshot mSnapshot = null;
+
+	/** 在后台按顺序写出二进制快照，后写的总是较新的歌曲表 */
+	private final ExecutorService mSaveExecutor = Executors
+			.newSingleThreadExecutor();
+
+	private final ArrayList<OnLibraryChangeListener> mListeners = new ArrayList<OnLibraryChangeListener>();
+
+	// 以下成员只在主线程中访问
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private boolean mObserverRegistered = false;
+
+	/** 等待同步的通知中是否有歌曲的变化，否则只有播放列表的变化 */
+	private boolean mTracksChanged = false;
+
+	/** 等待同步的第一次通知的时间，没有等待同步的通知时为0 */
+	private long mFirstChangeTime = 0;
+
+	private final Runnable mSyncRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mFirstChangeTime = 0;
+			if (mTracksChanged) {
+				mTracksChanged = false;
+				requestSync();
+			} else {
+				notifyPlaylistChanged();
+			}
+		}
+	};
+
+	/** 监听歌曲或播放列表的变化 */
+	private class LibraryObserver extends ContentObserver {
+		private final boolean mIsTracks;
+
+		public LibraryObserver(boolean isTracks) {
+			super(mHandler);
+			mIsTracks = isTracks;
+		}
+
+		@Override
+		public void onChange(boolean selfChange) {
+			// 播放列表的歌曲数目和总时长关联了歌曲表，外部删除歌曲、卸载SD卡或重新扫描后都会变化，缓存的统计值立即作废
+			PlaylistDAO.invalidateAllSummaries();
+			scheduleSync(mIsTracks);
+		}
+	}
+
+	private MediaLibrary() {
+	}
+
+	public static synchronized MediaLibrary getInstance() {
+		if (sInstance == null) {
+			sInstance = new MediaLibrary();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * 取得符合当前歌曲过滤设置的快照，第一次调用或有待同步的变化时才查询数据库，因此要在后台线程中调用
+	 */
+	public Snapshot getSnapshot(Context context) {
+		return getSnapshot(context, null);
+	}
+
+	/**
+	 * 取得符合当前歌曲过滤设置的快照，要在后台线程中调用
+	 *
+	 * @param listener
+	 *            本次调用进行第一次查询时，读取过程中的部分快照交给它，可以为null
+	 */
+	public Snapshot getSnapshot(Context context,
+			OnPartialSnapshotListener listener) {
+		SharedPreferences sp = PreferenceManager
+				.getDefaultSharedPreferences(context);
+		boolean filterBySize = sp.getBoolean(
+				SettingFragment.KEY_FILTER_BY_SIZE, true);
+		boolean filterByDuration = sp.getBoolean(
+				SettingFragment.KEY_FILTER_BY_DURATION, true);
+
+		synchronized (mLoadLock) {
+			if (mStore == null) {
+				// 第一次使用，注册监听器，读回二进制快照或者查询所有歌曲
+				registerObservers(context.getApplicationContext());
+				mSyncPending.set(false);
+				if (!restore(context.getApplicationContext())) {
+					query(context.getApplicationContext(), listener,
+							filterBySize, filterByDuration);
+					saveLibrary(context.getApplicationContext());
+				}
+				mTracksVersion++;
+				mLastDelta = null;
+			} else if (mSyncPending.getAndSet(false)) {
+				if (sync(context.getApplicationContext())) {
+					mTracksVersion++;
+					saveLibrary(context.getApplicationContext());
+				}
+			}
+
+			Snapshot snapshot = mSnapshot;
+			if (snapshot != null && snapshot.mVersion == mTracksVersion
+					&& snapshot.mFilterBySize == filterBySize
+					&& snapshot.mFilterByDuration == filterByDuration) {
+				return snapshot;
+			}
+
+			// 刚同步过并且过滤设置未变时，由上一个快照的文件夹索引增量地得到新的
+			SyncDelta delta = mLastDelta;
+			mLastDelta = null;
+			if (delta == null || snapshot == null
+					|| snapshot.mVersion != mTracksVersion - 1
+					|| snapshot.mFilterBySize != filterBySize
+					|| snapshot.mFilterByDuration != filterByDuration) {
+				delta = null;
+				snapshot = null;
+			}
+			snapshot = createSnapshot(mTracksVersion, filterBySize,
+					filterByDuration, mStore, mAlbumArts, snapshot, delta);
+			mSnapshot = snapshot;
+			return snapshot;
+		}
+	}
+
+	/**
+	 * 由按标题排列的歌曲表筛选出符合过滤设置的歌曲，生成快照
+	 *
+	 * @param previous
+	 *            同步前的、过滤设置相同的快照，与delta同时给出时增量地更新它的文件夹索引，可以为null
+	 * @param delta
+	 *            由previous的歌曲表到store的变化，可以为null
+	 */
+	private static Snapshot createSnapshot(int version, boolean filterBySize,
+			boolean filterByDuration, TrackStore store,
+			HashMap<Integer, String> albumArts, Snapshot previous,
+			SyncDelta delta) {
+		long start = System.nanoTime();
+		int[] rows = filterRows(store, null, filterBySize, filterByDuration);
+		FolderIndex folderIndex;
+		if (previous != null && delta != null) {
+			folderIndex = FolderIndex.update(previous.mFolderIndex,
+					delta.mOldStore, delta.mOldToNew, store,
+					filterRows(store, delta.mAddedRows, filterBySize,
+							filterByDuration));
+		} else {
+			folderIndex = FolderIndex.build(store, rows);
+		}
+		Snapshot snapshot = new Snapshot(version, filterBySize,
+				filterByDuration, store, rows, albumArts, folderIndex);
+		Log.i(TAG, "snapshot " + version + ": " + rows.length + " tracks, "
+				+ snapshot.getArtists().size() + " artists, "
+				+ snapshot.getAlbums().size() + " albums, "
+				+ snapshot.getFolders().size() + " folders, "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		return snapshot;
+	}
+
+	/**
+	 * 由游标中的所有歌曲直接建立快照，不经过单例，不读写二进制快照，也不注册监听器。
+	 * 只供tools中的基准测试通过同一个包中的入口调用
+	 *
+	 * @param cursor
+	 *            含有PROJECTION中各列的游标，读完后不关闭
+	 */
+	static Snapshot buildSnapshot(Cursor cursor, boolean filterBySize,
+			boolean filterByDuration) {
+		TrackStore unsorted = new TrackStore(cursor.getCount());
+		readTracks(cursor, null, null, unsorted, new int[1], Integer.MAX_VALUE);
+		return createSnapshot(0, filterBySize, filterByDuration,
+				sortedCopy(unsorted), new HashMap<Integer, String>(), null,
+				null);
+	}
+
+	/**
+	 * 筛选出符合过滤设置的行
+	 *
+	 * @param candidates
+	 *            要筛选的行号，为null时筛选表中所有的行
+	 * @return 符合过滤设置的行号，保持原来的顺序
+	 */
+	private static int[] filterRows(TrackStore store, int[] candidates,
+			boolean filterBySize, boolean filterByDuration) {
+		int total = candidates == null ? store.size() : candidates.length;
+		int[] rows = new int[total];
+		int count = 0;
+		for (int i = 0; i < total; i++) {
+			int row = candidates == null ? i : candidates[i];
+			if (filterBySize && store.getSize(row) <= Constant.FILTER_SIZE) {
+				continue;
+			}
+			if (filterByDuration
+					&& store.getDuration(row) <= Constant.FILTER_DURATION) {
+				continue;
+			}
+			rows[count++] = row;
+		}
+		return count < rows.length ? Arrays.copyOf(rows, count) : rows;
+	}
+
+	/**
+	 * 预先读回二进制快照，之后第一次取快照时不必再读，可以在欢迎界面显示期间调用。没有有效的快照时什么也不做，
+	 * 留给第一次取快照时查询（并分批发布）。要在后台线程中调用
+	 */
+	public void preload(Context context) {
+		synchronized (mLoadLock) {
+			if (mStore == null && restore(context.getApplicationContext())) {
+				registerObservers(context.getApplicationContext());
+				mSyncPending.set(false);
+				mTracksVersion++;
+				mLastDelta = null;
+			}
+		}
+	}
+
+	/**
+	 * 歌曲有变化（如删除了歌曲），下一次取快照时增量同步，并通知所有监听器重新加载。
+	 * 不必等待ContentObserver的通知，在主线程中调用
+	 */
+	public void requestSync() {
+		mSyncPending.set(true);
+		notifyListeners();
+	}
+
+	/** 播放列表有变化，歌曲不变，只通知所有监听器重新加载。在主线程中调用 */
+	public void notifyPlaylistChanged() {
+		notifyListeners();
+	}
+
+	public void registerListener(OnLibraryChangeListener listener) {
+		synchronized (mListeners) {
+			if (!mListeners.contains(listener)) {
+				mListeners.add(listener);
+			}
+		}
+	}
+
+	public void unregisterListener(OnLibraryChangeListener listener) {
+		synchronized (mListeners) {
+			mListeners.remove(listener);
+		}
+	}
+
+	private void notifyListeners() {
+		OnLibraryChangeListener[] listeners;
+		synchronized (mListeners) {
+			listeners = mListeners
+					.toArray(new OnLibraryChangeListener[mListeners.size()]);
+		}
+		for (OnLibraryChangeListener listener : listeners) {
+			listener.onLibraryChanged();
+		}
+	}
+
+	private void registerObservers(final Context context) {
+		// 在主线程中注册，之后的回调也都在主线程中
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (mObserverRegistered) {
+					return;
+				}
+				mObserverRegistered = true;
+				ContentResolver resolver = context.getContentResolver();
+				resolver.registerContentObserver(Media.EXTERNAL_CONTENT_URI,
+						true, new LibraryObserver(true));
+				resolver.registerContentObserver(
+						Playlists.EXTERNAL_CONTENT_URI, true,
+						new LibraryObserver(false));
+			}
+		});
+	}
+
+	/** 收到变化通知，推迟到通知停止SYNC_DELAY后再同步，但最多推迟到第一次通知后MAX_SYNC_DELAY */
+	private void scheduleSync(boolean tracksChanged) {
+		long now = SystemClock.uptimeMillis();
+		if (mFirstChangeTime == 0) {
+			mFirstChangeTime = now;
+		}
+		mTracksChanged |= tracksChanged;
+		mHandler.removeCallbacks(mSyncRunnable);
+		mHandler.postAtTime(mSyncRunnable,
+				Math.min(now + SYNC_DELAY, mFirstChangeTime + MAX_SYNC_DELAY));
+	}
+
+	/**
+	 * 读回二进制快照，SYNC_DELAY后再与MediaStore同步
+	 *
+	 * @return 是否有有效的快照
+	 */
+	private boolean restore(Context context) {
+		LibrarySnapshot snapshot = LibrarySnapshot.load(context);
+		if (snapshot == null) {
+			return false;
+		}
+		mStore = snapshot.getStore();
+		mAlbumArts = snapshot.getAlbumArts();
+		mMaxId = snapshot.getMaxId();
+		mMaxDateModified = snapshot.getMaxDateModified();
+		// 快照可能已过时，等装载器先用它显示出来再同步
+		mHandler.postDelayed(new Runnable() {
+			@Override
+			public void run() {
+				requestSync();
+			}
+		}, SYNC_DELAY);
+		return true;
+	}
+
+	/** 在后台写出当前的歌曲表 */
+	private void saveLibrary(final Context context) {
+		final TrackStore store = mStore;
+		final HashMap<Integer, String> albumArts = mAlbumArts;
+		final long maxId = mMaxId;
+		final long maxDateModified = mMaxDateModified;
+		mSaveExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				LibrarySnapshot.save(context, store, albumArts, maxId,
+						maxDateModified);
+			}
+		});
+	}
+
+	/**
+	 * 查询所有歌曲和专辑封面，歌曲的拼音索引尽量从上次保存的二进制快照中取得
+	 *
+	 * @param listener
+	 *            不为null时分批读取游标：先读FIRST_BATCH_SIZE首，之后每批与已读取的一样多，
+	 *            每读完一批都把已读取的歌曲排好序，生成部分快照交给它。批的大小成倍增长，
+	 *            因此总的额外开销与最后一次排序相当
+	 */
+	private void query(Context context, OnPartialSnapshotListener listener,
+			boolean filterBySize, boolean filterByDuration) {
+		// 歌曲的拼音索引在创建条目时生成，先确保拼音表已加载
+		StringHelper.initPinyinTable(context);
+		long start = System.nanoTime();
+		// 拼音索引已随歌曲表保存在二进制快照中，删除旧版本单独保存的拼音索引文件
+		context.deleteFile("search_index.dat");
+		TrackStore saved = LibrarySnapshot.loadStore(context);
+		SavedKeys keys = saved == null ? null : new SavedKeys(saved);
+		int[] convertedCount = new int[1];
+
+		TrackStore unsorted = new TrackStore(0);
+		Cursor cursor = context.getContentResolver().query(
+				Media.EXTERNAL_CONTENT_URI, PROJECTION, null, null, null);
+		if (cursor != null) {
+			unsorted = new TrackStore(cursor.getCount());
+			int batchSize = listener == null ? Integer.MAX_VALUE
+					: FIRST_BATCH_SIZE;
+			while (readTracks(cursor, keys, null, unsorted, convertedCount,
+					batchSize)) {
+				// 部分快照使用已读取的歌曲的副本，之后继续向unsorted中添加不会影响它
+				listener.onPartialSnapshot(createSnapshot(-1, filterBySize,
+						filterByDuration, sortedCopy(unsorted),
+						new HashMap<Integer, String>(), null, null));
+				batchSize = unsorted.size();
+			}
+			cursor.close();
+		}
+		TrackStore store = sortedCopy(unsorted);
+		Log.i(TAG, "queried " + store.size() + " tracks, " + convertedCount[0]
+				+ " converted, " + (System.nanoTime() - start) / 1000000
+				+ "ms");
+		logInternStats(unsorted);
+
+		mStore = store;
+		mAlbumArts = queryAlbumArts(context);
+		updateWatermark(store);
+	}
+
+	/**
+	 * 增量同步：查询超过水位线的行和所有歌曲的ID，把新增、修改、删除的歌曲合并到歌曲列表中。
+	 * 查询失败（如存储卡正在卸载）时重新标记为待同步，下一次取快照时再试
+	 *
+	 * @return 歌曲是否有变化
+	 */
+	private boolean sync(Context context) {
+		long start = System.nanoTime();
+		ContentResolver resolver = context.getContentResolver();
+
+		// 现有的所有歌曲的ID，不在其中的歌曲已被删除
+		HashSet<Long> ids = new HashSet<Long>();
+		Cursor cursor = resolver.query(Media.EXTERNAL_CONTENT_URI,
+				new String[] { Media._ID }, null, null, null);
+		if (cursor == null) {
+			mSyncPending.set(true);
+			return false;
+		}
+		while (cursor.moveToNext()) {
+			ids.add(cursor.getLong(0));
+		}
+		cursor.close();
+
+		// ID或修改时间超过水位线的是新增或修改过的歌曲
+		TrackStore changed = new TrackStore(0);
+		cursor = resolver.query(Media.EXTERNAL_CONTENT_URI, PROJECTION,
+				Media._ID + " > ? or " + Media.DATE_MODIFIED + " > ?",
+				new String[] { String.valueOf(mMaxId),
+						String.valueOf(mMaxDateModified) }, null);
+		if (cursor != null) {
+			StringHelper.initPinyinTable(context);
+			changed = new TrackStore(cursor.getCount());
+			readTracks(cursor, null, mStore, changed, new int[1],
+					Integer.MAX_VALUE);
+			cursor.close();
+		} else {
+			// 先只合并删除的歌曲，水位线不变，新增、修改的歌曲留到下一次同步
+			mSyncPending.set(true);
+		}
+		HashSet<Long> changedIds = new HashSet<Long>();
+		for (int row = 0; row < changed.size(); row++) {
+			changedIds.add(changed.getId(row));
+		}
+
+		// 保留未删除、未修改的歌曲，与新增、修改过的歌曲归并
+		TrackStore old = mStore;
+		int[] kept = new int[old.size()];
+		int keptCount = 0;
+		int removedCount = 0;
+		for (int row = 0; row < old.size(); row++) {
+			if (!ids.contains(old.getId(row))) {
+				removedCount++;
+			} else if (!changedIds.contains(old.getId(row))) {
+				kept[keptCount++] = row;
+			}
+		}
+		if (removedCount == 0 && changed.size() == 0) {
+			Log.i(TAG, "synced, no change, "
+					+ (System.nanoTime() - start) / 1000000 + "ms");
+			return false;
+		}
+		// 同时记下旧表中每一行和新增的歌曲在新表中的行号，供增量更新文件夹索引
+		int[] added = sortByTitle(changed);
+		TrackStore store = new TrackStore(keptCount + added.length);
+		int[] oldToNew = new int[old.size()];
+		Arrays.fill(oldToNew, -1);
+		int[] addedRows = new int[added.length];
+		int i = 0;
+		int j = 0;
+		while (i < keptCount || j < added.length) {
+			if (j == added.length
+					|| (i < keptCount && compareByTitle(old, kept[i],
+							changed, added[j]) <= 0)) {
+				oldToNew[kept[i]] = store.add(old, kept[i]);
+				i++;
+			} else {
+				addedRows[j] = store.add(changed, added[j]);
+				j++;
+			}
+		}
+		Log.i(TAG, "synced, " + changed.size() + " added or modified, "
+				+ removedCount + " removed, " + (System.nanoTime() - start)
+				/ 1000000 + "ms");
+		logInternStats(changed);
+
+		mLastDelta = new SyncDelta(old, oldToNew, addedRows);
+		mStore = store;
+		if (changed.size() > 0) {
+			mAlbumArts = queryAlbumArts(context);
+		}
+		updateWatermark(changed);
+		return true;
+	}
+
+	/** 按标题排列的歌曲表的副本 */
+	private static TrackStore sortedCopy(TrackStore unsorted) {
+		TrackStore store = new TrackStore(unsorted.size());
+		for (int row : sortByTitle(unsorted)) {
+			store.add(unsorted, row);
+		}
+		return store;
+	}
+
+	/** 表中所有行按标题的排序键排列后的行号，排序键相同的按ID排列 */
+	private static int[] sortByTitle(final TrackStore store) {
+		Integer[] order = new Integer[store.size()];
+		for (int row = 0; row < order.length; row++) {
+			order[row] = row;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer lhs, Integer rhs) {
+				return compareByTitle(store, lhs, store, rhs);
+			}
+		});
+		int[] rows = new int[order.length];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = order[i];
+		}
+		return rows;
+	}
+
+	/** 比较两张表中的两首歌曲，按标题的排序键排列，相同的按ID排列 */
+	private static int compareByTitle(TrackStore lhs, int lhsRow,
+			TrackStore rhs, int rhsRow) {
+		int result = SortKeyHelper.compare(lhs.getTitleSortKey(lhsRow),
+				rhs.getTitleSortKey(rhsRow));
+		if (result != 0) {
+			return result;
+		}
+		long l = lhs.getId(lhsRow);
+		long r = rhs.getId(rhsRow);
+		return l < r ? -1 : (l == r ? 0 : 1);
+	}
+
+	/**
+	 * 读取游标中所有的歌曲，添加到store中。重复的艺术家、专辑名、文件夹路径由store的字典去重，
+	 * 艺术家的拼音索引每个艺术家只取得一次
+	 *
+	 * @param keys
+	 *            上次保存的拼音索引，为null时重新转换标题的拼音
+	 * @param base
+	 *            已有的歌曲表，其中已有的艺术家直接使用它的拼音索引，可以为null
+	 * @param convertedCount
+	 *            convertedCount[0]累加重新转换拼音的歌曲数目
+	 * @param maxCount
+	 *            最多读取的歌曲数目
+	 * @return 游标中是否还有未读取的歌曲
+	 */
+	private static boolean readTracks(Cursor cursor, SavedKeys keys,
+			TrackStore base, TrackStore store, int[] convertedCount,
+			int maxCount) {
+		int index_id = cursor.getColumnIndex(Media._ID);
+		int index_title = cursor.getColumnIndex(Media.TITLE);
+		int index_data = cursor.getColumnIndex(Media.DATA);
+		int index_artist = cursor.getColumnIndex(Media.ARTIST);
+		int index_album = cursor.getColumnIndex(Media.ALBUM);
+		int index_album_id = cursor.getColumnIndex(Media.ALBUM_ID);
+		int index_duration = cursor.getColumnIndex(Media.DURATION);
+		int index_size = cursor.getColumnIndex(Media.SIZE);
+		int index_displayname = cursor.getColumnIndex(Media.DISPLAY_NAME);
+		int index_date_modified = cursor.getColumnIndex(Media.DATE_MODIFIED);
+		int index_date_added = cursor.getColumnIndex(Media.DATE_ADDED);
+		for (int i = 0; i < maxCount && cursor.moveToNext(); i++) {
+			long id = cursor.getLong(index_id);
+			long dateModified = cursor.getLong(index_date_modified);
+			String title = cursor.getString(index_title);
+			String artist = cursor.getString(index_artist);
+			int record = keys == null ? -1 : keys.find(id, dateModified,
+					title, artist);
+			String titleKey = null;
+			String artistKey = null;
+			if (record >= 0) {
+				// 快照中的拼音索引仍然有效
+				titleKey = keys.getTitleKey(record);
+			} else {
+				convertedCount[0]++;
+			}
+			// 表中已有的艺术家不再取拼音索引
+			if (store.findArtist(artist) < 0) {
+				int baseRef = base == null ? -1 : base.findArtist(artist);
+				if (baseRef >= 0) {
+					artistKey = base.getArtistNameKey(baseRef);
+				} else if (record >= 0) {
+					artistKey = keys.getArtistKey(record);
+				}
+			}
+			store.add(id, title, titleKey, artist, artistKey,
+					cursor.getString(index_album),
+					cursor.getInt(index_album_id),
+					cursor.getString(index_data),
+					cursor.getString(index_displayname),
+					cursor.getLong(index_duration),
+					cursor.getLong(index_size), dateModified,
+					cursor.getLong(index_date_added));
+		}
+		// 没有现成拼音索引的行在读完这一批后并行转换，之后才排序、发布
+		store.computeKeys();
+		return cursor.getPosition() < cursor.getCount() - 1;
+	}
+
+	/** 记录读取游标时字典去重的效果 */
+	private static void logInternStats(TrackStore store) {
+		int requested = store.getInternRequestCount();
+		int interned = store.getInternedCount();
+		Log.i(TAG, "interned " + requested + " strings into " + interned
+				+ ", dedup ratio "
+				+ String.format("%.1f", (float) requested / Math.max(1, interned))
+				+ ":1, saved about " + store.getInternSavedBytes() / 1024
+				+ "KB");
+	}
+
+	/** 专辑封面只在专辑表中有 */
+	private static HashMap<Integer, String> queryAlbumArts(Context context) {
+		HashMap<Integer, String> albumArts = new HashMap<Integer, String>();
+		Cursor cursor = context.getContentResolver().query(
+				Albums.EXTERNAL_CONTENT_URI,
+				new String[] { Albums._ID, Albums.ALBUM_ART },
+				Albums.ALBUM_ART + " is not null", null, null);
+		if (cursor != null) {
+			while (cursor.moveToNext()) {
+				albumArts.put(cursor.getInt(0), cursor.getString(1));
+			}
+			cursor.close();
+		}
+		return albumArts;
+	}
+
+	/** 把水位线提高到store中最大的ID和修改时间 */
+	private void updateWatermark(TrackStore store) {
+		for (int row = 0; row < store.size(); row++) {
+			mMaxId = Math.max(mMaxId, store.getId(row));
+			mMaxDateModified = Math.max(mMaxDateModified,
+					store.getDateModified(row));
+		}
+	}
+
+	/**
+	 * 媒体库的一个不可变的快照，包含符合歌曲过滤设置的所有歌曲，以及由它们得到的艺术家、专辑、文件夹。
+	 * 歌曲是TrackStore中的若干行，其中的条目被所有装载器共享，使用者不能修改。
+	 */
+	public static class Snapshot {
+		private final int mVersion;
+		private final boolean mFilterBySize;
+		private final boolean mFilterByDuration;
+
+		/** 歌曲所在的表，及符合过滤设置的行号，按标题排列 */
+		private final TrackStore mStore;
+		private final int[] mRows;
+
+		/** 所有歌曲的列表视图，TrackInfo在各装载器间共享 */
+		private final TrackStore.TrackList mTracks;
+
+		/** 艺术家、专辑，按名称的排序键排列 */
+		private final List<ArtistInfo> mArtists;
+		private final List<AlbumInfo> mAlbums;
+
+		/** 文件夹，按路径排列 */
+		private final List<FolderInfo> mFolders;
+
+		/** 所有歌曲的各种排列顺序，第一次使用时才计算 */
+		private TrackSortOrders mSortOrders = null;
+
+		/** 文件夹索引，含各级文件夹的歌曲数目、总大小、总时长 */
+		private final FolderIndex mFolderIndex;
+
+		private Snapshot(int version, boolean filterBySize,
+				boolean filterByDuration, TrackStore store, int[] rows,
+				HashMap<Integer, String> albumArts, FolderIndex folderIndex) {
+			mVersion = version;
+			mFilterBySize = filterBySize;
+			mFilterByDuration = filterByDuration;
+			mStore = store;
+			mRows = rows;
+			mTracks = store.asList(rows);
+			mFolderIndex = folderIndex;
+
+			// 艺术家按字典中的位置计数，不必比较字符串
+			int[] artistTracks = new int[store.getArtistCount()];
+			int[] artistAlbums = new int[store.getArtistCount()];
+			HashSet<Long> artistAlbumPairs = new HashSet<Long>();
+			HashMap<Integer, AlbumInfo> albums = new HashMap<Integer, AlbumInfo>();
+			for (int row : rows) {
+				int artistRef = store.getArtistRef(row);
+				int albumId = store.getAlbumId(row);
+				artistTracks[artistRef]++;
+				if (artistAlbumPairs.add(((long) artistRef << 32)
+						| (albumId & 0xffffffffL))) {
+					artistAlbums[artistRef]++;
+				}
+
+				AlbumInfo album = albums.get(albumId);
+				if (album == null) {
+					album = new AlbumInfo();
+					album.setAlbumId(albumId);
+					album.setAlbumName(store.getAlbum(row));
+					album.setArtWork(albumArts.get(albumId));
+					albums.put(albumId, album);
+				}
+				album.setNumberOfSongs(album.getNumberOfSongs() + 1);
+			}
+
+			List<ArtistInfo> artistList = new ArrayList<ArtistInfo>();
+			for (int ref = 0; ref < artistTracks.length; ref++) {
+				if (artistTracks[ref] > 0) {
+					ArtistInfo artist = new ArtistInfo();
+					artist.setArtistName(store.getArtistName(ref));
+					artist.setNumberOfTracks(artistTracks[ref]);
+					artist.setNumberOfAlbums(artistAlbums[ref]);
+					artistList.add(artist);
+				}
+			}
+			Collections.sort(artistList, new Comparator<ArtistInfo>() {
+				@Override
+				public int compare(ArtistInfo lhs, ArtistInfo rhs) {
+					return SortKeyHelper.compare(lhs.getSortKey(),
+							rhs.getSortKey());
+				}
+			});
+			mArtists = Collections.unmodifiableList(artistList);
+
+			List<AlbumInfo> albumList = new ArrayList<AlbumInfo>(
+					albums.values());
+			Collections.sort(albumList, new Comparator<AlbumInfo>() {
+				@Override
+				public int compare(AlbumInfo lhs, AlbumInfo rhs) {
+					return SortKeyHelper.compare(lhs.getSortKey(),
+							rhs.getSortKey());
+				}
+			});
+			mAlbums = Collections.unmodifiableList(albumList);
+
+			// 直接含有歌曲的文件夹的路径和名称，如/storage/sdcard0/MIUI/music和music
+			List<FolderInfo> folderList = new ArrayList<FolderInfo>();
+			for (FolderIndex.Node node : folderIndex.getFoldersWithTracks()) {
+				FolderInfo folder = new FolderInfo();
+				folder.setFolderPath(node.getPath());
+				folder.setFolderName(node.getName());
+				folder.setNumOfTracks(node.getTrackCount());
+				folderList.add(folder);
+			}
+			Collections.sort(folderList, new Comparator<FolderInfo>() {
+				@Override
+				public int compare(FolderInfo lhs, FolderInfo rhs) {
+					return lhs.getFolderPath().compareTo(rhs.getFolderPath());
+				}
+			});
+			mFolders = Collections.unmodifiableList(folderList);
+		}
+
+		/** 歌曲所在的表 */
+		public TrackStore getStore() {
+			return mStore;
+		}
+
+		/** 所有歌曲在表中的行号，按标题排列，调用者不能修改 */
+		public int[] getRows() {
+			return mRows;
+		}
+
+		public List<TrackInfo> getTracks() {
+			return mTracks;
+		}
+
+		public List<ArtistInfo> getArtists() {
+			return mArtists;
+		}
+
+		public List<AlbumInfo> getAlbums() {
+			return mAlbums;
+		}
+
+		public List<FolderInfo> getFolders() {
+			return mFolders;
+		}
+
+		/**
+		 * 所有歌曲的各种排列顺序，第一次调用时计算，之后共享
+		 *
+		 * @return 各种排列顺序；计算时线程被中断则返回null
+		 */
+		public synchronized TrackSortOrders getSortOrders() {
+			if (mSortOrders == null) {
+				mSortOrders = TrackSortOrders.build(mStore, mRows);
+			}
+			return mSortOrders;
+		}
+
+		/** 由所有歌曲建立的文件夹索引 */
+		public FolderIndex getFolderIndex() {
+			return mFolderIndex;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.lq.loader;
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+import android.util.Log;
+
+import com.lq.loader.MediaLibrary.OnLibraryChangeListener;
+
+/**
+ * 从共享的媒体库（见MediaLibrary）取数据的装载器，子类只需由快照得到自己的结果。
+ * <p>
+ * 已有结果时再次启动不会重新加载；媒体库发生变化时自动重新加载，停止期间发生的变化留到下次启动时加载。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public abstract class MediaLibraryLoader<D> extends AsyncTaskLoader<D>
+		implements OnLibraryChangeListener {
+	private final String TAG = getClass().getSimpleName();
+
+	private D mData = null;
+
+	private boolean mRegistered = false;
+
+	public MediaLibraryLoader(Context context) {
+		super(context);
+	}
+
+	@Override
+	public final D loadInBackground() {
+		Log.i(TAG, "loadInBackground");
+		return loadFromSnapshot(MediaLibrary.getInstance().getSnapshot(
+				getContext(), getPartialSnapshotListener()));
+	}
+
+	/** 由媒体库的快照得到本装载器的结果，在后台线程中调用，不能修改快照中的数据 */
+	protected abstract D loadFromSnapshot(MediaLibrary.Snapshot snapshot);
+
+	/** 需要在媒体库第一次查询期间收到部分快照时，子类返回一个监听器，默认为null */
+	protected MediaLibrary.OnPartialSnapshotListener getPartialSnapshotListener() {
+		return null;
+	}
+
+	/**
+	 * 发布加载过程中的部分结果，在主线程中调用。部分结果不会被缓存，之后仍会发布完整的结果；
+	 * 装载器已停止时直接丢弃
+	 */
+	protected void deliverPartialResult(D data) {
+		if (isReset() || !isStarted()) {
+			return;
+		}
+		super.deliverResult(data);
+	}
+
+	@Override
+	public void deliverResult(D data) {
+		Log.i(TAG, "deliverResult");
+		if (isReset()) {
+			// 装载器已被重置，不再需要这个结果
+			return;
+		}
+		mData = data;
+		if (isStarted()) {
+			super.deliverResult(data);
+		}
+	}
+
+	@Override
+	protected void onStartLoading() {
+		Log.i(TAG, "onStartLoading");
+		if (!mRegistered) {
+			MediaLibrary.getInstance().registerListener(this);
+			mRegistered = true;
+		}
+		if (mData != null) {
+			deliverResult(mData);
+		}
+		// 没有结果或者媒体库已发生变化时才重新加载
+		if (takeContentChanged() || mData == null) {
+			forceLoad();
+		}
+	}
+
+	@Override
+	protected void onStopLoading() {
+		Log.i(TAG, "onStopLoading");
+		cancelLoad();
+	}
+
+	@Override
+	protected void onReset() {
+		super.onReset();
+		Log.i(TAG, "onReset");
+		onStopLoading();
+		mData = null;
+		if (mRegistered) {
+			MediaLibrary.getInstance().unregisterListener(this);
+			mRegistered = false;
+		}
+	}
+
+	@Override
+	public void onLibraryChanged() {
+		// 已启动时立即重新加载，否则记下来留到下次启动
+		onContentChanged();
+	}
+}
@@ -1,204 +1,228 @@
 package com.lq.loader;
 
-import java.io.File;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
-import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
-import android.provider.MediaStore.Audio.Media;
-import android.support.v4.content.AsyncTaskLoader;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import com.lq.dao.PlaylistDAO;
 import com.lq.entity.TrackInfo;
+import com.lq.entity.TrackStore;
+import com.lq.util.TrackSortOrders;
 
 /**
+ * 从媒体库的快照中取出歌曲，可以只取某个艺术家、专辑、文件夹或播放列表的歌曲，结果按标题排列
+ *
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
-public class MusicRetrieveLoader extends AsyncTaskLoader<List<TrackInfo>> {
-	private final String TAG = MusicRetrieveLoader.class.getSimpleName();
-
-	/** 要从MediaStore检索的列 */
-	private final String[] mProjection = new String[] { Media._ID, Media.TITLE,
-			Media.ALBUM, Media.ARTIST, Media.DATA, Media.SIZE, Media.DURATION,
-			Media.DISPLAY_NAME };
-
-	// 数据库查询相关参数
-	private String mSelection = null;
-	private String[] mSelectionArgs = null;
-	private String mSortOrder = null;
-
-	private ContentResolver mContentResolver = null;
-
-	private List<TrackInfo> mMusicItemList = null;
-
-	private Pattern mFolerPattern = null;
-
-	int index_id;
-	int index_title;
-	int index_data;
-	int index_artist;
-	int index_album;
-	int index_duration;
-	int index_size;
-	int index_displayname;
+public class MusicRetrieveLoader extends MediaLibraryLoader<List<TrackInfo>> {
+	private static final String TAG = MusicRetrieveLoader.class.getSimpleName();
+
+	// 过滤条件，都没有设置时取出全部歌曲
+	private String mArtistFilter = null;
+	private int mAlbumFilter = -1;
+	private String mFolderFilter = null;
+	private int mPlaylistFilter = -1;
+
+	/** 是否在加载完成后计算各种排列顺序 */
+	private boolean mBuildSortOrders = false;
+
+	/** 最后一次加载的结果及其各种排列顺序 */
+	private List<TrackInfo> mSortedList = null;
+	private TrackSortOrders mSortOrders = null;
+
+	/** 媒体库第一次查询时是否先发布部分结果 */
+	private boolean mProgressive = false;
+
+	/** 最后一次发布的部分结果及其各种排列顺序，只在主线程中访问 */
+	private List<TrackInfo> mPartialList = null;
+	private TrackSortOrders mPartialSortOrders = null;
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/** 在查询线程中由部分快照得到部分结果，再到主线程中发布 */
+	private final MediaLibrary.OnPartialSnapshotListener mPartialSnapshotListener = new MediaLibrary.OnPartialSnapshotListener() {
+		@Override
+		public void onPartialSnapshot(MediaLibrary.Snapshot snapshot) {
+			final TrackSortOrders[] orders = new TrackSortOrders[1];
+			final List<TrackInfo> itemsList = retrieve(snapshot, orders);
+			if (itemsList.isEmpty()) {
+				return;
+			}
+			mHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					mPartialList = itemsList;
+					mPartialSortOrders = orders[0];
+					deliverPartialResult(itemsList);
+				}
+			});
+		}
+	};
 
-	public MusicRetrieveLoader(Context context, String selection,
-			String[] selectionArgs, String sortOrder) {
+	public MusicRetrieveLoader(Context context) {
 		super(context);
-		this.mSelection = selection;
-		this.mSelectionArgs = selectionArgs;
-		this.mSortOrder = sortOrder;
-		mContentResolver = context.getContentResolver();
 	}
 
 	@Override
-	public List<TrackInfo> loadInBackground() {
-		Log.i(TAG, "loadInBackground");
-		List<TrackInfo> itemsList = new ArrayList<TrackInfo>();
-		TrackInfo item = null;
-
-		Cursor cursor = mContentResolver.query(Media.EXTERNAL_CONTENT_URI,
-				mProjection, mSelection, mSelectionArgs, mSortOrder);
-
-		// 将数据库查询结果保存到一个List集合中(存放在RAM)
-		if (cursor != null) {
-			index_id = cursor.getColumnIndex(Media._ID);
-			index_title = cursor.getColumnIndex(Media.TITLE);
-			index_data = cursor.getColumnIndex(Media.DATA);
-			index_artist = cursor.getColumnIndex(Media.ARTIST);
-			index_album = cursor.getColumnIndex(Media.ALBUM);
-			index_duration = cursor.getColumnIndex(Media.DURATION);
-			index_size = cursor.getColumnIndex(Media.SIZE);
-			index_displayname = cursor.getColumnIndex(Media.DISPLAY_NAME);
-			while (cursor.moveToNext()) {
-
-				// 如果设置了文件夹过滤
-				if (mFolerPattern != null) {
-					// 过滤出指定的文件夹下的文件，忽略子目录
-					Matcher matcher = mFolerPattern.matcher(cursor
-							.getString(index_data));
-					// 如果是以xxx.xxx结尾的路径，则就是当前目录下的文件了
-					if (matcher.find() && matcher.group().matches(".*\\..*")) {
-						item = createNewItem(cursor);
-					} else {// 是文件夹就忽略了
-						continue;
-					}
-				} else {// 正常的创建新的条目
-					item = createNewItem(cursor);
-				}
-				itemsList.add(item);
-			}
-			cursor.close();
+	protected List<TrackInfo> loadFromSnapshot(MediaLibrary.Snapshot snapshot) {
+		TrackSortOrders[] orders = new TrackSortOrders[1];
+		List<TrackInfo> itemsList = retrieve(snapshot, orders);
+		synchronized (this) {
+			mSortedList = itemsList;
+			mSortOrders = orders[0];
 		}
-
-		// 如果没有扫描到媒体文件，itemsList的size为0，因为上面new过了
 		return itemsList;
 	}
 
 	@Override
-	public void deliverResult(List<TrackInfo> data) {
-		Log.i(TAG, "deliverResult");
-		if (isReset()) {
-			// An async query came in while the loader is stopped. We
-			// don't need the result.
-			if (data != null) {
-				onReleaseResources(data);
-			}
-		}
-		List<TrackInfo> oldList = data;
-		mMusicItemList = data;
+	protected MediaLibrary.OnPartialSnapshotListener getPartialSnapshotListener() {
+		return mProgressive ? mPartialSnapshotListener : null;
+	}
 
-		if (isStarted()) {
-			// If the Loader is currently started, we can immediately
-			// deliver its results.
-			super.deliverResult(data);
+	/**
+	 * 由快照取出符合过滤条件的歌曲
+	 *
+	 * @param sortOrders
+	 *            设置了setBuildSortOrders()时，sortOrders[0]为结果的各种排列顺序
+	 */
+	private List<TrackInfo> retrieve(MediaLibrary.Snapshot snapshot,
+			TrackSortOrders[] sortOrders) {
+		HashSet<Long> members = null;
+		if (mPlaylistFilter >= 0) {
+			members = new HashSet<Long>();
+			for (long id : PlaylistDAO.getPlaylistMemberIds(getContext()
+					.getContentResolver(), mPlaylistFilter)) {
+				members.add(id);
+			}
 		}
+		return retrieve(snapshot, mArtistFilter, mAlbumFilter, mFolderFilter,
+				members, mBuildSortOrders, sortOrders);
+	}
 
-		// At this point we can release the resources associated with
-		// 'oldApps' if needed; now that the new result is delivered we
-		// know that it is no longer in use.
-		if (oldList != null) {
-			onReleaseResources(oldList);
+	/**
+	 * 由快照取出符合过滤条件的歌曲，不访问Context，基准测试通过它测量与装载器相同的工作
+	 *
+	 * @param artistFilter
+	 *            艺术家，为null时不过滤
+	 * @param albumFilter
+	 *            专辑的ID，小于0时不过滤
+	 * @param folderFilter
+	 *            文件夹的路径，为null时不过滤
+	 * @param members
+	 *            播放列表中歌曲的ID，为null时不过滤
+	 * @param buildSortOrders
+	 *            是否计算结果的各种排列顺序
+	 * @param sortOrders
+	 *            buildSortOrders为true时，sortOrders[0]为结果的各种排列顺序
+	 */
+	static List<TrackInfo> retrieve(MediaLibrary.Snapshot snapshot,
+			String artistFilter, int albumFilter, String folderFilter,
+			Set<Long> members, boolean buildSortOrders,
+			TrackSortOrders[] sortOrders) {
+		List<TrackInfo> itemsList = null;
+		TrackSortOrders orders = null;
+		if (artistFilter == null && albumFilter < 0 && folderFilter == null
+				&& members == null) {
+			// 全部歌曲，直接使用快照的列表和它的排列顺序
+			itemsList = snapshot.getTracks();
+			if (buildSortOrders) {
+				orders = snapshot.getSortOrders();
+			}
+		} else {
+			// 文件夹中的歌曲直接由文件夹索引取得，不必扫描所有歌曲
+			TrackStore store = snapshot.getStore();
+			int[] rows = snapshot.getRows();
+			if (folderFilter != null) {
+				FolderIndex.Node folder = snapshot.getFolderIndex().find(
+						folderFilter);
+				rows = folder == null ? new int[0] : folder.getRows();
+			}
+			// 其余条件直接比较表中的列，艺术家先换成字典中的位置
+			int artistRef = artistFilter == null ? -1 : store
+					.findArtist(artistFilter);
+			int[] accepted = new int[rows.length];
+			int count = 0;
+			for (int row : rows) {
+				if (artistFilter != null
+						&& store.getArtistRef(row) != artistRef) {
+					continue;
+				}
+				if (albumFilter >= 0 && store.getAlbumId(row) != albumFilter) {
+					continue;
+				}
+				if (members != null && !members.contains(store.getId(row))) {
+					continue;
+				}
+				accepted[count++] = row;
+			}
+			accepted = Arrays.copyOf(accepted, count);
+			itemsList = store.asList(accepted);
+			if (buildSortOrders) {
+				long start = System.nanoTime();
+				orders = TrackSortOrders.build(store, accepted);
+				Log.i(TAG, "sort orders built, " + (System.nanoTime() - start)
+						/ 1000000 + "ms");
+			}
 		}
+		sortOrders[0] = orders;
+		return itemsList;
 	}
 
-	protected void onReleaseResources(List<TrackInfo> data) {
-		Log.i(TAG, "onReleaseResources");
-		// For a simple List<> there is nothing to do. For something
-		// like a Cursor, we would close it here.
+	/** 设置是否在加载完成后计算各种排列顺序，见getSortOrders() */
+	public void setBuildSortOrders(boolean buildSortOrders) {
+		mBuildSortOrders = buildSortOrders;
 	}
 
-	@Override
-	protected void onStartLoading() {
-		Log.i(TAG, "onStartLoading");
-		if (mMusicItemList != null) {
-			// If we currently have a result available, deliver it
-			// immediately.
-			deliverResult(mMusicItemList);
+	/**
+	 * 取得加载结果的各种排列顺序
+	 *
+	 * @param data
+	 *            onLoadFinished()收到的加载结果
+	 * @return data的各种排列顺序；没有设置setBuildSortOrders()或者data不是最后一次加载的结果时返回null
+	 */
+	public synchronized TrackSortOrders getSortOrders(List<TrackInfo> data) {
+		if (data == mPartialList) {
+			return mPartialSortOrders;
 		}
-		// If the data has changed since the last time it was loaded
-		// or is not currently available, start a load.
-		forceLoad();
+		return data == mSortedList ? mSortOrders : null;
 	}
 
-	@Override
-	protected void onStopLoading() {
-		Log.i(TAG, "onStartLoading");
-		super.onStopLoading();
-		// Attempt to cancel the current load task if possible.
-		cancelLoad();
+	/**
+	 * 设置媒体库第一次查询时是否先发布部分结果：先发布约一屏的歌曲，之后每批歌曲读完都发布一次，
+	 * 最后再发布完整的结果。部分结果同样按标题排列，也同样计算各种排列顺序
+	 */
+	public void setProgressive(boolean progressive) {
+		mProgressive = progressive;
 	}
 
-	@Override
-	public void onCanceled(List<TrackInfo> data) {
-		super.onCanceled(data);
-		Log.i(TAG, "onCanceled");
-		// At this point we can release the resources associated with 'data'
-		// if needed.
-		onReleaseResources(data);
+	/** data是否是加载过程中的部分结果，之后还会收到更完整的结果。在主线程中调用 */
+	public boolean isPartialResult(List<TrackInfo> data) {
+		return data != null && data == mPartialList;
 	}
 
-	@Override
-	protected void onReset() {
-		super.onReset();
-		Log.i(TAG, "onReset");
-		// Ensure the loader is stopped
-		onStopLoading();
-
-		// At this point we can release the resources associated with 'data'
-		// if needed.
-		if (mMusicItemList != null) {
-			onReleaseResources(mMusicItemList);
-			mMusicItemList = null;
-		}
+	/** 只取出指定艺术家的歌曲 */
+	public void setArtistFilter(String artistName) {
+		mArtistFilter = artistName;
 	}
 
-	@Override
-	protected void onForceLoad() {
-		super.onForceLoad();
+	/** 只取出指定专辑的歌曲 */
+	public void setAlbumFilter(int albumId) {
+		mAlbumFilter = albumId;
 	}
 
-	private TrackInfo createNewItem(Cursor cursor) {
-		TrackInfo item = new TrackInfo();
-		item.setTitle(cursor.getString(index_title));
-		item.setArtist(cursor.getString(index_artist));
-		item.setDisplayName(cursor.getString(index_displayname));
-		item.setId(cursor.getLong(index_id));
-		item.setAlbum(cursor.getString(index_album));
-		item.setDuration(cursor.getLong(index_duration));
-		item.setSize(cursor.getLong(index_size));
-		item.setData(cursor.getString(index_data));
-		return item;
+	/** 只取出指定文件夹下的歌曲，忽略子目录 */
+	public void setFolderFilter(String folderPath) {
+		mFolderFilter = folderPath;
 	}
 
-	/** 设置要过滤的文件夹 */
-	public void setFolderFilterPattern(String folderpath) {
-		// 过滤出当前目录下的文件，而忽略子目录的存在
-		mFolerPattern = Pattern.compile(folderpath + File.separator + "[^"
-				+ File.separator + "]+");
+	/** 只取出指定播放列表中的歌曲 */
+	public void setPlaylistFilter(int playlistId) {
+		mPlaylistFilter = playlistId;
 	}
 }
@@ -1,6 +1,7 @@
 package com.lq.loader;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import android.content.ContentResolver;
@@ -11,7 +12,9 @@ import android.support.v4.content.AsyncTaskLoader;
 import android.util.Log;
 
 import com.lq.dao.PlaylistDAO;
+import com.lq.dao.PlaylistDAO.PlaylistSummary;
 import com.lq.entity.PlaylistInfo;
+import com.lq.search.GlobalSearchIndex;
 
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
@@ -45,7 +48,6 @@ public class PlaylistInfoRetrieveLoader extends
 	@Override
 	public List<PlaylistInfo> loadInBackground() {
 		Log.i(TAG, "loadInBackground");
-		int playlistId;
 		Cursor cursor_playlist = mContentResolver.query(
 				Playlists.EXTERNAL_CONTENT_URI, mProjection, mSelection,
 				mSelectionArgs, mSortOrder);
@@ -62,11 +64,7 @@ public class PlaylistInfoRetrieveLoader extends
 					.getColumnIndex(Playlists.DATE_MODIFIED);
 			while (cursor_playlist.moveToNext()) {
 				PlaylistInfo item = new PlaylistInfo();
-				playlistId = Integer.valueOf(cursor_playlist
-						.getString(index_id));
-				item.setId(playlistId);
-				item.setNumOfMembers(PlaylistDAO.getPlaylistMemberCount(
-						mContentResolver, playlistId));
+				item.setId(cursor_playlist.getInt(index_id));
 				item.setPlaylistName(cursor_playlist.getString(index_name));
 				item.setDateAdded(cursor_playlist.getInt(index_date_added));
 				item.setDateModified(cursor_playlist
@@ -75,7 +73,22 @@ public class PlaylistInfoRetrieveLoader extends
 			}
 			cursor_playlist.close();
 		}
+
+		// 所有播放列表的歌曲数目和总时长一次取得，不再逐个查询
+		int[] playlistIds = new int[itemsList.size()];
+		for (int i = 0; i < playlistIds.length; i++) {
+			playlistIds[i] = itemsList.get(i).getId();
+		}
+		HashMap<Integer, PlaylistSummary> summaries = PlaylistDAO
+				.getPlaylistSummaries(mContentResolver, playlistIds);
+		for (PlaylistInfo item : itemsList) {
+			PlaylistSummary summary = summaries.get(item.getId());
+			item.setNumOfMembers(summary.getMemberCount());
+			item.setTotalDuration(summary.getTotalDuration());
+		}
 		// 如果没有扫描到媒体文件，itemsList的size为0，因为上面new过了
+		GlobalSearchIndex.getInstance().update(GlobalSearchIndex.TYPE_PLAYLIST,
+				itemsList);
 		return itemsList;
 	}
 
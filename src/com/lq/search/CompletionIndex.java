@@ -0,0 +1,453 @@
+package com.lq.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lq.entity.TrackInfo;
+
+/**
+ * 边输入边补全的索引，给出以输入为前缀的歌曲标题和艺术家名称。
+ * <p>
+ * 同名的标题或艺术家合并为一个补全条目，按播放次数之和、歌曲数目从高到低排好名次。
+ * 每个条目的拼音索引取全拼和简拼两种形式，T9数字串和字母串各建一棵压缩前缀树，第一次用到时才建立，
+ * 只用一种键盘时不占用另一棵树的内存。
+ * <p>
+ * 前缀树不为节点分配对象：所有键排好序后拼接在一个char数组中，每个节点只记录它在有序键中的起始位置、
+ * 结束处的深度以及连续存放的子节点，子树中的键正好是有序键中连续的一段。子树中的键较多的节点预先算好
+ * 名次最高的MAX_COMPLETIONS个条目，其余节点查询时直接扫描这一段（不超过SCAN_LIMIT个键），
+ * 所以一次补全的开销只与输入的长度有关，与歌曲数目无关。
+ * <p>
+ * 本类不是线程安全的，同一个实例只能在一个线程中使用。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class CompletionIndex {
+
+	/** 补全条目是歌曲标题 */
+	public static final int TYPE_TITLE = 0;
+
+	/** 补全条目是艺术家名称 */
+	public static final int TYPE_ARTIST = 1;
+
+	/** 每次补全最多给出的条目数目 */
+	public static final int MAX_COMPLETIONS = 8;
+
+	/** 拼音索引只取前若干个字符建立前缀树，更长的输入不再补全 */
+	private static final int MAX_KEY_LENGTH = 48;
+
+	/** 子树中的键不超过此数目时查询时直接扫描，否则预先算好补全结果 */
+	private static final int SCAN_LIMIT = 32;
+
+	/** 一个补全条目 */
+	public static class Completion {
+		private final String mText;
+		private final String mKey;
+		private final int mType;
+		private final int mOrder;
+		private int mTrackCount = 0;
+		private int mPlayCount = 0;
+
+		Completion(String text, String key, int type, int order) {
+			mText = text;
+			mKey = key;
+			mType = type;
+			mOrder = order;
+		}
+
+		/** 标题或艺术家名称的原文 */
+		public String getText() {
+			return mText;
+		}
+
+		/** TYPE_TITLE或TYPE_ARTIST */
+		public int getType() {
+			return mType;
+		}
+
+		/** 同名的歌曲数目 */
+		public int getTrackCount() {
+			return mTrackCount;
+		}
+
+		/** 同名的歌曲的播放次数之和 */
+		public int getPlayCount() {
+			return mPlayCount;
+		}
+	}
+
+	/** 所有补全条目，按名次排列 */
+	private final Completion[] mCompletions;
+
+	/** T9数字串的前缀树，第一次按T9输入补全时建立 */
+	private Trie mT9Trie = null;
+
+	/** 字母串的前缀树，第一次按全键盘输入补全时建立 */
+	private Trie mLetterTrie = null;
+
+	private CompletionIndex(Completion[] completions) {
+		mCompletions = completions;
+	}
+
+	/**
+	 * 为歌曲列表建立补全索引
+	 *
+	 * @param playCounts
+	 *            歌曲ID到播放次数的映射，没有的歌曲视为未播放过；可以为null
+	 */
+	public static CompletionIndex build(List<TrackInfo> tracks,
+			Map<Long, Integer> playCounts) {
+		HashMap<String, Completion> titles = new HashMap<String, Completion>();
+		HashMap<String, Completion> artists = new HashMap<String, Completion>();
+		ArrayList<Completion> completions = new ArrayList<Completion>();
+		TrackFields fields = TrackFields.of(tracks);
+		for (int i = 0; i < fields.size(); i++) {
+			Integer count = playCounts == null ? null : playCounts.get(fields
+					.getId(i));
+			int plays = count == null ? 0 : count;
+			add(titles, completions, TYPE_TITLE, fields.getTitle(i),
+					fields.getTitleKey(i), plays);
+			String artist = fields.getArtist(i);
+			if (!"<unknown>".equals(artist)) {
+				add(artists, completions, TYPE_ARTIST, artist,
+						fields.getArtistKey(i), plays);
+			}
+		}
+		Completion[] sorted = completions.toArray(new Completion[completions
+				.size()]);
+		Arrays.sort(sorted, new Comparator<Completion>() {
+			@Override
+			public int compare(Completion lhs, Completion rhs) {
+				if (lhs.mPlayCount != rhs.mPlayCount) {
+					return lhs.mPlayCount > rhs.mPlayCount ? -1 : 1;
+				}
+				if (lhs.mTrackCount != rhs.mTrackCount) {
+					return lhs.mTrackCount > rhs.mTrackCount ? -1 : 1;
+				}
+				return lhs.mOrder - rhs.mOrder;
+			}
+		});
+		return new CompletionIndex(sorted);
+	}
+
+	private static void add(HashMap<String, Completion> map,
+			ArrayList<Completion> completions, int type, String text,
+			String key, int plays) {
+		if (text == null || text.length() == 0 || key == null) {
+			return;
+		}
+		Completion completion = map.get(text);
+		if (completion == null) {
+			completion = new Completion(text, key, type, completions.size());
+			map.put(text, completion);
+			completions.add(completion);
+		}
+		completion.mTrackCount++;
+		completion.mPlayCount += plays;
+	}
+
+	/** 补全条目的数目 */
+	public int size() {
+		return mCompletions.length;
+	}
+
+	/**
+	 * 给出以输入为前缀的补全条目
+	 *
+	 * @param input
+	 *            输入的字符串，T9键盘时均为2~9的数字，全键盘时为转换成拼音后的文本
+	 * @param isT9
+	 *            是否是T9键盘的输入
+	 * @param limit
+	 *            最多给出的条目数目，不超过MAX_COMPLETIONS
+	 * @return 按名次排列的补全条目，没有时为空列表
+	 */
+	public List<Completion> complete(String input, boolean isT9, int limit) {
+		char[] query = normalize(input, isT9);
+		if (query.length == 0 || query.length > MAX_KEY_LENGTH) {
+			return Collections.emptyList();
+		}
+		int[] ranks = getTrie(isT9).complete(query,
+				Math.min(limit, MAX_COMPLETIONS));
+		List<Completion> result = new ArrayList<Completion>(ranks.length);
+		for (int rank : ranks) {
+			result.add(mCompletions[rank]);
+		}
+		return result;
+	}
+
+	private Trie getTrie(boolean isT9) {
+		if (isT9) {
+			if (mT9Trie == null) {
+				mT9Trie = buildTrie(true);
+			}
+			return mT9Trie;
+		}
+		if (mLetterTrie == null) {
+			mLetterTrie = buildTrie(false);
+		}
+		return mLetterTrie;
+	}
+
+	/** 把每个条目的全拼和简拼作为键建立前缀树，键对应条目的名次 */
+	private Trie buildTrie(boolean isT9) {
+		ArrayList<String> keys = new ArrayList<String>(
+				mCompletions.length * 2);
+		ArrayList<Integer> ranks = new ArrayList<Integer>(
+				mCompletions.length * 2);
+		int full = isT9 ? TrackSearchIndex.FORM_FULL_T9
+				: TrackSearchIndex.FORM_FULL_LETTER;
+		int initial = isT9 ? TrackSearchIndex.FORM_INITIAL_T9
+				: TrackSearchIndex.FORM_INITIAL_LETTER;
+		StringBuilder[] builders = new StringBuilder[4];
+		for (int rank = 0; rank < mCompletions.length; rank++) {
+			for (int f = 0; f < builders.length; f++) {
+				builders[f] = new StringBuilder();
+			}
+			TrackSearchIndex.appendKey(mCompletions[rank].mKey, builders);
+			String fullKey = normalize(builders[full]);
+			String initialKey = normalize(builders[initial]);
+			if (fullKey.length() > 0) {
+				keys.add(fullKey);
+				ranks.add(rank);
+			}
+			if (initialKey.length() > 0 && !initialKey.equals(fullKey)) {
+				keys.add(initialKey);
+				ranks.add(rank);
+			}
+		}
+		return new Trie(keys, ranks);
+	}
+
+	/** 去掉分隔符和空格，截取前MAX_KEY_LENGTH个字符 */
+	private static String normalize(StringBuilder form) {
+		StringBuilder key = new StringBuilder(Math.min(form.length(),
+				MAX_KEY_LENGTH));
+		for (int i = 0; i < form.length() && key.length() < MAX_KEY_LENGTH; i++) {
+			char c = form.charAt(i);
+			if (c != TrackSearchIndex.SEPARATOR && c != ' ') {
+				key.append(c);
+			}
+		}
+		return key.toString();
+	}
+
+	/** 将输入转换成与键相同的形式 */
+	private static char[] normalize(String input, boolean isT9) {
+		char[] query = TrackSearchIndex.normalizeQuery(input, isT9);
+		int length = 0;
+		for (int i = 0; i < query.length; i++) {
+			if (query[i] != TrackSearchIndex.SEPARATOR && query[i] != ' ') {
+				query[length++] = query[i];
+			}
+		}
+		return Arrays.copyOf(query, length);
+	}
+
+	/** 压缩前缀树，节点0为根节点 */
+	private static final class Trie {
+		/** 排好序的键依次拼接，第i个键位于[mKeyOffsets[i],mKeyOffsets[i+1]) */
+		private final char[] mChars;
+		private final int[] mKeyOffsets;
+
+		/** 每个键对应的条目名次 */
+		private final int[] mKeyRanks;
+
+		private final int mKeyCount;
+
+		// 节点的数据：子树中的键从第mLo个开始，节点处的前缀长度为mDepth，
+		// 子节点连续存放在[mFirstChild,mFirstChild+mChildCount)，按下一个字符升序排列
+		private int[] mLo;
+		private char[] mDepth;
+		private int[] mFirstChild;
+		private char[] mChildCount;
+		private int mNodeCount = 0;
+
+		/** 子树中的键多于SCAN_LIMIT的节点预先算好的补全结果 */
+		private final HashMap<Integer, int[]> mTops = new HashMap<Integer, int[]>();
+
+		Trie(final ArrayList<String> keys, ArrayList<Integer> ranks) {
+			mKeyCount = keys.size();
+			Integer[] order = new Integer[mKeyCount];
+			int length = 0;
+			for (int i = 0; i < mKeyCount; i++) {
+				order[i] = i;
+				length += keys.get(i).length();
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer lhs, Integer rhs) {
+					return keys.get(lhs).compareTo(keys.get(rhs));
+				}
+			});
+			mChars = new char[length];
+			mKeyOffsets = new int[mKeyCount + 1];
+			mKeyRanks = new int[mKeyCount];
+			int offset = 0;
+			for (int i = 0; i < mKeyCount; i++) {
+				String key = keys.get(order[i]);
+				key.getChars(0, key.length(), mChars, offset);
+				mKeyOffsets[i] = offset;
+				mKeyRanks[i] = ranks.get(order[i]);
+				offset += key.length();
+			}
+			mKeyOffsets[mKeyCount] = offset;
+
+			int capacity = mKeyCount * 2 + 1;
+			mLo = new int[capacity];
+			mDepth = new char[capacity];
+			mFirstChild = new int[capacity];
+			mChildCount = new char[capacity];
+			mNodeCount = 1;
+			buildChildren(0, mKeyCount);
+		}
+
+		/** 为节点建立子节点，节点的键位于[mLo[node],hi) */
+		private void buildChildren(int node, int hi) {
+			int lo = mLo[node];
+			int depth = mDepth[node];
+			// 正好在此节点结束的键排在最前面
+			int i = lo;
+			while (i < hi && keyLength(i) == depth) {
+				i++;
+			}
+			int groups = 0;
+			for (int g = i; g < hi; g = groupEnd(g, hi, depth)) {
+				groups++;
+			}
+			int first = mNodeCount;
+			ensureCapacity(first + groups);
+			mNodeCount += groups;
+			mFirstChild[node] = first;
+			mChildCount[node] = (char) groups;
+			int child = first;
+			for (int g = i; g < hi; child++) {
+				int end = groupEnd(g, hi, depth);
+				mLo[child] = g;
+				// 有序的一组键的公共前缀就是首尾两个键的公共前缀
+				mDepth[child] = (char) commonPrefix(g, end - 1, depth + 1);
+				g = end;
+			}
+			for (int c = 0; c < groups; c++) {
+				buildChildren(first + c,
+						c + 1 < groups ? mLo[first + c + 1] : hi);
+			}
+			if (hi - lo > SCAN_LIMIT) {
+				mTops.put(node, scanTop(lo, hi, MAX_COMPLETIONS));
+			}
+		}
+
+		/** 从第g个键开始，第depth个字符相同的一组键的结束位置 */
+		private int groupEnd(int g, int hi, int depth) {
+			char c = charAt(g, depth);
+			int end = g + 1;
+			while (end < hi && charAt(end, depth) == c) {
+				end++;
+			}
+			return end;
+		}
+
+		private int commonPrefix(int a, int b, int from) {
+			int length = Math.min(keyLength(a), keyLength(b));
+			int depth = from;
+			while (depth < length && charAt(a, depth) == charAt(b, depth)) {
+				depth++;
+			}
+			return depth;
+		}
+
+		private int keyLength(int key) {
+			return mKeyOffsets[key + 1] - mKeyOffsets[key];
+		}
+
+		private char charAt(int key, int index) {
+			return mChars[mKeyOffsets[key] + index];
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > mLo.length) {
+				int newCapacity = Math.max(capacity, mLo.length * 3 / 2);
+				mLo = Arrays.copyOf(mLo, newCapacity);
+				mDepth = Arrays.copyOf(mDepth, newCapacity);
+				mFirstChild = Arrays.copyOf(mFirstChild, newCapacity);
+				mChildCount = Arrays.copyOf(mChildCount, newCapacity);
+			}
+		}
+
+		/** 在[lo,hi)的键中找出名次最高的limit个不同条目 */
+		private int[] scanTop(int lo, int hi, int limit) {
+			int[] top = new int[limit];
+			int count = 0;
+			for (int i = lo; i < hi; i++) {
+				int rank = mKeyRanks[i];
+				if (count == limit && rank >= top[count - 1]) {
+					continue;
+				}
+				int pos = count;
+				while (pos > 0 && top[pos - 1] > rank) {
+					pos--;
+				}
+				if (pos > 0 && top[pos - 1] == rank) {
+					// 同一条目的全拼和简拼
+					continue;
+				}
+				if (count < limit) {
+					count++;
+				}
+				System.arraycopy(top, pos, top, pos + 1, count - 1 - pos);
+				top[pos] = rank;
+			}
+			return Arrays.copyOf(top, count);
+		}
+
+		/** 沿输入走到对应的节点，返回名次最高的limit个条目 */
+		int[] complete(char[] query, int limit) {
+			int node = 0;
+			int hi = mKeyCount;
+			int depth = 0;
+			while (depth < query.length) {
+				// depth等于当前节点的mDepth，在子节点中二分查找下一个字符
+				int first = mFirstChild[node];
+				int low = 0;
+				int high = mChildCount[node] - 1;
+				int found = -1;
+				while (low <= high) {
+					int mid = (low + high) >>> 1;
+					char c = charAt(mLo[first + mid], depth);
+					if (c < query[depth]) {
+						low = mid + 1;
+					} else if (c > query[depth]) {
+						high = mid - 1;
+					} else {
+						found = mid;
+						break;
+					}
+				}
+				if (found < 0) {
+					return new int[0];
+				}
+				int child = first + found;
+				if (found + 1 < mChildCount[node]) {
+					hi = mLo[child + 1];
+				}
+				int end = Math.min(mDepth[child], query.length);
+				for (int j = depth + 1; j < end; j++) {
+					if (charAt(mLo[child], j) != query[j]) {
+						return new int[0];
+					}
+				}
+				node = child;
+				depth = end;
+			}
+			int[] top = mTops.get(node);
+			if (top == null) {
+				return scanTop(mLo[node], hi, limit);
+			}
+			return top.length > limit ? Arrays.copyOf(top, limit) : top;
+		}
+	}
+}
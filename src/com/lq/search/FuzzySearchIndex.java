@@ -0,0 +1,541 @@
+package com.lq.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.lq.entity.TrackInfo;
+import com.lq.util.StringHelper;
+
+/**
+ * 容错的模糊搜索索引。
+ * <p>
+ * 对每首歌曲的标题、艺术家、专辑的拼音（全拼和简拼）建立三元组倒排索引，字母串和它的T9数字串共用同一张表。
+ * 查询时先用三元组统计出可能匹配的候选歌曲：允许d处编辑时，与输入共有的三元组不会少于输入的三元组数减3d；
+ * 再逐个计算候选歌曲的得分，按“前缀匹配 > 简拼匹配 > 子串匹配 > 编辑距离匹配”排序，用一个大小固定的堆只保留得分最高的若干首。
+ * <p>
+ * 索引按歌曲ID增量维护：数据重新加载后只添加新的歌曲、移除已不存在的歌曲，不需要每次查询或加载都重建。
+ * 本类不是线程安全的，同一个实例只能在一个线程中使用。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class FuzzySearchIndex {
+
+	/** 默认最多返回的结果数目 */
+	public static final int DEFAULT_RESULT_LIMIT = 200;
+
+	// 每首歌曲记录的字段，均为小写的拼音字母串
+	private static final int FIELD_TITLE = 0;
+	private static final int FIELD_TITLE_INITIALS = 1;
+	private static final int FIELD_ARTIST = 2;
+	private static final int FIELD_ARTIST_INITIALS = 3;
+	private static final int FIELD_ALBUM = 4;
+	private static final int FIELD_ALBUM_INITIALS = 5;
+	private static final int FIELD_COUNT = 6;
+
+	// 匹配的等级，越大越靠前
+	private static final int TIER_FUZZY = 1;
+	private static final int TIER_SUBSTRING = 2;
+	private static final int TIER_INITIALS = 3;
+	private static final int TIER_PREFIX = 4;
+
+	/** 三元组中每个字符的取值个数：0表示其他字符，1~26为字母，27~36为数字 */
+	private static final int GRAM_RADIX = 37;
+
+	/** 每处理256首歌曲检查一次搜索是否已被取消 */
+	private static final int CANCEL_CHECK_MASK = 0xff;
+
+	/** 已移除的歌曲超过此数目并且多于有效的歌曲时整理索引 */
+	private static final int COMPACT_THRESHOLD = 1024;
+
+	/** a~z各字母在T9键盘上对应的数字键 */
+	private static final char[] T9_DIGITS = { '2', '2', '2', '3', '3', '3',
+			'4', '4', '4', '5', '5', '5', '6', '6', '6', '7', '7', '7', '7',
+			'8', '8', '8', '9', '9', '9', '9' };
+
+	/** 各位置上的歌曲，已移除的为null */
+	private TrackInfo[] mTracks = new TrackInfo[64];
+
+	/** 各位置上歌曲的全部字段，依次拼接 */
+	private char[][] mTexts = new char[64][];
+
+	/** 第i首歌曲的第f个字段位于mTexts[i]的[mBounds[i*(FIELD_COUNT+1)+f],mBounds[i*(FIELD_COUNT+1)+f+1]) */
+	private int[] mBounds = new int[64 * (FIELD_COUNT + 1)];
+
+	/** 已使用的位置数目，包括已移除的 */
+	private int mSlotCount = 0;
+
+	/** 已移除的歌曲数目 */
+	private int mRemovedCount = 0;
+
+	/** 歌曲ID到位置的映射 */
+	private final HashMap<Long, Integer> mSlotById = new HashMap<Long, Integer>();
+
+	/** 每个三元组的倒排表，按位置升序排列，可能含有已移除的位置 */
+	private final int[][] mPostings = new int[GRAM_RADIX * GRAM_RADIX
+			* GRAM_RADIX][];
+	private final int[] mPostingCounts = new int[GRAM_RADIX * GRAM_RADIX
+			* GRAM_RADIX];
+
+	// 查询时复用的缓冲区
+	private int[] mHitCounts = new int[64];
+	private final long[] mPeq = new long[128];
+
+	/** 索引中的歌曲数目 */
+	public int size() {
+		return mSlotById.size();
+	}
+
+	/**
+	 * 用新加载的歌曲列表更新索引：移除列表中已没有的歌曲，添加新的歌曲，标题、艺术家或专辑有变化的歌曲重新索引
+	 */
+	public void update(List<TrackInfo> tracks) {
+		HashSet<Long> ids = new HashSet<Long>();
+		for (TrackInfo track : tracks) {
+			ids.add(track.getId());
+		}
+		ArrayList<Long> removed = new ArrayList<Long>();
+		for (Long id : mSlotById.keySet()) {
+			if (!ids.contains(id)) {
+				removed.add(id);
+			}
+		}
+		for (Long id : removed) {
+			remove(id);
+		}
+		for (TrackInfo track : tracks) {
+			add(track);
+		}
+		if (mRemovedCount > COMPACT_THRESHOLD
+				&& mRemovedCount > mSlotById.size()) {
+			compact();
+		}
+	}
+
+	/** 添加一首歌曲，已有相同ID的歌曲时替换它 */
+	public void add(TrackInfo track) {
+		Integer slot = mSlotById.get(track.getId());
+		if (slot != null) {
+			TrackInfo old = mTracks[slot];
+			if (equals(old.getTitle(), track.getTitle())
+					&& equals(old.getArtist(), track.getArtist())
+					&& equals(old.getAlbum(), track.getAlbum())) {
+				// 索引的内容没有变化，只更新引用
+				mTracks[slot] = track;
+				return;
+			}
+			remove(track.getId());
+		}
+		append(track);
+	}
+
+	/** 移除指定ID的歌曲 */
+	public void remove(long id) {
+		Integer slot = mSlotById.remove(id);
+		if (slot != null) {
+			mTracks[slot] = null;
+			mTexts[slot] = null;
+			mRemovedCount++;
+		}
+	}
+
+	/**
+	 * 搜索匹配输入的歌曲，允许少量的输入错误
+	 *
+	 * @param input
+	 *            输入的字符串，T9键盘时均为数字，全键盘时为转换成拼音后的文本
+	 * @param isT9
+	 *            是否是T9键盘的输入
+	 * @param limit
+	 *            最多返回的结果数目
+	 * @return 按匹配程度从高到低排列的歌曲；如果搜索线程被中断则返回null
+	 */
+	public List<TrackInfo> search(String input, boolean isT9, int limit) {
+		char[] query = TrackSearchIndex.normalizeQuery(input, isT9);
+		int maxEdits = getMaxEdits(query.length);
+		if (maxEdits > 0) {
+			for (char c = 0; c < mPeq.length; c++) {
+				mPeq[c] = peqOf(c, query, isT9);
+			}
+		}
+
+		// 输入的三元组，去掉重复的
+		int[] grams = new int[Math.max(0, query.length - 2)];
+		int gramCount = 0;
+		for (int i = 0; i + 2 < query.length; i++) {
+			int gram = gramOf(query[i], query[i + 1], query[i + 2]);
+			if (gram >= 0 && indexOf(grams, gramCount, gram) < 0) {
+				grams[gramCount++] = gram;
+			}
+		}
+		int minHits = gramCount - 3 * maxEdits;
+
+		PriorityQueue<Long> heap = new PriorityQueue<Long>(limit + 1);
+		if (minHits <= 0) {
+			// 输入太短，三元组不能缩小范围，逐个检查
+			for (int slot = 0; slot < mSlotCount; slot++) {
+				if ((slot & CANCEL_CHECK_MASK) == 0 && Thread.interrupted()) {
+					return null;
+				}
+				if (mTracks[slot] != null) {
+					offer(heap, limit, slot, score(slot, query, isT9,
+							fuzzyEdits(heap, limit, maxEdits)));
+				}
+			}
+		} else {
+			if (mHitCounts.length < mSlotCount) {
+				mHitCounts = new int[mSlotCount];
+			}
+			int[] touched = new int[64];
+			int touchedCount = 0;
+			for (int g = 0; g < gramCount; g++) {
+				if (Thread.interrupted()) {
+					Arrays.fill(mHitCounts, 0, mSlotCount, 0);
+					return null;
+				}
+				int[] posting = mPostings[grams[g]];
+				int count = mPostingCounts[grams[g]];
+				for (int i = 0; i < count; i++) {
+					int slot = posting[i];
+					if (mHitCounts[slot]++ == 0) {
+						if (touchedCount == touched.length) {
+							touched = Arrays.copyOf(touched, touchedCount * 2);
+						}
+						touched[touchedCount++] = slot;
+					}
+				}
+			}
+			for (int i = 0; i < touchedCount; i++) {
+				int slot = touched[i];
+				if ((i & CANCEL_CHECK_MASK) == 0 && Thread.interrupted()) {
+					Arrays.fill(mHitCounts, 0, mSlotCount, 0);
+					return null;
+				}
+				if (mHitCounts[slot] >= minHits && mTracks[slot] != null) {
+					offer(heap, limit, slot, score(slot, query, isT9,
+							fuzzyEdits(heap, limit, maxEdits)));
+				}
+				mHitCounts[slot] = 0;
+			}
+		}
+
+		// 堆顶是得分最低的，倒序取出
+		List<TrackInfo> result = new ArrayList<TrackInfo>(heap.size());
+		Long[] entries = heap.toArray(new Long[heap.size()]);
+		Arrays.sort(entries);
+		for (int i = entries.length - 1; i >= 0; i--) {
+			int slot = Integer.MAX_VALUE - (int) (entries[i] & 0xffffffffL);
+			result.add(mTracks[slot]);
+		}
+		return result;
+	}
+
+	/** 根据输入长度决定允许的编辑次数，太短或超过64个字符时不允许编辑 */
+	static int getMaxEdits(int queryLength) {
+		if (queryLength < 4 || queryLength > 64) {
+			return 0;
+		} else if (queryLength < 8) {
+			return 1;
+		}
+		return 2;
+	}
+
+	/**
+	 * 堆已满并且最低的得分已高于编辑距离匹配时，编辑距离匹配的歌曲不可能再进入结果，不需要计算编辑距离
+	 */
+	private static int fuzzyEdits(PriorityQueue<Long> heap, int limit,
+			int maxEdits) {
+		if (heap.size() == limit && (heap.peek() >>> 56) > TIER_FUZZY) {
+			return 0;
+		}
+		return maxEdits;
+	}
+
+	/**
+	 * 把得分放入堆中，堆中只保留得分最高的limit项。得分相同时位置靠前的歌曲优先
+	 */
+	private static void offer(PriorityQueue<Long> heap, int limit, int slot,
+			int score) {
+		if (score <= 0) {
+			return;
+		}
+		long entry = ((long) score << 32) | (Integer.MAX_VALUE - slot);
+		if (heap.size() < limit) {
+			heap.add(entry);
+		} else if (entry > heap.peek()) {
+			heap.poll();
+			heap.add(entry);
+		}
+	}
+
+	/**
+	 * 计算一首歌曲的得分，不匹配时返回0。
+	 * <p>
+	 * 由高到低依次为：匹配的等级、匹配的字段（标题优先于艺术家，艺术家优先于专辑）、编辑次数、字段长度（短的优先）
+	 */
+	private int score(int slot, char[] query, boolean isT9, int maxEdits) {
+		int best = 0;
+		for (int f = 0; f < FIELD_COUNT; f++) {
+			int start = mBounds[slot * (FIELD_COUNT + 1) + f];
+			int end = mBounds[slot * (FIELD_COUNT + 1) + f + 1];
+			char[] text = mTexts[slot];
+			int tier = 0;
+			int edits = 0;
+			if (f == FIELD_TITLE_INITIALS || f == FIELD_ARTIST_INITIALS
+					|| f == FIELD_ALBUM_INITIALS) {
+				if (indexOf(text, start, end, query, isT9) >= 0) {
+					tier = TIER_INITIALS;
+				}
+			} else {
+				int found = indexOf(text, start, end, query, isT9);
+				if (found == start) {
+					tier = TIER_PREFIX;
+				} else if (found > start) {
+					tier = TIER_SUBSTRING;
+				} else if (maxEdits > 0) {
+					edits = editDistance(text, start, end, query, isT9);
+					if (edits <= maxEdits) {
+						tier = TIER_FUZZY;
+					}
+				}
+			}
+			if (tier == 0) {
+				continue;
+			}
+			int fieldRank = 2 - f / 2;
+			int score = (tier << 24) | (fieldRank << 20)
+					| ((3 - edits) << 16)
+					| (0xffff - Math.min(end - start, 0xffff));
+			if (score > best) {
+				best = score;
+			}
+		}
+		return best;
+	}
+
+	/** 在text的[start,end)中查找query，返回找到的位置，找不到时返回-1 */
+	private static int indexOf(char[] text, int start, int end, char[] query,
+			boolean isT9) {
+		int last = end - query.length;
+		for (int i = start; i <= last; i++) {
+			int j = 0;
+			while (j < query.length && same(text[i + j], query[j], isT9)) {
+				j++;
+			}
+			if (j == query.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 计算query与text的[start,end)中最相近的子串之间的编辑距离。
+	 * <p>
+	 * 使用Myers的位并行算法，编辑距离矩阵的一列用两个long表示，每个字符只需常数次位运算，
+	 * 所以输入不能超过64个字符（见getMaxEdits()）
+	 */
+	private int editDistance(char[] text, int start, int end, char[] query,
+			boolean isT9) {
+		int m = query.length;
+		long high = 1L << (m - 1);
+		long pv = -1L;
+		long mv = 0;
+		int score = m;
+		int best = m;
+		for (int i = start; i < end; i++) {
+			char c = text[i];
+			long eq = c < 128 ? mPeq[c] : peqOf(c, query, isT9);
+			long xv = eq | mv;
+			long xh = (((eq & pv) + pv) ^ pv) | eq;
+			long ph = mv | ~(xh | pv);
+			long mh = pv & xh;
+			if ((ph & high) != 0) {
+				score++;
+			} else if ((mh & high) != 0) {
+				score--;
+			}
+			// 子串可以从任意位置开始，第0行始终为0，所以移位后不补1
+			ph <<= 1;
+			mh <<= 1;
+			pv = mh | ~(xv | ph);
+			mv = ph & xv;
+			if (score < best) {
+				best = score;
+				if (best == 0) {
+					break;
+				}
+			}
+		}
+		return best;
+	}
+
+	/** 计算Myers算法中字符c的匹配掩码：第j位为1表示c与query[j]相同 */
+	private static long peqOf(char c, char[] query, boolean isT9) {
+		long mask = 0;
+		for (int j = 0; j < query.length; j++) {
+			if (same(c, query[j], isT9)) {
+				mask |= 1L << j;
+			}
+		}
+		return mask;
+	}
+
+	/** 索引中的字符与输入的字符是否相同，T9键盘时比较字母对应的数字键，其他字符都不匹配 */
+	private static boolean same(char textChar, char queryChar, boolean isT9) {
+		if (isT9) {
+			return textChar >= 'a' && textChar <= 'z'
+					&& T9_DIGITS[textChar - 'a'] == queryChar;
+		}
+		return textChar == queryChar;
+	}
+
+	/** 把歌曲添加到新的位置，并把它的三元组加入倒排表 */
+	private void append(TrackInfo track) {
+		int slot = mSlotCount++;
+		if (slot == mTracks.length) {
+			mTracks = Arrays.copyOf(mTracks, slot * 2);
+			mTexts = Arrays.copyOf(mTexts, slot * 2);
+			mBounds = Arrays.copyOf(mBounds, slot * 2 * (FIELD_COUNT + 1));
+		}
+		mTracks[slot] = track;
+		mSlotById.put(track.getId(), slot);
+
+		StringBuilder text = new StringBuilder();
+		int base = slot * (FIELD_COUNT + 1);
+		mBounds[base + FIELD_TITLE] = text.length();
+		appendFull(track.getTitleKey(), text);
+		mBounds[base + FIELD_TITLE_INITIALS] = text.length();
+		appendInitials(track.getTitleKey(), text);
+		mBounds[base + FIELD_ARTIST] = text.length();
+		appendFull(track.getArtistKey(), text);
+		mBounds[base + FIELD_ARTIST_INITIALS] = text.length();
+		appendInitials(track.getArtistKey(), text);
+		String albumKey = StringHelper.getPingYin(track.getAlbum());
+		mBounds[base + FIELD_ALBUM] = text.length();
+		appendFull(albumKey, text);
+		mBounds[base + FIELD_ALBUM_INITIALS] = text.length();
+		appendInitials(albumKey, text);
+		mBounds[base + FIELD_COUNT] = text.length();
+
+		char[] chars = new char[text.length()];
+		text.getChars(0, chars.length, chars, 0);
+		mTexts[slot] = chars;
+		indexGrams(slot, chars);
+	}
+
+	/** 把字段中的三元组以及它们的T9形式加入倒排表，不跨越字段 */
+	private void indexGrams(int slot, char[] text) {
+		int base = slot * (FIELD_COUNT + 1);
+		for (int f = 0; f < FIELD_COUNT; f++) {
+			int end = mBounds[base + f + 1];
+			for (int i = mBounds[base + f]; i + 2 < end; i++) {
+				addPosting(gramOf(text[i], text[i + 1], text[i + 2]), slot);
+				addPosting(gramOf(toT9(text[i]), toT9(text[i + 1]),
+						toT9(text[i + 2])), slot);
+			}
+		}
+	}
+
+	private void addPosting(int gram, int slot) {
+		if (gram < 0) {
+			return;
+		}
+		int[] posting = mPostings[gram];
+		int count = mPostingCounts[gram];
+		if (count > 0 && posting[count - 1] == slot) {
+			// 同一首歌曲只记录一次
+			return;
+		}
+		if (posting == null) {
+			posting = mPostings[gram] = new int[4];
+		} else if (count == posting.length) {
+			posting = mPostings[gram] = Arrays.copyOf(posting, count * 2);
+		}
+		posting[count] = slot;
+		mPostingCounts[gram] = count + 1;
+	}
+
+	/** 丢弃已移除的歌曲，重新编排位置和倒排表 */
+	private void compact() {
+		TrackInfo[] tracks = Arrays.copyOf(mTracks, mSlotCount);
+		mSlotCount = 0;
+		mRemovedCount = 0;
+		mSlotById.clear();
+		Arrays.fill(mPostings, null);
+		Arrays.fill(mPostingCounts, 0);
+		Arrays.fill(mTexts, null);
+		for (TrackInfo track : tracks) {
+			if (track != null) {
+				append(track);
+			}
+		}
+		Arrays.fill(mTracks, mSlotCount, mTracks.length, null);
+	}
+
+	/** 全拼字母串，统一成小写 */
+	private static void appendFull(String key, StringBuilder out) {
+		if (key == null) {
+			return;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			out.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+		}
+	}
+
+	/** 简拼字母串，规则与TrackSearchIndex相同，不连续的部分用分隔符隔开 */
+	private static void appendInitials(String key, StringBuilder out) {
+		if (key == null) {
+			return;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				out.append((char) (c + ('a' - 'A')));
+			} else if ((c < 'a' || c > 'z') && c != '*' && c != '+') {
+				out.append(TrackSearchIndex.SEPARATOR);
+			}
+		}
+	}
+
+	private static char toT9(char c) {
+		return c >= 'a' && c <= 'z' ? T9_DIGITS[c - 'a'] : c;
+	}
+
+	/** 三元组的编号，含有字母数字以外的字符时返回-1 */
+	private static int gramOf(char a, char b, char c) {
+		int x = symbolOf(a);
+		int y = symbolOf(b);
+		int z = symbolOf(c);
+		if (x == 0 || y == 0 || z == 0) {
+			return -1;
+		}
+		return (x * GRAM_RADIX + y) * GRAM_RADIX + z;
+	}
+
+	private static int symbolOf(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a' + 1;
+		} else if (c >= '0' && c <= '9') {
+			return c - '0' + 27;
+		}
+		return 0;
+	}
+
+	private static int indexOf(int[] array, int count, int value) {
+		for (int i = 0; i < count; i++) {
+			if (array[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,316 @@
+package com.lq.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import com.lq.entity.AlbumInfo;
+import com.lq.entity.ArtistInfo;
+import com.lq.entity.FolderInfo;
+import com.lq.entity.PlaylistInfo;
+import com.lq.util.StringHelper;
+
+/**
+ * 全局搜索索引，歌手、专辑、文件夹、播放列表共用一个索引。歌曲直接在歌曲列表中搜索，不放进这个索引。
+ * <p>
+ * 每个条目记录它的类型、对象以及名称的全拼、简拼（T9数字串和字母串，规则与{@link TrackSearchIndex}相同），
+ * 一次查询只扫描一遍所有条目，按类型分组返回结果。各类数据加载完成时调用{@link #update(int, List)}，
+ * 只添加新的条目、移除已不存在的条目，不会重建整个索引。
+ * <p>
+ * 全局只有一个实例，可以在多个线程中使用。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class GlobalSearchIndex {
+	public static final int TYPE_ARTIST = 0;
+	public static final int TYPE_ALBUM = 1;
+	public static final int TYPE_FOLDER = 2;
+	public static final int TYPE_PLAYLIST = 3;
+	public static final int TYPE_COUNT = 4;
+
+	/** 查询所有类型 */
+	public static final int ALL_TYPES = (1 << TYPE_COUNT) - 1;
+
+	/** 每扫描256个条目检查一次搜索是否已被取消 */
+	private static final int CANCEL_CHECK_MASK = 0xff;
+
+	/** 已移除的条目超过此数目并且多于有效的条目时整理索引 */
+	private static final int COMPACT_THRESHOLD = 256;
+
+	private static final int FORM_COUNT = 4;
+
+	/** 一次查询的结果，按类型分组 */
+	public static class Result {
+		private final ArrayList<List<Object>> mItems = new ArrayList<List<Object>>(
+				TYPE_COUNT);
+		private final int[] mCounts = new int[TYPE_COUNT];
+
+		Result() {
+			for (int i = 0; i < TYPE_COUNT; i++) {
+				mItems.add(new ArrayList<Object>());
+			}
+		}
+
+		/** 指定类型的匹配条目，最多为查询时指定的数目 */
+		public List<Object> getItems(int type) {
+			return mItems.get(type);
+		}
+
+		/** 指定类型的匹配条目总数 */
+		public int getCount(int type) {
+			return mCounts[type];
+		}
+	}
+
+	private static GlobalSearchIndex sInstance = null;
+
+	/** 各位置上条目的类型 */
+	private int[] mTypes = new int[64];
+
+	/** 各位置上的对象，已移除的为null */
+	private Object[] mItems = new Object[64];
+
+	/** 各位置上条目的名称，用来判断条目是否有变化 */
+	private String[] mNames = new String[64];
+
+	/** 各位置上条目的各种形式，依次拼接 */
+	private char[][] mTexts = new char[64][];
+
+	/** 第i个条目的第f种形式位于mTexts[i]的[mBounds[i*(FORM_COUNT+1)+f],mBounds[i*(FORM_COUNT+1)+f+1]) */
+	private int[] mBounds = new int[64 * (FORM_COUNT + 1)];
+
+	/** 已使用的位置数目，包括已移除的 */
+	private int mSlotCount = 0;
+
+	/** 已移除的条目数目 */
+	private int mRemovedCount = 0;
+
+	/** 条目标识（类型+ID）到位置的映射 */
+	private final HashMap<String, Integer> mSlotByKey = new HashMap<String, Integer>();
+
+	private GlobalSearchIndex() {
+	}
+
+	public static synchronized GlobalSearchIndex getInstance() {
+		if (sInstance == null) {
+			sInstance = new GlobalSearchIndex();
+		}
+		return sInstance;
+	}
+
+	/** 索引中指定类型的条目数目 */
+	public synchronized int size(int type) {
+		int count = 0;
+		for (int slot = 0; slot < mSlotCount; slot++) {
+			if (mItems[slot] != null && mTypes[slot] == type) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 用新加载的某一类数据更新索引：移除该类型中列表里已没有的条目，添加新的条目，名称有变化的条目重新索引
+	 *
+	 * @param type
+	 *            TYPE_XXX
+	 * @param items
+	 *            该类型的全部数据，元素类型须与type对应
+	 */
+	public synchronized void update(int type, List<?> items) {
+		HashSet<String> keys = new HashSet<String>();
+		for (Object item : items) {
+			keys.add(keyOf(type, item));
+		}
+		for (int slot = 0; slot < mSlotCount; slot++) {
+			if (mItems[slot] != null && mTypes[slot] == type
+					&& !keys.contains(keyOf(type, mItems[slot]))) {
+				remove(slot);
+			}
+		}
+		for (Object item : items) {
+			String key = keyOf(type, item);
+			String name = nameOf(type, item);
+			Integer slot = mSlotByKey.get(key);
+			if (slot != null) {
+				if (name.equals(mNames[slot])) {
+					// 索引的内容没有变化，只更新引用
+					mItems[slot] = item;
+					continue;
+				}
+				remove(slot);
+			}
+			append(type, key, name, item);
+		}
+		if (mRemovedCount > COMPACT_THRESHOLD
+				&& mRemovedCount > mSlotByKey.size()) {
+			compact();
+		}
+	}
+
+	/**
+	 * 在所有类型中搜索匹配输入的条目
+	 *
+	 * @param input
+	 *            输入的字符串，T9键盘时均为2~9的数字，全键盘时为转换成拼音后的文本
+	 * @param isT9
+	 *            是否是T9键盘的输入
+	 * @param typeMask
+	 *            要查询的类型，第TYPE_XXX位为1表示查询该类型
+	 * @param limit
+	 *            每种类型最多返回的条目数目
+	 * @return 按类型分组的结果，每组按加入索引的顺序排列；如果搜索线程被中断则返回null
+	 */
+	public synchronized Result search(String input, boolean isT9,
+			int typeMask, int limit) {
+		Result result = new Result();
+		char[] query = TrackSearchIndex.normalizeQuery(input, isT9);
+		int full = isT9 ? TrackSearchIndex.FORM_FULL_T9
+				: TrackSearchIndex.FORM_FULL_LETTER;
+		int initial = isT9 ? TrackSearchIndex.FORM_INITIAL_T9
+				: TrackSearchIndex.FORM_INITIAL_LETTER;
+		boolean matchInitials = input.length() < TrackSearchIndex.MAX_INITIALS_QUERY_LENGTH;
+		for (int slot = 0; slot < mSlotCount; slot++) {
+			if ((slot & CANCEL_CHECK_MASK) == 0 && Thread.interrupted()) {
+				return null;
+			}
+			if (mItems[slot] == null || (typeMask & (1 << mTypes[slot])) == 0) {
+				continue;
+			}
+			if (contains(slot, full, query)
+					|| (matchInitials && contains(slot, initial, query))) {
+				int type = mTypes[slot];
+				if (result.mCounts[type]++ < limit) {
+					result.mItems.get(type).add(mItems[slot]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/** 在第slot个条目的第form种形式中查找子串query */
+	private boolean contains(int slot, int form, char[] query) {
+		char[] data = mTexts[slot];
+		int start = mBounds[slot * (FORM_COUNT + 1) + form];
+		int last = mBounds[slot * (FORM_COUNT + 1) + form + 1] - query.length;
+		for (int i = start; i <= last; i++) {
+			int j = 0;
+			while (j < query.length && data[i + j] == query[j]) {
+				j++;
+			}
+			if (j == query.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void remove(int slot) {
+		mSlotByKey.remove(keyOf(mTypes[slot], mItems[slot]));
+		mItems[slot] = null;
+		mNames[slot] = null;
+		mTexts[slot] = null;
+		mRemovedCount++;
+	}
+
+	private void append(int type, String key, String name, Object item) {
+		int slot = mSlotCount++;
+		if (slot == mItems.length) {
+			mTypes = Arrays.copyOf(mTypes, slot * 2);
+			mItems = Arrays.copyOf(mItems, slot * 2);
+			mNames = Arrays.copyOf(mNames, slot * 2);
+			mTexts = Arrays.copyOf(mTexts, slot * 2);
+			mBounds = Arrays.copyOf(mBounds, slot * 2 * (FORM_COUNT + 1));
+		}
+		mTypes[slot] = type;
+		mItems[slot] = item;
+		mNames[slot] = name;
+		mSlotByKey.put(key, slot);
+
+		// 把名称的拼音转换成各种形式，与TrackSearchIndex的规则相同
+		StringBuilder[] builders = new StringBuilder[FORM_COUNT];
+		for (int f = 0; f < FORM_COUNT; f++) {
+			builders[f] = new StringBuilder(name.length() * 4);
+		}
+		TrackSearchIndex.appendKey(StringHelper.getPingYin(name), builders);
+		int length = 0;
+		for (int f = 0; f < FORM_COUNT; f++) {
+			length += builders[f].length();
+		}
+		char[] text = new char[length];
+		int base = slot * (FORM_COUNT + 1);
+		int offset = 0;
+		for (int f = 0; f < FORM_COUNT; f++) {
+			mBounds[base + f] = offset;
+			builders[f].getChars(0, builders[f].length(), text, offset);
+			offset += builders[f].length();
+		}
+		mBounds[base + FORM_COUNT] = offset;
+		mTexts[slot] = text;
+	}
+
+	/** 丢弃已移除的条目，重新编排位置 */
+	private void compact() {
+		int count = 0;
+		for (int slot = 0; slot < mSlotCount; slot++) {
+			if (mItems[slot] == null) {
+				continue;
+			}
+			if (slot != count) {
+				mTypes[count] = mTypes[slot];
+				mItems[count] = mItems[slot];
+				mNames[count] = mNames[slot];
+				mTexts[count] = mTexts[slot];
+				System.arraycopy(mBounds, slot * (FORM_COUNT + 1), mBounds,
+						count * (FORM_COUNT + 1), FORM_COUNT + 1);
+				mSlotByKey.put(keyOf(mTypes[count], mItems[count]), count);
+			}
+			count++;
+		}
+		Arrays.fill(mItems, count, mSlotCount, null);
+		Arrays.fill(mNames, count, mSlotCount, null);
+		Arrays.fill(mTexts, count, mSlotCount, null);
+		mSlotCount = count;
+		mRemovedCount = 0;
+	}
+
+	/** 条目的唯一标识 */
+	private static String keyOf(int type, Object item) {
+		switch (type) {
+		case TYPE_ARTIST:
+			return type + ":" + ((ArtistInfo) item).getArtistName();
+		case TYPE_ALBUM:
+			return type + ":" + ((AlbumInfo) item).getAlbumId();
+		case TYPE_FOLDER:
+			return type + ":" + ((FolderInfo) item).getFolderPath();
+		case TYPE_PLAYLIST:
+			return type + ":" + ((PlaylistInfo) item).getId();
+		default:
+			throw new IllegalArgumentException("unknown type:" + type);
+		}
+	}
+
+	/** 条目用来搜索的名称 */
+	private static String nameOf(int type, Object item) {
+		String name = null;
+		switch (type) {
+		case TYPE_ARTIST:
+			name = ((ArtistInfo) item).getArtistName();
+			break;
+		case TYPE_ALBUM:
+			name = ((AlbumInfo) item).getAlbumName();
+			break;
+		case TYPE_FOLDER:
+			name = ((FolderInfo) item).getFolderName();
+			break;
+		case TYPE_PLAYLIST:
+			name = ((PlaylistInfo) item).getPlaylistName();
+			break;
+		default:
+			throw new IllegalArgumentException("unknown type:" + type);
+		}
+		return name == null ? "" : name;
+	}
+}
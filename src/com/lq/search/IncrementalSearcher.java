@@ -0,0 +1,90 @@
+package com.lq.search;
+
+import java.util.ArrayList;
+
+/**
+ * 逐键缩小范围的搜索器。
+ * <p>
+ * 在输入末尾追加一个字符时，只在上一次的结果中继续筛选；每个输入前缀的结果都保存在一个栈中，
+ * 回退删除时直接弹出栈顶即可得到上一次的结果，不需要重新扫描整个歌曲列表。
+ * <p>
+ * 本类不是线程安全的，同一个实例只能在一个线程中使用。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class IncrementalSearcher {
+
+	/** 一个输入前缀以及它的搜索结果 */
+	private static class Step {
+		final String input;
+		final int[] result;
+
+		Step(String input, int[] result) {
+			this.input = input;
+			this.result = result;
+		}
+	}
+
+	private final TrackSearchIndex mIndex;
+
+	/** 栈中的结果是T9键盘还是全键盘的输入 */
+	private boolean mIsT9 = true;
+
+	/** 各输入前缀的搜索结果，栈顶是最近一次的输入 */
+	private final ArrayList<Step> mSteps = new ArrayList<Step>();
+
+	public IncrementalSearcher(TrackSearchIndex index) {
+		mIndex = index;
+	}
+
+	public TrackSearchIndex getIndex() {
+		return mIndex;
+	}
+
+	/**
+	 * 搜索匹配输入的歌曲
+	 *
+	 * @param input
+	 *            输入的字符串，不能为空串
+	 * @param isT9
+	 *            是否是T9键盘的输入
+	 * @return 匹配的歌曲在列表中的位置，按升序排列。返回的数组会被缓存，调用者不能修改它。
+	 *         如果搜索线程被中断则返回null
+	 */
+	public int[] search(String input, boolean isT9) {
+		if (isT9 != mIsT9) {
+			// 换了键盘，之前的结果不能再用了
+			mSteps.clear();
+			mIsT9 = isT9;
+		}
+
+		// 弹出所有不是本次输入前缀的结果，回退删除时只需弹出一次
+		while (!mSteps.isEmpty()
+				&& !input.startsWith(mSteps.get(mSteps.size() - 1).input)) {
+			mSteps.remove(mSteps.size() - 1);
+		}
+
+		int[] result = null;
+		if (mSteps.isEmpty()) {
+			result = mIndex.search(input, isT9);
+		} else {
+			Step top = mSteps.get(mSteps.size() - 1);
+			if (top.input.equals(input)) {
+				return top.result;
+			}
+			// 在上一次的结果中继续筛选
+			result = mIndex.filter(top.result, top.result.length, input, isT9);
+		}
+		if (result == null) {
+			// 被中断的搜索没有完整的结果，不能入栈
+			return null;
+		}
+		mSteps.add(new Step(input, result));
+		return result;
+	}
+
+	/** 清空缓存的结果 */
+	public void reset() {
+		mSteps.clear();
+	}
+}
@@ -0,0 +1,379 @@
+package com.lq.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import com.lq.entity.LyricSentence;
+import com.lq.entity.TrackInfo;
+import com.lq.util.StringHelper;
+
+/**
+ * 歌词全文搜索索引。
+ * <p>
+ * 每个歌词文件中的每一句歌词是一条记录。汉字按相邻的两个字切分成二元组，歌词的拼音（小写，去掉空格和标点）
+ * 按相邻的三个字符切分成三元组，两种词元共用一张倒排表，记录含有该词元的句子。含有汉字的输入按原文查找，
+ * 否则按拼音查找：先取输入的词元中倒排表最短的一个得到候选句子，再逐句核对；输入太短切分不出词元时逐句检查。
+ * <p>
+ * 歌词被下载或由LyricLoadHelper载入时调用{@link #update(String, TrackInfo, List)}，只替换该歌词文件的句子，
+ * 不会重建整个索引。全局只有一个实例，可以在多个线程中使用。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class LyricSearchIndex {
+
+	/** 默认最多返回的结果数目 */
+	public static final int DEFAULT_RESULT_LIMIT = 50;
+
+	/** 三元组中每个字符的取值个数：0表示其他字符，1~26为字母，27~36为数字 */
+	private static final int GRAM_RADIX = 37;
+
+	/** 每检查256句歌词检查一次搜索是否已被取消 */
+	private static final int CANCEL_CHECK_MASK = 0xff;
+
+	/** 已移除的句子超过此数目并且多于有效的句子时整理索引 */
+	private static final int COMPACT_THRESHOLD = 4096;
+
+	/** 一条搜索结果：歌曲、歌词文件以及匹配的句子 */
+	public static class Hit {
+		private final TrackInfo mTrack;
+		private final String mLyricPath;
+		private final LyricSentence mSentence;
+
+		Hit(TrackInfo track, String lyricPath, LyricSentence sentence) {
+			mTrack = track;
+			mLyricPath = lyricPath;
+			mSentence = sentence;
+		}
+
+		/** 歌词对应的歌曲，载入歌词时未指定歌曲的为null */
+		public TrackInfo getTrack() {
+			return mTrack;
+		}
+
+		public String getLyricPath() {
+			return mLyricPath;
+		}
+
+		/** 匹配的句子，其开始时间即跳转播放的位置 */
+		public LyricSentence getSentence() {
+			return mSentence;
+		}
+	}
+
+	private static LyricSearchIndex sInstance = null;
+
+	/** 歌词文件路径到文件序号的映射 */
+	private final HashMap<String, Integer> mDocByPath = new HashMap<String, Integer>();
+
+	// 各歌词文件的信息，下标为文件序号，已移除的文件路径为null
+	private String[] mDocPaths = new String[16];
+	private TrackInfo[] mDocTracks = new TrackInfo[16];
+	private long[] mDocModified = new long[16];
+
+	/** 各文件的句子位于[mDocLineStarts[i],mDocLineEnds[i]) */
+	private int[] mDocLineStarts = new int[16];
+	private int[] mDocLineEnds = new int[16];
+	private int mDocCount = 0;
+
+	// 各句歌词的信息，下标为句子序号，同一个文件的句子是连续的，已移除的句子为null
+	private int[] mLineDocs = new int[256];
+	private LyricSentence[] mLineSentences = new LyricSentence[256];
+
+	/** 句子的小写文本 */
+	private String[] mLineTexts = new String[256];
+
+	/** 句子的拼音，只保留小写字母和数字 */
+	private String[] mLinePinyin = new String[256];
+
+	private int mLineCount = 0;
+
+	private int mRemovedLineCount = 0;
+
+	/** 每个词元的倒排表，第0项为句子数目，其后是按升序排列的句子序号，可能含有已移除的句子 */
+	private final HashMap<Integer, int[]> mPostings = new HashMap<Integer, int[]>();
+
+	private LyricSearchIndex() {
+	}
+
+	public static synchronized LyricSearchIndex getInstance() {
+		if (sInstance == null) {
+			sInstance = new LyricSearchIndex();
+		}
+		return sInstance;
+	}
+
+	/** 索引中的歌词文件数目 */
+	public synchronized int size() {
+		return mDocByPath.size();
+	}
+
+	/** 歌词文件是否已经索引过，并且索引后没有被修改 */
+	public synchronized boolean isUpToDate(String lyricPath) {
+		File file = new File(lyricPath);
+		Integer doc = mDocByPath.get(file.getPath());
+		return doc != null && mDocModified[doc] == file.lastModified();
+	}
+
+	/**
+	 * 用载入的歌词更新索引，替换该歌词文件原有的句子。同一个文件中内容相同的句子只记录最早的一句
+	 *
+	 * @param lyricPath
+	 *            歌词文件路径
+	 * @param track
+	 *            歌词对应的歌曲，可以为null
+	 * @param sentences
+	 *            歌词的全部句子，按时间排序；为空时只移除该歌词文件
+	 */
+	public synchronized void update(String lyricPath, TrackInfo track,
+			List<LyricSentence> sentences) {
+		File file = new File(lyricPath);
+		String path = file.getPath();
+		remove(path);
+		if (sentences == null || sentences.isEmpty()) {
+			return;
+		}
+
+		int doc = mDocCount++;
+		if (doc == mDocPaths.length) {
+			mDocPaths = Arrays.copyOf(mDocPaths, doc * 2);
+			mDocTracks = Arrays.copyOf(mDocTracks, doc * 2);
+			mDocModified = Arrays.copyOf(mDocModified, doc * 2);
+			mDocLineStarts = Arrays.copyOf(mDocLineStarts, doc * 2);
+			mDocLineEnds = Arrays.copyOf(mDocLineEnds, doc * 2);
+		}
+		mDocPaths[doc] = path;
+		mDocTracks[doc] = track;
+		mDocModified[doc] = file.lastModified();
+		mDocByPath.put(path, doc);
+		mDocLineStarts[doc] = mLineCount;
+
+		HashSet<String> contents = new HashSet<String>();
+		for (LyricSentence sentence : sentences) {
+			String content = sentence.getContentText();
+			if (content == null || content.trim().length() == 0
+					|| !contents.add(content.trim())) {
+				continue;
+			}
+			appendLine(doc, sentence);
+		}
+		mDocLineEnds[doc] = mLineCount;
+
+		if (mRemovedLineCount > COMPACT_THRESHOLD
+				&& mRemovedLineCount > mLineCount - mRemovedLineCount) {
+			compact();
+		}
+	}
+
+	/** 移除一个歌词文件的全部句子 */
+	public synchronized void remove(String lyricPath) {
+		Integer doc = mDocByPath.remove(new File(lyricPath).getPath());
+		if (doc == null) {
+			return;
+		}
+		for (int line = mDocLineStarts[doc]; line < mDocLineEnds[doc]; line++) {
+			if (mLineSentences[line] != null) {
+				mLineSentences[line] = null;
+				mLineTexts[line] = null;
+				mLinePinyin[line] = null;
+				mRemovedLineCount++;
+			}
+		}
+		mDocPaths[doc] = null;
+		mDocTracks[doc] = null;
+	}
+
+	/**
+	 * 搜索含有输入内容的歌词句子
+	 *
+	 * @param input
+	 *            输入的文本，含有汉字时按原文匹配，否则按拼音匹配（忽略大小写、空格和标点）
+	 * @param limit
+	 *            最多返回的结果数目
+	 * @return 按歌词文件、时间顺序排列的结果；如果搜索线程被中断则返回null
+	 */
+	public synchronized List<Hit> search(String input, int limit) {
+		List<Hit> result = new ArrayList<Hit>();
+		String text = input.trim().toLowerCase(Locale.US);
+		boolean byText = hasHanzi(text);
+		String needle = byText ? text : normalizePinyin(text);
+		if (needle.length() == 0) {
+			return result;
+		}
+
+		// 取倒排表最短的词元缩小范围
+		int[] candidates = null;
+		int[] tokens = tokenize(needle, byText);
+		for (int token : tokens) {
+			int[] posting = mPostings.get(token);
+			if (posting == null) {
+				return result;
+			}
+			if (candidates == null || posting[0] < candidates[0]) {
+				candidates = posting;
+			}
+		}
+
+		int count = candidates == null ? mLineCount : candidates[0];
+		for (int i = 0; i < count && result.size() < limit; i++) {
+			if ((i & CANCEL_CHECK_MASK) == 0 && Thread.interrupted()) {
+				return null;
+			}
+			int line = candidates == null ? i : candidates[i + 1];
+			if (mLineSentences[line] == null) {
+				continue;
+			}
+			String haystack = byText ? mLineTexts[line] : mLinePinyin[line];
+			if (haystack.indexOf(needle) >= 0) {
+				int doc = mLineDocs[line];
+				result.add(new Hit(mDocTracks[doc], mDocPaths[doc],
+						mLineSentences[line]));
+			}
+		}
+		return result;
+	}
+
+	private void appendLine(int doc, LyricSentence sentence) {
+		int line = mLineCount++;
+		if (line == mLineDocs.length) {
+			mLineDocs = Arrays.copyOf(mLineDocs, line * 2);
+			mLineSentences = Arrays.copyOf(mLineSentences, line * 2);
+			mLineTexts = Arrays.copyOf(mLineTexts, line * 2);
+			mLinePinyin = Arrays.copyOf(mLinePinyin, line * 2);
+		}
+		String text = sentence.getContentText().toLowerCase(Locale.US);
+		mLineDocs[line] = doc;
+		mLineSentences[line] = sentence;
+		mLineTexts[line] = text;
+		mLinePinyin[line] = normalizePinyin(StringHelper.getPingYin(text));
+
+		addPostings(tokenize(text, true), line);
+		addPostings(tokenize(mLinePinyin[line], false), line);
+	}
+
+	private void addPostings(int[] tokens, int line) {
+		for (int token : tokens) {
+			int[] posting = mPostings.get(token);
+			if (posting == null) {
+				posting = new int[4];
+				mPostings.put(token, posting);
+			} else if (posting[posting[0]] == line) {
+				// 同一句中重复的词元只记录一次
+				continue;
+			} else if (posting[0] + 1 == posting.length) {
+				posting = Arrays.copyOf(posting, posting.length * 2);
+				mPostings.put(token, posting);
+			}
+			posting[++posting[0]] = line;
+		}
+	}
+
+	/** 丢弃已移除的句子和文件，重新建立倒排表 */
+	private void compact() {
+		int docCount = mDocCount;
+		String[] paths = mDocPaths;
+		TrackInfo[] tracks = mDocTracks;
+		long[] modified = mDocModified;
+		int[] lineStarts = mDocLineStarts;
+		int[] lineEnds = mDocLineEnds;
+		LyricSentence[] sentences = mLineSentences;
+
+		mDocByPath.clear();
+		mPostings.clear();
+		mDocPaths = new String[Math.max(16, docCount)];
+		mDocTracks = new TrackInfo[mDocPaths.length];
+		mDocModified = new long[mDocPaths.length];
+		mDocLineStarts = new int[mDocPaths.length];
+		mDocLineEnds = new int[mDocPaths.length];
+		mDocCount = 0;
+		mLineDocs = new int[Math.max(256, mLineCount - mRemovedLineCount)];
+		mLineSentences = new LyricSentence[mLineDocs.length];
+		mLineTexts = new String[mLineDocs.length];
+		mLinePinyin = new String[mLineDocs.length];
+		mLineCount = 0;
+		mRemovedLineCount = 0;
+
+		for (int doc = 0; doc < docCount; doc++) {
+			if (paths[doc] == null) {
+				continue;
+			}
+			int newDoc = mDocCount++;
+			mDocPaths[newDoc] = paths[doc];
+			mDocTracks[newDoc] = tracks[doc];
+			mDocModified[newDoc] = modified[doc];
+			mDocByPath.put(paths[doc], newDoc);
+			mDocLineStarts[newDoc] = mLineCount;
+			for (int line = lineStarts[doc]; line < lineEnds[doc]; line++) {
+				appendLine(newDoc, sentences[line]);
+			}
+			mDocLineEnds[newDoc] = mLineCount;
+		}
+	}
+
+	/**
+	 * 把文本切分成词元
+	 *
+	 * @param byText
+	 *            为true时切分相邻汉字的二元组，否则切分拼音字母串的三元组
+	 */
+	private static int[] tokenize(String text, boolean byText) {
+		int[] tokens = new int[Math.max(0, text.length() - 1)];
+		int count = 0;
+		if (byText) {
+			for (int i = 0; i + 1 < text.length(); i++) {
+				char c1 = text.charAt(i);
+				char c2 = text.charAt(i + 1);
+				if (isHanzi(c1) && isHanzi(c2)) {
+					// 汉字二元组的值不小于0x4e00<<16，不会与三元组的值重合
+					tokens[count++] = (c1 << 16) | c2;
+				}
+			}
+		} else {
+			for (int i = 0; i + 2 < text.length(); i++) {
+				tokens[count++] = (gramChar(text.charAt(i)) * GRAM_RADIX + gramChar(text
+						.charAt(i + 1))) * GRAM_RADIX + gramChar(text.charAt(i + 2));
+			}
+		}
+		return Arrays.copyOf(tokens, count);
+	}
+
+	private static int gramChar(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a' + 1;
+		} else if (c >= '0' && c <= '9') {
+			return c - '0' + 27;
+		}
+		return 0;
+	}
+
+	/** 把拼音转换成只含小写字母和数字的串 */
+	private static String normalizePinyin(String pinyin) {
+		StringBuilder builder = new StringBuilder(pinyin.length());
+		for (int i = 0; i < pinyin.length(); i++) {
+			char c = pinyin.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				builder.append((char) (c + ('a' - 'A')));
+			} else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static boolean isHanzi(char c) {
+		return c >= '\u4e00' && c <= '\u9fa5';
+	}
+
+	private static boolean hasHanzi(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (isHanzi(text.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
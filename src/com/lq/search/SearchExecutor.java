@@ -0,0 +1,487 @@
+package com.lq.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.lq.entity.TrackInfo;
+import com.lq.util.LyricLoadHelper;
+import com.lq.util.PlayCountHelper;
+
+/**
+ * 在后台线程中执行歌曲搜索。
+ * <p>
+ * 所有搜索都在同一个工作线程中依次执行；新的输入到来时，尚未完成的旧搜索会被取消，
+ * 只有最后一次输入的结果才会被发回主线程。同时统计每次搜索从输入到结果送达所用的时间。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class SearchExecutor {
+	private static final String TAG = SearchExecutor.class.getSimpleName();
+
+	/** 搜索结果的回调，在主线程中执行 */
+	public interface OnSearchResultListener {
+		/**
+		 * @param input
+		 *            搜索的输入
+		 * @param result
+		 *            匹配的歌曲在列表中的位置，按升序排列
+		 */
+		public abstract void onSearchResult(String input, int[] result);
+	}
+
+	/** 模糊搜索结果的回调，在主线程中执行 */
+	public interface OnFuzzySearchResultListener {
+		/**
+		 * @param input
+		 *            搜索的输入
+		 * @param result
+		 *            匹配的歌曲，按匹配程度从高到低排列
+		 */
+		public abstract void onFuzzySearchResult(String input,
+				List<TrackInfo> result);
+	}
+
+	/** 全局搜索结果的回调，在主线程中执行 */
+	public interface OnGlobalSearchResultListener {
+		/**
+		 * @param input
+		 *            搜索的输入
+		 * @param result
+		 *            按类型分组的匹配条目
+		 */
+		public abstract void onGlobalSearchResult(String input,
+				GlobalSearchIndex.Result result);
+	}
+
+	/** 歌词搜索结果的回调，在主线程中执行 */
+	public interface OnLyricSearchResultListener {
+		/**
+		 * @param input
+		 *            搜索的输入
+		 * @param result
+		 *            匹配的歌词句子及其歌曲
+		 */
+		public abstract void onLyricSearchResult(String input,
+				List<LyricSearchIndex.Hit> result);
+	}
+
+	/** 搜索补全结果的回调，在主线程中执行 */
+	public interface OnCompletionResultListener {
+		/**
+		 * @param input
+		 *            搜索的输入
+		 * @param result
+		 *            以输入为前缀的标题和艺术家，按名次排列
+		 */
+		public abstract void onCompletionResult(String input,
+				List<CompletionIndex.Completion> result);
+	}
+
+	/** 在工作线程中执行的一次搜索 */
+	private static abstract class SearchJob {
+		/** 在工作线程中执行搜索，被取消时返回false */
+		abstract boolean run();
+
+		/** 在主线程中送达结果 */
+		abstract void deliver();
+	}
+
+	private final ExecutorService mWorker = Executors
+			.newSingleThreadExecutor();
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/** 每次新的搜索或取消都会使其加1，结果送达时与提交时的值不同就说明已经过时了 */
+	private final AtomicInteger mGeneration = new AtomicInteger();
+
+	private volatile IncrementalSearcher mSearcher = null;
+
+	/** 模糊搜索索引，只在开启模糊搜索后才建立，只在工作线程中访问 */
+	private FuzzySearchIndex mFuzzyIndex = null;
+
+	/** 最新加载的歌曲列表，及模糊搜索索引中已有的歌曲列表，只在工作线程中访问 */
+	private List<TrackInfo> mFuzzyTracks = null;
+	private List<TrackInfo> mFuzzyIndexedTracks = null;
+
+	/** 搜索补全索引，只在工作线程中访问 */
+	private CompletionIndex mCompletionIndex = null;
+
+	/** 最近一次输入提交的、尚未完成的搜索 */
+	private final ArrayList<Future<?>> mPending = new ArrayList<Future<?>>();
+
+	// 搜索耗时统计，单位为毫秒，只在主线程中访问
+	private int mQueryCount = 0;
+	private long mTotalLatency = 0;
+	private long mLastLatency = 0;
+	private long mMaxLatency = 0;
+
+	/** 设置要使用的搜索器，数据重新加载后调用 */
+	public void setSearcher(IncrementalSearcher searcher) {
+		cancel();
+		mSearcher = searcher;
+	}
+
+	/**
+	 * 提交一次搜索，之前尚未完成的搜索都会被取消
+	 *
+	 * @param input
+	 *            输入的字符串，不能为空串
+	 * @param isT9
+	 *            是否是T9键盘的输入
+	 * @param listener
+	 *            结果的回调
+	 */
+	public void search(final String input, final boolean isT9,
+			final OnSearchResultListener listener) {
+		final IncrementalSearcher searcher = mSearcher;
+		if (searcher == null) {
+			return;
+		}
+		submit(cancel(), true, new SearchJob() {
+			int[] result = null;
+
+			@Override
+			boolean run() {
+				result = searcher.search(input, isT9);
+				return result != null;
+			}
+
+			@Override
+			void deliver() {
+				listener.onSearchResult(input, result);
+			}
+		});
+	}
+
+	/**
+	 * 提交一次模糊搜索，之前尚未完成的搜索都会被取消
+	 *
+	 * @param input
+	 *            输入的字符串，不能为空串
+	 * @param isT9
+	 *            是否是T9键盘的输入
+	 * @param listener
+	 *            结果的回调
+	 */
+	public void fuzzySearch(final String input, final boolean isT9,
+			final OnFuzzySearchResultListener listener) {
+		submit(cancel(), true, new SearchJob() {
+			List<TrackInfo> result = null;
+
+			@Override
+			boolean run() {
+				// 第一次模糊搜索时才建立索引
+				result = ensureFuzzyIndex().search(input, isT9,
+						FuzzySearchIndex.DEFAULT_RESULT_LIMIT);
+				return result != null;
+			}
+
+			@Override
+			void deliver() {
+				listener.onFuzzySearchResult(input, result);
+			}
+		});
+	}
+
+	/**
+	 * 在全局搜索索引中查询，与同一次输入的歌曲搜索一起提交，不会取消它；下一次输入时一起被取消
+	 *
+	 * @param typeMask
+	 *            要查询的类型，见GlobalSearchIndex.search()
+	 * @param limit
+	 *            每种类型最多返回的条目数目
+	 */
+	public void globalSearch(final String input, final boolean isT9,
+			final int typeMask, final int limit,
+			final OnGlobalSearchResultListener listener) {
+		submit(mGeneration.get(), false, new SearchJob() {
+			GlobalSearchIndex.Result result = null;
+
+			@Override
+			boolean run() {
+				result = GlobalSearchIndex.getInstance().search(input, isT9,
+						typeMask, limit);
+				return result != null;
+			}
+
+			@Override
+			void deliver() {
+				listener.onGlobalSearchResult(input, result);
+			}
+		});
+	}
+
+	/**
+	 * 在歌词索引中查询，与同一次输入的歌曲搜索一起提交，不会取消它；下一次输入时一起被取消
+	 *
+	 * @param input
+	 *            输入的原文，含有汉字时按原文匹配，否则按拼音匹配
+	 */
+	public void lyricSearch(final String input, final int limit,
+			final OnLyricSearchResultListener listener) {
+		submit(mGeneration.get(), false, new SearchJob() {
+			List<LyricSearchIndex.Hit> result = null;
+
+			@Override
+			boolean run() {
+				result = LyricSearchIndex.getInstance().search(input, limit);
+				return result != null;
+			}
+
+			@Override
+			void deliver() {
+				listener.onLyricSearchResult(input, result);
+			}
+		});
+	}
+
+	/**
+	 * 把歌词目录中属于这些歌曲、尚未索引或已被修改的歌词文件加入歌词索引，在工作线程中解析歌词。
+	 * 播放时载入或下载的歌词由LyricLoadHelper自行加入索引
+	 *
+	 * @param folder
+	 *            歌词保存目录，见LyricLoadHelper.getLyricSaveFolder()
+	 * @param tracks
+	 *            装载器的结果，不会再被修改，直接引用
+	 */
+	public void updateLyricIndex(final String folder,
+			final List<TrackInfo> tracks) {
+		mWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				File[] files = new File(folder).listFiles();
+				if (files == null) {
+					return;
+				}
+				HashMap<String, TrackInfo> trackByName = new HashMap<String, TrackInfo>();
+				for (TrackInfo track : tracks) {
+					trackByName.put(
+							new File(LyricLoadHelper.getLyricFilePath(folder,
+									track.getTitle(), track.getArtist()))
+									.getName(), track);
+				}
+				long start = System.nanoTime();
+				LyricSearchIndex index = LyricSearchIndex.getInstance();
+				LyricLoadHelper helper = new LyricLoadHelper();
+				int parsed = 0;
+				for (File file : files) {
+					TrackInfo track = trackByName.get(file.getName());
+					if (track != null && !index.isUpToDate(file.getPath())) {
+						helper.loadLyric(file.getPath(), track);
+						parsed++;
+					}
+				}
+				Log.i(TAG, "lyric files parsed for index:" + parsed + ", "
+						+ (System.nanoTime() - start) / 1000000 + "ms");
+			}
+		});
+	}
+
+	/**
+	 * 给出以输入为前缀的标题和艺术家，与同一次输入的歌曲搜索一起提交，不会取消它；下一次输入时一起被取消
+	 *
+	 * @param limit
+	 *            最多给出的条目数目
+	 */
+	public void complete(final String input, final boolean isT9,
+			final int limit, final OnCompletionResultListener listener) {
+		submit(mGeneration.get(), false, new SearchJob() {
+			List<CompletionIndex.Completion> result = null;
+
+			@Override
+			boolean run() {
+				if (mCompletionIndex == null) {
+					return false;
+				}
+				result = mCompletionIndex.complete(input, isT9, limit);
+				return true;
+			}
+
+			@Override
+			void deliver() {
+				listener.onCompletionResult(input, result);
+			}
+		});
+	}
+
+	/**
+	 * 用新加载的歌曲列表重建搜索补全索引，在工作线程中执行，按歌曲的播放次数排序
+	 *
+	 * @param tracks
+	 *            装载器的结果，不会再被修改，直接引用
+	 */
+	public void updateCompletionIndex(final Context context,
+			final List<TrackInfo> tracks) {
+		mWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				long start = System.nanoTime();
+				mCompletionIndex = CompletionIndex.build(tracks,
+						PlayCountHelper.getPlayCounts(context));
+				Log.i(TAG, "completion index updated, size:"
+						+ mCompletionIndex.size() + ", "
+						+ (System.nanoTime() - start) / 1000000 + "ms");
+			}
+		});
+	}
+
+	/**
+	 * 记下新加载的歌曲列表供模糊搜索使用。模糊搜索开启时在工作线程中增量更新索引，否则只记下列表，
+	 * 等第一次模糊搜索时再建立索引
+	 *
+	 * @param tracks
+	 *            装载器的结果，不会再被修改，直接引用
+	 * @param enabled
+	 *            是否开启了模糊搜索
+	 */
+	public void updateFuzzyIndex(final List<TrackInfo> tracks,
+			final boolean enabled) {
+		mWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				mFuzzyTracks = tracks;
+			}
+		});
+		setFuzzySearchEnabled(enabled);
+	}
+
+	/**
+	 * 模糊搜索设置改变时调用：开启时在工作线程中预先建立索引，关闭时丢弃索引释放内存
+	 */
+	public void setFuzzySearchEnabled(final boolean enabled) {
+		mWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (enabled) {
+					ensureFuzzyIndex();
+				} else {
+					mFuzzyIndex = null;
+					mFuzzyIndexedTracks = null;
+				}
+			}
+		});
+	}
+
+	/** 取得与最新的歌曲列表一致的模糊搜索索引，还没有建立或已过时的话先建立、更新，在工作线程中调用 */
+	private FuzzySearchIndex ensureFuzzyIndex() {
+		if (mFuzzyIndex == null) {
+			mFuzzyIndex = new FuzzySearchIndex();
+		}
+		if (mFuzzyTracks != mFuzzyIndexedTracks) {
+			long start = System.nanoTime();
+			mFuzzyIndex.update(mFuzzyTracks == null ? new ArrayList<TrackInfo>()
+					: mFuzzyTracks);
+			mFuzzyIndexedTracks = mFuzzyTracks;
+			Log.i(TAG, "fuzzy index updated, size:" + mFuzzyIndex.size()
+					+ ", " + (System.nanoTime() - start) / 1000000 + "ms");
+		}
+		return mFuzzyIndex;
+	}
+
+	/**
+	 * 提交一次搜索
+	 *
+	 * @param generation
+	 *            本次搜索所属的版本号，版本号改变后结果不再送达
+	 * @param measured
+	 *            是否计入耗时统计，随歌曲搜索一起提交的搜索不重复统计
+	 */
+	private void submit(final int generation, final boolean measured,
+			final SearchJob job) {
+		final long submitTime = System.nanoTime();
+		mPending.add(mWorker.submit(new Runnable() {
+			@Override
+			public void run() {
+				if (generation != mGeneration.get()) {
+					return;
+				}
+				if (!job.run() || generation != mGeneration.get()) {
+					// 被更新的输入取消了
+					return;
+				}
+				mMainHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						if (generation != mGeneration.get()) {
+							return;
+						}
+						if (measured) {
+							recordLatency((System.nanoTime() - submitTime) / 1000000);
+						}
+						job.deliver();
+					}
+				});
+			}
+		}));
+	}
+
+	/**
+	 * 取消尚未完成的搜索，已取消的搜索的结果不会再送达
+	 *
+	 * @return 取消后的版本号
+	 */
+	public int cancel() {
+		int generation = mGeneration.incrementAndGet();
+		for (Future<?> pending : mPending) {
+			pending.cancel(true);
+		}
+		mPending.clear();
+		return generation;
+	}
+
+	/** 不再使用时调用，结束工作线程 */
+	public void shutdown() {
+		cancel();
+		mWorker.shutdownNow();
+	}
+
+	private void recordLatency(long latency) {
+		mQueryCount++;
+		mTotalLatency += latency;
+		mLastLatency = latency;
+		if (latency > mMaxLatency) {
+			mMaxLatency = latency;
+		}
+		Log.i(TAG, "search latency:" + latency + "ms, average:"
+				+ getAverageLatency() + "ms, max:" + mMaxLatency + "ms");
+	}
+
+	/** 已送达结果的搜索次数 */
+	public int getQueryCount() {
+		return mQueryCount;
+	}
+
+	/** 最近一次搜索从提交到结果送达的毫秒数 */
+	public long getLastLatency() {
+		return mLastLatency;
+	}
+
+	/** 平均每次搜索从提交到结果送达的毫秒数 */
+	public long getAverageLatency() {
+		return mQueryCount == 0 ? 0 : mTotalLatency / mQueryCount;
+	}
+
+	/** 耗时最长的一次搜索的毫秒数 */
+	public long getMaxLatency() {
+		return mMaxLatency;
+	}
+
+	/** 清空耗时统计 */
+	public void resetLatencyStatistics() {
+		mQueryCount = 0;
+		mTotalLatency = 0;
+		mLastLatency = 0;
+		mMaxLatency = 0;
+	}
+}
@@ -0,0 +1,96 @@
+package com.lq.search;
+
+import java.util.List;
+
+import com.lq.entity.TrackInfo;
+import com.lq.entity.TrackStore;
+
+/**
+ * 按位置读取歌曲列表中建立索引要用的字段。列表是TrackStore的视图时直接读取表中的列，
+ * 建立索引时不必为每首歌曲创建TrackInfo；其他列表照常读取TrackInfo。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+abstract class TrackFields {
+
+	static TrackFields of(final List<TrackInfo> tracks) {
+		if (tracks instanceof TrackStore.TrackList) {
+			final TrackStore.TrackList list = (TrackStore.TrackList) tracks;
+			final TrackStore store = list.getStore();
+			return new TrackFields() {
+				@Override
+				int size() {
+					return list.size();
+				}
+
+				@Override
+				long getId(int index) {
+					return store.getId(list.getRow(index));
+				}
+
+				@Override
+				String getTitle(int index) {
+					return store.getTitle(list.getRow(index));
+				}
+
+				@Override
+				String getTitleKey(int index) {
+					return store.getTitleKey(list.getRow(index));
+				}
+
+				@Override
+				String getArtist(int index) {
+					return store.getArtist(list.getRow(index));
+				}
+
+				@Override
+				String getArtistKey(int index) {
+					return store.getArtistKey(list.getRow(index));
+				}
+			};
+		}
+		return new TrackFields() {
+			@Override
+			int size() {
+				return tracks == null ? 0 : tracks.size();
+			}
+
+			@Override
+			long getId(int index) {
+				return tracks.get(index).getId();
+			}
+
+			@Override
+			String getTitle(int index) {
+				return tracks.get(index).getTitle();
+			}
+
+			@Override
+			String getTitleKey(int index) {
+				return tracks.get(index).getTitleKey();
+			}
+
+			@Override
+			String getArtist(int index) {
+				return tracks.get(index).getArtist();
+			}
+
+			@Override
+			String getArtistKey(int index) {
+				return tracks.get(index).getArtistKey();
+			}
+		};
+	}
+
+	abstract int size();
+
+	abstract long getId(int index);
+
+	abstract String getTitle(int index);
+
+	abstract String getTitleKey(int index);
+
+	abstract String getArtist(int index);
+
+	abstract String getArtistKey(int index);
+}
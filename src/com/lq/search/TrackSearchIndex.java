@@ -0,0 +1,442 @@
+package com.lq.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.lq.entity.TrackInfo;
+import com.lq.util.PinyinTable;
+import com.lq.util.StringHelper;
+
+/**
+ * 歌曲的拼音搜索索引。
+ * <p>
+ * 在歌曲列表加载完成时一次性建立：把每首歌曲的标题索引和艺术家索引（
+ * {@link TrackInfo#getTitleKey()}、{@link TrackInfo#getArtistKey()}）分别转换成
+ * 全拼、简拼两种形式的T9数字串和字母串，同一种形式的所有歌曲依次拼接在一个char数组中，
+ * 另用一个偏移数组记录每首歌曲在数组中的起止位置。按键搜索时只需在各条记录中做子串查找，
+ * 不再编译正则表达式，也不会为每首歌曲分配对象。
+ * <p>
+ * 拼音索引只取多音字的第一个读音。标题或艺术家中含有多音字（如“重”、“长”、“乐”）的歌曲，
+ * 另外记录每个字的全部读音：每个字是一个片段，片段中依次列出它的各个读音，
+ * 不展开成所有读音组合。查询时在这些片段上用位并行的Shift-And算法同时匹配所有读音组合，
+ * 没有多音字的歌曲仍然只在拼接数据中查找，不受影响。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class TrackSearchIndex {
+
+	/** 全拼T9数字串，如“ZhouJieLun”为“9468538586” */
+	static final int FORM_FULL_T9 = 0;
+
+	/** 简拼T9数字串，如“ZhouJieLun”为“955” */
+	static final int FORM_INITIAL_T9 = 1;
+
+	/** 全拼字母串（小写），如“ZhouJieLun”为“zhoujielun” */
+	static final int FORM_FULL_LETTER = 2;
+
+	/** 简拼字母串（小写），如“ZhouJieLun”为“zjl” */
+	static final int FORM_INITIAL_LETTER = 3;
+
+	private static final int FORM_COUNT = 4;
+
+	/** 输入长度达到此值时不再按简拼查询 */
+	public static final int MAX_INITIALS_QUERY_LENGTH = 6;
+
+	/** 每筛选256首歌曲检查一次搜索是否已被取消 */
+	private static final int CANCEL_CHECK_MASK = 0xff;
+
+	/** 分隔符，用来隔开标题与艺术家、以及简拼中不连续的部分，不会与任何输入相匹配 */
+	static final char SEPARATOR = '\u0000';
+
+	/** 多音字片段中音节的编码基数，小于此值的编码是原样的字符 */
+	private static final int SYLLABLE_BASE = 0x10000;
+
+	/** 按全部读音匹配时输入的最大长度，受限于long的位数 */
+	private static final int MAX_READINGS_QUERY_LENGTH = 64;
+
+	/** a~z各字母在T9键盘上对应的数字键 */
+	private static final char[] T9_DIGITS = { '2', '2', '2', '3', '3', '3',
+			'4', '4', '4', '5', '5', '5', '6', '6', '6', '7', '7', '7', '7',
+			'8', '8', '8', '9', '9', '9', '9' };
+
+	/** 歌曲数目 */
+	private final int mSize;
+
+	/** 各种形式的拼接数据，下标为FORM_XXX */
+	private final char[][] mForms = new char[FORM_COUNT][];
+
+	/** 各种形式中每首歌曲的起始位置，长度为mSize+1，第i首歌曲的数据位于[offsets[i],offsets[i+1]) */
+	private final int[][] mOffsets = new int[FORM_COUNT][];
+
+	/**
+	 * 含有多音字的歌曲的全部读音。每个片段以读音数目开头，后面是各个读音：
+	 * 小于SYLLABLE_BASE的是原样的字符，否则是SYLLABLE_BASE加上音节编号
+	 */
+	private int[] mReadings = new int[0];
+
+	/** 每首歌曲的读音片段位于[mReadingOffsets[i],mReadingOffsets[i+1])，没有多音字的歌曲为空 */
+	private final int[] mReadingOffsets;
+
+	/** 各音节的字母（小写），下标为音节编号 */
+	private final char[][] mSyllables;
+
+	private TrackSearchIndex(List<TrackInfo> tracks, PinyinTable table) {
+		TrackFields fields = TrackFields.of(tracks);
+		mSize = fields.size();
+		StringBuilder[] builders = new StringBuilder[FORM_COUNT];
+		for (int f = 0; f < FORM_COUNT; f++) {
+			builders[f] = new StringBuilder(mSize * 16);
+			mOffsets[f] = new int[mSize + 1];
+		}
+		for (int i = 0; i < mSize; i++) {
+			for (int f = 0; f < FORM_COUNT; f++) {
+				mOffsets[f][i] = builders[f].length();
+			}
+			appendKey(fields.getTitleKey(i), builders);
+			for (int f = 0; f < FORM_COUNT; f++) {
+				builders[f].append(SEPARATOR);
+			}
+			appendKey(fields.getArtistKey(i), builders);
+		}
+		for (int f = 0; f < FORM_COUNT; f++) {
+			mOffsets[f][mSize] = builders[f].length();
+			mForms[f] = new char[builders[f].length()];
+			builders[f].getChars(0, builders[f].length(), mForms[f], 0);
+		}
+
+		mReadingOffsets = new int[mSize + 1];
+		if (table == null) {
+			mSyllables = null;
+			return;
+		}
+		mSyllables = new char[table.getSyllableCount()][];
+		for (int s = 0; s < mSyllables.length; s++) {
+			mSyllables[s] = new char[table.getSyllableLength(s)];
+			for (int i = 0; i < mSyllables[s].length; i++) {
+				mSyllables[s][i] = table.getSyllableChar(s, i);
+			}
+		}
+		int length = 0;
+		for (int i = 0; i < mSize; i++) {
+			mReadingOffsets[i] = length;
+			String title = fields.getTitle(i);
+			String artist = fields.getArtist(i);
+			if (hasPolyphone(table, title) || hasPolyphone(table, artist)) {
+				length = appendReadings(table, title, length);
+				length = appendLiteral(SEPARATOR, length);
+				length = appendReadings(table, artist, length);
+			}
+		}
+		mReadingOffsets[mSize] = length;
+		mReadings = Arrays.copyOf(mReadings, length);
+	}
+
+	/**
+	 * 为给定的歌曲列表建立搜索索引，索引中的下标与列表中的位置一一对应
+	 *
+	 * @param tracks
+	 *            歌曲列表，可以为null
+	 */
+	public static TrackSearchIndex build(List<TrackInfo> tracks) {
+		return build(tracks, StringHelper.getPinyinTable());
+	}
+
+	/**
+	 * 为给定的歌曲列表建立搜索索引
+	 *
+	 * @param table
+	 *            拼音表，用来记录多音字的全部读音；为null时只能按第一个读音搜索
+	 */
+	public static TrackSearchIndex build(List<TrackInfo> tracks,
+			PinyinTable table) {
+		return new TrackSearchIndex(tracks, table);
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * 搜索标题或艺术家匹配输入的歌曲
+	 *
+	 * @param input
+	 *            输入的字符串，T9键盘时均为2~9的数字，全键盘时为转换成拼音后的文本
+	 * @param isT9
+	 *            是否是T9键盘的输入
+	 * @return 匹配的歌曲在列表中的位置，按升序排列；如果搜索线程被中断则返回null
+	 */
+	public int[] search(String input, boolean isT9) {
+		return filter(null, mSize, input, isT9);
+	}
+
+	/**
+	 * 在给定的候选歌曲中搜索匹配输入的歌曲。
+	 * <p>
+	 * 在输入末尾追加字符只会让匹配的歌曲变少，所以可以只在上一次的结果中继续筛选。
+	 *
+	 * @param candidates
+	 *            候选歌曲在列表中的位置，按升序排列；为null时在全部歌曲中搜索
+	 * @param count
+	 *            候选歌曲的数目
+	 * @return 匹配的歌曲在列表中的位置，按升序排列；如果搜索线程被中断则返回null
+	 */
+	public int[] filter(int[] candidates, int count, String input, boolean isT9) {
+		int[] result = new int[count];
+		int found = 0;
+		char[] query = normalizeQuery(input, isT9);
+		long[] masks = query.length <= MAX_READINGS_QUERY_LENGTH ? buildMasks(query)
+				: null;
+		boolean matchInitials = input.length() < MAX_INITIALS_QUERY_LENGTH;
+		for (int i = 0; i < count; i++) {
+			if ((i & CANCEL_CHECK_MASK) == 0 && Thread.interrupted()) {
+				// 有更新的输入，放弃本次搜索
+				return null;
+			}
+			int index = candidates == null ? i : candidates[i];
+			if (matches(index, query, isT9, matchInitials)
+					|| (masks != null && matchesReadings(index, query, masks,
+							isT9, matchInitials))) {
+				result[found++] = index;
+			}
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	/** 将输入转换成与索引相同的形式，全键盘输入统一成小写 */
+	static char[] normalizeQuery(String input, boolean isT9) {
+		char[] query = input.toCharArray();
+		if (!isT9) {
+			for (int i = 0; i < query.length; i++) {
+				if (query[i] >= 'A' && query[i] <= 'Z') {
+					query[i] += 'a' - 'A';
+				}
+			}
+		}
+		return query;
+	}
+
+	/** 检查第index首歌曲的全拼（以及简拼）是否包含query */
+	boolean matches(int index, char[] query, boolean isT9,
+			boolean matchInitials) {
+		int full = isT9 ? FORM_FULL_T9 : FORM_FULL_LETTER;
+		if (contains(full, index, query)) {
+			return true;
+		}
+		if (matchInitials) {
+			return contains(isT9 ? FORM_INITIAL_T9 : FORM_INITIAL_LETTER,
+					index, query);
+		}
+		return false;
+	}
+
+	/** 在指定形式的第index条记录中查找子串query */
+	private boolean contains(int form, int index, char[] query) {
+		char[] data = mForms[form];
+		int start = mOffsets[form][index];
+		int last = mOffsets[form][index + 1] - query.length;
+		if (query.length == 0) {
+			return true;
+		}
+		char first = query[0];
+		for (int i = start; i <= last; i++) {
+			if (data[i] != first) {
+				continue;
+			}
+			int j = 1;
+			while (j < query.length && data[i + j] == query[j]) {
+				j++;
+			}
+			if (j == query.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 为Shift-And算法计算输入的字符掩码：masks[c]的第i位为1表示query[i]==c。
+	 * 只记录ASCII字符，其他字符在匹配时现算
+	 */
+	private static long[] buildMasks(char[] query) {
+		long[] masks = new long[128];
+		for (int i = 0; i < query.length; i++) {
+			if (query[i] < 128) {
+				masks[query[i]] |= 1L << i;
+			}
+		}
+		return masks;
+	}
+
+	private static long mask(long[] masks, char[] query, char c) {
+		if (c < 128) {
+			return masks[c];
+		}
+		long mask = 0;
+		for (int i = 0; i < query.length; i++) {
+			if (query[i] == c) {
+				mask |= 1L << i;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * 按多音字的全部读音检查第index首歌曲是否匹配query。
+	 * <p>
+	 * 全拼与简拼各维护一个状态字，第i位为1表示当前位置之前的文本以query的前i+1个字符结尾。
+	 * 遇到多音字时分别用各个读音推进状态，再把结果合并，相当于同时尝试所有读音组合。
+	 */
+	private boolean matchesReadings(int index, char[] query, long[] masks,
+			boolean isT9, boolean matchInitials) {
+		int i = mReadingOffsets[index];
+		int end = mReadingOffsets[index + 1];
+		if (i == end || query.length == 0) {
+			return false;
+		}
+		long accept = 1L << (query.length - 1);
+		long full = 0;
+		long initial = 0;
+		while (i < end) {
+			int count = mReadings[i++];
+			long nextFull = 0;
+			long nextInitial = 0;
+			for (int k = 0; k < count; k++) {
+				int unit = mReadings[i + k];
+				if (unit >= SYLLABLE_BASE) {
+					char[] letters = mSyllables[unit - SYLLABLE_BASE];
+					long state = full;
+					for (int j = 0; j < letters.length; j++) {
+						char c = isT9 ? T9_DIGITS[letters[j] - 'a'] : letters[j];
+						state = ((state << 1) | 1) & mask(masks, query, c);
+						if ((state & accept) != 0) {
+							// 输入可能在音节中间结束
+							return true;
+						}
+					}
+					nextFull |= state;
+					if (matchInitials) {
+						char c = isT9 ? T9_DIGITS[letters[0] - 'a'] : letters[0];
+						nextInitial |= ((initial << 1) | 1)
+								& mask(masks, query, c);
+					}
+				} else {
+					char c = (char) unit;
+					char lower = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A'))
+							: c;
+					char fullChar = lower;
+					if (isT9) {
+						fullChar = lower >= 'a' && lower <= 'z' ? T9_DIGITS[lower - 'a']
+								: SEPARATOR;
+					}
+					nextFull |= ((full << 1) | 1) & mask(masks, query, fullChar);
+					if (matchInitials) {
+						if (c >= 'A' && c <= 'Z') {
+							char initialChar = isT9 ? T9_DIGITS[lower - 'a']
+									: lower;
+							nextInitial |= ((initial << 1) | 1)
+									& mask(masks, query, initialChar);
+						} else if ((c >= 'a' && c <= 'z') || c == '*'
+								|| c == '+') {
+							// 与appendKey()相同，小写字母等不打断简拼
+							nextInitial |= initial;
+						}
+					}
+				}
+			}
+			if (((nextFull | nextInitial) & accept) != 0) {
+				return true;
+			}
+			full = nextFull;
+			initial = nextInitial;
+			i += count;
+		}
+		return false;
+	}
+
+	/** 字符串中是否含有多个读音的汉字 */
+	private static boolean hasPolyphone(PinyinTable table, String text) {
+		if (text == null) {
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (table.getReadingCount(text.charAt(i)) > 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** 把字符串的每个字作为一个片段追加到mReadings，规则与StringHelper.getPingYin()相同 */
+	private int appendReadings(PinyinTable table, String text, int length) {
+		if (text == null) {
+			return length;
+		}
+		text = text.trim();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (!table.covers(c)) {
+				length = appendLiteral(c, length);
+				continue;
+			}
+			int count = table.getReadingCount(c);
+			if (count == 0) {
+				continue;
+			}
+			ensureReadingsCapacity(length + count + 1);
+			mReadings[length++] = count;
+			for (int k = 0; k < count; k++) {
+				mReadings[length++] = SYLLABLE_BASE + table.getSyllableId(c, k);
+			}
+		}
+		return length;
+	}
+
+	private int appendLiteral(char c, int length) {
+		ensureReadingsCapacity(length + 2);
+		mReadings[length++] = 1;
+		mReadings[length++] = c;
+		return length;
+	}
+
+	private void ensureReadingsCapacity(int capacity) {
+		if (capacity > mReadings.length) {
+			mReadings = Arrays.copyOf(mReadings,
+					Math.max(capacity, mReadings.length * 2 + 64));
+		}
+	}
+
+	/**
+	 * 把一个拼音索引追加到各种形式中。
+	 * <p>
+	 * 拼音索引中每个汉字的拼音首字母是大写的（见StringHelper.getPingYin()），
+	 * 简拼即由这些大写字母组成；两个大写字母之间只隔着小写字母或'*'、'+'时视为连续，
+	 * 隔着其他字符时在简拼中插入分隔符。
+	 */
+	static void appendKey(String key, StringBuilder[] builders) {
+		if (key == null) {
+			return;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				char lower = (char) (c + ('a' - 'A'));
+				builders[FORM_FULL_T9].append(T9_DIGITS[lower - 'a']);
+				builders[FORM_FULL_LETTER].append(lower);
+				builders[FORM_INITIAL_T9].append(T9_DIGITS[lower - 'a']);
+				builders[FORM_INITIAL_LETTER].append(lower);
+			} else if (c >= 'a' && c <= 'z') {
+				builders[FORM_FULL_T9].append(T9_DIGITS[c - 'a']);
+				builders[FORM_FULL_LETTER].append(c);
+			} else if (c == '*' || c == '+') {
+				builders[FORM_FULL_T9].append(SEPARATOR);
+				builders[FORM_FULL_LETTER].append(c);
+			} else {
+				// T9键盘的数字键代表字母，标题中的数字等其他字符在T9中都不匹配
+				builders[FORM_FULL_T9].append(SEPARATOR);
+				builders[FORM_FULL_LETTER].append(c);
+				builders[FORM_INITIAL_T9].append(SEPARATOR);
+				builders[FORM_INITIAL_LETTER].append(SEPARATOR);
+			}
+		}
+	}
+}
@@ -19,6 +19,7 @@ package com.lq.service;
 import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -66,6 +67,7 @@ import com.lq.util.Constant;
 import com.lq.util.LyricDownloadManager;
 import com.lq.util.LyricLoadHelper;
 import com.lq.util.LyricLoadHelper.LyricListener;
+import com.lq.util.PlayCountHelper;
 
 /**
  * 这是处理音乐回放的服务，在应用中对媒体的所有处理都交给这个服务。
@@ -158,17 +160,13 @@ public class MusicService extends Service implements OnCompletionListener,
 				return;
 			}
 
-			// 只添加当前播放列表中没有的歌曲
-			boolean existed = false;
+			// 只添加当前播放列表中没有的歌曲，歌曲按ID比较
+			HashSet<Long> existed = new HashSet<Long>();
+			for (int j = 0; j < mPlayList.size(); j++) {
+				existed.add(mPlayList.get(j).getId());
+			}
 			for (int i = 0; i < list.size(); i++) {
-				existed = false;
-				for (int j = 0; j < mPlayList.size(); j++) {
-					if (mPlayList.get(j).equals(list.get(i))) {
-						existed = true;
-						break;
-					}
-				}
-				if (!existed) {
+				if (existed.add(list.get(i).getId())) {
 					mPlayList.add(list.get(i));
 				}
 			}
@@ -311,6 +309,9 @@ public class MusicService extends Service implements OnCompletionListener,
 	private int mRequestPlayPos = -1;
 	private long mRequsetPlayId = -1;
 
+	/** 请求播放的歌曲开始播放后跳转到的位置（毫秒），-1表示从头播放 */
+	private int mRequestSeekPosition = -1;
+
 	// 我们要播放的音乐是否是来自网络的媒体流
 	private boolean mIsStreaming = false;
 
@@ -431,13 +432,19 @@ public class MusicService extends Service implements OnCompletionListener,
 					// 获取到点击的歌曲的ID
 					mRequsetPlayId = intent.getLongExtra(
 							Constant.REQUEST_PLAY_ID, 0);
+					mRequestSeekPosition = intent.getIntExtra(
+							Constant.REQUEST_SEEK_POSITION, -1);
 					mRequestPlayPos = seekPosInListById(mPlayList,
 							mRequsetPlayId);
 				} else {
 					mRequsetPlayId = mPlayList.get(mRequestPlayPos).getId();
+					mRequestSeekPosition = -1;
 				}
 				if (mRequestPlayPos != -1) {
 					processPlayRequest();
+				} else {
+					// 请求的歌曲不在播放列表中，不能让跳转位置留给以后播放的歌曲
+					mRequestSeekPosition = -1;
 				}
 			}
 		} else if (action.equals(ACTION_PAUSE)) {
@@ -495,6 +502,13 @@ public class MusicService extends Service implements OnCompletionListener,
 		// 准备完成了，可以播放歌曲了
 		mState = State.Playing;
 		updateNotification(mPlayingSong.getTitle() + " (playing)");
+		PlayCountHelper.increasePlayCount(getApplicationContext(),
+				mPlayingSong.getId());
+		if (mRequestSeekPosition >= 0) {
+			// 例如从歌词搜索结果播放时，跳转到匹配的句子
+			mMediaPlayer.seekTo(mRequestSeekPosition);
+			mRequestSeekPosition = -1;
+		}
 		configAndStartMediaPlayer();
 		if (!mServiceHandler.hasMessages(MESSAGE_UPDATE_PLAYING_SONG_PROGRESS)) {
 			mServiceHandler
@@ -601,6 +615,11 @@ public class MusicService extends Service implements OnCompletionListener,
 		} else if (mMediaPlayer.isLooping()) {
 			mMediaPlayer.start();
 		}
+		if (mState != State.Preparing && mRequestSeekPosition >= 0) {
+			// 请求的歌曲已经在播放，直接跳转
+			mMediaPlayer.seekTo(mRequestSeekPosition);
+			mRequestSeekPosition = -1;
+		}
 
 		// 通知所有的观察者音乐开始播放了
 		for (int i = 0; i < mOnPlaybackStateChangeListeners.size(); i++) {
@@ -637,6 +656,7 @@ public class MusicService extends Service implements OnCompletionListener,
 	private void processPreviousRequest(boolean fromUser) {
 		if (mState == State.Playing || mState == State.Paused
 				|| mState == State.Stopped) {
+			mRequestSeekPosition = -1;
 			switch (mPlayMode) {
 			case PlayMode.REPEAT:
 			case PlayMode.SEQUENTIAL:
@@ -678,6 +698,7 @@ public class MusicService extends Service implements OnCompletionListener,
 	private void processNextRequest(boolean fromUser) {
 		if (mState == State.Playing || mState == State.Paused
 				|| mState == State.Stopped) {
+			mRequestSeekPosition = -1;
 			switch (mPlayMode) {
 			case PlayMode.REPEAT:
 				mRequestPlayPos = (mPlayingSongPos + 1) % mPlayList.size();
@@ -724,6 +745,7 @@ public class MusicService extends Service implements OnCompletionListener,
 		if (mState == State.Playing || mState == State.Paused || force) {
 			mState = State.Stopped;
 			mRequsetPlayId = -1;
+			mRequestSeekPosition = -1;
 			mPlayingSongPos = 0;
 			mRequestPlayPos = 0;
 			// 释放所有持有的资源
@@ -915,15 +937,15 @@ public class MusicService extends Service implements OnCompletionListener,
 	 */
 	private void loadLyric(String path) {
 		// 取得歌曲同目录下的歌词文件绝对路径
-		String lyricFilePath = Constant.LYRIC_SAVE_FOLDER_PATH + "/"
-				+ mPlayingSong.getTitle() + "_" + mPlayingSong.getArtist()
-				+ ".lrc";
+		String lyricFilePath = LyricLoadHelper.getLyricFilePath(
+				LyricLoadHelper.getLyricSaveFolder(getApplicationContext()),
+				mPlayingSong.getTitle(), mPlayingSong.getArtist());
 		File lyricfile = new File(lyricFilePath);
 
 		if (lyricfile.exists()) {
 			// 本地有歌词，直接读取
 			Log.i(TAG, "loadLyric()--->本地有歌词，直接读取");
-			mHasLyric = mLyricLoadHelper.loadLyric(lyricFilePath);
+			mHasLyric = mLyricLoadHelper.loadLyric(lyricFilePath, mPlayingSong);
 		} else {
 			// 获取系统设置，是否自动下载歌词
 			SharedPreferences sp = PreferenceManager
@@ -935,8 +957,8 @@ public class MusicService extends Service implements OnCompletionListener,
 			if (downloadLyricAutomatically) {
 				// 尝试网络获取歌词
 				Log.i(TAG, "loadLyric()--->本地无歌词，尝试从网络获取");
-				new LyricDownloadAsyncTask().execute(mPlayingSong.getTitle(),
-						mPlayingSong.getArtist());
+				new LyricDownloadAsyncTask(mPlayingSong).execute(
+						mPlayingSong.getTitle(), mPlayingSong.getArtist());
 			} else {
 				// 设置歌词为空
 				mHasLyric = mLyricLoadHelper.loadLyric(null);
@@ -983,6 +1005,12 @@ public class MusicService extends Service implements OnCompletionListener,
 	};
 
 	class LyricDownloadAsyncTask extends AsyncTask<String, Void, String> {
+		/** 下载歌词的歌曲，下载完成时可能已经在播放别的歌曲了 */
+		private TrackInfo mTrack = null;
+
+		public LyricDownloadAsyncTask(TrackInfo track) {
+			mTrack = track;
+		}
 
 		@Override
 		protected String doInBackground(String... params) {
@@ -997,7 +1025,7 @@ public class MusicService extends Service implements OnCompletionListener,
 		protected void onPostExecute(String result) {
 			Log.i(TAG, "网络获取歌词完毕，歌词保存路径:" + result);
 			// 读取保存到本地的歌曲
-			mHasLyric = mLyricLoadHelper.loadLyric(result);
+			mHasLyric = mLyricLoadHelper.loadLyric(result, mTrack);
 		};
 
 	};
@@ -0,0 +1,127 @@
+package com.lq.util;
+
+import java.util.ArrayList;
+
+/**
+ * 按首字母分节的索引，供列表的快速滚动（SectionIndexer）和分节标题使用。
+ * <p>
+ * 由按排序键（见SortKeyHelper）排好序的条目一次算出：以数字、符号开头或为空的条目归入“#”，
+ * 字母和汉字按拼音首字母归入“A”~“Z”，其他字符归入最后的“…”。记录每一节的起始位置，
+ * 以及每个位置所在的节（一个字节），因此两个方向的查询都是O(1)的。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class AlphabetSectionIndex {
+	/** 没有分节的索引，用于不按名称排序的列表 */
+	public static final AlphabetSectionIndex EMPTY = new AlphabetSectionIndex(
+			new String[0], new int[0], new byte[0]);
+
+	/** 各节的标题，依次为“#”、“A”~“Z”、“…”中出现过的 */
+	private final String[] mSections;
+
+	/** 各节的起始位置 */
+	private final int[] mSectionStarts;
+
+	/** 每个位置所在的节 */
+	private final byte[] mPositionSections;
+
+	private AlphabetSectionIndex(String[] sections, int[] sectionStarts,
+			byte[] positionSections) {
+		mSections = sections;
+		mSectionStarts = sectionStarts;
+		mPositionSections = positionSections;
+	}
+
+	/**
+	 * 为排好序的条目建立分节索引
+	 *
+	 * @param keys
+	 *            各条目的排序键
+	 * @param order
+	 *            显示的顺序，第i个条目为keys[order[i]]；为null时按keys的顺序
+	 * @return 分节索引；条目并非按排序键排列时返回EMPTY
+	 */
+	public static AlphabetSectionIndex build(byte[][] keys, int[] order) {
+		byte[] positionSections = new byte[keys.length];
+		ArrayList<String> sections = new ArrayList<String>();
+		int[] starts = new int[28];
+		int lastLabel = -1;
+		for (int i = 0; i < keys.length; i++) {
+			int label = labelOf(keys[order == null ? i : order[i]]);
+			if (label != lastLabel) {
+				if (label < lastLabel) {
+					return EMPTY;
+				}
+				starts[sections.size()] = i;
+				sections.add(titleOf(label));
+				lastLabel = label;
+			}
+			positionSections[i] = (byte) (sections.size() - 1);
+		}
+		int[] sectionStarts = new int[sections.size()];
+		System.arraycopy(starts, 0, sectionStarts, 0, sectionStarts.length);
+		return new AlphabetSectionIndex(
+				sections.toArray(new String[sections.size()]), sectionStarts,
+				positionSections);
+	}
+
+	/** 排序键所属的节：0为“#”，1~26为字母，27为“…” */
+	private static int labelOf(byte[] key) {
+		if (key.length == 0) {
+			return 0;
+		}
+		int first = key[0] & 0xff;
+		if (first >= 'a' && first <= 'z') {
+			return first - 'a' + 1;
+		}
+		return first < 'a' ? 0 : 27;
+	}
+
+	private static String titleOf(int label) {
+		if (label == 0) {
+			return "#";
+		}
+		if (label == 27) {
+			return "\u2026";
+		}
+		return String.valueOf((char) ('A' + label - 1));
+	}
+
+	public String[] getSections() {
+		return mSections;
+	}
+
+	/** 第section节的起始位置 */
+	public int getPositionForSection(int section) {
+		if (mSectionStarts.length == 0) {
+			return 0;
+		}
+		if (section < 0) {
+			section = 0;
+		} else if (section >= mSectionStarts.length) {
+			section = mSectionStarts.length - 1;
+		}
+		return mSectionStarts[section];
+	}
+
+	/** 第position个条目所在的节 */
+	public int getSectionForPosition(int position) {
+		if (position < 0 || position >= mPositionSections.length) {
+			return 0;
+		}
+		return mPositionSections[position];
+	}
+
+	/** 第position个条目是否是一节的第一个条目，是的话在它上方显示分节标题 */
+	public boolean isSectionStart(int position) {
+		if (position < 0 || position >= mPositionSections.length) {
+			return false;
+		}
+		return mSectionStarts[mPositionSections[position]] == position;
+	}
+
+	/** 索引覆盖的条目数目，与列表的长度不同时说明索引已经过时 */
+	public int size() {
+		return mPositionSections.length;
+	}
+}
@@ -0,0 +1,129 @@
+package com.lq.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 按列读写数组，供保存在文件中的快照使用（大端字节序）。
+ * <p>
+ * 数值列依次写出各元素，读取时从内存映射的缓冲区中整块取出。字符串列先写出各字符串的长度（null为-1），
+ * 再写出字符总数和所有字符，读取时一次取出全部字符再切分；字节数组列的格式相同。
+ * 读取时发现长度不合理就抛出IOException，调用者应把快照当作已损坏。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class ColumnIO {
+
+	public static void writeInts(DataOutputStream out, int[] values, int count)
+			throws IOException {
+		for (int i = 0; i < count; i++) {
+			out.writeInt(values[i]);
+		}
+	}
+
+	public static void readInts(ByteBuffer in, int[] values, int count)
+			throws IOException {
+		checkRemaining(in, count * 4L);
+		in.asIntBuffer().get(values, 0, count);
+		in.position(in.position() + count * 4);
+	}
+
+	public static void writeLongs(DataOutputStream out, long[] values,
+			int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			out.writeLong(values[i]);
+		}
+	}
+
+	public static void readLongs(ByteBuffer in, long[] values, int count)
+			throws IOException {
+		checkRemaining(in, count * 8L);
+		in.asLongBuffer().get(values, 0, count);
+		in.position(in.position() + count * 8);
+	}
+
+	public static void writeStrings(DataOutputStream out, String[] values,
+			int count) throws IOException {
+		int total = 0;
+		for (int i = 0; i < count; i++) {
+			out.writeInt(values[i] == null ? -1 : values[i].length());
+			total += values[i] == null ? 0 : values[i].length();
+		}
+		out.writeInt(total);
+		for (int i = 0; i < count; i++) {
+			if (values[i] != null) {
+				out.writeChars(values[i]);
+			}
+		}
+	}
+
+	public static void readStrings(ByteBuffer in, String[] values, int count)
+			throws IOException {
+		int[] lengths = new int[count];
+		readInts(in, lengths, count);
+		int total = in.getInt();
+		checkRemaining(in, total * 2L);
+		char[] chars = new char[total];
+		in.asCharBuffer().get(chars);
+		in.position(in.position() + total * 2);
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			if (lengths[i] < 0) {
+				values[i] = null;
+				continue;
+			}
+			if (lengths[i] > total - offset) {
+				throw new IOException("string column is corrupt");
+			}
+			values[i] = new String(chars, offset, lengths[i]);
+			offset += lengths[i];
+		}
+	}
+
+	public static void writeBytes(DataOutputStream out, byte[][] values,
+			int count) throws IOException {
+		int total = 0;
+		for (int i = 0; i < count; i++) {
+			out.writeInt(values[i] == null ? -1 : values[i].length);
+			total += values[i] == null ? 0 : values[i].length;
+		}
+		out.writeInt(total);
+		for (int i = 0; i < count; i++) {
+			if (values[i] != null) {
+				out.write(values[i]);
+			}
+		}
+	}
+
+	public static void readBytes(ByteBuffer in, byte[][] values, int count)
+			throws IOException {
+		int[] lengths = new int[count];
+		readInts(in, lengths, count);
+		int total = in.getInt();
+		checkRemaining(in, total);
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			if (lengths[i] < 0) {
+				values[i] = null;
+				continue;
+			}
+			if (lengths[i] > total - offset) {
+				throw new IOException("byte array column is corrupt");
+			}
+			values[i] = new byte[lengths[i]];
+			in.get(values[i]);
+			offset += lengths[i];
+		}
+		in.position(in.position() + total - offset);
+	}
+
+	/** 读取的长度不合理（为负数或超出缓冲区）时抛出IOException */
+	private static void checkRemaining(ByteBuffer in, long length)
+			throws IOException {
+		if (length < 0 || length > in.remaining()) {
+			throw new IOException("column length " + length
+					+ " exceeds remaining " + in.remaining());
+		}
+	}
+}
@@ -22,6 +22,7 @@ public final class Constant {
 	public static final String PLAYING_MUSIC_ITEM = "playing_music_item";
 	public static final String CLICK_ITEM_IN_LIST = "click_item_in_list";
 	public static final String REQUEST_PLAY_ID = "request_play_id";
+	public static final String REQUEST_SEEK_POSITION = "request_seek_position";
 	public static final String PARENT = "parent";
 	public static final String DATA_LIST = "data_list";
 	public static final String TITLE = "title";
@@ -0,0 +1,208 @@
+package com.lq.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * 比较列表的新旧两个版本，得到由旧列表到新列表的插入、删除、移动。条目按键比较（如歌曲的ID）。
+ * <p>
+ * 先去掉相同的开头和结尾，中间部分用Myers差分算法求最少的插入和删除，再把键相同的一对删除和插入当作移动。
+ * 算法的开销为O((N+M)D)，D是插入和删除的数目，超过MAX_EDIT_DISTANCE时放弃比较，调用者应当作整个列表都变了。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class ListDiff {
+	/** 插入和删除最多这么多个，超过时两个列表差别太大，逐条比较已没有意义 */
+	public static final int MAX_EDIT_DISTANCE = 500;
+
+	/** 旧列表中每个位置在新列表中的位置，已删除的为-1 */
+	private final int[] mOldToNew;
+
+	private final int mNewSize;
+	private int mInsertCount = 0;
+	private int mRemoveCount = 0;
+	private int mMoveCount = 0;
+
+	private ListDiff(int oldSize, int newSize) {
+		mOldToNew = new int[oldSize];
+		mNewSize = newSize;
+		Arrays.fill(mOldToNew, -1);
+	}
+
+	/**
+	 * 比较两个列表
+	 *
+	 * @param oldKeys
+	 *            旧列表中各条目的键
+	 * @param newKeys
+	 *            新列表中各条目的键
+	 * @return 比较结果；差别超过MAX_EDIT_DISTANCE时返回null
+	 */
+	public static ListDiff compute(Object[] oldKeys, Object[] newKeys) {
+		ListDiff diff = new ListDiff(oldKeys.length, newKeys.length);
+
+		// 相同的开头和结尾
+		int start = 0;
+		int oldEnd = oldKeys.length;
+		int newEnd = newKeys.length;
+		while (start < oldEnd && start < newEnd
+				&& equal(oldKeys[start], newKeys[start])) {
+			diff.mOldToNew[start] = start;
+			start++;
+		}
+		while (oldEnd > start && newEnd > start
+				&& equal(oldKeys[oldEnd - 1], newKeys[newEnd - 1])) {
+			oldEnd--;
+			newEnd--;
+			diff.mOldToNew[oldEnd] = newEnd;
+		}
+
+		ArrayList<Integer> removed = new ArrayList<Integer>();
+		ArrayList<Integer> inserted = new ArrayList<Integer>();
+		if (!diff.myers(oldKeys, start, oldEnd, newKeys, start, newEnd,
+				removed, inserted)) {
+			return null;
+		}
+
+		// 键相同的删除和插入是移动
+		HashMap<Object, LinkedList<Integer>> insertedByKey = new HashMap<Object, LinkedList<Integer>>();
+		for (int position : inserted) {
+			LinkedList<Integer> positions = insertedByKey
+					.get(newKeys[position]);
+			if (positions == null) {
+				positions = new LinkedList<Integer>();
+				insertedByKey.put(newKeys[position], positions);
+			}
+			positions.add(position);
+		}
+		diff.mInsertCount = inserted.size();
+		diff.mRemoveCount = removed.size();
+		for (int position : removed) {
+			LinkedList<Integer> positions = insertedByKey
+					.get(oldKeys[position]);
+			if (positions != null && !positions.isEmpty()) {
+				diff.mOldToNew[position] = positions.removeFirst();
+				diff.mMoveCount++;
+				diff.mInsertCount--;
+				diff.mRemoveCount--;
+			}
+		}
+		return diff;
+	}
+
+	/**
+	 * 用Myers算法比较oldKeys的[oldFrom,oldTo)和newKeys的[newFrom,newTo)，相同的条目记入mOldToNew，
+	 * 删除和插入的位置分别加入removed和inserted
+	 *
+	 * @return 差别是否在MAX_EDIT_DISTANCE以内
+	 */
+	private boolean myers(Object[] oldKeys, int oldFrom, int oldTo,
+			Object[] newKeys, int newFrom, int newTo,
+			ArrayList<Integer> removed, ArrayList<Integer> inserted) {
+		int n = oldTo - oldFrom;
+		int m = newTo - newFrom;
+		int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+
+		// v[k+max]是第k条对角线上走得最远的x；trace[d]保存第d步之后v的[-d,d]部分，用来回溯路径
+		int[] v = new int[2 * max + 3];
+		int[][] trace = new int[max + 1][];
+		int found = -1;
+		for (int d = 0; d <= max && found < 0; d++) {
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (k == -d || (k != d && v[k - 1 + max + 1] < v[k + 1 + max + 1])) {
+					x = v[k + 1 + max + 1];
+				} else {
+					x = v[k - 1 + max + 1] + 1;
+				}
+				int y = x - k;
+				while (x < n && y < m
+						&& equal(oldKeys[oldFrom + x], newKeys[newFrom + y])) {
+					x++;
+					y++;
+				}
+				v[k + max + 1] = x;
+				if (x >= n && y >= m) {
+					found = d;
+				}
+			}
+			trace[d] = Arrays.copyOfRange(v, max + 1 - d, max + 1 + d + 1);
+		}
+		if (found < 0) {
+			return false;
+		}
+
+		// 从终点回溯，每一步是一次插入或删除加上之后的一段相同的条目
+		int x = n;
+		int y = m;
+		for (int d = found; d > 0; d--) {
+			int[] prev = trace[d - 1];
+			int k = x - y;
+			int prevK;
+			if (k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1])) {
+				prevK = k + 1;
+			} else {
+				prevK = k - 1;
+			}
+			int prevX = prev[prevK + d - 1];
+			int prevY = prevX - prevK;
+			int snakeX = prevK == k + 1 ? prevX : prevX + 1;
+			int snakeY = snakeX - k;
+			while (x > snakeX) {
+				x--;
+				y--;
+				mOldToNew[oldFrom + x] = newFrom + y;
+			}
+			if (prevK == k + 1) {
+				inserted.add(newFrom + prevY);
+			} else {
+				removed.add(oldFrom + prevX);
+			}
+			x = prevX;
+			y = prevY;
+		}
+		while (x > 0) {
+			x--;
+			y--;
+			mOldToNew[oldFrom + x] = newFrom + y;
+		}
+		return true;
+	}
+
+	private static boolean equal(Object lhs, Object rhs) {
+		return lhs == null ? rhs == null : lhs.equals(rhs);
+	}
+
+	/** 旧列表中的位置在新列表中的位置，已删除的返回-1 */
+	public int getNewPosition(int oldPosition) {
+		return mOldToNew[oldPosition];
+	}
+
+	/** 新插入的条目数目（不含移动的） */
+	public int getInsertCount() {
+		return mInsertCount;
+	}
+
+	/** 删除的条目数目（不含移动的） */
+	public int getRemoveCount() {
+		return mRemoveCount;
+	}
+
+	/** 移动了位置的条目数目 */
+	public int getMoveCount() {
+		return mMoveCount;
+	}
+
+	/** 位置不变或只是随前面的插入、删除平移的条目数目 */
+	public int getUnchangedCount() {
+		return mOldToNew.length - mRemoveCount - mMoveCount;
+	}
+
+	/** 两个列表的键是否完全相同 */
+	public boolean hasChanges() {
+		return mInsertCount > 0 || mRemoveCount > 0 || mMoveCount > 0
+				|| mOldToNew.length != mNewSize;
+	}
+}
@@ -0,0 +1,115 @@
+package com.lq.util;
+
+import java.util.List;
+
+import android.util.Log;
+import android.view.View;
+import android.widget.ListView;
+
+/**
+ * 装载器重新发送数据时，先与列表中正在显示的数据比较，再更新适配器。
+ * <p>
+ * 新旧数据的键和条目都相同时（如装载器只是把缓存的结果再发送一次）不更新适配器，列表不必重新绑定；
+ * 否则更新适配器后，按比较结果把第一个可见的条目滚回原来的位置，删除一首歌曲之类的小变化不会让列表跳回顶部。
+ * ListView只能整体通知数据变化，只会重新绑定可见的几行，每次更新的比较结果和省去的绑定记在日志中。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class ListUpdateHelper {
+	private static final String TAG = ListUpdateHelper.class.getSimpleName();
+
+	/** 取得条目的键，如歌曲的ID */
+	public interface KeyGetter<T> {
+		public Object getKey(T item);
+	}
+
+	/**
+	 * 比较新旧数据，有变化时更新适配器并保持滚动位置
+	 *
+	 * @param listView
+	 *            显示数据的列表
+	 * @param oldKeys
+	 *            正在显示的各条目的键，按显示顺序
+	 * @param newKeys
+	 *            新数据各条目的键，按显示顺序
+	 * @param sameItems
+	 *            新数据的条目是否与正在显示的是同一批对象，是的话键相同就不必更新
+	 * @param update
+	 *            更新适配器，如调用setData()
+	 * @return 是否更新了适配器
+	 */
+	public static boolean update(ListView listView, Object[] oldKeys,
+			Object[] newKeys, boolean sameItems, Runnable update) {
+		long start = System.nanoTime();
+		ListDiff diff = ListDiff.compute(oldKeys, newKeys);
+		long diffTime = (System.nanoTime() - start) / 1000;
+		if (diff != null && !diff.hasChanges() && sameItems) {
+			Log.i(TAG, "unchanged, skipped rebinding " + newKeys.length
+					+ " items, diff " + diffTime + "us");
+			return false;
+		}
+
+		// 记下第一个可见的条目及其顶部的位置
+		int headers = listView.getHeaderViewsCount();
+		int first = listView.getFirstVisiblePosition() - headers;
+		View firstView = listView.getChildAt(0);
+		int top = firstView == null ? 0 : firstView.getTop();
+		int visible = listView.getChildCount();
+
+		update.run();
+
+		if (diff == null) {
+			Log.i(TAG, "too many changes, rebound " + visible + " of "
+					+ newKeys.length + " items, diff " + diffTime + "us");
+			return true;
+		}
+		Log.i(TAG, diff.getInsertCount() + " inserted, "
+				+ diff.getRemoveCount() + " removed, " + diff.getMoveCount()
+				+ " moved, " + diff.getUnchangedCount() + " kept, rebound "
+				+ visible + " of " + newKeys.length + " items, diff "
+				+ diffTime + "us");
+
+		// 第一个可见的条目被删除时，以它后面第一个保留下来的条目为准
+		if (first >= 0 && first < oldKeys.length) {
+			for (int position = first; position < oldKeys.length; position++) {
+				int newPosition = diff.getNewPosition(position);
+				if (newPosition >= 0) {
+					if (newPosition != first || position != first) {
+						listView.setSelectionFromTop(newPosition + headers,
+								position == first ? top : 0);
+					}
+					break;
+				}
+			}
+		}
+		return true;
+	}
+
+	/** 按顺序取出各条目的键 */
+	public static <T> Object[] getKeys(List<T> items, KeyGetter<T> getter) {
+		if (items == null) {
+			return new Object[0];
+		}
+		Object[] keys = new Object[items.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = getter.getKey(items.get(i));
+		}
+		return keys;
+	}
+
+	/** 两个列表是否按相同的顺序包含同一批对象 */
+	public static boolean isSameItems(List<?> lhs, List<?> rhs) {
+		if (lhs == rhs) {
+			return true;
+		}
+		if (lhs == null || rhs == null || lhs.size() != rhs.size()) {
+			return false;
+		}
+		for (int i = 0; i < lhs.size(); i++) {
+			if (lhs.get(i) != rhs.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -8,13 +8,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
 import com.lq.entity.LyricSentence;
+import com.lq.entity.TrackInfo;
+import com.lq.fragment.SettingFragment;
+import com.lq.search.LyricSearchIndex;
 
 /**
  * @author lq 2013-6-1 lq2625304@gmail.com
@@ -47,6 +54,10 @@ public class LyricLoadHelper {
 
 	private static final String TAG = LyricLoadHelper.class.getSimpleName();
 
+	/** 在后台线程中更新歌词搜索索引，载入歌词的线程（如主线程）不必等待正在进行的歌词搜索 */
+	private static final ExecutorService sIndexExecutor = Executors
+			.newSingleThreadExecutor();
+
 	/** 句子集合 */
 	private ArrayList<LyricSentence> mLyricSentences = new ArrayList<LyricSentence>();
 
@@ -73,6 +84,26 @@ public class LyricLoadHelper {
 		this.mLyricListener = listener;
 	}
 
+	/**
+	 * 设置中的歌词保存目录，与LyricDownloadManager保存歌词的目录相同
+	 */
+	public static String getLyricSaveFolder(Context context) {
+		return PreferenceManager.getDefaultSharedPreferences(context)
+				.getString(SettingFragment.KEY_LYRIC_SAVE_PATH,
+						Constant.LYRIC_SAVE_FOLDER_PATH);
+	}
+
+	/**
+	 * 歌曲对应的本地歌词文件路径，文件名为“歌曲名_歌手名.lrc”
+	 * 
+	 * @param folder
+	 *            歌词保存目录，见{@link #getLyricSaveFolder(Context)}
+	 */
+	public static String getLyricFilePath(String folder, String title,
+			String artist) {
+		return folder + title + "_" + artist + ".lrc";
+	}
+
 	public void setIndexOfCurrentSentence(int index) {
 		mIndexOfCurrentSentence = index;
 	}
@@ -89,6 +120,19 @@ public class LyricLoadHelper {
 	 * @return true表示存在歌词，false表示不存在歌词
 	 */
 	public boolean loadLyric(String lyricPath) {
+		return loadLyric(lyricPath, null);
+	}
+
+	/**
+	 * 根据歌词文件的路径，读取出歌词文本并解析，同时在后台线程中更新歌词搜索索引
+	 * 
+	 * @param lyricPath
+	 *            歌词文件路径
+	 * @param track
+	 *            歌词对应的歌曲，搜索到歌词时据此播放，可以为null
+	 * @return true表示存在歌词，false表示不存在歌词
+	 */
+	public boolean loadLyric(String lyricPath, TrackInfo track) {
 		Log.i(TAG, "LoadLyric begin,path is:" + lyricPath);
 		mHasLyric = false;
 		mLyricSentences.clear();
@@ -136,6 +180,10 @@ public class LyricLoadHelper {
 					mLyricSentences.get(mLyricSentences.size() - 1)
 							.setDuringTime(Integer.MAX_VALUE);
 					fr.close();
+
+					// 句子集合下次载入时会被清空，索引中保存一份副本
+					updateIndex(lyricPath, track,
+							new ArrayList<LyricSentence>(mLyricSentences));
 				} catch (Exception e) {
 					e.printStackTrace();
 				} finally {
@@ -158,6 +206,18 @@ public class LyricLoadHelper {
 		return mHasLyric;
 	}
 
+	/** 在后台线程中用载入的歌词更新歌词搜索索引 */
+	private static void updateIndex(final String lyricPath,
+			final TrackInfo track, final List<LyricSentence> sentences) {
+		sIndexExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				LyricSearchIndex.getInstance().update(lyricPath, track,
+						sentences);
+			}
+		});
+	}
+
 	/**
 	 * 根据传递过来的已播放的毫秒数，计算应当对应到句子集合中的哪一句，再通知监听者播放到的位置。
 	 * 
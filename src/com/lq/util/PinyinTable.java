@@ -0,0 +1,173 @@
+package com.lq.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 汉字拼音表，覆盖U+4E00~U+9FA5的全部汉字，数据由tools/PinyinTableGenerator从pinyin4j生成。
+ * <p>
+ * 文件格式（大端字节序）：
+ *
+ * <pre>
+ * int    魔数"PYTB"
+ * int    版本号
+ * int    第一个汉字的编码
+ * int    汉字数目N
+ * int    音节数目S
+ * int    读音表长度R
+ * u16[N+1] 每个汉字的读音在读音表中的起始位置，第i个汉字的读音为[start[i],start[i+1])
+ * u16[R]   读音表，每项是一个音节编号，不带声调，ü写作v
+ * u16[S+1] 每个音节在音节文本中的起始位置
+ * u8[]     音节文本，ASCII编码
+ * </pre>
+ *
+ * 文件可以直接内存映射后使用，查询时不需要解析，也不会分配对象。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class PinyinTable {
+	public static final int MAGIC = 0x50595442;
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 24;
+
+	private final ByteBuffer mBuffer;
+	private final int mFirstChar;
+	private final int mCharCount;
+	private final int mSyllableCount;
+
+	private final int mIndexPos;
+	private final int mReadingPos;
+	private final int mSyllableOffsetPos;
+	private final int mSyllableTextPos;
+
+	/**
+	 * 从已读入或已映射的数据创建拼音表
+	 *
+	 * @throws IOException
+	 *             数据不是有效的拼音表
+	 */
+	public PinyinTable(ByteBuffer buffer) throws IOException {
+		mBuffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+				|| buffer.getInt(4) != VERSION) {
+			throw new IOException("not a pinyin table of version " + VERSION);
+		}
+		mFirstChar = buffer.getInt(8);
+		mCharCount = buffer.getInt(12);
+		mSyllableCount = buffer.getInt(16);
+		int readingCount = buffer.getInt(20);
+
+		mIndexPos = HEADER_SIZE;
+		mReadingPos = mIndexPos + (mCharCount + 1) * 2;
+		mSyllableOffsetPos = mReadingPos + readingCount * 2;
+		mSyllableTextPos = mSyllableOffsetPos + (mSyllableCount + 1) * 2;
+		if (mSyllableTextPos > buffer.capacity()
+				|| mSyllableTextPos + getUnsignedShort(mSyllableOffsetPos
+						+ mSyllableCount * 2) != buffer.capacity()) {
+			throw new IOException("pinyin table is truncated");
+		}
+	}
+
+	/** 以只读方式内存映射拼音表文件 */
+	public static PinyinTable map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return new PinyinTable(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** 指定的字符是否在本表覆盖的范围内 */
+	public boolean covers(char c) {
+		return c >= mFirstChar && c < mFirstChar + mCharCount;
+	}
+
+	/** 获取汉字的读音数目，不在本表范围内或没有读音的字符返回0 */
+	public int getReadingCount(char c) {
+		if (!covers(c)) {
+			return 0;
+		}
+		int pos = mIndexPos + (c - mFirstChar) * 2;
+		return getUnsignedShort(pos + 2) - getUnsignedShort(pos);
+	}
+
+	/**
+	 * 获取汉字第index个读音的音节编号
+	 *
+	 * @param index
+	 *            须小于getReadingCount(c)
+	 */
+	public int getSyllableId(char c, int index) {
+		int start = getUnsignedShort(mIndexPos + (c - mFirstChar) * 2);
+		return getUnsignedShort(mReadingPos + (start + index) * 2);
+	}
+
+	/** 音节的数目，音节编号在[0,getSyllableCount())之间 */
+	public int getSyllableCount() {
+		return mSyllableCount;
+	}
+
+	/** 音节的长度 */
+	public int getSyllableLength(int syllableId) {
+		int pos = mSyllableOffsetPos + syllableId * 2;
+		return getUnsignedShort(pos + 2) - getUnsignedShort(pos);
+	}
+
+	/** 音节的第index个字母（小写） */
+	public char getSyllableChar(int syllableId, int index) {
+		int start = getUnsignedShort(mSyllableOffsetPos + syllableId * 2);
+		return (char) (mBuffer.get(mSyllableTextPos + start + index) & 0xff);
+	}
+
+	/** 把音节追加到out的末尾 */
+	public void appendSyllable(int syllableId, boolean capitalize,
+			StringBuilder out) {
+		int pos = mSyllableOffsetPos + syllableId * 2;
+		int start = mSyllableTextPos + getUnsignedShort(pos);
+		int end = mSyllableTextPos + getUnsignedShort(pos + 2);
+		for (int i = start; i < end; i++) {
+			char c = (char) (mBuffer.get(i) & 0xff);
+			if (capitalize && i == start) {
+				c = Character.toUpperCase(c);
+			}
+			out.append(c);
+		}
+	}
+
+	/** 获取汉字的第一个读音的首字母（小写），不是汉字时返回0 */
+	public char getFirstLetter(char c) {
+		if (getReadingCount(c) == 0) {
+			return 0;
+		}
+		return getSyllableChar(getSyllableId(c, 0), 0);
+	}
+
+	/**
+	 * 把字符串中的汉字转化为拼音（取第一个读音，首字母大写），其他字符不变，追加到out的末尾。
+	 * 没有读音的汉字会被忽略。
+	 */
+	public void appendPinyin(CharSequence input, StringBuilder out) {
+		int length = input.length();
+		for (int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			if (covers(c)) {
+				if (getReadingCount(c) > 0) {
+					appendSyllable(getSyllableId(c, 0), true, out);
+				}
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	private int getUnsignedShort(int pos) {
+		return mBuffer.getShort(pos) & 0xffff;
+	}
+}
@@ -0,0 +1,47 @@
+package com.lq.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * 记录每首歌曲的播放次数，保存在单独的SharedPreferences文件中，键为歌曲ID。
+ * 只记录播放过的歌曲，用作搜索补全等的排序权重。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class PlayCountHelper {
+	private static final String PREFERENCES_NAME = "play_count";
+
+	/** 歌曲开始播放时调用，播放次数加1 */
+	public static void increasePlayCount(Context context, long trackId) {
+		SharedPreferences sp = context.getSharedPreferences(PREFERENCES_NAME,
+				Context.MODE_PRIVATE);
+		String key = String.valueOf(trackId);
+		sp.edit().putInt(key, sp.getInt(key, 0) + 1).apply();
+	}
+
+	/**
+	 * 读取所有播放过的歌曲的播放次数
+	 *
+	 * @return 歌曲ID到播放次数的映射，没有播放过的歌曲不在其中
+	 */
+	public static HashMap<Long, Integer> getPlayCounts(Context context) {
+		Map<String, ?> all = context.getSharedPreferences(PREFERENCES_NAME,
+				Context.MODE_PRIVATE).getAll();
+		HashMap<Long, Integer> counts = new HashMap<Long, Integer>();
+		for (Map.Entry<String, ?> entry : all.entrySet()) {
+			if (entry.getValue() instanceof Integer) {
+				try {
+					counts.put(Long.valueOf(entry.getKey()),
+							(Integer) entry.getValue());
+				} catch (NumberFormatException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,122 @@
+package com.lq.util;
+
+import java.io.ByteArrayOutputStream;
+import java.text.Normalizer;
+
+/**
+ * 生成用于排序的二进制排序键，排序时只需逐字节比较，不必再查询拼音。
+ * <p>
+ * 排序键由拼音索引（见StringHelper.getPingYin()）生成，规则如下：
+ * <ul>
+ * <li>英文字母和汉字的拼音都转换成小写字母，因此“爱”（ai）与“Adele”排在一起；</li>
+ * <li>连续的数字按数值比较，先写入去掉前导0后的位数，再写入各位数字，因此“Track 2”排在“Track 10”之前；</li>
+ * <li>全角字母、数字以及带重音的拉丁字母先转换成对应的半角字母、数字；</li>
+ * <li>空白和标点符号忽略不计；</li>
+ * <li>其他字符（如日文假名、拼音表中没有的汉字）按字符编码排在字母之后。</li>
+ * </ul>
+ * 排序键相同的歌曲保持原有的相对顺序（Collections.sort()是稳定的）。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class SortKeyHelper {
+	/** 数字串的标记，小于所有字母 */
+	private static final int NUMBER = 0x30;
+
+	/** 其他字符的标记，大于所有字母，后面是两个字节的字符编码 */
+	private static final int OTHER = 0xf0;
+
+	/** 数字串的位数超过此值时只按前面的位数区分长短 */
+	private static final int MAX_NUMBER_LENGTH = 0xff;
+
+	private static final byte[] EMPTY = new byte[0];
+
+	/**
+	 * 由拼音索引生成排序键
+	 *
+	 * @param key
+	 *            拼音索引，可以为null
+	 */
+	public static byte[] getSortKey(String key) {
+		if (key == null || key.length() == 0) {
+			return EMPTY;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(key.length() + 4);
+		int length = key.length();
+		int i = 0;
+		while (i < length) {
+			char c = fold(key.charAt(i));
+			if (c >= '0' && c <= '9') {
+				// 跳过前导0，但至少保留一位
+				int start = i;
+				while (start + 1 < length && fold(key.charAt(start)) == '0'
+						&& isDigit(fold(key.charAt(start + 1)))) {
+					start++;
+				}
+				int end = start + 1;
+				while (end < length && isDigit(fold(key.charAt(end)))) {
+					end++;
+				}
+				out.write(NUMBER);
+				out.write(Math.min(end - start, MAX_NUMBER_LENGTH));
+				for (int j = start; j < end; j++) {
+					out.write(fold(key.charAt(j)));
+				}
+				i = end;
+				continue;
+			}
+			if (c >= 'A' && c <= 'Z') {
+				out.write(c + ('a' - 'A'));
+			} else if (c >= 'a' && c <= 'z') {
+				out.write(c);
+			} else if (Character.isLetterOrDigit(c)) {
+				out.write(OTHER);
+				out.write(c >> 8);
+				out.write(c & 0xff);
+			}
+			// 空白和标点符号忽略
+			i++;
+		}
+		return out.toByteArray();
+	}
+
+	/** 按无符号字节逐个比较两个排序键 */
+	public static int compare(byte[] lhs, byte[] rhs) {
+		int length = Math.min(lhs.length, rhs.length);
+		for (int i = 0; i < length; i++) {
+			int l = lhs[i] & 0xff;
+			int r = rhs[i] & 0xff;
+			if (l != r) {
+				return l - r;
+			}
+		}
+		return lhs.length - rhs.length;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/** 全角字母、数字转换成半角，带重音的拉丁字母去掉重音 */
+	private static char fold(char c) {
+		if (c < 0x80) {
+			return c;
+		}
+		if (c >= '\uff10' && c <= '\uff19') {
+			return (char) (c - '\uff10' + '0');
+		}
+		if (c >= '\uff21' && c <= '\uff3a') {
+			return (char) (c - '\uff21' + 'A');
+		}
+		if (c >= '\uff41' && c <= '\uff5a') {
+			return (char) (c - '\uff41' + 'a');
+		}
+		if (c >= '\u00c0' && c <= '\u024f' && Character.isLetter(c)) {
+			char base = Normalizer.normalize(String.valueOf(c),
+					Normalizer.Form.NFD).charAt(0);
+			if (base < 0x80) {
+				return base;
+			}
+		}
+		return c;
+	}
+}
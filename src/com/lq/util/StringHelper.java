@@ -1,8 +1,16 @@
 package com.lq.util;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.DecimalFormat;
 
+import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
 import android.text.TextUtils;
+import android.util.Log;
 
 import net.sourceforge.pinyin4j.PinyinHelper;
 import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
@@ -15,6 +23,22 @@ import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombi
  * @author lq 2013-6-1 lq2625304@gmail.com
  * */
 public class StringHelper {
+	private static final String TAG = StringHelper.class.getSimpleName();
+
+	/** assets中的拼音表文件名 */
+	private static final String PINYIN_TABLE_ASSET = "pinyin.dat";
+
+	/** 拼音表，加载之前为null，此时使用pinyin4j转换 */
+	private static volatile PinyinTable sPinyinTable = null;
+
+	/** 每个线程复用的StringBuilder，避免每次转换都分配 */
+	private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(64);
+		}
+	};
+
 	public static enum CharType {
 		DELIMITER, // 非字母截止字符，例如，．）（　等等　（ 包含U0000-U0080）
 		NUM, // 2字节数字１２３４
@@ -89,6 +113,11 @@ public class StringHelper {
 	 * @return 如果c不是汉字，返回0；否则返回该汉字的拼音的首字母
 	 */
 	public static char getPinyinFirstLetter(char c) {
+		PinyinTable table = sPinyinTable;
+		if (table != null && (table.covers(c) || c < 0x4e00)) {
+			return table.getFirstLetter(c);
+		}
+
 		String[] pinyin = null;
 		HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
 		format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);// 不输出声调
@@ -126,6 +155,23 @@ public class StringHelper {
 	 * @return
 	 */
 	public static String getPingYin(String inputString) {
+		if (TextUtils.isEmpty(inputString)) {
+			return "";
+		}
+		PinyinTable table = sPinyinTable;
+		if (table != null) {
+			StringBuilder output = sBuilder.get();
+			output.setLength(0);
+			table.appendPinyin(inputString.trim(), output);
+			return output.toString();
+		}
+		return getPingYinByPinyin4j(inputString);
+	}
+
+	/**
+	 * 使用pinyin4j将字符串中的中文转化为拼音，拼音表加载之前使用，结果与getPingYin()相同
+	 */
+	static String getPingYinByPinyin4j(String inputString) {
 		if (TextUtils.isEmpty(inputString)) {
 			return "";
 		}
@@ -156,4 +202,63 @@ public class StringHelper {
 		}
 		return output;
 	}
+
+	/**
+	 * 加载拼音表。
+	 * <p>
+	 * 第一次运行或应用更新后把assets中的拼音表复制到应用的files目录，之后直接内存映射该文件。
+	 * 加载失败时继续使用pinyin4j转换。可以重复调用，已加载时直接返回。
+	 */
+	public static synchronized void initPinyinTable(Context context) {
+		if (sPinyinTable != null) {
+			return;
+		}
+		File file = new File(context.getFilesDir(), PINYIN_TABLE_ASSET);
+		try {
+			long updateTime = context.getPackageManager().getPackageInfo(
+					context.getPackageName(), 0).lastUpdateTime;
+			if (!file.exists() || file.lastModified() < updateTime) {
+				copyAsset(context, PINYIN_TABLE_ASSET, file);
+			}
+			sPinyinTable = PinyinTable.map(file);
+		} catch (IOException e) {
+			Log.e(TAG, "load pinyin table failed", e);
+			file.delete();
+		} catch (NameNotFoundException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/** 直接使用已映射的拼音表，只供tools中的基准测试通过同一个包中的入口调用 */
+	static void setPinyinTable(PinyinTable table) {
+		sPinyinTable = table;
+	}
+
+	/** 获取已加载的拼音表，尚未加载时返回null */
+	public static PinyinTable getPinyinTable() {
+		return sPinyinTable;
+	}
+
+	private static void copyAsset(Context context, String assetName, File dest)
+			throws IOException {
+		File temp = new File(dest.getPath() + ".tmp");
+		InputStream in = context.getAssets().open(assetName);
+		try {
+			OutputStream out = new FileOutputStream(temp);
+			try {
+				byte[] buffer = new byte[8192];
+				int count = 0;
+				while ((count = in.read(buffer)) != -1) {
+					out.write(buffer, 0, count);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		if (!temp.renameTo(dest)) {
+			throw new IOException("rename " + temp + " failed");
+		}
+	}
 }
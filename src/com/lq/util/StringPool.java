@@ -0,0 +1,74 @@
+package com.lq.util;
+
+import java.util.HashMap;
+
+/**
+ * 字符串池，相同的字符串只保留第一次加入的那个对象，用它在池中的位置表示。
+ * <p>
+ * 读取游标时每一行的艺术家、专辑名、文件夹路径都是新的字符串，但其中大部分与之前的行重复，
+ * 经过字符串池后重复的字符串立即成为垃圾，音乐库中只保留不同的字符串。池中记录加入的次数和重复的字符数，
+ * 用来估算去重节省的内存。
+ * <p>
+ * 不是线程安全的，只在建表时由一个线程使用。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class StringPool {
+	/** 一个字符串对象除字符以外占用的字节数（String对象及其char数组的头部和字段），估算值 */
+	private static final int STRING_OVERHEAD = 40;
+
+	private String[] mValues = new String[16];
+	private int mSize = 0;
+	private final HashMap<String, Integer> mRefs = new HashMap<String, Integer>();
+
+	/** 调用intern()的次数 */
+	private int mRequestCount = 0;
+
+	/** 重复的字符串的字符总数 */
+	private long mDuplicateChars = 0;
+
+	/** 返回字符串在池中的位置，没有的话先加入 */
+	public int intern(String value) {
+		mRequestCount++;
+		Integer ref = mRefs.get(value);
+		if (ref != null) {
+			mDuplicateChars += value == null ? 0 : value.length();
+			return ref;
+		}
+		if (mSize == mValues.length) {
+			String[] values = new String[mSize * 2];
+			System.arraycopy(mValues, 0, values, 0, mSize);
+			mValues = values;
+		}
+		mValues[mSize] = value;
+		mRefs.put(value, mSize);
+		return mSize++;
+	}
+
+	/** 字符串在池中的位置，没有时返回-1 */
+	public int find(String value) {
+		Integer ref = mRefs.get(value);
+		return ref == null ? -1 : ref;
+	}
+
+	/** 池中第ref个字符串 */
+	public String get(int ref) {
+		return mValues[ref];
+	}
+
+	/** 池中不同的字符串的数目 */
+	public int size() {
+		return mSize;
+	}
+
+	/** 调用intern()的次数，即不去重时要保存的字符串数目 */
+	public int getRequestCount() {
+		return mRequestCount;
+	}
+
+	/** 去重节省的字节数，按每个字符2字节加上STRING_OVERHEAD估算 */
+	public long getSavedBytes() {
+		return (long) (mRequestCount - mSize) * STRING_OVERHEAD
+				+ mDuplicateChars * 2;
+	}
+}
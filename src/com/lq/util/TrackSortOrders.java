@@ -0,0 +1,403 @@
+package com.lq.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.lq.entity.TrackInfo;
+import com.lq.entity.TrackStore;
+
+/**
+ * 歌曲列表的各种排列顺序，加载歌曲时一次算好，切换排序方式时直接换用对应的排列，不必重新查询和排序。
+ * <p>
+ * 每种顺序是一个int数组，第i个元素是排在第i位的歌曲在列表中的位置。排序键相同的歌曲按在列表中的位置排列，
+ * 与稳定排序的结果相同。按标题、艺术家、专辑排序时还同时算出按首字母分节的索引。
+ * <p>
+ * 所有顺序在一个大小等于CPU核数的线程池中并行地归并排序：先把每种顺序的下标分成若干段分别排序，
+ * 再逐轮两两归并，每一轮中所有顺序的所有归并同时进行（API 14上没有ForkJoinPool）。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class TrackSortOrders {
+	/** 按标题排序 */
+	public static final int ORDER_TITLE = 0;
+
+	/** 按艺术家名称排序 */
+	public static final int ORDER_ARTIST = 1;
+
+	/** 按专辑名称排序 */
+	public static final int ORDER_ALBUM = 2;
+
+	/** 按时长从短到长排序 */
+	public static final int ORDER_DURATION = 3;
+
+	/** 按文件大小从小到大排序 */
+	public static final int ORDER_SIZE = 4;
+
+	/** 按添加时间从新到旧排序 */
+	public static final int ORDER_DATE_ADDED = 5;
+
+	public static final int ORDER_COUNT = 6;
+
+	/** 每段至少这么多首歌曲才值得分给不同的线程 */
+	private static final int MIN_CHUNK_SIZE = 2048;
+
+	/** 不超过此长度的区间用插入排序 */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	/** 比较两首歌曲在列表中的位置，排序键相同时按位置比较 */
+	private static abstract class IndexComparator {
+		abstract int compare(int lhs, int rhs);
+	}
+
+	/** 按位置取出歌曲的排序键和数值，歌曲可以是TrackInfo，也可以是TrackStore中的行 */
+	private static abstract class KeySource {
+		abstract int size();
+
+		/** 按名称排序的顺序的排序键 */
+		abstract byte[] getSortKey(int order, int index);
+
+		/** 按数值排序的顺序的数值，从小到大排列 */
+		abstract long getValue(int order, int index);
+	}
+
+	private final int[][] mOrders;
+
+	/** 各种顺序的分节索引，不按名称排序的为AlphabetSectionIndex.EMPTY */
+	private final AlphabetSectionIndex[] mSections;
+
+	private TrackSortOrders(int[][] orders, AlphabetSectionIndex[] sections) {
+		mOrders = orders;
+		mSections = sections;
+	}
+
+	/**
+	 * 取得指定的排列
+	 *
+	 * @param order
+	 *            ORDER_XXX
+	 */
+	public int[] get(int order) {
+		return mOrders[order];
+	}
+
+	/**
+	 * 取得指定顺序的分节索引
+	 *
+	 * @param order
+	 *            ORDER_XXX
+	 */
+	public AlphabetSectionIndex getSections(int order) {
+		return mSections[order];
+	}
+
+	/** 排列的长度，即歌曲数目 */
+	public int size() {
+		return mOrders[0].length;
+	}
+
+	/**
+	 * 把列表中的一部分歌曲（如搜索结果）按指定的顺序排列，只需按排列扫描一遍
+	 *
+	 * @param order
+	 *            ORDER_XXX
+	 * @param indices
+	 *            歌曲在列表中的位置，不重复
+	 * @return 按该顺序排列后的位置
+	 */
+	public int[] arrange(int order, int[] indices) {
+		int[] permutation = mOrders[order];
+		boolean[] selected = new boolean[permutation.length];
+		for (int index : indices) {
+			selected[index] = true;
+		}
+		int[] result = new int[indices.length];
+		int count = 0;
+		for (int i = 0; i < permutation.length && count < result.length; i++) {
+			if (selected[permutation[i]]) {
+				result[count++] = permutation[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 并行地计算歌曲列表的所有排列，需要的排序键（如专辑名的排序键）也在此时生成
+	 *
+	 * @return 所有排列；线程被中断时返回null
+	 */
+	public static TrackSortOrders build(List<TrackInfo> tracks) {
+		if (tracks instanceof TrackStore.TrackList) {
+			// 直接读取表中的列，不必创建TrackInfo
+			TrackStore.TrackList list = (TrackStore.TrackList) tracks;
+			return build(list.getStore(), list.getRows());
+		}
+		final TrackInfo[] items = tracks.toArray(new TrackInfo[tracks.size()]);
+		return build(new KeySource() {
+			@Override
+			int size() {
+				return items.length;
+			}
+
+			@Override
+			byte[] getSortKey(int order, int index) {
+				return order == ORDER_TITLE ? items[index].getTitleSortKey()
+						: (order == ORDER_ARTIST ? items[index]
+								.getArtistSortKey() : items[index]
+								.getAlbumSortKey());
+			}
+
+			@Override
+			long getValue(int order, int index) {
+				return order == ORDER_DURATION ? items[index].getDuration()
+						: (order == ORDER_SIZE ? items[index].getSize()
+								: -items[index].getDateAdded());
+			}
+		});
+	}
+
+	/**
+	 * 并行地计算TrackStore中指定各行的所有排列
+	 *
+	 * @param rows
+	 *            各首歌曲的行号，排列中的位置是在rows中的位置
+	 * @return 所有排列；线程被中断时返回null
+	 */
+	public static TrackSortOrders build(final TrackStore store,
+			final int[] rows) {
+		return build(new KeySource() {
+			@Override
+			int size() {
+				return rows.length;
+			}
+
+			@Override
+			byte[] getSortKey(int order, int index) {
+				return order == ORDER_TITLE ? store.getTitleSortKey(rows[index])
+						: (order == ORDER_ARTIST ? store
+								.getArtistSortKey(rows[index]) : store
+								.getAlbumSortKey(rows[index]));
+			}
+
+			@Override
+			long getValue(int order, int index) {
+				return order == ORDER_DURATION ? store.getDuration(rows[index])
+						: (order == ORDER_SIZE ? store.getSize(rows[index])
+								: -store.getDateAdded(rows[index]));
+			}
+		});
+	}
+
+	private static TrackSortOrders build(final KeySource source) {
+		final int size = source.size();
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunks = Integer.highestOneBit(Math.max(1,
+				Math.min(threads * 2, size / MIN_CHUNK_SIZE)));
+		final int[] bounds = new int[chunks + 1];
+		for (int k = 0; k <= chunks; k++) {
+			bounds[k] = (int) ((long) size * k / chunks);
+		}
+
+		final byte[][][] keys = new byte[ORDER_COUNT][][];
+		final IndexComparator[] comparators = new IndexComparator[ORDER_COUNT];
+		final int[][] orders = new int[ORDER_COUNT][];
+		final int[][] buffers = new int[ORDER_COUNT][];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// 取出各种排序键，每种顺序一个任务
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int o = 0; o < ORDER_COUNT; o++) {
+				final int order = o;
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						if (isByName(order)) {
+							keys[order] = getSortKeys(order, source);
+							comparators[order] = createComparator(keys[order]);
+						} else {
+							comparators[order] = createComparator(order, source);
+						}
+						int[] indices = new int[size];
+						for (int i = 0; i < size; i++) {
+							indices[i] = i;
+						}
+						orders[order] = indices;
+						buffers[order] = new int[size];
+						return null;
+					}
+				});
+			}
+			invokeAll(executor, tasks);
+
+			// 每种顺序的每一段分别排序
+			tasks.clear();
+			for (int o = 0; o < ORDER_COUNT; o++) {
+				for (int k = 0; k < chunks; k++) {
+					final int order = o;
+					final int from = bounds[k];
+					final int to = bounds[k + 1];
+					tasks.add(new Callable<Object>() {
+						@Override
+						public Object call() {
+							mergeSort(orders[order], buffers[order], from, to,
+									comparators[order]);
+							return null;
+						}
+					});
+				}
+			}
+			invokeAll(executor, tasks);
+
+			// 逐轮两两归并相邻的段，结果在orders和buffers之间交替
+			for (int width = 1; width < chunks; width *= 2) {
+				tasks.clear();
+				for (int o = 0; o < ORDER_COUNT; o++) {
+					for (int k = 0; k < chunks; k += width * 2) {
+						final int order = o;
+						final int from = bounds[k];
+						final int mid = bounds[Math.min(k + width, chunks)];
+						final int to = bounds[Math.min(k + width * 2, chunks)];
+						tasks.add(new Callable<Object>() {
+							@Override
+							public Object call() {
+								merge(orders[order], buffers[order], from,
+										mid, to, comparators[order]);
+								return null;
+							}
+						});
+					}
+				}
+				invokeAll(executor, tasks);
+				for (int o = 0; o < ORDER_COUNT; o++) {
+					int[] swap = orders[o];
+					orders[o] = buffers[o];
+					buffers[o] = swap;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			executor.shutdown();
+		}
+
+		AlphabetSectionIndex[] sections = new AlphabetSectionIndex[ORDER_COUNT];
+		for (int o = 0; o < ORDER_COUNT; o++) {
+			sections[o] = isByName(o) ? AlphabetSectionIndex.build(keys[o],
+					orders[o]) : AlphabetSectionIndex.EMPTY;
+		}
+		return new TrackSortOrders(orders, sections);
+	}
+
+	/** 是否是按名称的排序键排序的顺序 */
+	private static boolean isByName(int order) {
+		return order == ORDER_TITLE || order == ORDER_ARTIST
+				|| order == ORDER_ALBUM;
+	}
+
+	private static byte[][] getSortKeys(int order, KeySource source) {
+		byte[][] keys = new byte[source.size()][];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = source.getSortKey(order, i);
+		}
+		return keys;
+	}
+
+	private static IndexComparator createComparator(final byte[][] keys) {
+		return new IndexComparator() {
+			@Override
+			int compare(int lhs, int rhs) {
+				int result = SortKeyHelper.compare(keys[lhs], keys[rhs]);
+				return result != 0 ? result : lhs - rhs;
+			}
+		};
+	}
+
+	private static void invokeAll(ExecutorService executor,
+			List<Callable<Object>> tasks) throws InterruptedException {
+		for (Future<Object> future : executor.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	private static IndexComparator createComparator(int order,
+			KeySource source) {
+		switch (order) {
+		case ORDER_DURATION:
+		case ORDER_SIZE:
+		case ORDER_DATE_ADDED:
+			final long[] values = new long[source.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = source.getValue(order, i);
+			}
+			return new IndexComparator() {
+				@Override
+				int compare(int lhs, int rhs) {
+					long l = values[lhs];
+					long r = values[rhs];
+					if (l != r) {
+						return l < r ? -1 : 1;
+					}
+					return lhs - rhs;
+				}
+			};
+		default:
+			throw new IllegalArgumentException("unknown order:" + order);
+		}
+	}
+
+	/** 对data的[from,to)归并排序，buffer的同一区间用作临时空间 */
+	private static void mergeSort(int[] data, int[] buffer, int from, int to,
+			IndexComparator comparator) {
+		if (to - from <= INSERTION_SORT_THRESHOLD) {
+			for (int i = from + 1; i < to; i++) {
+				int value = data[i];
+				int j = i;
+				while (j > from && comparator.compare(data[j - 1], value) > 0) {
+					data[j] = data[j - 1];
+					j--;
+				}
+				data[j] = value;
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		mergeSort(data, buffer, from, mid, comparator);
+		mergeSort(data, buffer, mid, to, comparator);
+		if (comparator.compare(data[mid - 1], data[mid]) <= 0) {
+			// 两半已经有序
+			return;
+		}
+		merge(data, buffer, from, mid, to, comparator);
+		System.arraycopy(buffer, from, data, from, to - from);
+	}
+
+	/** 把src中有序的[from,mid)和[mid,to)归并到dst的[from,to) */
+	private static void merge(int[] src, int[] dst, int from, int mid, int to,
+			IndexComparator comparator) {
+		int i = from;
+		int j = mid;
+		int k = from;
+		while (i < mid && j < to) {
+			if (comparator.compare(src[i], src[j]) <= 0) {
+				dst[k++] = src[i++];
+			} else {
+				dst[k++] = src[j++];
+			}
+		}
+		while (i < mid) {
+			dst[k++] = src[i++];
+		}
+		while (j < to) {
+			dst[k++] = src[j++];
+		}
+	}
+}
@@ -0,0 +1,30 @@
+#!/bin/sh
+# 在普通JVM上编译并运行tests/src中的JUnit测试，被测的类只依赖JDK和几个android.jar中的类。
+# 需要JDK、JUnit 4（JUNIT_JAR，以及HAMCREST_JAR）和Android SDK中的android.jar：设置ANDROID_JAR，
+# 或者设置ANDROID_HOME并安装android-14平台。编译结果放在临时目录中，运行结束后删除。
+set -e
+cd "$(dirname "$0")/.."
+
+ANDROID_JAR=${ANDROID_JAR:-$ANDROID_HOME/platforms/android-14/android.jar}
+if [ ! -f "$ANDROID_JAR" ] || [ ! -f "$JUNIT_JAR" ]; then
+	echo "set ANDROID_JAR (or ANDROID_HOME) and JUNIT_JAR" >&2
+	exit 1
+fi
+JUNIT="$JUNIT_JAR${HAMCREST_JAR:+:$HAMCREST_JAR}"
+LIBS=$(ls libs/*.jar | tr '\n' ':')
+
+OUT=$(mktemp -d)
+trap 'rm -rf "$OUT"' EXIT
+mkdir "$OUT/classes" "$OUT/tests"
+
+javac -nowarn -encoding UTF-8 -cp "$LIBS$ANDROID_JAR" -d "$OUT/classes" \
+	$(find src gen -name '*.java')
+# android.jar中的类只有声明，Log和TextUtils换成tools/benchmark/jvm中的实现，运行时放在android.jar之前
+javac -nowarn -encoding UTF-8 -d "$OUT/tests" \
+	$(find tools/benchmark/jvm -name '*.java')
+javac -nowarn -encoding UTF-8 -cp "$OUT/classes:$JUNIT:$LIBS$ANDROID_JAR" -d "$OUT/tests" \
+	$(find tests/src -name '*.java')
+
+CLASSES=$(cd tests/src && find . -name '*Test.java' | sed 's|^\./||; s|\.java$||; s|/|.|g')
+java -cp "$OUT/tests:$OUT/classes:$JUNIT:$LIBS$ANDROID_JAR" \
+	org.junit.runner.JUnitCore $CLASSES
@@ -0,0 +1,160 @@
+package com.lq.loader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.lq.entity.TrackStore;
+
+/**
+ * 增量同步后由FolderIndex.update()得到的索引应当与由新表重新build()的完全相同
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class FolderIndexTest {
+
+	/** 测试用的一首歌曲：ID、所在文件夹和大小，时长取大小的十分之一 */
+	private static class Track {
+		final long id;
+		final String folder;
+		final long size;
+
+		Track(long id, String folder, long size) {
+			this.id = id;
+			this.folder = folder;
+			this.size = size;
+		}
+	}
+
+	@Test
+	public void updateMatchesRebuild() {
+		List<Track> oldTracks = Arrays.asList(
+				new Track(1, "/sdcard/Music", 1000),
+				new Track(2, "/sdcard/Music", 2000),
+				new Track(3, "/sdcard/Music/A", 3000),
+				new Track(4, "/sdcard/Music/A/B", 4000),
+				new Track(5, "/sdcard/Download", 5000),
+				new Track(6, "/sdcard/Music/A", 6000),
+				new Track(7, "/sdcard/Music/A/B", 7000),
+				new Track(8, "/sdcard/Music", 8000));
+		// 删除2和5（Download因此变空），7移到新的文件夹C，新增9和10
+		List<Track> newTracks = Arrays.asList(
+				new Track(9, "/sdcard/Music/A", 9000),
+				new Track(1, "/sdcard/Music", 1000),
+				new Track(3, "/sdcard/Music/A", 3000),
+				new Track(4, "/sdcard/Music/A/B", 4000),
+				new Track(7, "/sdcard/Music/C", 7000),
+				new Track(6, "/sdcard/Music/A", 6000),
+				new Track(10, "/sdcard/Ringtones", 10000),
+				new Track(8, "/sdcard/Music", 8000));
+		long[] modified = { 7 };
+
+		TrackStore oldStore = createStore(oldTracks);
+		TrackStore newStore = createStore(newTracks);
+		FolderIndex previous = FolderIndex.build(oldStore,
+				allRows(oldStore));
+
+		int[] oldToNew = new int[oldTracks.size()];
+		for (int oldRow = 0; oldRow < oldToNew.length; oldRow++) {
+			long id = oldTracks.get(oldRow).id;
+			oldToNew[oldRow] = contains(modified, id) ? -1 : indexOf(
+					newTracks, id);
+		}
+		List<Integer> added = new ArrayList<Integer>();
+		for (int row = 0; row < newTracks.size(); row++) {
+			long id = newTracks.get(row).id;
+			if (contains(modified, id) || indexOf(oldTracks, id) < 0) {
+				added.add(row);
+			}
+		}
+		int[] addedRows = new int[added.size()];
+		for (int i = 0; i < addedRows.length; i++) {
+			addedRows[i] = added.get(i);
+		}
+
+		FolderIndex updated = FolderIndex.update(previous, oldStore,
+				oldToNew, newStore, addedRows);
+		FolderIndex rebuilt = FolderIndex.build(newStore, allRows(newStore));
+		assertSameNode(rebuilt.getRoot(), updated.getRoot());
+		assertEquals(paths(rebuilt.getFoldersWithTracks()),
+				paths(updated.getFoldersWithTracks()));
+		assertNull(updated.find("/sdcard/Download"));
+
+		// 上一个索引不变
+		assertSameNode(FolderIndex.build(oldStore, allRows(oldStore))
+				.getRoot(), previous.getRoot());
+	}
+
+	private static TrackStore createStore(List<Track> tracks) {
+		TrackStore store = new TrackStore(tracks.size());
+		for (Track track : tracks) {
+			String title = "t" + track.id;
+			store.add(track.id, title, title, "artist", "artist", "album",
+					1, track.folder + "/" + title + ".mp3", title + ".mp3",
+					track.size / 10, track.size, track.id, track.id);
+		}
+		return store;
+	}
+
+	private static int[] allRows(TrackStore store) {
+		int[] rows = new int[store.size()];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		return rows;
+	}
+
+	private static int indexOf(List<Track> tracks, long id) {
+		for (int i = 0; i < tracks.size(); i++) {
+			if (tracks.get(i).id == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean contains(long[] ids, long id) {
+		for (long each : ids) {
+			if (each == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<String> paths(List<FolderIndex.Node> nodes) {
+		List<String> paths = new ArrayList<String>();
+		for (FolderIndex.Node node : nodes) {
+			paths.add(node.getPath());
+		}
+		return paths;
+	}
+
+	private static void assertSameNode(FolderIndex.Node expected,
+			FolderIndex.Node actual) {
+		String path = expected.getPath();
+		assertEquals(path, expected.getName(), actual.getName());
+		assertEquals(path, expected.getPath(), actual.getPath());
+		assertArrayEquals(path, expected.getRows(), actual.getRows());
+		assertEquals(path, expected.getTrackCount(), actual.getTrackCount());
+		assertEquals(path, expected.getSize(), actual.getSize());
+		assertEquals(path, expected.getDuration(), actual.getDuration());
+		assertEquals(path, expected.getTotalTrackCount(),
+				actual.getTotalTrackCount());
+		assertEquals(path, expected.getTotalSize(), actual.getTotalSize());
+		assertEquals(path, expected.getTotalDuration(),
+				actual.getTotalDuration());
+		assertEquals(path, expected.getChildren().size(), actual
+				.getChildren().size());
+		for (int i = 0; i < expected.getChildren().size(); i++) {
+			assertSameNode(expected.getChildren().get(i), actual
+					.getChildren().get(i));
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.lq.loader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.lq.entity.TrackStore;
+
+/**
+ * 二进制快照写出后读回的内容，以及版本不符、文件截断时的处理
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class LibrarySnapshotTest {
+	private static final String MEDIA_STORE_VERSION = "1.0:123";
+
+	@Test
+	public void roundTrip() throws IOException {
+		TrackStore store = createStore();
+		HashMap<Integer, String> albumArts = new HashMap<Integer, String>();
+		albumArts.put(10, "/sdcard/albumthumbs/10");
+		albumArts.put(20, "/sdcard/albumthumbs/20");
+
+		LibrarySnapshot snapshot = LibrarySnapshot.read(
+				write(store, albumArts), MEDIA_STORE_VERSION);
+		assertNotNull(snapshot);
+		assertEquals(3, snapshot.getMaxId());
+		assertEquals(1300, snapshot.getMaxDateModified());
+		assertEquals(albumArts, snapshot.getAlbumArts());
+		assertSameStore(store, snapshot.getStore());
+
+		// 不检查MediaStore的版本时同样读出
+		assertNotNull(LibrarySnapshot.read(write(store, albumArts), null));
+	}
+
+	@Test
+	public void mediaStoreVersionMismatch() throws IOException {
+		ByteBuffer buffer = write(createStore(),
+				new HashMap<Integer, String>());
+		assertNull(LibrarySnapshot.read(buffer, "2.0:456"));
+	}
+
+	@Test
+	public void snapshotVersionMismatch() throws IOException {
+		ByteBuffer buffer = write(createStore(),
+				new HashMap<Integer, String>());
+		buffer.putInt(4, LibrarySnapshot.VERSION + 1);
+		try {
+			LibrarySnapshot.read(buffer, MEDIA_STORE_VERSION);
+			fail("snapshot of another version was read");
+		} catch (IOException e) {
+			// 版本不符的快照当作已损坏
+		}
+	}
+
+	@Test
+	public void truncated() throws IOException {
+		ByteBuffer buffer = write(createStore(),
+				new HashMap<Integer, String>());
+		buffer.limit(buffer.limit() - 4);
+		ByteBuffer truncated = buffer.slice();
+		try {
+			LibrarySnapshot.read(truncated, MEDIA_STORE_VERSION);
+			fail("truncated snapshot was read");
+		} catch (IOException e) {
+			// 缺少结尾的魔数
+		}
+	}
+
+	private static ByteBuffer write(TrackStore store,
+			HashMap<Integer, String> albumArts) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		LibrarySnapshot.write(out, MEDIA_STORE_VERSION, store, albumArts, 3,
+				1300);
+		out.close();
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
+
+	private static TrackStore createStore() {
+		TrackStore store = new TrackStore(3);
+		store.add(1, "Hello", "HELLO", "Adele", "ADELE", "25", 10,
+				"/sdcard/Music/Hello.mp3", "Hello.mp3", 295000, 4700000,
+				1100, 1000);
+		store.add(2, "Yesterday", "YESTERDAY", "The Beatles", "THE BEATLES",
+				"Help!", 20, "/sdcard/Music/Beatles/01.mp3", "Yesterday",
+				125000, 2000000, 1200, 1001);
+		store.add(3, "Someone Like You", "SOMEONE LIKE YOU", "Adele",
+				"ADELE", "21", 30, "/sdcard/Download/someone.mp3",
+				"someone.mp3", 285000, 4500000, 1300, 1002);
+		return store;
+	}
+
+	private static void assertSameStore(TrackStore expected, TrackStore actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.getArtistCount(), actual.getArtistCount());
+		assertEquals(expected.getFolderCount(), actual.getFolderCount());
+		for (int row = 0; row < expected.size(); row++) {
+			assertEquals(expected.getId(row), actual.getId(row));
+			assertEquals(expected.getTitle(row), actual.getTitle(row));
+			assertEquals(expected.getTitleKey(row), actual.getTitleKey(row));
+			assertArrayEquals(expected.getTitleSortKey(row),
+					actual.getTitleSortKey(row));
+			assertEquals(expected.getArtist(row), actual.getArtist(row));
+			assertEquals(expected.getArtistKey(row), actual.getArtistKey(row));
+			assertArrayEquals(expected.getArtistSortKey(row),
+					actual.getArtistSortKey(row));
+			assertEquals(expected.getAlbum(row), actual.getAlbum(row));
+			assertEquals(expected.getAlbumId(row), actual.getAlbumId(row));
+			assertEquals(expected.getData(row), actual.getData(row));
+			assertEquals(expected.getFolder(row), actual.getFolder(row));
+			assertEquals(expected.getDisplayName(row),
+					actual.getDisplayName(row));
+			assertEquals(expected.getDuration(row), actual.getDuration(row));
+			assertEquals(expected.getSize(row), actual.getSize(row));
+			assertEquals(expected.getDateModified(row),
+					actual.getDateModified(row));
+			assertEquals(expected.getDateAdded(row), actual.getDateAdded(row));
+			assertEquals(expected.getArtistRef(row), actual.getArtistRef(row));
+			assertEquals(expected.getFolderRef(row), actual.getFolderRef(row));
+		}
+	}
+}
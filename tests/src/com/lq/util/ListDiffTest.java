@@ -0,0 +1,94 @@
+package com.lq.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * ListDiff的插入、删除、移动以及差别过大时的结果
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class ListDiffTest {
+
+	@Test
+	public void unchanged() {
+		ListDiff diff = ListDiff.compute(keys("a", "b", "c"),
+				keys("a", "b", "c"));
+		assertFalse(diff.hasChanges());
+		assertEquals(3, diff.getUnchangedCount());
+		assertPositions(diff, 0, 1, 2);
+	}
+
+	@Test
+	public void insert() {
+		ListDiff diff = ListDiff.compute(keys("a", "b", "c"),
+				keys("x", "a", "b", "y", "c", "z"));
+		assertTrue(diff.hasChanges());
+		assertEquals(3, diff.getInsertCount());
+		assertEquals(0, diff.getRemoveCount());
+		assertEquals(0, diff.getMoveCount());
+		assertEquals(3, diff.getUnchangedCount());
+		assertPositions(diff, 1, 2, 4);
+	}
+
+	@Test
+	public void remove() {
+		ListDiff diff = ListDiff.compute(keys("a", "b", "c", "d", "e"),
+				keys("a", "c", "e"));
+		assertTrue(diff.hasChanges());
+		assertEquals(0, diff.getInsertCount());
+		assertEquals(2, diff.getRemoveCount());
+		assertEquals(0, diff.getMoveCount());
+		assertEquals(3, diff.getUnchangedCount());
+		assertPositions(diff, 0, -1, 1, -1, 2);
+	}
+
+	@Test
+	public void move() {
+		ListDiff diff = ListDiff.compute(keys("a", "b", "c", "d", "e"),
+				keys("a", "d", "b", "c", "e"));
+		assertTrue(diff.hasChanges());
+		assertEquals(0, diff.getInsertCount());
+		assertEquals(0, diff.getRemoveCount());
+		assertEquals(1, diff.getMoveCount());
+		assertEquals(4, diff.getUnchangedCount());
+		assertPositions(diff, 0, 2, 3, 1, 4);
+	}
+
+	@Test
+	public void insertRemoveAndMove() {
+		ListDiff diff = ListDiff.compute(keys("a", "b", "c", "d"),
+				keys("d", "a", "x", "c"));
+		assertEquals(1, diff.getInsertCount());
+		assertEquals(1, diff.getRemoveCount());
+		assertEquals(1, diff.getMoveCount());
+		assertPositions(diff, 1, -1, 3, 0);
+	}
+
+	@Test
+	public void tooManyChanges() {
+		int count = ListDiff.MAX_EDIT_DISTANCE;
+		Object[] oldKeys = new Object[count];
+		Object[] newKeys = new Object[count];
+		for (int i = 0; i < count; i++) {
+			oldKeys[i] = i;
+			newKeys[i] = count + i;
+		}
+		assertNull(ListDiff.compute(oldKeys, newKeys));
+	}
+
+	private static Object[] keys(Object... keys) {
+		return keys;
+	}
+
+	private static void assertPositions(ListDiff diff, int... newPositions) {
+		for (int i = 0; i < newPositions.length; i++) {
+			assertEquals("old position " + i, newPositions[i],
+					diff.getNewPosition(i));
+		}
+	}
+}
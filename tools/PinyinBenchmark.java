@@ -0,0 +1,140 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+
+import com.lq.util.PinyinTable;
+
+/**
+ * 比较原先基于pinyin4j的拼音转换与基于拼音表的转换的速度，并检查两者的结果是否一致。
+ * <p>
+ * 标题文件每行一个歌曲标题（UTF-8编码），不足指定数目时循环使用。在项目根目录下执行：
+ *
+ * <pre>
+ * javac -cp libs/pinyin4j-2.5.0.jar -d bin/tools tools/PinyinBenchmark.java src/com/lq/util/PinyinTable.java
+ * java -cp libs/pinyin4j-2.5.0.jar:bin/tools PinyinBenchmark assets/pinyin.dat titles.txt 50000
+ * </pre>
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class PinyinBenchmark {
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("usage: PinyinBenchmark <pinyin table> <titles file> [count]");
+			System.exit(1);
+		}
+		PinyinTable table = PinyinTable.map(new File(args[0]));
+		List<String> titles = readTitles(args[1],
+				args.length > 2 ? Integer.parseInt(args[2]) : 50000);
+		System.out.println("titles: " + titles.size());
+
+		// 先检查结果一致，顺便预热
+		int mismatch = 0;
+		StringBuilder builder = new StringBuilder(64);
+		for (String title : titles) {
+			String expected = getPingYinByPinyin4j(title);
+			builder.setLength(0);
+			table.appendPinyin(title.trim(), builder);
+			if (!expected.equals(builder.toString())) {
+				if (mismatch++ < 10) {
+					System.out.println("mismatch: " + title + " " + expected
+							+ " " + builder);
+				}
+			}
+		}
+		System.out.println("mismatches: " + mismatch);
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			int hash = 0;
+			for (String title : titles) {
+				hash += getPingYinByPinyin4j(title).hashCode();
+			}
+			long pinyin4jTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (String title : titles) {
+				builder.setLength(0);
+				table.appendPinyin(title.trim(), builder);
+				hash -= builder.toString().hashCode();
+			}
+			long tableTime = System.nanoTime() - start;
+
+			System.out.println("round " + round + ": pinyin4j "
+					+ pinyin4jTime / 1000000 + "ms, table " + tableTime
+					/ 1000000 + "ms, speedup "
+					+ (tableTime == 0 ? 0 : pinyin4jTime / tableTime)
+					+ "x, check " + hash);
+		}
+	}
+
+	private static List<String> readTitles(String path, int count)
+			throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(path), "UTF-8"));
+		try {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() > 0) {
+					lines.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if (lines.isEmpty()) {
+			throw new IOException("no titles in " + path);
+		}
+		List<String> titles = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			titles.add(lines.get(i % lines.size()));
+		}
+		return titles;
+	}
+
+	/** 原先StringHelper.getPingYin()的实现 */
+	private static String getPingYinByPinyin4j(String inputString) {
+		if (inputString == null || inputString.length() == 0) {
+			return "";
+		}
+		HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+		format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+		format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+		format.setVCharType(HanyuPinyinVCharType.WITH_V);
+
+		char[] input = inputString.trim().toCharArray();
+		String output = "";
+
+		try {
+			for (int i = 0; i < input.length; i++) {
+				if (java.lang.Character.toString(input[i]).matches(
+						"[\\u4E00-\\u9FA5]+")) {
+					String[] temp = PinyinHelper.toHanyuPinyinStringArray(
+							input[i], format);
+					if (temp == null || temp[0] == null
+							|| temp[0].length() == 0) {
+						continue;
+					}
+					output += temp[0].replaceFirst(temp[0].substring(0, 1),
+							temp[0].substring(0, 1).toUpperCase());
+				} else
+					output += java.lang.Character.toString(input[i]);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return output;
+	}
+}
@@ -0,0 +1,115 @@
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+
+/**
+ * 从pinyin4j的数据生成汉字拼音表assets/pinyin.dat，供com.lq.util.PinyinTable读取。
+ * <p>
+ * 更换pinyin4j版本或修改表格式后需要重新生成，在项目根目录下执行：
+ * 
+ * <pre>
+ * javac -cp libs/pinyin4j-2.5.0.jar -d bin/tools tools/PinyinTableGenerator.java
+ * java -cp libs/pinyin4j-2.5.0.jar:bin/tools PinyinTableGenerator assets/pinyin.dat
+ * </pre>
+ * 
+ * 文件格式（大端字节序）见PinyinTable的说明。每个汉字的读音按pinyin4j给出的顺序排列，
+ * 去掉声调后重复的读音只保留一个，所以第一个读音与原先PinyinHelper取pinyin[0]的结果相同。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class PinyinTableGenerator {
+	private static final int MAGIC = 0x50595442; // "PYTB"
+	private static final int VERSION = 1;
+	private static final char FIRST_CHAR = '\u4e00';
+	private static final char LAST_CHAR = '\u9fa5';
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("usage: PinyinTableGenerator <output file>");
+			System.exit(1);
+		}
+		HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+		format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+		format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+		format.setVCharType(HanyuPinyinVCharType.WITH_V);
+
+		List<String> syllables = new ArrayList<String>();
+		Map<String, Integer> syllableIds = new HashMap<String, Integer>();
+		int charCount = LAST_CHAR - FIRST_CHAR + 1;
+		int[] readingStart = new int[charCount + 1];
+		List<Integer> readings = new ArrayList<Integer>();
+
+		for (int i = 0; i < charCount; i++) {
+			readingStart[i] = readings.size();
+			String[] pinyin = PinyinHelper.toHanyuPinyinStringArray(
+					(char) (FIRST_CHAR + i), format);
+			if (pinyin == null) {
+				continue;
+			}
+			List<Integer> seen = new ArrayList<Integer>();
+			for (String p : pinyin) {
+				if (p == null || p.length() == 0) {
+					continue;
+				}
+				Integer id = syllableIds.get(p);
+				if (id == null) {
+					id = syllables.size();
+					syllables.add(p);
+					syllableIds.put(p, id);
+				}
+				if (!seen.contains(id)) {
+					seen.add(id);
+					readings.add(id);
+				}
+			}
+		}
+		readingStart[charCount] = readings.size();
+		if (readings.size() > 0xffff || syllables.size() > 0xffff) {
+			throw new IOException("table too large for 16-bit indexes");
+		}
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(
+				args[0]));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(FIRST_CHAR);
+			out.writeInt(charCount);
+			out.writeInt(syllables.size());
+			out.writeInt(readings.size());
+			// 每个汉字的读音在读音表中的起始位置
+			for (int i = 0; i <= charCount; i++) {
+				out.writeShort(readingStart[i]);
+			}
+			// 读音表，每项是一个音节编号
+			for (int id : readings) {
+				out.writeShort(id);
+			}
+			// 音节在音节文本中的起始位置
+			int offset = 0;
+			for (String s : syllables) {
+				out.writeShort(offset);
+				offset += s.length();
+			}
+			out.writeShort(offset);
+			// 音节文本，ASCII编码
+			for (String s : syllables) {
+				out.writeBytes(s);
+			}
+		} finally {
+			out.close();
+		}
+		System.out.println("chars:" + charCount + " syllables:"
+				+ syllables.size() + " readings:" + readings.size());
+	}
+}
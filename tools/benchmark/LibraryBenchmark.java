@@ -0,0 +1,902 @@
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.MediaStore.Audio.Media;
+
+import com.lq.entity.TrackInfo;
+import com.lq.entity.TrackStore;
+import com.lq.loader.FolderIndex;
+import com.lq.loader.LoaderAccess;
+import com.lq.loader.MediaLibrary;
+import com.lq.search.FuzzySearchIndex;
+import com.lq.search.IncrementalSearcher;
+import com.lq.search.TrackSearchIndex;
+import com.lq.util.PinyinAccess;
+import com.lq.util.PinyinTable;
+import com.lq.util.TrackSortOrders;
+
+/**
+ * 媒体库规模的基准测试：用合成的曲库在普通JVM上测量建立快照、歌曲和文件夹列表的加载、排序以及拼音搜索的耗时和内存。
+ * <p>
+ * 曲库由固定的随机种子生成，每次运行都相同：约六成中文标题、四成英文标题，艺术家的歌曲数目相差悬殊，
+ * 文件分布在常见的音乐文件夹和按艺术家分的子文件夹中，另有少量会被过滤掉的短音频。它通过一个实现了Cursor的
+ * 内存表交给MediaLibrary.buildSnapshot()，各项测试再调用装载器所用的同一组Snapshot接口和装载器取出结果的方法：
+ *
+ * <pre>
+ * load                  查询结果建立快照（读取、转换拼音、排序、统计分组、建立文件夹索引），装载器首次加载时等待的就是它
+ * sort                  全部歌曲的各种排列顺序，即MusicRetrieveLoader首次显示全部歌曲时的工作
+ * music_retrieve_artist MusicRetrieveLoader按歌曲最多的艺术家过滤并排序
+ * music_retrieve_folder MusicRetrieveLoader由文件夹索引取出歌曲最多的文件夹并排序
+ * folder_index          由全部歌曲建立文件夹索引
+ * folder_retrieve       FolderInfoRetreiveLoader复制文件夹列表并更新全局搜索的索引
+ * search_index          为全部歌曲建立拼音搜索索引
+ * pinyin_search         逐个字母输入全拼和简拼，每次在上一次的结果中继续筛选
+ * pinyin_search_t9      同上，T9键盘的数字输入
+ * fuzzy_search          模糊搜索
+ * heap_track_objects    每首歌曲一个TrackInfo，字符串各自独立（列式存储之前装载器的结果），看retained_bytes
+ * heap_track_store      列式的歌曲表TrackStore，看retained_bytes
+ * heap_track_views      歌曲表加上为每一行创建的TrackInfo视图，看retained_bytes
+ * </pre>
+ *
+ * 每项先预热再测量若干轮，报告耗时的中位数和最小值、每轮分配的字节数（中位数）以及结果在堆中占用的字节数
+ * （持有结果时反复GC后的已用内存减去运行前的已用内存）。期间发生的GC可能让差值不大于0，这时重新测量，
+ * 几次都不大于0时照样输出原始的差值，并把retained_valid设为false，不能当作结果不占内存。
+ * 结果每行一个JSON对象，写到标准输出，进度写到标准错误。
+ * <p>
+ * android.jar中的类只有声明，在普通JVM上调用会抛出异常，所以tools/benchmark/jvm中的Log和TextUtils在运行时放在android.jar之前；
+ * 建立快照、设置拼音表等应用中包内可见的方法通过tools/benchmark/seam中与它们同包的入口调用，这些入口不编译进应用。
+ * tools/benchmark/run.sh把项目和基准测试编译到临时目录中再运行，需要JDK和Android SDK中android-14的android.jar
+ * （设置ANDROID_HOME，或者用ANDROID_JAR直接指定）：
+ *
+ * <pre>
+ * tools/benchmark/run.sh 1000,10000,50000,100000
+ * </pre>
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class LibraryBenchmark {
+	private static final int[] DEFAULT_SIZES = { 1000, 10000, 50000, 100000 };
+
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int ROUNDS = 5;
+
+	/** 测量结果占用的内存最多重试的次数 */
+	private static final int RETAINED_ATTEMPTS = 3;
+
+	/** 每轮搜索测试输入的查询数目 */
+	private static final int QUERY_COUNT = 50;
+
+	private static final long SEED = 20130601L;
+
+	/** 测量占用的内存时持有结果。放在静态成员中，JIT不会因为局部变量之后不再使用而提前释放它 */
+	private static Object sHeld = null;
+
+	/** 测量一次的操作，返回的结果在测量占用的内存时保持引用 */
+	private interface Task {
+		Object run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err
+					.println("usage: LibraryBenchmark <pinyin table> [sizes, e.g. 1000,10000,50000,100000]");
+			System.exit(1);
+		}
+		PinyinAccess.setPinyinTable(PinyinTable.map(new File(args[0])));
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 1) {
+			String[] parts = args[1].split(",");
+			sizes = new int[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				sizes[i] = Integer.parseInt(parts[i].trim());
+			}
+		}
+
+		Runtime runtime = Runtime.getRuntime();
+		System.out.println("{\"type\":\"environment\",\"java\":\""
+				+ System.getProperty("java.version") + "\",\"cpus\":"
+				+ runtime.availableProcessors() + ",\"max_heap_bytes\":"
+				+ runtime.maxMemory() + ",\"alloc_scope\":\""
+				+ AllocationCounter.getScope() + "\",\"warmup_rounds\":"
+				+ WARMUP_ROUNDS + ",\"rounds\":" + ROUNDS + "}");
+
+		for (int size : sizes) {
+			runCatalog(size);
+		}
+	}
+
+	private static void runCatalog(int size) throws Exception {
+		final SyntheticCursor cursor = new SyntheticCursor(size, SEED);
+		System.err.println("catalog " + size + ": " + cursor.getChineseCount()
+				+ " chinese titles, " + cursor.getArtistCount() + " artists");
+
+		measure("load", size, new Task() {
+			@Override
+			public Object run() {
+				cursor.moveToPosition(-1);
+				return LoaderAccess.buildSnapshot(cursor, true, true);
+			}
+		});
+		cursor.moveToPosition(-1);
+		final MediaLibrary.Snapshot snapshot = LoaderAccess.buildSnapshot(
+				cursor, true, true);
+		final TrackStore store = snapshot.getStore();
+		final int[] rows = snapshot.getRows();
+
+		measure("sort", size, new Task() {
+			@Override
+			public Object run() {
+				return TrackSortOrders.build(store, rows);
+			}
+		});
+
+		final String topArtist = findTopArtist(store, rows);
+		measure("music_retrieve_artist", size, new Task() {
+			@Override
+			public Object run() {
+				return LoaderAccess
+						.retrieveMusic(snapshot, topArtist, null);
+			}
+		});
+		final String topFolder = findTopFolder(snapshot.getFolderIndex());
+		measure("music_retrieve_folder", size, new Task() {
+			@Override
+			public Object run() {
+				return LoaderAccess
+						.retrieveMusic(snapshot, null, topFolder);
+			}
+		});
+
+		measure("folder_index", size, new Task() {
+			@Override
+			public Object run() {
+				FolderIndex index = FolderIndex.build(store, rows);
+				index.getFoldersWithTracks();
+				return index;
+			}
+		});
+		measure("folder_retrieve", size, new Task() {
+			@Override
+			public Object run() {
+				return LoaderAccess.retrieveFolders(snapshot);
+			}
+		});
+
+		final List<TrackInfo> tracks = snapshot.getTracks();
+		measure("search_index", size, new Task() {
+			@Override
+			public Object run() {
+				return TrackSearchIndex.build(tracks);
+			}
+		});
+
+		final TrackSearchIndex index = TrackSearchIndex.build(tracks);
+		final String[] queries = createQueries(store, rows, false);
+		final String[] t9Queries = createQueries(store, rows, true);
+		measure("pinyin_search", size, new Task() {
+			@Override
+			public Object run() {
+				return typeQueries(index, queries, false);
+			}
+		});
+		measure("pinyin_search_t9", size, new Task() {
+			@Override
+			public Object run() {
+				return typeQueries(index, t9Queries, true);
+			}
+		});
+
+		final FuzzySearchIndex fuzzyIndex = new FuzzySearchIndex();
+		fuzzyIndex.update(tracks);
+		measure("fuzzy_search", size, new Task() {
+			@Override
+			public Object run() {
+				int found = 0;
+				for (String query : queries) {
+					found += fuzzyIndex.search(query, false,
+							FuzzySearchIndex.DEFAULT_RESULT_LIMIT).size();
+				}
+				return found;
+			}
+		});
+
+		measure("heap_track_objects", size, new Task() {
+			@Override
+			public Object run() {
+				return createTrackObjects(store, rows);
+			}
+		});
+		measure("heap_track_store", size, new Task() {
+			@Override
+			public Object run() {
+				cursor.moveToPosition(-1);
+				return LoaderAccess.buildSnapshot(cursor, true, true)
+						.getStore();
+			}
+		});
+		measure("heap_track_views", size, new Task() {
+			@Override
+			public Object run() {
+				cursor.moveToPosition(-1);
+				List<TrackInfo> views = LoaderAccess.buildSnapshot(cursor,
+						true, true).getTracks();
+				for (int i = 0; i < views.size(); i++) {
+					views.get(i);
+				}
+				return views;
+			}
+		});
+	}
+
+	/**
+	 * 按列式存储之前的方式为每首歌曲创建一个TrackInfo：每个字符串都是单独的对象，与从游标中读出时相同，
+	 * 拼音索引和标题、艺术家的排序键都已算好，与装载器排序后的状态相同
+	 */
+	private static List<TrackInfo> createTrackObjects(TrackStore store,
+			int[] rows) {
+		ArrayList<TrackInfo> tracks = new ArrayList<TrackInfo>(rows.length);
+		for (int row : rows) {
+			TrackInfo track = new TrackInfo();
+			track.setId(store.getId(row));
+			track.setTitle(new String(store.getTitle(row)), new String(
+					store.getTitleKey(row)));
+			track.setArtist(new String(store.getArtist(row)), new String(
+					store.getArtistKey(row)));
+			track.setAlbum(new String(store.getAlbum(row)));
+			track.setAlbumId(store.getAlbumId(row));
+			track.setData(store.getData(row));
+			track.setDisplayName(new String(store.getDisplayName(row)));
+			track.setDuration(store.getDuration(row));
+			track.setSize(store.getSize(row));
+			track.setDateModified(store.getDateModified(row));
+			track.setDateAdded(store.getDateAdded(row));
+			track.getTitleSortKey();
+			track.getArtistSortKey();
+			tracks.add(track);
+		}
+		return tracks;
+	}
+
+	/** 逐个字母输入每个查询，返回最后一次输入的结果数目之和 */
+	private static int typeQueries(TrackSearchIndex index, String[] queries,
+			boolean isT9) {
+		IncrementalSearcher searcher = new IncrementalSearcher(index);
+		int found = 0;
+		for (String query : queries) {
+			searcher.reset();
+			int[] result = null;
+			for (int i = 1; i <= query.length(); i++) {
+				result = searcher.search(query.substring(0, i), isT9);
+			}
+			found += result.length;
+		}
+		return found;
+	}
+
+	/**
+	 * 由随机选出的歌曲的拼音生成查询，一半是标题全拼的开头，一半是标题的简拼（英文标题则用艺术家名字的开头）
+	 *
+	 * @param isT9
+	 *            是否换成T9键盘的数字
+	 */
+	private static String[] createQueries(TrackStore store, int[] rows,
+			boolean isT9) {
+		Random random = new Random(SEED + (isT9 ? 1 : 0));
+		String[] queries = new String[QUERY_COUNT];
+		for (int i = 0; i < queries.length; i++) {
+			int row = rows[random.nextInt(rows.length)];
+			String key = store.getTitleKey(row);
+			StringBuilder query = new StringBuilder();
+			if (i % 2 == 0) {
+				appendLetters(key, query, 2 + random.nextInt(5), false);
+			} else {
+				appendLetters(key, query, 6, true);
+				if (query.length() < 2) {
+					query.setLength(0);
+					appendLetters(store.getArtistKey(row), query,
+							2 + random.nextInt(4), false);
+				}
+			}
+			if (query.length() == 0) {
+				query.append('a');
+			}
+			queries[i] = isT9 ? toT9(query) : query.toString();
+		}
+		return queries;
+	}
+
+	/** 取出key中最多max个字母（只取大写字母时即拼音的简拼），转为小写 */
+	private static void appendLetters(String key, StringBuilder out, int max,
+			boolean initialsOnly) {
+		for (int i = 0; i < key.length() && out.length() < max; i++) {
+			char c = key.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				out.append((char) (c - 'A' + 'a'));
+			} else if (c >= 'a' && c <= 'z' && !initialsOnly) {
+				out.append(c);
+			}
+		}
+	}
+
+	private static final String T9_KEYS = "22233344455566677778889999";
+
+	private static String toT9(CharSequence letters) {
+		StringBuilder digits = new StringBuilder(letters.length());
+		for (int i = 0; i < letters.length(); i++) {
+			digits.append(T9_KEYS.charAt(letters.charAt(i) - 'a'));
+		}
+		return digits.toString();
+	}
+
+	private static String findTopArtist(TrackStore store, int[] rows) {
+		int[] counts = new int[store.getArtistCount()];
+		int top = 0;
+		for (int row : rows) {
+			int ref = store.getArtistRef(row);
+			if (++counts[ref] > counts[top]) {
+				top = ref;
+			}
+		}
+		return store.getArtistName(top);
+	}
+
+	private static String findTopFolder(FolderIndex index) {
+		FolderIndex.Node top = null;
+		for (FolderIndex.Node node : index.getFoldersWithTracks()) {
+			if (top == null || node.getTrackCount() > top.getTrackCount()) {
+				top = node;
+			}
+		}
+		return top == null ? "" : top.getPath();
+	}
+
+	/** 预热后测量若干轮，输出一行JSON */
+	private static void measure(String name, int size, Task task)
+			throws Exception {
+		System.err.println("  " + name);
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			task.run();
+		}
+		long[] times = new long[ROUNDS];
+		long[] allocations = new long[ROUNDS];
+		for (int i = 0; i < ROUNDS; i++) {
+			sHeld = null;
+			long allocated = AllocationCounter.get();
+			long start = System.nanoTime();
+			sHeld = task.run();
+			times[i] = System.nanoTime() - start;
+			allocations[i] = AllocationCounter.get() - allocated;
+		}
+
+		// 结果占用的内存：持有结果时与运行前GC后已用内存的差，不大于0说明测量失败，重新测量
+		long retained = 0;
+		for (int i = 0; i < RETAINED_ATTEMPTS && retained <= 0; i++) {
+			sHeld = null;
+			long before = usedAfterGc();
+			sHeld = task.run();
+			retained = usedAfterGc() - before;
+		}
+		sHeld = null;
+
+		Arrays.sort(times);
+		Arrays.sort(allocations);
+		System.out.println("{\"type\":\"result\",\"benchmark\":\"" + name
+				+ "\",\"tracks\":" + size + ",\"wall_ms_median\":"
+				+ toMillis(times[ROUNDS / 2]) + ",\"wall_ms_min\":"
+				+ toMillis(times[0]) + ",\"alloc_bytes_median\":"
+				+ allocations[ROUNDS / 2] + ",\"retained_bytes\":"
+				+ retained + ",\"retained_valid\":" + (retained > 0) + "}");
+	}
+
+	private static String toMillis(long nanos) {
+		return String.format(Locale.US, "%.3f", nanos / 1000000.0);
+	}
+
+	/** 反复GC直到已用内存不再减少，返回已用内存 */
+	private static long usedAfterGc() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(20);
+			long now = runtime.totalMemory() - runtime.freeMemory();
+			if (now >= used) {
+				return now;
+			}
+			used = now;
+		}
+		return used;
+	}
+
+	/**
+	 * 已分配的字节数。排序和转换拼音会用到线程池，所以尽量统计所有线程（JDK 21起有
+	 * getTotalThreadAllocatedBytes()），否则只统计当前线程；都不支持时为0
+	 */
+	private static class AllocationCounter {
+		private static final ThreadMXBean sBean = ManagementFactory
+				.getThreadMXBean();
+		private static final Method sTotal = findMethod(
+				"getTotalThreadAllocatedBytes");
+		private static final Method sCurrent = findMethod(
+				"getThreadAllocatedBytes", long.class);
+
+		private static Method findMethod(String name, Class<?>... types) {
+			try {
+				Class<?> type = Class
+						.forName("com.sun.management.ThreadMXBean");
+				if (!type.isInstance(sBean)) {
+					return null;
+				}
+				return type.getMethod(name, types);
+			} catch (Exception e) {
+				return null;
+			}
+		}
+
+		static String getScope() {
+			if (sTotal != null && get() > 0) {
+				return "all_threads";
+			}
+			return sCurrent != null ? "current_thread" : "unsupported";
+		}
+
+		static long get() {
+			try {
+				if (sTotal != null) {
+					long total = (Long) sTotal.invoke(sBean);
+					if (total > 0) {
+						return total;
+					}
+				}
+				if (sCurrent != null) {
+					return (Long) sCurrent.invoke(sBean, Thread.currentThread()
+							.getId());
+				}
+			} catch (Exception e) {
+				// 不支持时不统计
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * 合成的MediaStore查询结果，含有MediaLibrary查询的各列。所有行在构造时生成，测量时只有读取的开销
+	 */
+	private static class SyntheticCursor implements Cursor {
+		private static final String[] COLUMNS = { Media._ID, Media.TITLE,
+				Media.ALBUM, Media.ALBUM_ID, Media.ARTIST, Media.DATA,
+				Media.SIZE, Media.DURATION, Media.DISPLAY_NAME,
+				Media.DATE_MODIFIED, Media.DATE_ADDED };
+		private static final int COLUMN_ID = 0;
+		private static final int COLUMN_TITLE = 1;
+		private static final int COLUMN_ALBUM = 2;
+		private static final int COLUMN_ALBUM_ID = 3;
+		private static final int COLUMN_ARTIST = 4;
+		private static final int COLUMN_DATA = 5;
+		private static final int COLUMN_SIZE = 6;
+		private static final int COLUMN_DURATION = 7;
+		private static final int COLUMN_DISPLAY_NAME = 8;
+		private static final int COLUMN_DATE_MODIFIED = 9;
+		private static final int COLUMN_DATE_ADDED = 10;
+
+		/** 歌曲标题中常见的汉字 */
+		private static final String TITLE_CHARS = "爱你我的心情人生梦想天空世界时间回忆故事一个不要没有永远相信朋友快乐再见等待孤独"
+				+ "温柔月亮星光雨风花雪夜晚春夏秋冬城市远方海洋青春离开告白约定眼泪微笑幸福寂寞思念流浪声音未来记得说好"
+				+ "红色蓝白黑彩虹明天今夜长大小手牵走过路口南北东西山河水火歌唱舞曲少年女孩男孩后来曾经最美只是如果一生"
+				+ "还是重来那些年日光倾城恋爱勇气晴天稻香七里香";
+
+		private static final String SURNAMES = "王李张刘陈杨黄赵吴周徐孙马朱胡郭何林罗高郑梁谢宋唐许邓冯韩曹曾彭萧蔡潘田董袁于余叶"
+				+ "蒋杜苏魏程吕丁沈任姚卢傅钟姜崔谭廖范汪陆金石戴贾韦夏邱方侯邹熊孟秦白江阎薛尹段雷黎史龙陶贺顾毛郝龚邵万钱严武";
+
+		private static final String GIVEN_CHARS = "伟芳娜敏静丽强磊军洋勇艳杰娟涛明超秀霞平刚英华玉萍红玲燕春兰凤洁梅琳云雪荣佳嘉"
+				+ "琼珍莉晶妍倩婷颖露瑶怡丹蓉君琴薇梦岚馨韵悦冰宁欣柔竹凝晓欢枫菲寒伊亚宜可舒影思杰伦学友宇";
+
+		private static final String[] WORDS = { "Love", "Heart", "Night",
+				"Dream", "Light", "Rain", "Fire", "Summer", "Home", "Road",
+				"Blue", "River", "Star", "Sky", "Forever", "Remember",
+				"Broken", "Wild", "Young", "Gold", "Silence", "Shadow",
+				"Ocean", "City", "Morning", "Dance", "Song", "Time", "World",
+				"Moon", "Sun", "Wind", "Lost", "Believe", "Again", "Tonight",
+				"Beautiful", "Stay", "Alone", "Together", "Paradise",
+				"Memory", "Angel", "Promise", "Secret", "Storm", "Freedom",
+				"Island", "Echo", "Highway", "You", "Me", "The", "My", "In",
+				"Of" };
+
+		private static final String[] FIRST_NAMES = { "John", "Taylor",
+				"Adele", "Michael", "Sarah", "David", "Emma", "James", "Lana",
+				"Bruno", "Katy", "Ed", "Ariana", "Justin", "Norah", "Chris" };
+
+		private static final String[] LAST_NAMES = { "Smith", "Swift",
+				"Jackson", "Brown", "Martin", "Jones", "Miller", "Davis",
+				"Mars", "Perry", "Sheeran", "Grande", "Wilson", "Moore",
+				"Taylor", "White" };
+
+		private static final String[] ROOTS = { "/storage/sdcard0/Music",
+				"/storage/sdcard0/MIUI/music", "/storage/sdcard0/netease/cloudmusic/Music",
+				"/storage/sdcard0/KuGou", "/storage/sdcard0/qqmusic/song",
+				"/storage/sdcard0/ttpod/song", "/storage/sdcard0/Download",
+				"/storage/sdcard1/Music" };
+
+		private static final String[] EXTENSIONS = { ".mp3", ".mp3", ".mp3",
+				".mp3", ".m4a", ".flac", ".ogg", ".wma", ".ape" };
+
+		private final long[][] mLongs = new long[COLUMNS.length][];
+		private final String[][] mStrings = new String[COLUMNS.length][];
+		private final int mCount;
+		private int mChineseCount = 0;
+		private final int mArtistCount;
+		private int mPosition = -1;
+		private boolean mClosed = false;
+
+		SyntheticCursor(int count, long seed) {
+			mCount = count;
+			Random random = new Random(seed);
+			for (int column : new int[] { COLUMN_ID, COLUMN_ALBUM_ID,
+					COLUMN_SIZE, COLUMN_DURATION, COLUMN_DATE_MODIFIED,
+					COLUMN_DATE_ADDED }) {
+				mLongs[column] = new long[count];
+			}
+			for (int column : new int[] { COLUMN_TITLE, COLUMN_ALBUM,
+					COLUMN_ARTIST, COLUMN_DATA, COLUMN_DISPLAY_NAME }) {
+				mStrings[column] = new String[count];
+			}
+
+			// 艺术家约为歌曲的1/25，大约六成是中文名字
+			mArtistCount = Math.max(1, count / 25);
+			String[] artists = new String[mArtistCount];
+			boolean[] chineseArtists = new boolean[mArtistCount];
+			for (int i = 0; i < mArtistCount; i++) {
+				chineseArtists[i] = random.nextInt(10) < 6;
+				artists[i] = chineseArtists[i] ? chineseName(random)
+						: englishName(random);
+			}
+			HashMap<Integer, String> albums = new HashMap<Integer, String>();
+
+			long now = 1370000000L;
+			for (int i = 0; i < count; i++) {
+				// 少数艺术家占了大部分歌曲
+				int artist = (int) (mArtistCount * Math.pow(
+						random.nextDouble(), 3));
+				boolean chinese = random.nextInt(10) < (chineseArtists[artist] ? 9
+						: 1);
+				String title = chinese ? chineseTitle(random)
+						: englishTitle(random);
+				if (chinese) {
+					mChineseCount++;
+				}
+				int suffix = random.nextInt(20);
+				if (suffix == 0) {
+					title += " (Live)";
+				} else if (suffix == 1) {
+					title += " (Remix)";
+				}
+
+				// 每个艺术家最多8张专辑，前几张的歌曲多
+				int albumId = artist * 8
+						+ (int) (8 * Math.pow(random.nextDouble(), 2));
+				String album = albums.get(albumId);
+				if (album == null) {
+					album = chineseArtists[artist] ? chineseTitle(random)
+							: englishTitle(random);
+					albums.put(albumId, album);
+				}
+
+				String extension = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+				String folder = ROOTS[random.nextInt(ROOTS.length)];
+				int layout = random.nextInt(10);
+				if (layout < 3) {
+					folder += "/" + artists[artist];
+				} else if (layout < 5) {
+					folder += "/" + artists[artist] + "/" + album;
+				}
+				String displayName = artists[artist] + " - " + title
+						+ extension;
+
+				// 约5%是铃声、提示音之类的短音频，会被过滤掉
+				long duration;
+				long size;
+				if (random.nextInt(20) == 0) {
+					duration = 1000 + random.nextInt(50000);
+					size = duration * 16;
+				} else {
+					duration = 90000 + random.nextInt(330000);
+					int bitrate = extension.equals(".flac")
+							|| extension.equals(".ape") ? 900
+							: (random.nextBoolean() ? 128 : 320);
+					size = duration * bitrate / 8;
+				}
+				long dateAdded = now - random.nextInt(3 * 365 * 86400);
+
+				mLongs[COLUMN_ID][i] = i + 1;
+				mLongs[COLUMN_ALBUM_ID][i] = albumId;
+				mLongs[COLUMN_SIZE][i] = size;
+				mLongs[COLUMN_DURATION][i] = duration;
+				mLongs[COLUMN_DATE_ADDED][i] = dateAdded;
+				mLongs[COLUMN_DATE_MODIFIED][i] = dateAdded
+						- random.nextInt(86400);
+				mStrings[COLUMN_TITLE][i] = title;
+				mStrings[COLUMN_ALBUM][i] = album;
+				mStrings[COLUMN_ARTIST][i] = artists[artist];
+				mStrings[COLUMN_DATA][i] = folder + "/" + displayName;
+				mStrings[COLUMN_DISPLAY_NAME][i] = displayName;
+			}
+		}
+
+		private static String chineseTitle(Random random) {
+			int length = 2 + random.nextInt(5);
+			StringBuilder title = new StringBuilder(length);
+			for (int i = 0; i < length; i++) {
+				title.append(TITLE_CHARS.charAt(random.nextInt(TITLE_CHARS
+						.length())));
+			}
+			return title.toString();
+		}
+
+		private static String englishTitle(Random random) {
+			int length = 1 + random.nextInt(4);
+			StringBuilder title = new StringBuilder();
+			for (int i = 0; i < length; i++) {
+				if (i > 0) {
+					title.append(' ');
+				}
+				title.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			return title.toString();
+		}
+
+		private static String chineseName(Random random) {
+			StringBuilder name = new StringBuilder(3);
+			name.append(SURNAMES.charAt(random.nextInt(SURNAMES.length())));
+			int length = 1 + random.nextInt(2);
+			for (int i = 0; i < length; i++) {
+				name.append(GIVEN_CHARS.charAt(random.nextInt(GIVEN_CHARS
+						.length())));
+			}
+			return name.toString();
+		}
+
+		private static String englishName(Random random) {
+			if (random.nextInt(4) == 0) {
+				// 乐队
+				return "The " + WORDS[random.nextInt(WORDS.length)] + "s";
+			}
+			return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+					+ LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+		}
+
+		int getChineseCount() {
+			return mChineseCount;
+		}
+
+		int getArtistCount() {
+			return mArtistCount;
+		}
+
+		@Override
+		public int getCount() {
+			return mCount;
+		}
+
+		@Override
+		public int getPosition() {
+			return mPosition;
+		}
+
+		@Override
+		public boolean move(int offset) {
+			return moveToPosition(mPosition + offset);
+		}
+
+		@Override
+		public boolean moveToPosition(int position) {
+			mPosition = Math.max(-1, Math.min(mCount, position));
+			return mPosition >= 0 && mPosition < mCount;
+		}
+
+		@Override
+		public boolean moveToFirst() {
+			return moveToPosition(0);
+		}
+
+		@Override
+		public boolean moveToLast() {
+			return moveToPosition(mCount - 1);
+		}
+
+		@Override
+		public boolean moveToNext() {
+			return moveToPosition(mPosition + 1);
+		}
+
+		@Override
+		public boolean moveToPrevious() {
+			return moveToPosition(mPosition - 1);
+		}
+
+		@Override
+		public boolean isFirst() {
+			return mCount > 0 && mPosition == 0;
+		}
+
+		@Override
+		public boolean isLast() {
+			return mCount > 0 && mPosition == mCount - 1;
+		}
+
+		@Override
+		public boolean isBeforeFirst() {
+			return mCount == 0 || mPosition == -1;
+		}
+
+		@Override
+		public boolean isAfterLast() {
+			return mCount == 0 || mPosition == mCount;
+		}
+
+		@Override
+		public int getColumnIndex(String columnName) {
+			for (int i = 0; i < COLUMNS.length; i++) {
+				if (COLUMNS[i].equals(columnName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int getColumnIndexOrThrow(String columnName) {
+			int index = getColumnIndex(columnName);
+			if (index < 0) {
+				throw new IllegalArgumentException("column '" + columnName
+						+ "' does not exist");
+			}
+			return index;
+		}
+
+		@Override
+		public String getColumnName(int columnIndex) {
+			return COLUMNS[columnIndex];
+		}
+
+		@Override
+		public String[] getColumnNames() {
+			return COLUMNS.clone();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return COLUMNS.length;
+		}
+
+		@Override
+		public byte[] getBlob(int columnIndex) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String getString(int columnIndex) {
+			if (mStrings[columnIndex] != null) {
+				return mStrings[columnIndex][mPosition];
+			}
+			return String.valueOf(mLongs[columnIndex][mPosition]);
+		}
+
+		@Override
+		public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+			String value = getString(columnIndex);
+			buffer.data = value.toCharArray();
+			buffer.sizeCopied = buffer.data.length;
+		}
+
+		@Override
+		public short getShort(int columnIndex) {
+			return (short) getLong(columnIndex);
+		}
+
+		@Override
+		public int getInt(int columnIndex) {
+			return (int) getLong(columnIndex);
+		}
+
+		@Override
+		public long getLong(int columnIndex) {
+			if (mLongs[columnIndex] == null) {
+				return 0;
+			}
+			return mLongs[columnIndex][mPosition];
+		}
+
+		@Override
+		public float getFloat(int columnIndex) {
+			return getLong(columnIndex);
+		}
+
+		@Override
+		public double getDouble(int columnIndex) {
+			return getLong(columnIndex);
+		}
+
+		@Override
+		public int getType(int columnIndex) {
+			return mStrings[columnIndex] != null ? FIELD_TYPE_STRING
+					: FIELD_TYPE_INTEGER;
+		}
+
+		@Override
+		public boolean isNull(int columnIndex) {
+			return mStrings[columnIndex] != null
+					&& mStrings[columnIndex][mPosition] == null;
+		}
+
+		@Override
+		@Deprecated
+		public void deactivate() {
+		}
+
+		@Override
+		@Deprecated
+		public boolean requery() {
+			return !mClosed;
+		}
+
+		@Override
+		public void close() {
+			mClosed = true;
+		}
+
+		@Override
+		public boolean isClosed() {
+			return mClosed;
+		}
+
+		@Override
+		public void registerContentObserver(ContentObserver observer) {
+		}
+
+		@Override
+		public void unregisterContentObserver(ContentObserver observer) {
+		}
+
+		@Override
+		public void registerDataSetObserver(DataSetObserver observer) {
+		}
+
+		@Override
+		public void unregisterDataSetObserver(DataSetObserver observer) {
+		}
+
+		@Override
+		public void setNotificationUri(ContentResolver cr, Uri uri) {
+		}
+
+		@Override
+		public boolean getWantsAllOnMoveCalls() {
+			return false;
+		}
+
+		@Override
+		public Bundle getExtras() {
+			return Bundle.EMPTY;
+		}
+
+		@Override
+		public Bundle respond(Bundle extras) {
+			return Bundle.EMPTY;
+		}
+	}
+}
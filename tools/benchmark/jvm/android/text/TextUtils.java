@@ -0,0 +1,13 @@
+package android.text;
+
+/**
+ * 在普通JVM上运行基准测试时代替android.jar中的TextUtils，只提供项目中用到的方法。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class TextUtils {
+
+	public static boolean isEmpty(CharSequence str) {
+		return str == null || str.length() == 0;
+	}
+}
@@ -0,0 +1,47 @@
+package android.util;
+
+/**
+ * 在普通JVM上运行基准测试时代替android.jar中的Log（其中的方法只会抛出异常）。
+ * 警告和错误写到标准错误，其余丢弃，标准输出只留给测试结果。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public final class Log {
+
+	public static int v(String tag, String msg) {
+		return 0;
+	}
+
+	public static int d(String tag, String msg) {
+		return 0;
+	}
+
+	public static int i(String tag, String msg) {
+		return 0;
+	}
+
+	public static int w(String tag, String msg) {
+		return print("W", tag, msg, null);
+	}
+
+	public static int w(String tag, String msg, Throwable tr) {
+		return print("W", tag, msg, tr);
+	}
+
+	public static int e(String tag, String msg) {
+		return print("E", tag, msg, null);
+	}
+
+	public static int e(String tag, String msg, Throwable tr) {
+		return print("E", tag, msg, tr);
+	}
+
+	private static int print(String level, String tag, String msg,
+			Throwable tr) {
+		System.err.println(level + "/" + tag + ": " + msg);
+		if (tr != null) {
+			tr.printStackTrace();
+		}
+		return 0;
+	}
+}
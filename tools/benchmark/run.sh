@@ -0,0 +1,30 @@
+#!/bin/sh
+# 编译项目和基准测试并运行LibraryBenchmark，参数为测试的曲库大小，如 tools/benchmark/run.sh 10000,50000
+# 需要JDK和Android SDK中的android.jar：设置ANDROID_JAR，或者设置ANDROID_HOME并安装android-14平台。
+# 编译结果放在临时目录中，运行结束后删除。
+set -e
+cd "$(dirname "$0")/../.."
+
+ANDROID_JAR=${ANDROID_JAR:-$ANDROID_HOME/platforms/android-14/android.jar}
+if [ ! -f "$ANDROID_JAR" ]; then
+	echo "android.jar not found, set ANDROID_JAR or ANDROID_HOME" >&2
+	exit 1
+fi
+LIBS=$(ls libs/*.jar | tr '\n' ':')
+
+OUT=$(mktemp -d)
+trap 'rm -rf "$OUT"' EXIT
+mkdir "$OUT/classes" "$OUT/benchmark"
+
+# 项目本身，gen中是aapt生成的R.java
+javac -nowarn -encoding UTF-8 -cp "$LIBS$ANDROID_JAR" -d "$OUT/classes" \
+	$(find src gen -name '*.java')
+# android.jar中的类只有声明，Log和TextUtils换成tools/benchmark/jvm中的实现，运行时放在android.jar之前
+javac -nowarn -encoding UTF-8 -d "$OUT/benchmark" \
+	$(find tools/benchmark/jvm -name '*.java')
+# seam中的入口与应用的类同包，可以调用包内可见的方法
+javac -nowarn -encoding UTF-8 -cp "$OUT/classes:$LIBS$ANDROID_JAR" -d "$OUT/benchmark" \
+	$(find tools/benchmark/seam -name '*.java') tools/benchmark/LibraryBenchmark.java
+
+java -Xmx2g -cp "$OUT/benchmark:$OUT/classes:$LIBS$ANDROID_JAR" \
+	LibraryBenchmark assets/pinyin.dat "$@"
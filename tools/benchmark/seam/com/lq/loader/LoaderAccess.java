@@ -0,0 +1,39 @@
+package com.lq.loader;
+
+import java.util.List;
+
+import android.database.Cursor;
+
+import com.lq.entity.FolderInfo;
+import com.lq.entity.TrackInfo;
+import com.lq.util.TrackSortOrders;
+
+/**
+ * 基准测试访问装载器内部的入口。只和基准测试一起编译，不属于应用，所以被调用的方法在应用中保持包内可见。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class LoaderAccess {
+
+	/** 见MediaLibrary.buildSnapshot() */
+	public static MediaLibrary.Snapshot buildSnapshot(Cursor cursor,
+			boolean filterBySize, boolean filterByDuration) {
+		return MediaLibrary.buildSnapshot(cursor, filterBySize,
+				filterByDuration);
+	}
+
+	/** MusicRetrieveLoader按艺术家或文件夹过滤并计算排列顺序，返回的数组依次是歌曲和排列顺序 */
+	public static Object[] retrieveMusic(MediaLibrary.Snapshot snapshot,
+			String artistFilter, String folderFilter) {
+		TrackSortOrders[] orders = new TrackSortOrders[1];
+		List<TrackInfo> tracks = MusicRetrieveLoader.retrieve(snapshot,
+				artistFilter, -1, folderFilter, null, true, orders);
+		return new Object[] { tracks, orders[0] };
+	}
+
+	/** 见FolderInfoRetreiveLoader.retrieve() */
+	public static List<FolderInfo> retrieveFolders(
+			MediaLibrary.Snapshot snapshot) {
+		return FolderInfoRetreiveLoader.retrieve(snapshot);
+	}
+}
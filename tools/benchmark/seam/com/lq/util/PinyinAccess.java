@@ -0,0 +1,14 @@
+package com.lq.util;
+
+/**
+ * 基准测试访问StringHelper内部的入口。只和基准测试一起编译，不属于应用，所以被调用的方法在应用中保持包内可见。
+ *
+ * @author lq 2013-6-1 lq2625304@gmail.com
+ * */
+public class PinyinAccess {
+
+	/** 见StringHelper.setPinyinTable() */
+	public static void setPinyinTable(PinyinTable table) {
+		StringHelper.setPinyinTable(table);
+	}
+}